@@ -0,0 +1,77 @@
+package org.cmbc.bigdata.zabbix.benchmark;
+
+import org.cmbc.bigdata.zabbix.ZabbixAPIResult;
+import org.cmbc.bigdata.zabbix.ZabbixApi;
+import org.cmbc.bigdata.zabbix.ZabbixApiBuilder;
+import org.cmbc.bigdata.zabbix.ZabbixSimulator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * itemListCreate of 20k items against a local simulator with 8 PHP-like workers, each request costing 2 ms
+ * plus 20 us per item, for several chunk sizes and
+ * degrees of parallelism. Items per second is itemCount divided by the reported time per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class BulkCreateBenchmark {
+  @Param({"20000"})
+  public int itemCount;
+
+  @Param({"100", "1000", "10000"})
+  public int chunkSize;
+
+  @Param({"1", "4", "8"})
+  public int parallelism;
+
+  private ZabbixSimulator server;
+  private ZabbixApi zabbixApi;
+  private ArrayList<HashMap<String, Object>> items;
+
+  @Setup
+  public void setup() throws Exception {
+    server = new ZabbixSimulator(0, 8).latency("*", 2, 0).objectCost("*", 20)
+            .handler(ZabbixResponses::createdIds).start();
+    zabbixApi = ZabbixApiBuilder.newBuilder()
+            .url(server.getUrl())
+            .bulkChunkSize(chunkSize)
+            .bulkParallelism(parallelism)
+            .build();
+    zabbixApi.init();
+
+    items = new ArrayList<>();
+    for (int i = 0; i < itemCount; i++) {
+      HashMap<String, Object> item = new HashMap<>();
+      item.put("delay", "60");
+      item.put("hostid", "10084");
+      item.put("interfaceid", "1");
+      item.put("key_", "benchmark.item.key[" + i + "]");
+      item.put("name", "Benchmark item " + i);
+      item.put("type", 2);
+      item.put("value_type", 3);
+      items.add(item);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    zabbixApi.destroy();
+    server.stop();
+  }
+
+  @Benchmark
+  public ZabbixAPIResult itemListCreate() {
+    ZabbixAPIResult result = zabbixApi.itemListCreate(items);
+    if (result.isFail()) {
+      throw new IllegalStateException(result.getMessage());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,67 @@
+package org.cmbc.bigdata.zabbix.benchmark;
+
+import org.cmbc.bigdata.zabbix.ZabbixAPIResult;
+import org.cmbc.bigdata.zabbix.ZabbixApi;
+import org.cmbc.bigdata.zabbix.ZabbixApiBuilder;
+import org.cmbc.bigdata.zabbix.ZabbixSimulator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * callApi and callApiStream end to end against a local simulator that answers instantly with a canned body,
+ * so the time measured is the client: request serialization, http, parsing, result mapping and logging.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CallApiBenchmark {
+  @Param({"host.get", "item.get"})
+  public String method;
+
+  @Param({"1", "1000", "10000"})
+  public int rows;
+
+  private ZabbixSimulator server;
+  private ZabbixApi zabbixApi;
+  private HashMap<String, Object> params;
+
+  @Setup
+  public void setup() throws Exception {
+    server = new ZabbixSimulator(0, 4).cannedResponse(method, ZabbixResponses.response(method, rows)).start();
+    zabbixApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).build();
+    zabbixApi.init();
+    zabbixApi.setAuth("0424bd59b807674191e7d77572075f33");
+
+    params = new HashMap<>();
+    params.put("output", "extend");
+  }
+
+  @TearDown
+  public void tearDown() {
+    zabbixApi.destroy();
+    server.stop();
+  }
+
+  @Benchmark
+  public ZabbixAPIResult callApi() {
+    return check(zabbixApi.callApi(method, params));
+  }
+
+  @Benchmark
+  public ZabbixAPIResult callApiStream(Blackhole blackhole) {
+    return check(zabbixApi.callApiStream(method, params, blackhole::consume));
+  }
+
+  private static ZabbixAPIResult check(ZabbixAPIResult result) {
+    if (result.isFail()) {
+      throw new IllegalStateException(result.getMessage());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,99 @@
+package org.cmbc.bigdata.zabbix.benchmark;
+
+import org.cmbc.bigdata.zabbix.ZabbixAPIResult;
+import org.cmbc.bigdata.zabbix.ZabbixApi;
+import org.cmbc.bigdata.zabbix.ZabbixApiBuilder;
+import org.cmbc.bigdata.zabbix.ZabbixCompression;
+import org.cmbc.bigdata.zabbix.ZabbixSimulator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A 10k row item.get and a 5k item itemListCreate with and without compression, over loopback and over
+ * simulated 100 and 10 Mbit/s links. Compression trades cpu on both ends for fewer bytes, so it pays off once
+ * the link is slower than gzip.
+ * <p>
+ * Bytes on the wire per call are printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class CompressionBenchmark {
+  /**
+   * Link bandwidth in Mbit/s, 0 for plain loopback.
+   */
+  @Param({"0", "100", "10"})
+  public int bandwidthMbit;
+
+  @Param({"false", "true"})
+  public boolean compression;
+
+  private ZabbixSimulator server;
+  private ZabbixApi zabbixApi;
+  private HashMap<String, Object> params;
+  private ArrayList<HashMap<String, Object>> items;
+
+  @Setup
+  public void setup() throws Exception {
+    server = new ZabbixSimulator(0, 4).bandwidth(bandwidthMbit * 1000000L / 8)
+            .cannedResponse("item.get", ZabbixResponses.response("item.get", 10000))
+            .handler(ZabbixResponses::createdIds).start();
+    zabbixApi = ZabbixApiBuilder.newBuilder()
+            .url(server.getUrl())
+            .responseCompression(compression)
+            .requestCompression(compression ? ZabbixCompression.GZIP : ZabbixCompression.NONE, 16384)
+            .bulkChunkSize(0)
+            .build();
+    zabbixApi.init();
+    zabbixApi.setAuth("0424bd59b807674191e7d77572075f33");
+
+    params = new HashMap<>();
+    params.put("output", "extend");
+
+    items = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      HashMap<String, Object> item = new HashMap<>();
+      item.put("delay", "60");
+      item.put("hostid", "10084");
+      item.put("interfaceid", "1");
+      item.put("key_", "benchmark.item.key[" + i + "]");
+      item.put("name", "Benchmark item " + i);
+      item.put("type", 2);
+      item.put("value_type", 3);
+      items.add(item);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    long calls = Math.max(1, server.getHttpRequestCount());
+    System.out.println("\nWire bytes per call: request " + server.getRequestWireBytes() / calls + ", response "
+            + server.getResponseWireBytes() / calls);
+    zabbixApi.destroy();
+    server.stop();
+  }
+
+  @Benchmark
+  public ZabbixAPIResult itemGet(Blackhole blackhole) {
+    return check(zabbixApi.callApiStream("item.get", params, blackhole::consume));
+  }
+
+  @Benchmark
+  public ZabbixAPIResult itemListCreate() {
+    return check(zabbixApi.itemListCreate(items));
+  }
+
+  private static ZabbixAPIResult check(ZabbixAPIResult result) {
+    if (result.isFail()) {
+      throw new IllegalStateException(result.getMessage());
+    }
+    return result;
+  }
+}
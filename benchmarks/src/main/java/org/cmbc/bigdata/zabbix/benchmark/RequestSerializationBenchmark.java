@@ -0,0 +1,90 @@
+package org.cmbc.bigdata.zabbix.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.cmbc.bigdata.zabbix.JsonRequestEntity;
+import org.cmbc.bigdata.zabbix.RequestAbstract;
+import org.cmbc.bigdata.zabbix.RequestBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old String based request body with the streaming JsonRequestEntity for item.create payloads.
+ * Run with "-prof gc" and compare gc.alloc.rate.norm, the bytes allocated per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestSerializationBenchmark {
+  @Param({"1", "1000", "100000"})
+  public int itemCount;
+
+  private ArrayList<HashMap<String, Object>> params;
+
+  private RequestAbstract request;
+
+  private final OutputStream socket = new DiscardOutputStream();
+
+  @Setup
+  public void setup() {
+    params = new ArrayList<>();
+    for (int i = 0; i < itemCount; i++) {
+      HashMap<String, Object> item = new HashMap<>();
+      item.put("delay", "60");
+      item.put("hostid", "10084");
+      item.put("interfaceid", "1");
+      item.put("key_", "benchmark.item.key[" + i + "]");
+      item.put("name", "Benchmark item " + i);
+      item.put("type", 2);
+      item.put("value_type", 3);
+      params.add(item);
+    }
+    request = RequestBuilder.newBuilder().initRequest(params).method("item.create").auth("0424bd59b807674191e7d77572075f33").build();
+  }
+
+  /**
+   * Wrapping params into a request, which every callApi does before sending.
+   */
+  @Benchmark
+  public RequestAbstract initRequest() {
+    return RequestBuilder.newBuilder().initRequest(params).method("item.create").build();
+  }
+
+  /**
+   * What ZabbixApi.call() did before: a fresh ObjectMapper per toString(), once for the log line and once
+   * for the StringEntity, then the entity copies the String into a byte[].
+   */
+  @Benchmark
+  public long stringEntity() throws IOException {
+    String logged = new ObjectMapper().writeValueAsString(request);
+    StringEntity entity = new StringEntity(new ObjectMapper().writeValueAsString(request), ContentType.APPLICATION_JSON);
+    entity.writeTo(socket);
+    return logged.length() + entity.getContentLength();
+  }
+
+  @Benchmark
+  public JsonRequestEntity streamingEntity() throws IOException {
+    JsonRequestEntity entity = new JsonRequestEntity(request);
+    entity.writeTo(socket);
+    return entity;
+  }
+
+  static class DiscardOutputStream extends OutputStream {
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package org.cmbc.bigdata.zabbix.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.cmbc.bigdata.zabbix.Host;
+import org.cmbc.bigdata.zabbix.Item;
+import org.cmbc.bigdata.zabbix.ZabbixAPIResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the two steps callApi does with every response body: reading it into a tree, and the pretty printed
+ * copy of the result printAPIResult renders for its log line. readRows decodes the same body into Host or Item
+ * objects instead of a tree, as the typed callApi variants do. Run with "-prof gc" for bytes per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseParseBenchmark {
+  @Param({"host.get", "item.get"})
+  public String method;
+
+  @Param({"1", "1000", "10000"})
+  public int rows;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private byte[] body;
+
+  private ZabbixAPIResult result;
+
+  private ObjectReader rowsReader;
+
+  @Setup
+  public void setup() throws IOException {
+    body = ZabbixResponses.response(method, rows);
+    result = new ZabbixAPIResult();
+    result.setCode(0);
+    result.setMessage("Call Zabbix API Success.");
+    result.setData(mapper.readTree(body).get("result"));
+    Class<?> rowType = "host.get".equals(method) ? Host.class : Item.class;
+    rowsReader = mapper.readerFor(mapper.getTypeFactory().constructParametricType(Response.class, rowType));
+  }
+
+  @Benchmark
+  public JsonNode readTree() throws IOException {
+    return mapper.readTree(body);
+  }
+
+  @Benchmark
+  public Response<?> readRows() throws IOException {
+    return rowsReader.readValue(body);
+  }
+
+  /**
+   * Same rendering as ZabbixApi.printAPIResult.
+   */
+  @Benchmark
+  public String printResult() throws IOException {
+    return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(result);
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class Response<T> {
+    public List<T> result;
+  }
+}
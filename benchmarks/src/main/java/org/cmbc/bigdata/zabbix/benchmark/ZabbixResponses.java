@@ -0,0 +1,136 @@
+package org.cmbc.bigdata.zabbix.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Response bodies shaped like the ones of a zabbix 3.x frontend with output "extend".
+ */
+class ZabbixResponses {
+  private static final ObjectMapper mapper = new ObjectMapper();
+  private static final AtomicLong nextId = new AtomicLong(1);
+
+  /**
+   * Answer a *.create or *.delete call with one generated id per object, without storing anything.
+   * For ZabbixSimulator.handler, so benchmarks creating millions of objects need no memory on the server.
+   */
+  static String createdIds(JsonNode request) {
+    String method = request.get("method").asText();
+    JsonNode params = request.get("params");
+    int objects = params.isArray() ? params.size() : 1;
+
+    ObjectNode response = mapper.createObjectNode();
+    response.put("jsonrpc", "2.0");
+    ArrayNode ids = response.putObject("result").putArray(method.substring(0, method.indexOf('.')) + "ids");
+    for (int i = 0; i < objects; i++) {
+      ids.add(String.valueOf(nextId.getAndIncrement()));
+    }
+    response.set("id", request.get("id"));
+    return response.toString();
+  }
+
+  /**
+   * @param method host.get or item.get
+   * @param rows   number of objects in the result
+   * @return JSON-RPC response body
+   */
+  static byte[] response(String method, int rows) {
+    List<Map<String, String>> result = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      result.add("host.get".equals(method) ? host(i) : item(i));
+    }
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("jsonrpc", "2.0");
+    response.put("result", result);
+    response.put("id", 1);
+    try {
+      return mapper.writeValueAsBytes(response);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static Map<String, String> host(int i) {
+    Map<String, String> host = new LinkedHashMap<>();
+    host.put("hostid", String.valueOf(10084 + i));
+    host.put("proxy_hostid", "0");
+    host.put("host", "benchmark-host-" + i);
+    host.put("status", "0");
+    host.put("disable_until", "0");
+    host.put("error", "");
+    host.put("available", "1");
+    host.put("errors_from", "0");
+    host.put("lastaccess", "0");
+    host.put("ipmi_authtype", "-1");
+    host.put("ipmi_privilege", "2");
+    host.put("ipmi_username", "");
+    host.put("ipmi_password", "");
+    host.put("ipmi_disable_until", "0");
+    host.put("ipmi_available", "0");
+    host.put("snmp_disable_until", "0");
+    host.put("snmp_available", "0");
+    host.put("maintenanceid", "0");
+    host.put("maintenance_status", "0");
+    host.put("maintenance_type", "0");
+    host.put("maintenance_from", "0");
+    host.put("name", "Benchmark host " + i);
+    host.put("flags", "0");
+    host.put("templateid", "0");
+    host.put("description", "");
+    host.put("tls_connect", "1");
+    host.put("tls_accept", "1");
+    return host;
+  }
+
+  private static Map<String, String> item(int i) {
+    Map<String, String> item = new LinkedHashMap<>();
+    item.put("itemid", String.valueOf(23296 + i));
+    item.put("type", "2");
+    item.put("snmp_community", "");
+    item.put("snmp_oid", "");
+    item.put("hostid", "10084");
+    item.put("name", "Benchmark item " + i);
+    item.put("key_", "benchmark.item.key[" + i + "]");
+    item.put("delay", "60");
+    item.put("history", "90");
+    item.put("trends", "365");
+    item.put("status", "0");
+    item.put("value_type", "3");
+    item.put("trapper_hosts", "");
+    item.put("units", "B");
+    item.put("multiplier", "0");
+    item.put("delta", "0");
+    item.put("formula", "1");
+    item.put("error", "");
+    item.put("lastlogsize", "0");
+    item.put("logtimefmt", "");
+    item.put("templateid", "0");
+    item.put("valuemapid", "0");
+    item.put("params", "");
+    item.put("authtype", "0");
+    item.put("mtime", "0");
+    item.put("flags", "0");
+    item.put("interfaceid", "1");
+    item.put("port", "");
+    item.put("description", "");
+    item.put("inventory_link", "0");
+    item.put("lifetime", "30");
+    item.put("state", "0");
+    item.put("evaltype", "0");
+    item.put("lastclock", "1538969120");
+    item.put("lastns", "427355386");
+    item.put("lastvalue", String.valueOf(1048576L * i));
+    item.put("prevvalue", String.valueOf(1048576L * i - 4096));
+    return item;
+  }
+}
@@ -0,0 +1,141 @@
+package org.cmbc.bigdata.zabbix;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory ZabbixMetrics built on lock-free counters: per method latency histograms of each phase,
+ * byte counts, error codes, and the number of calls in flight.
+ */
+public class DefaultZabbixMetrics implements ZabbixMetrics {
+  private final ConcurrentHashMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  @Override
+  public void callStarted(String method) {
+    int current = inFlight.incrementAndGet();
+    if (current > maxInFlight.get()) {
+      maxInFlight.accumulateAndGet(current, Math::max);
+    }
+    stats(method).inFlight.incrementAndGet();
+  }
+
+  @Override
+  public void callFinished(ZabbixCallSample sample) {
+    inFlight.decrementAndGet();
+    MethodStats stats = stats(sample.getMethod());
+    stats.inFlight.decrementAndGet();
+    stats.serialize.record(sample.getSerializeNanos());
+    stats.network.record(sample.getNetworkNanos());
+    stats.parse.record(sample.getParseNanos());
+    stats.total.record(sample.getTotalNanos());
+    stats.requestBytes.add(sample.getRequestBytes());
+    stats.responseBytes.add(sample.getResponseBytes());
+    if (sample.isFail()) {
+      stats.errors.computeIfAbsent(sample.getCode(), code -> new LongAdder()).increment();
+    }
+  }
+
+  private MethodStats stats(String method) {
+    MethodStats stats = methods.get(method);
+    return stats != null ? stats : methods.computeIfAbsent(method, key -> new MethodStats());
+  }
+
+  /**
+   * @return stats of every method called so far, by method name
+   */
+  public Map<String, MethodStats> getMethods() {
+    return Collections.unmodifiableMap(methods);
+  }
+
+  /**
+   * @return stats of the method, or null if it was never called
+   */
+  public MethodStats getMethod(String method) {
+    return methods.get(method);
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight.get();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("DefaultZabbixMetrics(inFlight=").append(getInFlight())
+            .append(", maxInFlight=").append(getMaxInFlight()).append(")");
+    methods.forEach((method, stats) -> builder.append("\n  ").append(method).append(": ").append(stats));
+    return builder.toString();
+  }
+
+  public static class MethodStats {
+    private final ZabbixLatencyHistogram serialize = new ZabbixLatencyHistogram();
+    private final ZabbixLatencyHistogram network = new ZabbixLatencyHistogram();
+    private final ZabbixLatencyHistogram parse = new ZabbixLatencyHistogram();
+    private final ZabbixLatencyHistogram total = new ZabbixLatencyHistogram();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final ConcurrentHashMap<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public ZabbixLatencyHistogram getSerialize() {
+      return serialize;
+    }
+
+    public ZabbixLatencyHistogram getNetwork() {
+      return network;
+    }
+
+    public ZabbixLatencyHistogram getParse() {
+      return parse;
+    }
+
+    public ZabbixLatencyHistogram getTotal() {
+      return total;
+    }
+
+    public long getCallCount() {
+      return total.getCount();
+    }
+
+    public long getRequestBytes() {
+      return requestBytes.sum();
+    }
+
+    public long getResponseBytes() {
+      return responseBytes.sum();
+    }
+
+    public int getInFlight() {
+      return inFlight.get();
+    }
+
+    /**
+     * @return number of failed calls by ZabbixAPIResult code
+     */
+    public Map<Integer, Long> getErrors() {
+      Map<Integer, Long> counts = new HashMap<>();
+      errors.forEach((code, count) -> counts.put(code, count.sum()));
+      return counts;
+    }
+
+    public long getErrorCount() {
+      return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @Override
+    public String toString() {
+      return "calls=" + getCallCount() + ", errors=" + getErrors() + ", requestBytes=" + getRequestBytes()
+              + ", responseBytes=" + getResponseBytes() + ", total[" + total + "], network[" + network
+              + "], parse[" + parse + "]";
+    }
+  }
+}
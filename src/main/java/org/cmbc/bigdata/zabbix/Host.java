@@ -0,0 +1,35 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Host row of host.get. Properties not requested by output keep their default value.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Host {
+  private long hostid;
+  /**
+   * Technical name of the host.
+   */
+  private String host;
+  /**
+   * Visible name of the host.
+   */
+  private String name;
+  @JsonProperty("proxy_hostid")
+  private long proxyHostid;
+  /**
+   * 0 - monitored; 1 - unmonitored.
+   */
+  private int status;
+  /**
+   * Availability of Zabbix agent. 0 - unknown; 1 - available; 2 - unavailable.
+   */
+  private int available;
+  private String error;
+  private String description;
+  private int flags;
+}
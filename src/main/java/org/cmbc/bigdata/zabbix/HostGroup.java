@@ -0,0 +1,19 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * Host group row of hostgroup.get. Properties not requested by output keep their default value.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class HostGroup {
+  private long groupid;
+  private String name;
+  /**
+   * 0 - not internal; 1 - internal, cannot be deleted.
+   */
+  private int internal;
+  private int flags;
+}
@@ -0,0 +1,33 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * Host interface row of hostinterface.get. Properties not requested by output keep their default value.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class HostInterface {
+  private long interfaceid;
+  private long hostid;
+  /**
+   * 0 - not default; 1 - default.
+   */
+  private int main;
+  /**
+   * 1 - agent; 2 - SNMP; 3 - IPMI; 4 - JMX.
+   */
+  private int type;
+  /**
+   * 0 - connect using host DNS name; 1 - connect using host IP address.
+   */
+  private int useip;
+  private String ip;
+  private String dns;
+  /**
+   * Port number, may be a user macro.
+   */
+  private String port;
+  private int bulk;
+}
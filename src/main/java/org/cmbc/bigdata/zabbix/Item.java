@@ -0,0 +1,48 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Item row of item.get. Properties not requested by output keep their default value.
+ * type and valueType are null for codes ZabbixItemType and ZabbixItemValueType do not know.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Item {
+  private long itemid;
+  private long hostid;
+  private long interfaceid;
+  private String name;
+  @JsonProperty("key_")
+  private String key;
+  private ZabbixItemType type;
+  @JsonProperty("value_type")
+  private ZabbixItemValueType valueType;
+  /**
+   * Update interval in seconds, may be a time suffix or user macro in later versions.
+   */
+  private String delay;
+  private String units;
+  /**
+   * 0 - enabled; 1 - disabled.
+   */
+  private int status;
+  /**
+   * 0 - normal; 1 - not supported.
+   */
+  private int state;
+  private String error;
+  private String description;
+  /**
+   * Id of the template item this item is inherited from, 0 for items of the host itself.
+   */
+  private long templateid;
+  /**
+   * Origin of the item: 0 - a plain item; 4 - an item discovered by low-level discovery.
+   */
+  private int flags;
+  private long lastclock;
+  private String lastvalue;
+}
@@ -0,0 +1,222 @@
+package org.cmbc.bigdata.zabbix;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Http entity for a JSON-RPC request. Bodies shorter than bufferThreshold bytes are serialized once into a
+ * byte[] and sent with a Content-Length, which every web server in front of PHP accepts. Larger bodies are
+ * serialized straight to the connection output stream and sent chunked, so no copy of them is ever built.
+ * <p>
+ * With compression, bodies of at least compressionThreshold bytes are compressed, buffered ones into a byte[]
+ * and larger ones while they are serialized. Smaller bodies are sent as they are.
+ */
+public class JsonRequestEntity extends AbstractHttpEntity {
+  /**
+   * Default bufferThreshold, a few hundred items of item.create.
+   */
+  public static final int DEFAULT_BUFFER_THRESHOLD = 65536;
+
+  private final Object request;
+  private final ZabbixCompression compression;
+  // Bytes sent for a buffered body, compressed or not, and the size of its JSON.
+  private final byte[] bufferedBody;
+  private final int bufferedLength;
+  private volatile long bytesWritten;
+  private volatile long wireBytesWritten;
+  private volatile long writeNanos;
+
+  /**
+   * @param request RequestAbstract, or a list of them for a batch call
+   */
+  public JsonRequestEntity(Object request) {
+    this(request, ZabbixCompression.NONE, 0, DEFAULT_BUFFER_THRESHOLD);
+  }
+
+  /**
+   * @param request              RequestAbstract, or a list of them for a batch call
+   * @param compression          Content-Encoding of bodies from compressionThreshold bytes on
+   * @param compressionThreshold smaller bodies are not worth the cpu, the compressed stream would not be much
+   *                             shorter
+   * @param bufferThreshold      smaller bodies are sent with a Content-Length, larger ones chunked
+   */
+  public JsonRequestEntity(Object request, ZabbixCompression compression, int compressionThreshold,
+                           int bufferThreshold) {
+    this.request = request;
+    setContentType(ContentType.APPLICATION_JSON.toString());
+    // Small uncompressed bodies are always buffered, they are sent as they are anyway.
+    int limit = compression == ZabbixCompression.NONE ? bufferThreshold
+            : Math.max(bufferThreshold, compressionThreshold);
+    byte[] body = limit > 0 ? serializeUpTo(request, limit) : null;
+    this.bufferedLength = body == null ? -1 : body.length;
+    if (body == null) {
+      this.compression = compression;
+    } else if (compression != ZabbixCompression.NONE && body.length >= compressionThreshold) {
+      this.compression = compression;
+      body = compress(body, compression);
+    } else {
+      this.compression = ZabbixCompression.NONE;
+    }
+    this.bufferedBody = body;
+    setChunked(body == null);
+    setContentEncoding(this.compression.contentEncoding());
+  }
+
+  private static byte[] compress(byte[] body, ZabbixCompression compression) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+    try (OutputStream compressedStream = compression.wrap(out)) {
+      compressedStream.write(body);
+    } catch (IOException e) {
+      throw new RuntimeException("DefaultZabbixApi serialize exception!", e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Serialize until limit bytes, so finding out whether a body is small costs at most limit bytes.
+   *
+   * @return the body if it is shorter than limit, otherwise null
+   */
+  private static byte[] serializeUpTo(Object request, int limit) {
+    LimitedOutputStream out = new LimitedOutputStream(limit);
+    try {
+      ZabbixJson.mapper.writeValue(out, request);
+      return out.toByteArray();
+    } catch (IOException | RuntimeException e) {
+      // Jackson may wrap the overflow of the stream into its own exception.
+      if (out.overflow) return null;
+      throw new RuntimeException("DefaultZabbixApi serialize exception!", e);
+    }
+  }
+
+  @Override
+  public boolean isRepeatable() {
+    return true;
+  }
+
+  @Override
+  public long getContentLength() {
+    return bufferedBody == null ? -1 : bufferedBody.length;
+  }
+
+  /**
+   * Only used when someone reads the entity instead of writing it, e.g. by a retry handler or a wire logger.
+   * The content is encoded like writeTo does.
+   */
+  @Override
+  public InputStream getContent() throws IOException {
+    if (bufferedBody != null) return new ByteArrayInputStream(bufferedBody);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeTo(out);
+    return new ByteArrayInputStream(out.toByteArray());
+  }
+
+  @Override
+  public void writeTo(OutputStream outputStream) throws IOException {
+    long start = System.nanoTime();
+    CountingOutputStream wireStream = new CountingOutputStream(outputStream);
+    if (bufferedBody != null) {
+      wireStream.write(bufferedBody);
+      wireStream.flush();
+      bytesWritten = bufferedLength;
+    } else {
+      // The mapper leaves its target open. Closing the compressed stream writes its trailer, wireStream only
+      // flushes on close so the connection stays open.
+      try (OutputStream compressedStream = compression.wrap(wireStream)) {
+        CountingOutputStream countingStream = new CountingOutputStream(compressedStream);
+        ZabbixJson.mapper.writeValue(countingStream, request);
+        bytesWritten = countingStream.count;
+      }
+    }
+    wireBytesWritten = wireStream.count;
+    writeNanos = System.nanoTime() - start;
+  }
+
+  /**
+   * @return size of the JSON body sent by the last writeTo, before compression
+   */
+  long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * @return size of the body sent by the last writeTo, after compression
+   */
+  long getWireBytesWritten() {
+    return wireBytesWritten;
+  }
+
+  /**
+   * @return time the last writeTo took, serializing and writing to the connection
+   */
+  long getWriteNanos() {
+    return writeNanos;
+  }
+
+  @Override
+  public boolean isStreaming() {
+    return false;
+  }
+
+  private static class LimitedOutputStream extends ByteArrayOutputStream {
+    private final int limit;
+    boolean overflow;
+
+    LimitedOutputStream(int limit) {
+      super(Math.min(limit, 1024));
+      this.limit = limit;
+    }
+
+    @Override
+    public void write(int b) {
+      ensureRoom(1);
+      super.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      ensureRoom(len);
+      super.write(b, off, len);
+    }
+
+    private void ensureRoom(int len) {
+      if (count + len >= limit) {
+        overflow = true;
+        throw new UncheckedIOException(new IOException("Body reaches " + limit + " bytes"));
+      }
+    }
+  }
+
+  private static class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
@@ -1,7 +1,6 @@
 package org.cmbc.bigdata.zabbix;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Data;
 
 import java.util.Map;
@@ -20,10 +19,8 @@ public class MapRequest extends RequestAbstract {
 
   @Override
   public String toString() {
-    ObjectMapper mapper = new ObjectMapper();
-
     try {
-      return mapper.writeValueAsString(this);
+      return ZabbixJson.mapper.writeValueAsString(this);
     } catch (JsonProcessingException e) {
       throw new RuntimeException(e);
     }
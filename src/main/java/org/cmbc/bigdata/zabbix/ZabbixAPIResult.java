@@ -1,7 +1,12 @@
 package org.cmbc.bigdata.zabbix;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.Data;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 @Data
 public class ZabbixAPIResult {
   public int code;
@@ -12,6 +17,55 @@ public class ZabbixAPIResult {
     this.data = new Object();
   }
 
+  /**
+   * Map a JSON-RPC response to ZabbixAPIResult. An error response keeps the error code, message and data.
+   *
+   * @param response JSON-RPC response object
+   * @return ZabbixAPIResult
+   */
+  static ZabbixAPIResult fromResponse(JsonNode response) {
+    ZabbixAPIResult zabbixAPIResult = new ZabbixAPIResult();
+    if (response.has("error")) {
+      zabbixAPIResult.setCode(response.get("error").get("code").asInt());
+      zabbixAPIResult.setMessage(response.get("error").get("message").asText());
+      zabbixAPIResult.setData(response.get("error").get("data").asText());
+    } else {
+      zabbixAPIResult.setCode(ZabbixAPIResultCode.SUCCESS.code());
+      zabbixAPIResult.setMessage("Call Zabbix API Success.");
+      zabbixAPIResult.setData(response.get("result"));
+    }
+    return zabbixAPIResult;
+  }
+
+  static ZabbixAPIResult success(Object data) {
+    ZabbixAPIResult zabbixAPIResult = new ZabbixAPIResult();
+    zabbixAPIResult.setCode(ZabbixAPIResultCode.SUCCESS.code());
+    zabbixAPIResult.setMessage("Call Zabbix API Success.");
+    zabbixAPIResult.setData(data);
+    return zabbixAPIResult;
+  }
+
+  /**
+   * Check every param contains all required properties.
+   *
+   * @return null if all params are valid, otherwise a PARAM_IS_INVALID result naming the missing property
+   */
+  static ZabbixAPIResult checkRequiredProperties(List<? extends Map> params, String[] requiredProperties) {
+    for (Map param : params) {
+      for (String requiredProperty : requiredProperties) {
+        if (!param.containsKey(requiredProperty)) {
+          ZabbixAPIResult zabbixAPIResult = new ZabbixAPIResult();
+          zabbixAPIResult.setCode(ZabbixAPIResultCode.PARAM_IS_INVALID.code());
+          zabbixAPIResult.setMessage(ZabbixAPIResultCode.PARAM_IS_INVALID.message() +
+                  Arrays.toString(requiredProperties) + " are required.");
+          zabbixAPIResult.setData("Param has no property : " + requiredProperty);
+          return zabbixAPIResult;
+        }
+      }
+    }
+    return null;
+  }
+
   public boolean isFail() {
     if (code != ZabbixAPIResultCode.SUCCESS.code()) {
       return true;
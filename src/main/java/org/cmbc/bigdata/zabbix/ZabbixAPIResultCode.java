@@ -5,7 +5,11 @@ public enum ZabbixAPIResultCode {
   SUCCESS(0, "Success"),
 
   /* 参数错误：10001-19999 */
-  PARAM_IS_INVALID(10001, "Param is invalid.");
+  PARAM_IS_INVALID(10001, "Param is invalid."),
+
+  /* 响应错误：20001-29999 */
+  BATCH_RESPONSE_MISSING(20001, "No response for request in batch."),
+  CALL_EXCEPTION(20002, "Call failed before a response was read.");
 
   private Integer code;
 
@@ -1,22 +1,42 @@
 package org.cmbc.bigdata.zabbix;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Data
 @Slf4j
@@ -24,6 +44,73 @@ public class ZabbixApi implements ZabbixAPIInterface {
   private URI uri;
   private volatile String auth;
   private CloseableHttpClient httpClient;
+  private ZabbixTransportConfig transportConfig = new ZabbixTransportConfig();
+  /**
+   * Bulk create/delete methods split their input into requests of at most this many objects,
+   * so a huge list does not hit max_execution_time or post_max_size of the frontend. Zero or negative disables it.
+   */
+  private int bulkChunkSize = 1000;
+  /**
+   * How many chunks of bulk create/delete methods run at the same time, across all callers.
+   */
+  private int bulkParallelism = 1;
+  private ExecutorService bulkExecutor;
+  /**
+   * Name to id caches used by composite methods, disabled unless configureNameCache is called.
+   */
+  private ZabbixIdCache hostgroupIdCache = new ZabbixIdCache(0, 0);
+  private ZabbixIdCache hostIdCache = new ZabbixIdCache(0, 0);
+  private ZabbixIdCache itemIdCache = new ZabbixIdCache(0, 0);
+  /**
+   * Log in again with the credentials of the last successful login when zabbix rejects the session,
+   * and send the rejected call once more.
+   */
+  private boolean autoRelogin = true;
+  /**
+   * Receives timings, sizes and result code of every call. See DefaultZabbixMetrics.
+   */
+  private ZabbixMetrics metrics = ZabbixMetrics.NONE;
+  /**
+   * Retries, hedging, circuit breaker and deadline of call(), disabled unless configureResilience is called.
+   */
+  @Setter(AccessLevel.NONE)
+  private ZabbixResilience resilience;
+  /**
+   * Responses of read calls, disabled unless configureResponseCache is called.
+   */
+  @Setter(AccessLevel.NONE)
+  private ZabbixResponseCache responseCache;
+  /**
+   * Share one request between concurrent identical read calls, disabled unless configureSingleFlight is called.
+   */
+  @Setter(AccessLevel.NONE)
+  private ZabbixSingleFlight singleFlight;
+  /**
+   * Coalesce concurrent single-name lookups, disabled unless configureLookupBatching is called.
+   */
+  @Setter(AccessLevel.NONE)
+  private ZabbixLookupBatcher<String> hostgroupLookupBatcher;
+  @Setter(AccessLevel.NONE)
+  private ZabbixLookupBatcher<String> hostLookupBatcher;
+  @Setter(AccessLevel.NONE)
+  private ZabbixLookupBatcher<Map.Entry<String, ArrayList<String>>> itemLookupBatcher;
+  /**
+   * Adaptive limit of requests in flight, disabled unless configureConcurrencyLimit is called.
+   */
+  @Setter(AccessLevel.NONE)
+  private ZabbixConcurrencyLimiter concurrencyLimiter;
+  /**
+   * Frontends calls are balanced across, null unless configureEndpoints is called. uri is then the first one.
+   */
+  @Setter(AccessLevel.NONE)
+  private ZabbixEndpoints endpoints;
+  @Setter(AccessLevel.NONE)
+  private long healthCheckInterval;
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private ScheduledExecutorService healthChecker;
+  @Getter(AccessLevel.NONE)
+  private final ZabbixSession session = new ZabbixSession();
 
   public ZabbixApi(String url) {
     try {
@@ -47,13 +134,387 @@ public class ZabbixApi implements ZabbixAPIInterface {
     this.httpClient = httpClient;
   }
 
+  public ZabbixApi(URI uri, ZabbixTransportConfig transportConfig) {
+    this(uri);
+    this.transportConfig = transportConfig;
+  }
+
   public void init() {
     if (httpClient == null) {
-      httpClient = HttpClients.custom().build();
+      httpClient = createHttpClient(transportConfig);
+    }
+    if (bulkExecutor == null && bulkParallelism > 1) {
+      AtomicInteger threadId = new AtomicInteger();
+      bulkExecutor = Executors.newFixedThreadPool(bulkParallelism, runnable -> {
+        Thread thread = new Thread(runnable, "zabbix-bulk-" + threadId.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    if (healthChecker == null && endpoints != null && healthCheckInterval > 0) {
+      AtomicInteger threadId = new AtomicInteger();
+      healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "zabbix-health-" + threadId.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      healthChecker.scheduleWithFixedDelay(this::checkEndpoints, healthCheckInterval, healthCheckInterval,
+              TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Build a pooled, keep-alive http client from transport settings.
+   *
+   * @param config transport settings
+   * @return CloseableHttpClient which owns its connection pool and idle connection evictor
+   */
+  private static CloseableHttpClient createHttpClient(ZabbixTransportConfig config) {
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+            config.getTimeToLive() > 0 ? config.getTimeToLive() : -1, TimeUnit.MILLISECONDS);
+    connectionManager.setMaxTotal(config.getMaxConnections());
+    connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+    connectionManager.setValidateAfterInactivity(config.getValidateAfterInactivity());
+
+    RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(config.getConnectTimeout())
+            .setSocketTimeout(config.getSocketTimeout())
+            .setConnectionRequestTimeout(config.getConnectionRequestTimeout())
+            .build();
+
+    HttpClientBuilder builder = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .setKeepAliveStrategy(keepAliveStrategy(config.getKeepAliveTime()))
+            .evictExpiredConnections();
+    if (config.getMaxIdleTime() > 0) {
+      builder.evictIdleConnections(config.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+    }
+    // With content compression HttpClient sends Accept-Encoding: gzip,deflate and inflates responses while
+    // they are parsed.
+    if (!config.isResponseCompression()) {
+      builder.disableContentCompression();
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Honor the Keep-Alive timeout sent by the server, otherwise fall back to the configured default.
+   */
+  static ConnectionKeepAliveStrategy keepAliveStrategy(long defaultKeepAliveTime) {
+    return (response, context) -> {
+      BasicHeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+      while (it.hasNext()) {
+        HeaderElement element = it.nextElement();
+        if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+          try {
+            return Long.parseLong(element.getValue()) * 1000;
+          } catch (NumberFormatException ignore) {
+          }
+        }
+      }
+      return defaultKeepAliveTime;
+    };
+  }
+
+  /**
+   * Retry idempotent calls after transport errors, hedge slow ones, fail fast while zabbix keeps failing and
+   * bound the time of every call. See ZabbixResilienceConfig, whose defaults disable everything.
+   *
+   * @param config resilience settings, null disables resilience
+   */
+  public void configureResilience(ZabbixResilienceConfig config) {
+    if (resilience != null) {
+      resilience.shutdown();
+    }
+    resilience = config == null ? null : new ZabbixResilience(config);
+  }
+
+  /**
+   * Cache callApi responses of the read methods given a ttl in config. Writes through this ZabbixApi drop the
+   * cached responses of their object type, changes made elsewhere are seen after the ttl.
+   * See ZabbixResponseCache.
+   *
+   * @param config cache settings, null disables the cache
+   */
+  public void configureResponseCache(ZabbixResponseCacheConfig config) {
+    if (responseCache != null) {
+      responseCache.shutdown();
+    }
+    responseCache = config == null ? null : new ZabbixResponseCache(config);
+  }
+
+  /**
+   * Let concurrent callApi calls of the same read method, auth and params share one request and its parsed
+   * response. Reads are *.get and apiinfo.version; streaming and typed calls always send their own request.
+   *
+   * @param enabled false turns it off
+   */
+  public void configureSingleFlight(boolean enabled) {
+    singleFlight = enabled ? new ZabbixSingleFlight() : null;
+  }
+
+  /**
+   * Send the hostgroupGetByGroupName, hostGetByHostName and itemGetByHostNameAndItemKey lookups of concurrent
+   * callers as one get with a list filter. The first lookup waits up to windowMillis for others, so each lookup
+   * may take that much longer. See ZabbixLookupBatcher.
+   *
+   * @param windowMillis how long a batch collects lookups
+   * @param maxBatchSize lookups that close a batch at once. One or less disables batching.
+   */
+  public void configureLookupBatching(long windowMillis, int maxBatchSize) {
+    if (maxBatchSize <= 1) {
+      hostgroupLookupBatcher = null;
+      hostLookupBatcher = null;
+      itemLookupBatcher = null;
+      return;
+    }
+    hostgroupLookupBatcher = new ZabbixLookupBatcher<>(windowMillis, maxBatchSize, names -> splitRows(
+            hostgroupListGetByName(new ArrayList<>(new LinkedHashSet<>(names))), singletons(names),
+            row -> row.get("name").asText()));
+    hostLookupBatcher = new ZabbixLookupBatcher<>(windowMillis, maxBatchSize, names -> splitRows(
+            hostListGetByHostName(new ArrayList<>(new LinkedHashSet<>(names))), singletons(names),
+            row -> row.get("host").asText()));
+    itemLookupBatcher = new ZabbixLookupBatcher<>(windowMillis, maxBatchSize, this::itemLookupBatch);
+  }
+
+  private static List<Set<String>> singletons(List<String> names) {
+    List<Set<String>> keys = new ArrayList<>();
+    names.forEach(name -> keys.add(Collections.singleton(name)));
+    return keys;
+  }
+
+  /**
+   * Split the rows of a batched get into one result per lookup.
+   *
+   * @param lookupKeys keys of the rows each lookup asked for
+   * @param rowKey     key of a row
+   * @return results in lookup order, each one with its own array. A failed get fails every lookup.
+   */
+  private static List<ZabbixAPIResult> splitRows(ZabbixAPIResult getResult, List<Set<String>> lookupKeys,
+                                                 Function<JsonNode, String> rowKey) {
+    Map<String, List<JsonNode>> rowsByKey = new HashMap<>();
+    if (!getResult.isFail()) {
+      ((JsonNode) getResult.getData()).forEach(row ->
+              rowsByKey.computeIfAbsent(rowKey.apply(row), key -> new ArrayList<>()).add(row));
+    }
+    List<ZabbixAPIResult> results = new ArrayList<>();
+    for (Set<String> keys : lookupKeys) {
+      ZabbixAPIResult result = new ZabbixAPIResult();
+      result.setCode(getResult.getCode());
+      result.setMessage(getResult.getMessage());
+      if (getResult.isFail()) {
+        result.setData(getResult.getData());
+      } else {
+        ArrayNode rows = ZabbixJson.mapper.createArrayNode();
+        keys.forEach(key -> rowsByKey.getOrDefault(key, Collections.emptyList()).forEach(rows::add));
+        result.setData(rows);
+      }
+      results.add(result);
+    }
+    return results;
+  }
+
+  /**
+   * Item lookups of several hosts: item.get takes a single host name, so the hosts are resolved to ids first,
+   * from the name cache where possible, and the items of all hosts are got by hostids.
+   */
+  private List<ZabbixAPIResult> itemLookupBatch(List<Map.Entry<String, ArrayList<String>>> lookups) {
+    LinkedHashSet<String> hostNames = new LinkedHashSet<>();
+    LinkedHashSet<String> itemKeys = new LinkedHashSet<>();
+    lookups.forEach(lookup -> {
+      hostNames.add(lookup.getKey());
+      itemKeys.addAll(lookup.getValue());
+    });
+    ZabbixAPIResult hostIdMapResult = hostIdMapGetByHostName(new ArrayList<>(hostNames));
+    if (hostIdMapResult.isFail()) {
+      return splitRows(hostIdMapResult, Collections.nCopies(lookups.size(), Collections.emptySet()), null);
+    }
+
+    HashMap<String, String> hostIds = (HashMap<String, String>) hostIdMapResult.getData();
+    List<Set<String>> lookupKeys = new ArrayList<>();
+    lookups.forEach(lookup -> {
+      Set<String> keys = new HashSet<>();
+      String hostid = hostIds.get(lookup.getKey());
+      if (hostid != null) lookup.getValue().forEach(itemKey -> keys.add(itemCacheKey(hostid, itemKey)));
+      lookupKeys.add(keys);
+    });
+    // Hosts that do not exist have no items, like item.get with an unknown host.
+    ZabbixAPIResult itemGetResult = hostIds.isEmpty() ? ZabbixAPIResult.success(ZabbixJson.mapper.createArrayNode())
+            : itemGet(ZabbixQuery.newQuery().param("hostids", new ArrayList<>(new LinkedHashSet<>(hostIds.values())))
+            .filter("key_", new ArrayList<>(itemKeys)));
+
+    return splitRows(itemGetResult, lookupKeys, row -> itemCacheKey(row.get("hostid").asText(),
+            row.get("key_").asText()));
+  }
+
+  /**
+   * Limit the requests in flight to what the frontend handles without queueing, found from the latency of
+   * the calls. Calls over the limit wait for a slot. See ZabbixConcurrencyLimiter. Call before any call.
+   *
+   * @param config limit settings, null disables the limit
+   */
+  public void configureConcurrencyLimit(ZabbixConcurrencyLimitConfig config) {
+    concurrencyLimiter = config == null ? null : new ZabbixConcurrencyLimiter(config);
+  }
+
+  /**
+   * Balance calls across several frontends of the same zabbix database: each call goes to the healthy
+   * endpoint with the fewest requests in flight. See ZabbixEndpoints. Call before init.
+   * <p>
+   * Sessions are stored in the zabbix database, so one login is valid on every frontend and the session
+   * is shared by all endpoints.
+   *
+   * @param uris                api_jsonrpc.php urls of the frontends
+   * @param ejectAfterFailures  transport errors in a row that take an endpoint out of rotation
+   * @param healthCheckInterval how often every endpoint is probed with apiinfo.version, in milliseconds.
+   *                            A successful probe puts an ejected endpoint back. Zero or negative disables it,
+   *                            ejected endpoints then only get calls when every endpoint is ejected.
+   */
+  public void configureEndpoints(List<URI> uris, int ejectAfterFailures, long healthCheckInterval) {
+    this.endpoints = new ZabbixEndpoints(uris, ejectAfterFailures);
+    this.healthCheckInterval = healthCheckInterval;
+    this.uri = uris.get(0);
+  }
+
+  /**
+   * Probe every endpoint with apiinfo.version, which needs no session. Runs on the health check thread.
+   */
+  private void checkEndpoints() {
+    for (ZabbixEndpoints.Endpoint endpoint : endpoints.getEndpoints()) {
+      URI target = endpoint.getUri();
+      HttpUriRequest httpRequest = org.apache.http.client.methods.RequestBuilder.post().setUri(target)
+              .setEntity(new JsonRequestEntity(ZabbixRpc.request("apiinfo.version", Collections.emptyList())))
+              .build();
+      endpoints.acquire(target);
+      boolean transportError = true;
+      try {
+        transportError = !httpClient.execute(httpRequest,
+                response -> ZabbixRpc.readResponse(response, null).has("result"));
+      } catch (IOException | RuntimeException e) {
+        log.debug("Health check of {} failed: {}", target, e.toString());
+      } finally {
+        endpoints.release(target, transportError);
+      }
     }
   }
 
+  /**
+   * Cache host group name to groupid, host name to hostid and (hostid, key_) to itemid, so composite methods
+   * do not resolve the same names again on every call. Lookups fill the caches, create methods add the new ids
+   * and delete methods drop them. Changes made outside this ZabbixApi are only seen after ttlMillis.
+   *
+   * @param maxSize   max entries of each cache. Zero or negative disables the caches.
+   * @param ttlMillis how long an id is trusted
+   */
+  public void configureNameCache(int maxSize, long ttlMillis) {
+    hostgroupIdCache = new ZabbixIdCache(maxSize, ttlMillis);
+    hostIdCache = new ZabbixIdCache(maxSize, ttlMillis);
+    itemIdCache = new ZabbixIdCache(maxSize, ttlMillis);
+  }
+
+  private static String itemCacheKey(Object hostid, Object itemKey) {
+    return hostid + ":" + itemKey;
+  }
+
+  /**
+   * Cache name to id of every row of a get result.
+   */
+  private static void cacheRows(ZabbixIdCache cache, ZabbixAPIResult getResult, String nameField, String idField) {
+    if (!cache.isEnabled() || getResult.isFail()) return;
+
+    ((JsonNode) getResult.getData()).forEach(row -> {
+      if (row.has(nameField) && row.has(idField)) {
+        cache.put(row.get(nameField).asText(), row.get(idField).asText());
+      }
+    });
+  }
+
+  private void cacheItemRows(ZabbixAPIResult itemGetResult) {
+    if (!itemIdCache.isEnabled() || itemGetResult.isFail()) return;
+
+    ((JsonNode) itemGetResult.getData()).forEach(item -> {
+      if (item.has("hostid") && item.has("key_") && item.has("itemid")) {
+        itemIdCache.put(itemCacheKey(item.get("hostid").asText(), item.get("key_").asText()),
+                item.get("itemid").asText());
+      }
+    });
+  }
+
+  /**
+   * Map names to ids, from cachedId where possible and with one get for the other names.
+   * An empty name list makes no call, as a get with an empty filter would match everything.
+   */
+  private static ZabbixAPIResult idMap(ArrayList<String> nameList, Function<String, String> cachedId,
+                                       Function<ArrayList<String>, ZabbixAPIResult> get, String nameField,
+                                       String idField) {
+    HashMap<String, String> idMap = new HashMap<>();
+    ArrayList<String> missingNameList = new ArrayList<>();
+    nameList.forEach(name -> {
+      String id = cachedId.apply(name);
+      if (id != null) {
+        idMap.put(name, id);
+      } else {
+        missingNameList.add(name);
+      }
+    });
+    if (missingNameList.isEmpty()) return ZabbixAPIResult.success(idMap);
+
+    ZabbixAPIResult getResult = get.apply(missingNameList);
+    if (getResult.isFail()) return getResult;
+    ((JsonNode) getResult.getData()).forEach(row -> idMap.put(row.get(nameField).asText(), row.get(idField).asText()));
+    getResult.setData(idMap);
+
+    return getResult;
+  }
+
+  private static HashSet<String> existingNames(ZabbixAPIResult idMapResult) {
+    if (idMapResult.isFail()) return new HashSet<>();
+
+    return new HashSet<>(((HashMap<String, String>) idMapResult.getData()).keySet());
+  }
+
+  /**
+   * Cache the ids returned by a create call. Zabbix returns ids in the order of the created objects.
+   */
+  private static void cacheCreatedIds(ZabbixIdCache cache, ZabbixAPIResult createResult, List<String> names,
+                                      String idsField) {
+    if (!cache.isEnabled() || createResult.isFail()) return;
+
+    JsonNode ids = ((JsonNode) createResult.getData()).get(idsField);
+    if (ids == null || ids.size() != names.size()) return;
+    for (int i = 0; i < names.size(); i++) {
+      cache.put(names.get(i), ids.get(i).asText());
+    }
+  }
+
+  /**
+   * @return ids of the update params that set nameField, i.e. whose cached name may be stale
+   */
+  private static List<Object> changedIds(List<? extends Map> params, String idField, String nameField) {
+    List<Object> ids = new ArrayList<>();
+    for (Map param : params) {
+      if (param.containsKey(nameField)) ids.add(param.get(idField));
+    }
+    return ids;
+  }
+
   public void destroy() {
+    if (responseCache != null) {
+      responseCache.shutdown();
+    }
+    if (healthChecker != null) {
+      healthChecker.shutdownNow();
+      healthChecker = null;
+    }
+    if (resilience != null) {
+      resilience.shutdown();
+    }
+    if (bulkExecutor != null) {
+      bulkExecutor.shutdownNow();
+      bulkExecutor = null;
+    }
     if (httpClient != null) {
       try {
         httpClient.close();
@@ -66,23 +527,60 @@ public class ZabbixApi implements ZabbixAPIInterface {
 
   public boolean login(String user, String password) {
     this.auth = null;
-    String method = "user.login";
-    HashMap<String, String> params = new HashMap();
-    params.put("user", user);
-    params.put("password", password);
-
-    ZabbixAPIResult zabbixAPIResult = callApi(method, params);
-    if (zabbixAPIResult.isFail()) {
-      log.info("User {} login failure. Error Info:{}", user, zabbixAPIResult.getData());
-      return false;
-    } else {
-      String auth = ((TextNode) zabbixAPIResult.getData()).asText();
-      if (auth != null && !auth.isEmpty()) {
-        this.auth = auth;
-        log.info("User:{} login success.", user);
-        return true;
+    String auth = requestAuth(user, password);
+    if (auth == null) return false;
+
+    this.auth = auth;
+    session.remember(user, password);
+    return true;
+  }
+
+  /**
+   * Use a static api token instead of user.login. A token cannot be renewed, so calls rejected for auth
+   * are returned as they are.
+   *
+   * @param apiToken api token created in the zabbix frontend
+   */
+  public void loginWithApiToken(String apiToken) {
+    session.useApiToken();
+    this.auth = apiToken;
+  }
+
+  /**
+   * @return how many times the session was renewed after zabbix rejected it
+   */
+  public long getReloginCount() {
+    return session.getReloginCount();
+  }
+
+  /**
+   * @return a new auth, or null if login failed
+   */
+  private String requestAuth(String user, String password) {
+    return ZabbixRpc.loginAuth(user, callApi("user.login", ZabbixRpc.loginParams(user, password)));
+  }
+
+  /**
+   * Renew the session after zabbix rejected staleAuth. Callers rejected with the same auth at the same time
+   * wait for a single user.login and then all use its auth.
+   *
+   * @param staleAuth auth the rejected call was sent with
+   * @return true if there is a new auth to send the rejected call with
+   */
+  private boolean relogin(String staleAuth) {
+    if (!autoRelogin || !session.canRelogin()) return false;
+
+    synchronized (session) {
+      if (!Objects.equals(this.auth, staleAuth)) {
+        // Another caller already renewed it.
+        return this.auth != null;
       }
-      return false;
+      String auth = requestAuth(session.getUser(), session.getPassword());
+      if (auth == null) return false;
+
+      this.auth = auth;
+      log.info("Zabbix session renewed, relogin count:{}", session.incrementReloginCount());
+      return true;
     }
   }
 
@@ -91,18 +589,18 @@ public class ZabbixApi implements ZabbixAPIInterface {
   }
 
   public ZabbixAPIResult callApi(String method, Object params) {
-    ZabbixAPIResult zabbixAPIResult = new ZabbixAPIResult();
-    RequestBuilder requestBuilder = RequestBuilder.newBuilder().initRequest(params).method(method);
-
-    JsonNode response = call(requestBuilder.build());
-    if (response.has("error")) {
-      zabbixAPIResult.setCode(response.get("error").get("code").asInt());
-      zabbixAPIResult.setMessage(response.get("error").get("message").asText());
-      zabbixAPIResult.setData(response.get("error").get("data").asText());
-    } else {
-      zabbixAPIResult.setCode(ZabbixAPIResultCode.SUCCESS.code());
-      zabbixAPIResult.setMessage("Call Zabbix API Success.");
-      zabbixAPIResult.setData(response.get("result"));
+    RequestAbstract request = ZabbixRpc.request(method, params);
+
+    ZabbixAPIResult zabbixAPIResult;
+    try {
+      zabbixAPIResult = ZabbixAPIResult.fromResponse(callCached(request));
+      if (ZabbixSession.isSessionError(zabbixAPIResult) && relogin(request.getAuth())) {
+        request.setAuth(null);
+        zabbixAPIResult = ZabbixAPIResult.fromResponse(callCached(request));
+      }
+    } finally {
+      // Also after a transport error, the write may have been done.
+      invalidateCache(method);
     }
 
     printAPIResult(zabbixAPIResult);
@@ -110,27 +608,449 @@ public class ZabbixApi implements ZabbixAPIInterface {
     return zabbixAPIResult;
   }
 
-  public JsonNode call(RequestAbstract request) {
-    if (request.getAuth() == null) {
-      request.setAuth(this.auth);
+  /**
+   * call(request), through the response cache and the single flight for reads when they are configured.
+   */
+  private JsonNode callCached(RequestAbstract request) {
+    String method = request.getMethod();
+    boolean cached = responseCache != null && ZabbixResilience.isIdempotent(method) && responseCache.isCached(method);
+    if (!cached && (singleFlight == null || !ZabbixResilience.isIdempotent(method))) return call(request);
+
+    // The auth call() is going to send, so calls of different sessions never share a response.
+    String auth = request.getAuth() != null || ZabbixSession.isAuthFree(method) ? request.getAuth() : this.auth;
+    // Recorded for callApi: the caller may get a response another request sent, and relogin must see its auth.
+    request.setAuth(auth);
+    String key = ZabbixJson.canonicalKey(method, auth, request.getParams());
+    if (!cached) return singleFlight.call(key, () -> call(request));
+
+    // A background refresh must not share the request object with the caller, who may send it again.
+    return responseCache.get(key, method, () -> {
+      RequestAbstract copy = ZabbixRpc.request(method, request.getParams());
+      copy.setAuth(auth);
+      return singleFlight == null ? call(copy) : singleFlight.call(key, () -> call(copy));
+    });
+  }
+
+  /**
+   * Drop cached responses a write method may have changed.
+   */
+  private void invalidateCache(String method) {
+    if (responseCache != null && !ZabbixResilience.isIdempotent(method)) {
+      responseCache.invalidate(method);
+    }
+  }
+
+  /**
+   * Call api and decode each row of the result array into rowType, straight from the response without
+   * building a JsonNode tree first.
+   *
+   * @param method  zabbix api method
+   * @param params  api params
+   * @param rowType class rows are decoded into, e.g. Host or Item
+   * @return ZabbixAPIResult.data is an ArrayList of rowType.
+   * If error happened, refer to code, message, data for information.
+   */
+  public <T> ZabbixAPIResult callApi(String method, Object params, Class<T> rowType) {
+    ArrayList<T> rows = new ArrayList<>();
+    ZabbixAPIResult zabbixAPIResult = callApiStream(method, params, rowType, rows::add);
+    if (!zabbixAPIResult.isFail()) {
+      zabbixAPIResult.setData(rows);
+    }
+    return zabbixAPIResult;
+  }
+
+  /**
+   * Call api and hand each row of the result array to rowConsumer while the response is being read,
+   * so heap use does not grow with the result size.
+   *
+   * @param method      zabbix api method
+   * @param params      api params
+   * @param rowConsumer called once per row, on the calling thread
+   * @return ZabbixAPIResult.data is the number of rows handed to rowConsumer.
+   * If error happened, refer to code, message, data for information.
+   */
+  public ZabbixAPIResult callApiStream(String method, Object params, Consumer<JsonNode> rowConsumer) {
+    return callApiStream(method, params, JsonNode.class, rowConsumer);
+  }
+
+  /**
+   * Same as callApiStream(method, params, rowConsumer), with rows decoded into rowType.
+   *
+   * @param rowType class rows are decoded into, e.g. Host or Item
+   */
+  public <T> ZabbixAPIResult callApiStream(String method, Object params, Class<T> rowType,
+                                           Consumer<? super T> rowConsumer) {
+    RequestAbstract request = ZabbixRpc.request(method, params);
+    ObjectReader rowReader = ZabbixJson.mapper.readerFor(rowType);
+
+    ZabbixAPIResult zabbixAPIResult = stream(request, rowReader, rowConsumer);
+    // An error response has no rows, so rowConsumer has seen nothing yet.
+    if (ZabbixSession.isSessionError(zabbixAPIResult) && relogin(request.getAuth())) {
+      request.setAuth(null);
+      zabbixAPIResult = stream(request, rowReader, rowConsumer);
+    }
+
+    printAPIResult(zabbixAPIResult);
+    return zabbixAPIResult;
+  }
+
+  private <T> ZabbixAPIResult stream(RequestAbstract request, ObjectReader rowReader, Consumer<? super T> rowConsumer) {
+    try (ZabbixResultIterator<T> iterator = callApiIterator(request, rowReader)) {
+      iterator.forEachRemaining(rowConsumer);
+      return iterator.getResult();
+    } catch (IOException e) {
+      throw new RuntimeException("DefaultZabbixApi stream exception!", e);
     }
+  }
+
+  /**
+   * Call api and iterate the rows of the result array while the response is being read.
+   * The caller must close the iterator, which holds a pooled connection until then.
+   *
+   * @param method zabbix api method
+   * @param params api params
+   * @return ZabbixResultIterator over the result rows. Check getResult() for errors after iteration.
+   */
+  public ZabbixResultIterator<JsonNode> callApiIterator(String method, Object params) {
+    return callApiIterator(method, params, JsonNode.class);
+  }
+
+  /**
+   * Same as callApiIterator(method, params), with rows decoded into rowType.
+   *
+   * @param rowType class rows are decoded into, e.g. Host or Item
+   */
+  public <T> ZabbixResultIterator<T> callApiIterator(String method, Object params, Class<T> rowType) {
+    return callApiIterator(ZabbixRpc.request(method, params),
+            ZabbixJson.mapper.readerFor(rowType));
+  }
 
+  private <T> ZabbixResultIterator<T> callApiIterator(RequestAbstract request, ObjectReader rowReader) {
+    HttpUriRequest httpRequest = buildHttpRequest(request);
+    acquireSlot(httpRequest);
+    ZabbixCallSample sample = new ZabbixCallSample(request.getMethod());
+    metrics.callStarted(sample.getMethod());
+    long start = System.nanoTime();
+    CloseableHttpResponse response = null;
     try {
-      HttpUriRequest httpRequest = org.apache.http.client.methods.RequestBuilder.post().setUri(uri)
-              .addHeader("Content-Type", "application/json")
-              .setEntity(new StringEntity(request.toString(), ContentType.APPLICATION_JSON)).build();
-      log.info("Call API. Request is :{}", request.toString());
-      CloseableHttpResponse response = httpClient.execute(httpRequest);
+      response = httpClient.execute(httpRequest);
       HttpEntity entity = response.getEntity();
-      return new ObjectMapper().readTree(entity.getContent());
+      if (entity == null) {
+        throw new ClientProtocolException("Empty response, status: " + response.getStatusLine());
+      }
+      long parseStart = System.nanoTime();
+      ZabbixResultIterator<T> iterator = new ZabbixResultIterator<>(response,
+              ZabbixJson.mapper.getFactory().createParser(entity.getContent()), rowReader);
+      // Rows are parsed while the caller iterates, so the sample is only complete once the iterator is closed.
+      iterator.setCloseHook(() -> {
+        sample.setParseNanos(System.nanoTime() - parseStart);
+        sample.setResponseBytes(iterator.getBytesRead());
+        sample.setCode(iterator.getResult().getCode());
+        finishSample(sample, httpRequest, start);
+      });
+      return iterator;
+    } catch (IOException | RuntimeException e) {
+      if (response != null) {
+        try {
+          response.close();
+        } catch (IOException ignore) {
+        }
+      }
+      finishSample(sample, httpRequest, start);
+      if (e instanceof RuntimeException) throw (RuntimeException) e;
+      throw new RuntimeException("DefaultZabbixApi call exception!", e);
+    }
+  }
+
+  private HttpUriRequest buildHttpRequest(RequestAbstract request) {
+    ZabbixRpc.authorize(request, this.auth);
+    return buildHttpRequest((Object) request);
+  }
+
+  /**
+   * @param body a RequestAbstract or a list of them
+   */
+  private HttpUriRequest buildHttpRequest(Object body) {
+    // A request chosen from endpoints counts as outstanding there until finishSample releases it.
+    HttpUriRequest httpRequest = org.apache.http.client.methods.RequestBuilder.post()
+            .setUri(endpoints == null ? uri : endpoints.choose())
+            .setEntity(new JsonRequestEntity(body, transportConfig.getRequestCompression(),
+                    transportConfig.getRequestCompressionThreshold(), transportConfig.getRequestBufferThreshold()))
+            .build();
+    // The request is only rendered to text when debug logging is on.
+    log.debug("Call API. Request is :{}", body);
+    return httpRequest;
+  }
+
+  /**
+   * Send a request and parse the response, with the retries, hedging, circuit breaker and deadline set by
+   * configureResilience. Streaming calls, e.g. callApiStream, are sent once.
+   *
+   * @throws RuntimeException caused by an IOException when no response could be read
+   */
+  public JsonNode call(RequestAbstract request) {
+    if (resilience == null) return execute(request.getMethod(), buildHttpRequest(request));
+
+    return resilience.call(request.getMethod(), () -> buildHttpRequest(request),
+            httpRequest -> execute(request.getMethod(), httpRequest));
+  }
+
+  /**
+   * Send several requests in one JSON-RPC batch, i.e. one http round trip.
+   * Responses are matched back to requests by id, so every request needs a distinct id;
+   * RequestBuilder assigns one when none is set.
+   *
+   * @param requests requests to send. Requests without auth get the current auth.
+   * @return one ZabbixAPIResult per request, in request order. A request zabbix did not answer gets
+   * BATCH_RESPONSE_MISSING. If zabbix rejected the whole batch, every request gets that error.
+   */
+  public List<ZabbixAPIResult> callBatch(List<RequestAbstract> requests) {
+    if (requests.isEmpty()) return new ArrayList<>();
+
+    Set<Integer> ids = new HashSet<>();
+    for (RequestAbstract request : requests) {
+      if (!ids.add(request.getId())) {
+        throw new IllegalArgumentException("Duplicate request id in batch: " + request.getId());
+      }
+    }
+
+    List<ZabbixAPIResult> zabbixAPIResults = sendBatch(requests);
+
+    List<Integer> rejected = new ArrayList<>();
+    for (int i = 0; i < requests.size(); i++) {
+      if (ZabbixSession.isSessionError(zabbixAPIResults.get(i))) rejected.add(i);
+    }
+    if (!rejected.isEmpty() && relogin(requests.get(rejected.get(0)).getAuth())) {
+      List<RequestAbstract> retry = new ArrayList<>(rejected.size());
+      for (int i : rejected) {
+        requests.get(i).setAuth(null);
+        retry.add(requests.get(i));
+      }
+      List<ZabbixAPIResult> retryResults = sendBatch(retry);
+      for (int i = 0; i < rejected.size(); i++) {
+        zabbixAPIResults.set(rejected.get(i), retryResults.get(i));
+      }
+    }
+
+    zabbixAPIResults.forEach(this::printAPIResult);
+    return zabbixAPIResults;
+  }
+
+  private List<ZabbixAPIResult> sendBatch(List<RequestAbstract> requests) {
+    requests.forEach(request -> ZabbixRpc.authorize(request, this.auth));
+
+    JsonNode response;
+    try {
+      response = execute("batch", buildHttpRequest((Object) requests));
+    } finally {
+      requests.forEach(request -> invalidateCache(request.getMethod()));
+    }
+    HashMap<Integer, JsonNode> responseById = new HashMap<>();
+    if (response.isArray()) {
+      response.forEach(node -> {
+        if (node.hasNonNull("id")) {
+          responseById.put(node.get("id").asInt(), node);
+        }
+      });
+    }
+
+    List<ZabbixAPIResult> zabbixAPIResults = new ArrayList<>(requests.size());
+    for (RequestAbstract request : requests) {
+      JsonNode node = responseById.get(request.getId());
+      ZabbixAPIResult zabbixAPIResult;
+      if (node != null) {
+        zabbixAPIResult = ZabbixAPIResult.fromResponse(node);
+      } else if (!response.isArray() && response.has("error")) {
+        zabbixAPIResult = ZabbixAPIResult.fromResponse(response);
+      } else {
+        zabbixAPIResult = new ZabbixAPIResult();
+        zabbixAPIResult.setCode(ZabbixAPIResultCode.BATCH_RESPONSE_MISSING.code());
+        zabbixAPIResult.setMessage(ZabbixAPIResultCode.BATCH_RESPONSE_MISSING.message());
+        zabbixAPIResult.setData("No response for request id : " + request.getId());
+      }
+      zabbixAPIResults.add(zabbixAPIResult);
+    }
+
+    return zabbixAPIResults;
+  }
+
+  /**
+   * Start a batch of api calls which is sent in one http round trip.
+   *
+   * @return ZabbixBatch bound to this api
+   */
+  public ZabbixBatch batch() {
+    return new ZabbixBatch(this);
+  }
+
+  /**
+   * Start a partitioned parallel scan of a whole inventory.
+   *
+   * @param method get method, e.g. item.get
+   * @return ZabbixScan bound to this api
+   */
+  public ZabbixScan scan(String method) {
+    return new ZabbixScan(this, method);
+  }
+
+  /**
+   * Start reading history or trends of many items into primitive arrays.
+   *
+   * @return ZabbixHistoryReader bound to this api
+   */
+  public ZabbixHistoryReader historyReader() {
+    return new ZabbixHistoryReader(this);
+  }
+
+  /**
+   * Start reconciling zabbix with a desired inventory of groups, hosts, interfaces and items.
+   *
+   * @return ZabbixReconciler bound to this api
+   */
+  public ZabbixReconciler reconciler() {
+    return new ZabbixReconciler(this);
+  }
+
+  private JsonNode execute(String method, HttpUriRequest httpRequest) {
+    acquireSlot(httpRequest);
+    ZabbixCallSample sample = new ZabbixCallSample(method);
+    metrics.callStarted(method);
+    long start = System.nanoTime();
+    try {
+      // The response handler variant consumes the entity and closes the response on every path,
+      // so the connection always goes back to the pool.
+      JsonNode node = httpClient.execute(httpRequest, response -> ZabbixRpc.readResponse(response, sample));
+      sample.setCode(node.has("error") ? node.get("error").get("code").asInt() : ZabbixAPIResultCode.SUCCESS.code());
+      return node;
     } catch (IOException e) {
       throw new RuntimeException("DefaultZabbixApi call exception!", e);
+    } finally {
+      finishSample(sample, httpRequest, start);
+    }
+  }
+
+  /**
+   * Wait for a slot of the concurrency limit. The time waiting is not part of the call's sample.
+   */
+  private void acquireSlot(HttpUriRequest httpRequest) {
+    if (concurrencyLimiter == null) return;
+    try {
+      concurrencyLimiter.acquire();
+    } catch (RuntimeException e) {
+      // The request was never sent, finishSample will not release its endpoint.
+      if (endpoints != null) endpoints.abandon(httpRequest.getURI());
+      throw e;
+    }
+  }
+
+  /**
+   * Fill in the request side of the sample and hand it to metrics.
+   */
+  private void finishSample(ZabbixCallSample sample, HttpUriRequest httpRequest, long start) {
+    long totalNanos = System.nanoTime() - start;
+    HttpEntity entity = ((HttpEntityEnclosingRequest) httpRequest).getEntity();
+    if (entity instanceof JsonRequestEntity) {
+      sample.setRequestBytes(((JsonRequestEntity) entity).getBytesWritten());
+      sample.setRequestWireBytes(((JsonRequestEntity) entity).getWireBytesWritten());
+      sample.setSerializeNanos(((JsonRequestEntity) entity).getWriteNanos());
+    }
+    sample.setNetworkNanos(Math.max(0, totalNanos - sample.getSerializeNanos() - sample.getParseNanos()));
+    boolean transportError = sample.getCode() == ZabbixAPIResultCode.CALL_EXCEPTION.code();
+    if (concurrencyLimiter != null) {
+      if (httpRequest.isAborted()) {
+        concurrencyLimiter.cancel();
+      } else {
+        concurrencyLimiter.release(sample.getMethod(), Math.max(sample.getRequestBytes(), sample.getResponseBytes()),
+                start, totalNanos, transportError);
+      }
+    }
+    if (endpoints != null) {
+      if (httpRequest.isAborted()) {
+        endpoints.abandon(httpRequest.getURI());
+      } else {
+        endpoints.release(httpRequest.getURI(), transportError);
+      }
+    }
+    metrics.callFinished(sample);
+  }
+
+
+  /**
+   * Call a bulk create/delete method, split into chunks of bulkChunkSize objects which run on up to
+   * bulkParallelism threads. The ids returned by each chunk are merged in input order, so the result looks
+   * like the one of a single call.
+   * <p>
+   * Unlike a single call, chunks are not atomic as a whole: if a chunk fails, the error of the first failed
+   * chunk is returned, chunks not yet started are skipped and chunks already done are kept.
+   *
+   * @param method   zabbix api method
+   * @param params   list of objects, or of ids for delete
+   * @param idsField field of the result holding the ids, e.g. itemids
+   * @return ZabbixAPIResult.data.idsField holds all ids in input order
+   */
+  private ZabbixAPIResult callApiInChunks(String method, List<?> params, String idsField) {
+    if (bulkChunkSize <= 0 || params.size() <= bulkChunkSize) {
+      return callApi(method, params);
+    }
+
+    List<List<?>> chunks = new ArrayList<>();
+    for (int from = 0; from < params.size(); from += bulkChunkSize) {
+      chunks.add(params.subList(from, Math.min(from + bulkChunkSize, params.size())));
+    }
+
+    List<ZabbixAPIResult> chunkResults = new ArrayList<>(chunks.size());
+    if (bulkExecutor == null) {
+      for (List<?> chunk : chunks) {
+        ZabbixAPIResult chunkResult = callApi(method, chunk);
+        chunkResults.add(chunkResult);
+        if (chunkResult.isFail()) break;
+      }
+    } else {
+      List<Future<ZabbixAPIResult>> futures = new ArrayList<>(chunks.size());
+      chunks.forEach(chunk -> futures.add(bulkExecutor.submit(() -> callApi(method, chunk))));
+      boolean failed = false;
+      for (Future<ZabbixAPIResult> future : futures) {
+        if (failed) {
+          // Skip chunks that did not start yet, but keep results of those that did.
+          if (future.cancel(false)) continue;
+        }
+        try {
+          ZabbixAPIResult chunkResult = future.get();
+          chunkResults.add(chunkResult);
+          failed |= chunkResult.isFail();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          futures.forEach(f -> f.cancel(true));
+          throw new RuntimeException("DefaultZabbixApi bulk call interrupted!", e);
+        } catch (ExecutionException e) {
+          futures.forEach(f -> f.cancel(false));
+          throw new RuntimeException("DefaultZabbixApi bulk call exception!", e.getCause());
+        }
+      }
+    }
+
+    ArrayNode ids = ZabbixJson.mapper.createArrayNode();
+    ZabbixAPIResult failedResult = null;
+    for (ZabbixAPIResult chunkResult : chunkResults) {
+      if (chunkResult.isFail()) {
+        if (failedResult == null) failedResult = chunkResult;
+      } else {
+        ids.addAll((ArrayNode) ((JsonNode) chunkResult.getData()).get(idsField));
+      }
     }
+    if (failedResult != null) {
+      log.warn("Bulk {} failed, {} done before the failure: {}", method, idsField, ids);
+      return failedResult;
+    }
+
+    ObjectNode data = ZabbixJson.mapper.createObjectNode();
+    data.set(idsField, ids);
+    return ZabbixAPIResult.success(data);
   }
 
   private void printAPIResult(ZabbixAPIResult zabbixAPIResult) {
     try {
-      log.info("Call API. Result is :{}", new ObjectMapper().
+      log.info("Call API. Result is :{}", ZabbixJson.mapper.
               writerWithDefaultPrettyPrinter().writeValueAsString(zabbixAPIResult));
     } catch (Exception exception) {
       exception.printStackTrace();
@@ -157,7 +1077,10 @@ public class ZabbixApi implements ZabbixAPIInterface {
     HashMap params = new HashMap();
     params.put("name", groupname);
 
-    return callApi(method, params);
+    ZabbixAPIResult hostgroupCreateResult = callApi(method, params);
+    cacheCreatedIds(hostgroupIdCache, hostgroupCreateResult, Collections.singletonList(groupname), "groupids");
+
+    return hostgroupCreateResult;
   }
 
   /**
@@ -176,23 +1099,72 @@ public class ZabbixApi implements ZabbixAPIInterface {
       params.add(map);
     });
 
-    return callApi(method, params);
+    ZabbixAPIResult hostgroupCreateResult = callApiInChunks(method, params, "groupids");
+    cacheCreatedIds(hostgroupIdCache, hostgroupCreateResult, groupNameList, "groupids");
+
+    return hostgroupCreateResult;
+  }
+
+  /**
+   * Get multiple host groups by list of of host group names.
+   *
+   * @param groupNameList List of host group names
+   * @return ZabbixAPIResult.data is the host group array found, with each one including groupid,name,flags,internal
+   */
+  public ZabbixAPIResult hostgroupListGetByName(ArrayList<String> groupNameList) {
+    String method = "hostgroup.get";
+
+    ZabbixAPIResult hostgroupGetResult = callApi(method, hostgroupGetParams(groupNameList));
+    cacheRows(hostgroupIdCache, hostgroupGetResult, "name", "groupid");
+
+    return hostgroupGetResult;
+  }
+
+  /**
+   * Get host groups by names, decoded into rowType.
+   *
+   * @param groupNameList List of host group names
+   * @param rowType       class rows are decoded into, e.g. HostGroup
+   * @return ZabbixAPIResult.data is an ArrayList of rowType
+   */
+  public <T> ZabbixAPIResult hostgroupListGetByName(ArrayList<String> groupNameList, Class<T> rowType) {
+    String method = "hostgroup.get";
+
+    return callApi(method, hostgroupGetParams(groupNameList), rowType);
   }
 
   /**
-   * Get multiple host groups by list of of host group names.
+   * Get host groups by names with output, limit, sorting etc. of query.
    *
    * @param groupNameList List of host group names
-   * @return ZabbixAPIResult.data is the host group array found, with each one including groupid,name,flags,internal
+   * @param query         other get parameters, e.g. ZabbixQuery.newQuery().output("groupid")
+   * @return ZabbixAPIResult.data is the host group array found, with the properties asked by query
    */
-  public ZabbixAPIResult hostgroupListGetByName(ArrayList<String> groupNameList) {
+  public ZabbixAPIResult hostgroupListGetByName(ArrayList<String> groupNameList, ZabbixQuery query) {
     String method = "hostgroup.get";
-    HashMap<String, HashMap<String, List<String>>> params = new HashMap();
+
+    ZabbixAPIResult hostgroupGetResult = callApi(method, withFilter(query.toParams(), "name", groupNameList));
+    cacheRows(hostgroupIdCache, hostgroupGetResult, "name", "groupid");
+
+    return hostgroupGetResult;
+  }
+
+  /**
+   * Add a filter on field to params, keeping other filters of the query.
+   */
+  private static HashMap<String, Object> withFilter(HashMap<String, Object> params, String field, Object values) {
+    HashMap<String, Object> filter = (HashMap<String, Object>) params.computeIfAbsent("filter", key -> new HashMap<>());
+    filter.put(field, values);
+    return params;
+  }
+
+  private HashMap<String, Object> hostgroupGetParams(ArrayList<String> groupNameList) {
+    HashMap<String, Object> params = new HashMap();
     HashMap<String, List<String>> nameMap = new HashMap();
     nameMap.put("name", groupNameList);
     params.put("filter", nameMap);
 
-    return callApi(method, params);
+    return params;
   }
 
   /**
@@ -202,9 +1174,20 @@ public class ZabbixApi implements ZabbixAPIInterface {
    * @return ZabbixAPIResult.data is the host group id array found
    */
   public ZabbixAPIResult hostgroupIdListGetByName(ArrayList<String> groupNameList) {
-    ZabbixAPIResult hostgroupGetResult = hostgroupListGetByName(groupNameList);
     ArrayList<String> groupIdList = new ArrayList<>();
+    ArrayList<String> missingNameList = new ArrayList<>();
+    groupNameList.forEach(groupname -> {
+      String groupid = hostgroupIdCache.get(groupname);
+      if (groupid != null) {
+        groupIdList.add(groupid);
+      } else {
+        missingNameList.add(groupname);
+      }
+    });
+    if (missingNameList.isEmpty() && !groupNameList.isEmpty()) return ZabbixAPIResult.success(groupIdList);
 
+    ZabbixAPIResult hostgroupGetResult = hostgroupListGetByName(missingNameList,
+            ZabbixQuery.newQuery().output("groupid", "name"));
     if (hostgroupGetResult.isFail()) return hostgroupGetResult;
     JsonNode data = (JsonNode) hostgroupGetResult.getData();
     data.forEach(group -> {
@@ -216,6 +1199,27 @@ public class ZabbixApi implements ZabbixAPIInterface {
     return hostgroupGetResult;
   }
 
+  /**
+   * Map host group names to ids with one projected get for all names not cached.
+   *
+   * @param groupNameList List of host group names
+   * @return ZabbixAPIResult.data is a HashMap from name to groupid of the host groups that exist
+   */
+  public ZabbixAPIResult hostgroupIdMapGetByName(ArrayList<String> groupNameList) {
+    return idMap(groupNameList, hostgroupIdCache::get, missingNameList -> hostgroupListGetByName(missingNameList,
+            ZabbixQuery.newQuery().output("groupid", "name")), "name", "groupid");
+  }
+
+  /**
+   * Check which host groups exist, with one request for all names.
+   *
+   * @param groupNameList List of host group names
+   * @return Names of the host groups that exist. Empty if search request returns some error.
+   */
+  public HashSet<String> hostgroupListExists(ArrayList<String> groupNameList) {
+    return existingNames(hostgroupIdMapGetByName(groupNameList));
+  }
+
   /**
    * Get host group by host group name.
    *
@@ -224,6 +1228,8 @@ public class ZabbixApi implements ZabbixAPIInterface {
    * If found, get the first item.
    */
   public ZabbixAPIResult hostgroupGetByGroupName(String groupname) {
+    if (hostgroupLookupBatcher != null) return hostgroupLookupBatcher.get(groupname);
+
     ArrayList<String> groupNameList = new ArrayList<>();
     groupNameList.add(groupname);
 
@@ -237,15 +1243,10 @@ public class ZabbixApi implements ZabbixAPIInterface {
    * @return ZabbixAPIResult.data is the host group array found, with each one including groupid,name,flags,internal.
    */
   public ZabbixAPIResult hostgroupGetByHostNameList(ArrayList<String> hostNameList) {
-    ZabbixAPIResult hostGetResult = hostListGetByHostName(hostNameList);
-    if (hostGetResult.isFail()) return hostGetResult;
-
-    JsonNode data = (JsonNode) hostGetResult.getData();
-    ArrayList<String> hostIdList = new ArrayList<>();
-    data.get("hostids").forEach(hostid -> {
-      hostIdList.add(hostid.asText());
-    });
+    ZabbixAPIResult hostIdGetResult = hostIdListGetByHostName(hostNameList);
+    if (hostIdGetResult.isFail()) return hostIdGetResult;
 
+    ArrayList<String> hostIdList = (ArrayList<String>) hostIdGetResult.getData();
     HashMap<String, List<String>> params = new HashMap();
     params.put("hostids", hostIdList);
 
@@ -275,7 +1276,10 @@ public class ZabbixApi implements ZabbixAPIInterface {
    */
   public boolean hostgroupExists(String groupname) {
     boolean exists = false;
-    ZabbixAPIResult hostgroupGetResult = hostgroupGetByGroupName(groupname);
+    ArrayList<String> groupNameList = new ArrayList<>();
+    groupNameList.add(groupname);
+    ZabbixAPIResult hostgroupGetResult = hostgroupListGetByName(groupNameList,
+            ZabbixQuery.newQuery().output("groupid", "name").limit(1));
     if (!hostgroupGetResult.isFail()) {
       JsonNode data = (JsonNode) hostgroupGetResult.getData();
       if (data.size() > 0) exists = true;
@@ -292,7 +1296,10 @@ public class ZabbixApi implements ZabbixAPIInterface {
   public ZabbixAPIResult hostgroupListDeleteById(ArrayList<String> hostGroupIdList) {
     String method = "hostgroup.delete";
 
-    return callApi(method, hostGroupIdList);
+    ZabbixAPIResult hostgroupDeleteResult = callApi(method, hostGroupIdList);
+    hostgroupIdCache.removeIds(hostGroupIdList);
+
+    return hostgroupDeleteResult;
   }
 
   /**
@@ -309,14 +1316,10 @@ public class ZabbixApi implements ZabbixAPIInterface {
     if (hostGroupIdList.size() > 0) {
       return hostgroupListDeleteById(hostGroupIdList);
     } else {
-      ZabbixAPIResult zabbixAPIResult = new ZabbixAPIResult();
-      zabbixAPIResult.setCode(ZabbixAPIResultCode.SUCCESS.code());
-      zabbixAPIResult.setMessage("Call Zabbix API Success.");
       HashMap<String, List<String>> groupids = new HashMap();
       groupids.put("groupids", hostGroupIdList);
-      zabbixAPIResult.setData(groupids);
 
-      return zabbixAPIResult;
+      return ZabbixAPIResult.success(groupids);
     }
   }
 
@@ -369,7 +1372,10 @@ public class ZabbixApi implements ZabbixAPIInterface {
     params.put("groups", groups);
     params.put("interfaces", hostInterfaces);
 
-    return callApi(method, params);
+    ZabbixAPIResult hostCreateResult = callApi(method, params);
+    cacheCreatedIds(hostIdCache, hostCreateResult, Collections.singletonList(host), "hostids");
+
+    return hostCreateResult;
   }
 
   /**
@@ -381,7 +1387,35 @@ public class ZabbixApi implements ZabbixAPIInterface {
   public ZabbixAPIResult hostListCreate(ArrayList<HashMap> hostParamList) {
     String method = "host.create";
 
-    return callApi(method, hostParamList);
+    ZabbixAPIResult hostCreateResult = callApiInChunks(method, hostParamList, "hostids");
+    if (hostIdCache.isEnabled()) {
+      List<String> hostNameList = new ArrayList<>();
+      hostParamList.forEach(hostParam -> hostNameList.add(String.valueOf(hostParam.get("host"))));
+      cacheCreatedIds(hostIdCache, hostCreateResult, hostNameList, "hostids");
+    }
+
+    return hostCreateResult;
+  }
+
+  /**
+   * Update multiple hosts.
+   *
+   * @param hostParamList List of host params. Each param should contain hostid and the properties to change,
+   *                      e.g. groups. Groups replace all groups of the host.
+   * @return ZabbixAPIResult.data.hostids is the host id array updated
+   */
+  public ZabbixAPIResult hostListUpdate(ArrayList<HashMap> hostParamList) {
+    String method = "host.update";
+
+    String[] requiredProperties = {"hostid"};
+    ZabbixAPIResult invalidResult = ZabbixAPIResult.checkRequiredProperties(hostParamList, requiredProperties);
+    if (invalidResult != null) return invalidResult;
+
+    ZabbixAPIResult hostUpdateResult = callApiInChunks(method, hostParamList, "hostids");
+    // A renamed host must not be found by its old name. Drop even on failure, some chunks may have been applied.
+    hostIdCache.removeIds(changedIds(hostParamList, "hostid", "host"));
+
+    return hostUpdateResult;
   }
 
   /**
@@ -392,7 +1426,10 @@ public class ZabbixApi implements ZabbixAPIInterface {
    */
   public boolean hostExists(String host) {
     boolean exists = false;
-    ZabbixAPIResult hostGetResult = hostGetByHostName(host);
+    ArrayList<String> hostNameList = new ArrayList<>();
+    hostNameList.add(host);
+    ZabbixAPIResult hostGetResult = hostListGetByHostName(hostNameList,
+            ZabbixQuery.newQuery().output("hostid", "host").limit(1));
     if (!hostGetResult.isFail()) {
       JsonNode data = (JsonNode) hostGetResult.getData();
       if (data.size() > 0) exists = true;
@@ -410,12 +1447,112 @@ public class ZabbixApi implements ZabbixAPIInterface {
   public ZabbixAPIResult hostListGetByHostName(ArrayList<String> hostNameList) {
     String method = "host.get";
 
-    HashMap<String, HashMap<String, List<String>>> params = new HashMap();
+    ZabbixAPIResult hostGetResult = callApi(method, hostGetParams(hostNameList));
+    cacheRows(hostIdCache, hostGetResult, "host", "hostid");
+
+    return hostGetResult;
+  }
+
+  /**
+   * Get host ids by host name list. Served from the name cache when all names are cached.
+   *
+   * @param hostNameList List of host name
+   * @return ZabbixAPIResult.data is the host id array found
+   */
+  public ZabbixAPIResult hostIdListGetByHostName(ArrayList<String> hostNameList) {
+    ArrayList<String> hostIdList = new ArrayList<>();
+    ArrayList<String> missingNameList = new ArrayList<>();
+    hostNameList.forEach(host -> {
+      String hostid = hostIdCache.get(host);
+      if (hostid != null) {
+        hostIdList.add(hostid);
+      } else {
+        missingNameList.add(host);
+      }
+    });
+    if (missingNameList.isEmpty() && !hostNameList.isEmpty()) return ZabbixAPIResult.success(hostIdList);
+
+    ZabbixAPIResult hostGetResult = hostListGetByHostName(missingNameList,
+            ZabbixQuery.newQuery().output("hostid", "host"));
+    if (hostGetResult.isFail()) return hostGetResult;
+    ((JsonNode) hostGetResult.getData()).forEach(host -> {
+      hostIdList.add(host.get("hostid").asText());
+    });
+    hostGetResult.setData(hostIdList);
+
+    return hostGetResult;
+  }
+
+  /**
+   * Map host names to ids with one projected get for all names not cached.
+   *
+   * @param hostNameList List of host name
+   * @return ZabbixAPIResult.data is a HashMap from host name to hostid of the hosts that exist
+   */
+  public ZabbixAPIResult hostIdMapGetByHostName(ArrayList<String> hostNameList) {
+    return idMap(hostNameList, hostIdCache::get, missingNameList -> hostListGetByHostName(missingNameList,
+            ZabbixQuery.newQuery().output("hostid", "host")), "host", "hostid");
+  }
+
+  /**
+   * Check which hosts exist, with one request for all names.
+   *
+   * @param hostNameList List of host name
+   * @return Names of the hosts that exist. Empty if search request returns some error.
+   */
+  public HashSet<String> hostListExists(ArrayList<String> hostNameList) {
+    return existingNames(hostIdMapGetByHostName(hostNameList));
+  }
+
+  /**
+   * Get hosts by host name list, streaming rows to hostConsumer instead of building the whole array.
+   *
+   * @param hostNameList List of host name
+   * @param hostConsumer called once per host found
+   * @return ZabbixAPIResult.data is the number of hosts found
+   */
+  public ZabbixAPIResult hostListGetByHostName(ArrayList<String> hostNameList, Consumer<JsonNode> hostConsumer) {
+    String method = "host.get";
+
+    return callApiStream(method, hostGetParams(hostNameList), hostConsumer);
+  }
+
+  /**
+   * Get hosts by host names with output, limit, sorting etc. of query.
+   *
+   * @param hostNameList List of host name
+   * @param query        other get parameters, e.g. ZabbixQuery.newQuery().output("hostid", "host")
+   * @return ZabbixAPIResult.data is the host array found, with the properties asked by query
+   */
+  public ZabbixAPIResult hostListGetByHostName(ArrayList<String> hostNameList, ZabbixQuery query) {
+    String method = "host.get";
+
+    ZabbixAPIResult hostGetResult = callApi(method, withFilter(query.toParams(), "host", hostNameList));
+    cacheRows(hostIdCache, hostGetResult, "host", "hostid");
+
+    return hostGetResult;
+  }
+
+  /**
+   * Get hosts by host names, decoded into rowType.
+   *
+   * @param hostNameList List of host name
+   * @param rowType      class rows are decoded into, e.g. Host
+   * @return ZabbixAPIResult.data is an ArrayList of rowType
+   */
+  public <T> ZabbixAPIResult hostListGetByHostName(ArrayList<String> hostNameList, Class<T> rowType) {
+    String method = "host.get";
+
+    return callApi(method, hostGetParams(hostNameList), rowType);
+  }
+
+  private HashMap<String, Object> hostGetParams(ArrayList<String> hostNameList) {
+    HashMap<String, Object> params = new HashMap();
     HashMap<String, List<String>> filter = new HashMap();
     filter.put("host", hostNameList);
     params.put("filter", filter);
 
-    return callApi(method, params);
+    return params;
   }
 
   /**
@@ -426,6 +1563,8 @@ public class ZabbixApi implements ZabbixAPIInterface {
    * host, hostid, name, status etc. If exists, fetch the first one.
    */
   public ZabbixAPIResult hostGetByHostName(String host) {
+    if (hostLookupBatcher != null) return hostLookupBatcher.get(host);
+
     ArrayList<String> hostNameList = new ArrayList();
     hostNameList.add(host);
 
@@ -445,12 +1584,33 @@ public class ZabbixApi implements ZabbixAPIInterface {
     if (hostgroupGetResult.isFail()) return hostgroupGetResult;
     ArrayList<String> groupIdList = (ArrayList<String>) hostgroupGetResult.getData();
 
-    HashMap<String, List<String>> params = new HashMap();
+    return callApi(method, hostGetByGroupIdParams(groupIdList));
+  }
+
+  /**
+   * Get host by group names, streaming rows to hostConsumer instead of building the whole array.
+   *
+   * @param groupNameList List of host group name
+   * @param hostConsumer  called once per host found
+   * @return ZabbixAPIResult.data is the number of hosts found
+   */
+  public ZabbixAPIResult hostGetByGroupName(ArrayList<String> groupNameList, Consumer<JsonNode> hostConsumer) {
+    String method = "host.get";
+
+    ZabbixAPIResult hostgroupGetResult = hostgroupIdListGetByName(groupNameList);
+    if (hostgroupGetResult.isFail()) return hostgroupGetResult;
+    ArrayList<String> groupIdList = (ArrayList<String>) hostgroupGetResult.getData();
+
+    return callApiStream(method, hostGetByGroupIdParams(groupIdList), hostConsumer);
+  }
+
+  private HashMap<String, Object> hostGetByGroupIdParams(ArrayList<String> groupIdList) {
+    HashMap<String, Object> params = new HashMap();
     if (groupIdList.size() > 0) {
       params.put("groupids", groupIdList);
     }
 
-    return callApi(method, params);
+    return params;
   }
 
   /**
@@ -489,7 +1649,12 @@ public class ZabbixApi implements ZabbixAPIInterface {
   public ZabbixAPIResult hostListDeleteById(ArrayList<String> hostIdList) {
     String method = "host.delete";
 
-    return callApi(method, hostIdList);
+    ZabbixAPIResult hostDeleteResult = callApiInChunks(method, hostIdList, "hostids");
+    // Drop ids even on failure: some chunks may have been deleted, and dropping is always safe.
+    hostIdCache.removeIds(hostIdList);
+    itemIdCache.removeScopes(hostIdList);
+
+    return hostDeleteResult;
   }
 
   /**
@@ -503,7 +1668,7 @@ public class ZabbixApi implements ZabbixAPIInterface {
     ArrayList<String> hostIdList = new ArrayList<>();
     hostIdList.add(hostId);
 
-    return hostgroupListDeleteById(hostIdList);
+    return hostListDeleteById(hostIdList);
   }
 
   /**
@@ -514,28 +1679,18 @@ public class ZabbixApi implements ZabbixAPIInterface {
    * If host id exists, fetch the first one.
    */
   public ZabbixAPIResult hostListDeleteByName(ArrayList<String> hostNameList) {
-    ZabbixAPIResult hostListGetResult = hostListGetByHostName(hostNameList);
-    if (hostListGetResult.isFail()) return hostListGetResult;
-    JsonNode data = (JsonNode) hostListGetResult.getData();
-    ArrayList<String> hostIdList = new ArrayList<>();
-    if (data.size() > 0) {
-      data.forEach(host -> {
-        hostIdList.add(host.get("hostid").asText());
-      });
-    }
+    ZabbixAPIResult hostIdGetResult = hostIdListGetByHostName(hostNameList);
+    if (hostIdGetResult.isFail()) return hostIdGetResult;
+    ArrayList<String> hostIdList = (ArrayList<String>) hostIdGetResult.getData();
 
     if (hostIdList.size() > 0) {
       return hostListDeleteById(hostIdList);
     }
 
-    ZabbixAPIResult zabbixAPIResult = new ZabbixAPIResult();
-    zabbixAPIResult.setCode(ZabbixAPIResultCode.SUCCESS.code());
-    zabbixAPIResult.setMessage("Call Zabbix API Success.");
-    HashMap<String, List<String>> groupids = new HashMap();
-    groupids.put("hostids", hostIdList);
-    zabbixAPIResult.setData(groupids);
+    HashMap<String, List<String>> hostids = new HashMap();
+    hostids.put("hostids", hostIdList);
 
-    return zabbixAPIResult;
+    return ZabbixAPIResult.success(hostids);
   }
 
   /**
@@ -605,20 +1760,10 @@ public class ZabbixApi implements ZabbixAPIInterface {
   public ZabbixAPIResult hostInterfaceListCreate(ArrayList<HashMap> hostInterfaceList) {
     String method = "hostinterface.create";
     String[] requiredProperties = {"dns", "hostid", "ip", "main", "port", "type", "useip"};
-    ZabbixAPIResult zabbixAPIResult = new ZabbixAPIResult();
-
-    for (int i = 0; i < hostInterfaceList.size(); i++) {
-      for (int j = 0; j < requiredProperties.length; j++) {
-        if (!hostInterfaceList.get(i).containsKey(requiredProperties[j])) {
-          zabbixAPIResult.setCode(ZabbixAPIResultCode.PARAM_IS_INVALID.code());
-          zabbixAPIResult.setMessage(ZabbixAPIResultCode.PARAM_IS_INVALID.message() +
-                  requiredProperties + " are required.");
-          zabbixAPIResult.setData("Param has no property : " + requiredProperties[j]);
-          return zabbixAPIResult;
-        }
-      }
-    }
-    return callApi(method, hostInterfaceList);
+    ZabbixAPIResult invalidResult = ZabbixAPIResult.checkRequiredProperties(hostInterfaceList, requiredProperties);
+    if (invalidResult != null) return invalidResult;
+
+    return callApiInChunks(method, hostInterfaceList, "interfaceids");
   }
 
   /**
@@ -637,6 +1782,38 @@ public class ZabbixApi implements ZabbixAPIInterface {
     return callApi(method, param);
   }
 
+  /**
+   * Get host interfaces by host ids with output, limit, sorting etc. of query.
+   *
+   * @param hostIdList List of host id
+   * @param query      other get parameters, e.g. ZabbixQuery.newQuery().output("interfaceid", "ip")
+   * @return ZabbixAPIResult.data is host interface array found, with the properties asked by query
+   */
+  public ZabbixAPIResult hostInterfaceGetByHostIds(ArrayList<String> hostIdList, ZabbixQuery query) {
+    String method = "hostinterface.get";
+
+    HashMap<String, Object> param = query.toParams();
+    param.put("hostids", hostIdList);
+
+    return callApi(method, param);
+  }
+
+  /**
+   * Get host interfaces by host ids, decoded into rowType.
+   *
+   * @param hostIdList List of host id
+   * @param rowType    class rows are decoded into, e.g. HostInterface
+   * @return ZabbixAPIResult.data is an ArrayList of rowType
+   */
+  public <T> ZabbixAPIResult hostInterfaceGetByHostIds(ArrayList<String> hostIdList, Class<T> rowType) {
+    String method = "hostinterface.get";
+
+    HashMap<String, List<String>> param = new HashMap();
+    param.put("hostids", hostIdList);
+
+    return callApi(method, param, rowType);
+  }
+
   /**
    * Get host interfaces by host names.
    *
@@ -647,15 +1824,10 @@ public class ZabbixApi implements ZabbixAPIInterface {
   public ZabbixAPIResult hostInterfaceGetByHostNames(ArrayList<String> hostNameList) {
     String method = "hostinterface.get";
 
-    ZabbixAPIResult hostGetResult = hostListGetByHostName(hostNameList);
-    if (hostGetResult.isFail()) return hostGetResult;
-
-    ArrayList hostIdList = new ArrayList();
-    JsonNode data = (JsonNode) hostGetResult.getData();
-    data.forEach(host -> {
-      hostIdList.add(host.get("hostid"));
-    });
+    ZabbixAPIResult hostIdGetResult = hostIdListGetByHostName(hostNameList);
+    if (hostIdGetResult.isFail()) return hostIdGetResult;
 
+    ArrayList<String> hostIdList = (ArrayList<String>) hostIdGetResult.getData();
     HashMap<String, List<String>> param = new HashMap();
     param.put("hostids", hostIdList);
 
@@ -702,21 +1874,38 @@ public class ZabbixApi implements ZabbixAPIInterface {
     String method = "item.create";
 
     String[] requiredProperties = {"delay", "hostid", "interfaceid", "key_", "name", "type", "value_type"};
-    ZabbixAPIResult zabbixAPIResult = new ZabbixAPIResult();
-    for (int i = 0; i < params.size(); i++) {
-      HashMap param = params.get(i);
-      for (int j = 0; j < requiredProperties.length; j++) {
-        if (!param.containsKey(requiredProperties[j])) {
-          zabbixAPIResult.setCode(ZabbixAPIResultCode.PARAM_IS_INVALID.code());
-          zabbixAPIResult.setMessage(ZabbixAPIResultCode.PARAM_IS_INVALID.message() +
-                  requiredProperties + " are required.");
-          zabbixAPIResult.setData("Param has no property : " + requiredProperties[j]);
-          return zabbixAPIResult;
-        }
-      }
+    ZabbixAPIResult invalidResult = ZabbixAPIResult.checkRequiredProperties(params, requiredProperties);
+    if (invalidResult != null) return invalidResult;
+
+    ZabbixAPIResult itemCreateResult = callApiInChunks(method, params, "itemids");
+    if (itemIdCache.isEnabled()) {
+      List<String> itemKeyList = new ArrayList<>();
+      params.forEach(param -> itemKeyList.add(itemCacheKey(param.get("hostid"), param.get("key_"))));
+      cacheCreatedIds(itemIdCache, itemCreateResult, itemKeyList, "itemids");
     }
 
-    return callApi(method, params);
+    return itemCreateResult;
+  }
+
+  /**
+   * Update multiple items.
+   *
+   * @param params List of item parameter. Each parameter should contain itemid and the properties to change.
+   * @return ZabbixAPIResult.data contains "itemids".
+   * If error happened, refer to code, message, data for information.
+   */
+  public ZabbixAPIResult itemListUpdate(ArrayList<HashMap<String, Object>> params) {
+    String method = "item.update";
+
+    String[] requiredProperties = {"itemid"};
+    ZabbixAPIResult invalidResult = ZabbixAPIResult.checkRequiredProperties(params, requiredProperties);
+    if (invalidResult != null) return invalidResult;
+
+    ZabbixAPIResult itemUpdateResult = callApiInChunks(method, params, "itemids");
+    // An item whose key_ changed must not be found by its old key. Drop even on failure, as for hosts.
+    itemIdCache.removeIds(changedIds(params, "itemid", "key_"));
+
+    return itemUpdateResult;
   }
 
   /**
@@ -730,9 +1919,9 @@ public class ZabbixApi implements ZabbixAPIInterface {
     ArrayList<String> itemKeyList = new ArrayList();
 
     itemKeyList.add(itemKey);
-    ZabbixAPIResult itemGetResult = itemGetByHostNameAndItemKey(hostname, itemKeyList);
+    ZabbixAPIResult itemIdGetResult = itemIdListGetByHostNameAndItemKey(hostname, itemKeyList);
 
-    return itemExistsByCheckResult(itemGetResult);
+    return !itemIdGetResult.isFail() && ((List) itemIdGetResult.getData()).size() > 0;
   }
 
   /**
@@ -746,11 +1935,62 @@ public class ZabbixApi implements ZabbixAPIInterface {
     ArrayList<String> itemNameList = new ArrayList();
 
     itemNameList.add(itemName);
-    ZabbixAPIResult itemGetResult = itemGetByHostNameAndItemName(host, itemNameList);
+    ZabbixAPIResult itemGetResult = itemGet(ZabbixQuery.newQuery().output("itemid", "hostid", "key_")
+            .param("host", host).filter("name", itemNameList).limit(1));
 
     return itemExistsByCheckResult(itemGetResult);
   }
 
+  /**
+   * Map item keys of a host to item ids with one projected get for all keys not cached.
+   *
+   * @param host        host name
+   * @param itemKeyList List of item key_
+   * @return ZabbixAPIResult.data is a HashMap from key_ to itemid of the items that exist
+   */
+  public ZabbixAPIResult itemIdMapGetByHostNameAndItemKey(String host, ArrayList<String> itemKeyList) {
+    String hostid = hostIdCache.get(host);
+
+    return idMap(itemKeyList, itemKey -> hostid == null ? null : itemIdCache.get(itemCacheKey(hostid, itemKey)),
+            missingKeyList -> itemGet(ZabbixQuery.newQuery().output("itemid", "hostid", "key_")
+                    .param("host", host).filter("key_", missingKeyList)), "key_", "itemid");
+  }
+
+  /**
+   * Map item names of a host to item ids with one projected get. When several items share a name, one of
+   * their ids is kept.
+   *
+   * @param host         host name
+   * @param itemNameList List of item name
+   * @return ZabbixAPIResult.data is a HashMap from name to itemid of the items that exist
+   */
+  public ZabbixAPIResult itemIdMapGetByHostNameAndItemName(String host, ArrayList<String> itemNameList) {
+    return idMap(itemNameList, itemName -> null, missingNameList -> itemGet(ZabbixQuery.newQuery()
+            .output("itemid", "name").param("host", host).filter("name", missingNameList)), "name", "itemid");
+  }
+
+  /**
+   * Check which item keys exist on a host, with one request for all keys.
+   *
+   * @param host        host name
+   * @param itemKeyList List of item key_
+   * @return Keys of the items that exist. Empty if search request returns some error.
+   */
+  public HashSet<String> itemListExistsByItemKey(String host, ArrayList<String> itemKeyList) {
+    return existingNames(itemIdMapGetByHostNameAndItemKey(host, itemKeyList));
+  }
+
+  /**
+   * Check which item names exist on a host, with one request for all names.
+   *
+   * @param host         host name
+   * @param itemNameList List of item name
+   * @return Names of the items that exist. Empty if search request returns some error.
+   */
+  public HashSet<String> itemListExistsByItemName(String host, ArrayList<String> itemNameList) {
+    return existingNames(itemIdMapGetByHostNameAndItemName(host, itemNameList));
+  }
+
   private boolean itemExistsByCheckResult(ZabbixAPIResult itemGetResult) {
     if (!itemGetResult.isFail()) {
       JsonNode data = (JsonNode) itemGetResult.getData();
@@ -777,7 +2017,74 @@ public class ZabbixApi implements ZabbixAPIInterface {
     String method = "item.get";
     param.put("filter", filter);
 
-    return callApi(method, param);
+    ZabbixAPIResult itemGetResult = callApi(method, param);
+    cacheItemRows(itemGetResult);
+
+    return itemGetResult;
+  }
+
+  /**
+   * Get item by param and search info, streaming rows to itemConsumer instead of building the whole array.
+   *
+   * @param param        It can include itemids, groupids, hostids, interfaceids, host, group, etc
+   * @param filter       It can include key_, name, etc.
+   * @param itemConsumer called once per item found
+   * @return ZabbixAPIResult.data is the number of items found
+   */
+  public ZabbixAPIResult itemGet(HashMap<String, Object> param, HashMap<String, Object> filter,
+                                 Consumer<JsonNode> itemConsumer) {
+    String method = "item.get";
+    param.put("filter", filter);
+
+    return callApiStream(method, param, itemConsumer);
+  }
+
+  /**
+   * Get items with the ids, filter, output, limit, sorting etc. of query.
+   *
+   * @param query get parameters, e.g. ZabbixQuery.newQuery().output("itemid").param("hostids", hostIdList)
+   * @return ZabbixAPIResult.data is the item array found, with the properties asked by query
+   */
+  public ZabbixAPIResult itemGet(ZabbixQuery query) {
+    String method = "item.get";
+
+    ZabbixAPIResult itemGetResult = callApi(method, query.toParams());
+    cacheItemRows(itemGetResult);
+
+    return itemGetResult;
+  }
+
+  /**
+   * Get item by param and search info, decoded into rowType.
+   *
+   * @param param   It can include itemids, groupids, hostids, interfaceids, host, group, etc
+   * @param filter  It can include key_, name, etc.
+   * @param rowType class rows are decoded into, e.g. Item
+   * @return ZabbixAPIResult.data is an ArrayList of rowType
+   */
+  public <T> ZabbixAPIResult itemGet(HashMap<String, Object> param, HashMap<String, Object> filter, Class<T> rowType) {
+    String method = "item.get";
+    param.put("filter", filter);
+
+    return callApi(method, param, rowType);
+  }
+
+  /**
+   * Get item by param and search info, streaming rows decoded into rowType to itemConsumer.
+   * A large inventory is read with one small object per item alive at a time.
+   *
+   * @param param        It can include itemids, groupids, hostids, interfaceids, host, group, etc
+   * @param filter       It can include key_, name, etc.
+   * @param rowType      class rows are decoded into, e.g. Item
+   * @param itemConsumer called once per item found
+   * @return ZabbixAPIResult.data is the number of items found
+   */
+  public <T> ZabbixAPIResult itemGet(HashMap<String, Object> param, HashMap<String, Object> filter, Class<T> rowType,
+                                     Consumer<? super T> itemConsumer) {
+    String method = "item.get";
+    param.put("filter", filter);
+
+    return callApiStream(method, param, rowType, itemConsumer);
   }
 
   /**
@@ -788,6 +2095,10 @@ public class ZabbixApi implements ZabbixAPIInterface {
    * @return ZabbixAPIResult.data is the item array found, with each one including itemid,hostid,key_,name,etc.
    */
   public ZabbixAPIResult itemGetByHostNameAndItemKey(String host, ArrayList<String> itemKeyList) {
+    if (itemLookupBatcher != null) {
+      return itemLookupBatcher.get(new AbstractMap.SimpleImmutableEntry<>(host, itemKeyList));
+    }
+
     HashMap<String, Object> param = new HashMap();
     HashMap<String, Object> filter = new HashMap();
 
@@ -823,7 +2134,10 @@ public class ZabbixApi implements ZabbixAPIInterface {
   public ZabbixAPIResult itemListDeleteByItemId(ArrayList<String> itemIdList) {
     String method = "item.delete";
 
-    return callApi(method, itemIdList);
+    ZabbixAPIResult itemDeleteResult = callApiInChunks(method, itemIdList, "itemids");
+    itemIdCache.removeIds(itemIdList);
+
+    return itemDeleteResult;
   }
 
   /**
@@ -848,16 +2162,45 @@ public class ZabbixApi implements ZabbixAPIInterface {
    * @return ZabbixAPIResult.data.itemids is the item array that have been deleted.
    */
   public ZabbixAPIResult itemListDeleteByItemKey(String host, ArrayList<String> itemKeyList) {
-    ZabbixAPIResult itemGetResult = itemGetByHostNameAndItemKey(host, itemKeyList);
-    if (itemGetResult.isFail()) return itemGetResult;
+    ZabbixAPIResult itemIdGetResult = itemIdListGetByHostNameAndItemKey(host, itemKeyList);
+    if (itemIdGetResult.isFail()) return itemIdGetResult;
 
-    JsonNode data = (JsonNode) itemGetResult.getData();
-    ArrayList itemIdList = new ArrayList();
-    data.forEach(item -> {
-      itemIdList.add(item.get("itemid"));
+    return itemListDeleteByItemId((ArrayList<String>) itemIdGetResult.getData());
+  }
+
+  /**
+   * Get item ids by host and item keys. Served from the name cache when the host and all keys are cached.
+   *
+   * @param host        host name
+   * @param itemKeyList List of item key_
+   * @return ZabbixAPIResult.data is the item id array found
+   */
+  public ZabbixAPIResult itemIdListGetByHostNameAndItemKey(String host, ArrayList<String> itemKeyList) {
+    ArrayList<String> itemIdList = new ArrayList<>();
+    ArrayList<String> missingKeyList = itemKeyList;
+    String hostid = hostIdCache.get(host);
+    if (hostid != null) {
+      missingKeyList = new ArrayList<>();
+      for (String itemKey : itemKeyList) {
+        String itemid = itemIdCache.get(itemCacheKey(hostid, itemKey));
+        if (itemid != null) {
+          itemIdList.add(itemid);
+        } else {
+          missingKeyList.add(itemKey);
+        }
+      }
+      if (missingKeyList.isEmpty() && !itemKeyList.isEmpty()) return ZabbixAPIResult.success(itemIdList);
+    }
+
+    ZabbixAPIResult itemGetResult = itemGet(ZabbixQuery.newQuery().output("itemid", "hostid", "key_")
+            .param("host", host).filter("key_", missingKeyList));
+    if (itemGetResult.isFail()) return itemGetResult;
+    ((JsonNode) itemGetResult.getData()).forEach(item -> {
+      itemIdList.add(item.get("itemid").asText());
     });
+    itemGetResult.setData(itemIdList);
 
-    return itemListDeleteByItemId(itemIdList);
+    return itemGetResult;
   }
 
   /**
@@ -868,7 +2211,8 @@ public class ZabbixApi implements ZabbixAPIInterface {
    * @return ZabbixAPIResult.data.itemids is the item array that have been deleted.
    */
   public ZabbixAPIResult itemListDeleteByItemName(String host, ArrayList<String> itemNameList) {
-    ZabbixAPIResult itemGetResult = itemGetByHostNameAndItemName(host, itemNameList);
+    ZabbixAPIResult itemGetResult = itemGet(ZabbixQuery.newQuery().output("itemid", "hostid", "key_")
+            .param("host", host).filter("name", itemNameList));
     if (itemGetResult.isFail()) return itemGetResult;
 
     JsonNode data = (JsonNode) itemGetResult.getData();
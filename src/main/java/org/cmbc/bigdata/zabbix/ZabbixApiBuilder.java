@@ -0,0 +1,362 @@
+package org.cmbc.bigdata.zabbix;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ZabbixApiBuilder {
+  private URI uri;
+
+  private ZabbixTransportConfig transportConfig = new ZabbixTransportConfig();
+
+  private int bulkChunkSize = 1000;
+
+  private int bulkParallelism = 1;
+
+  private int nameCacheMaxSize = 0;
+
+  private long nameCacheTtl = 60000;
+
+  private boolean autoRelogin = true;
+
+  private String apiToken;
+
+  private ZabbixMetrics metrics = ZabbixMetrics.NONE;
+
+  private ZabbixResilienceConfig resilienceConfig;
+
+  private ZabbixConcurrencyLimitConfig concurrencyLimitConfig;
+
+  private boolean singleFlight = false;
+
+  private ZabbixResponseCacheConfig responseCacheConfig;
+
+  private long lookupBatchWindow = 0;
+
+  private int lookupBatchMaxSize = 0;
+
+  private List<URI> endpoints;
+
+  private int ejectAfterFailures = 3;
+
+  private long healthCheckInterval = 5000;
+
+  private ZabbixApiBuilder() {
+
+  }
+
+  static public ZabbixApiBuilder newBuilder() {
+    return new ZabbixApiBuilder();
+  }
+
+  public ZabbixApi build() {
+    if (uri == null) {
+      throw new IllegalStateException("url is required");
+    }
+
+    ZabbixApi zabbixApi = new ZabbixApi(uri, transportConfig);
+    zabbixApi.setBulkChunkSize(bulkChunkSize);
+    zabbixApi.setBulkParallelism(bulkParallelism);
+    zabbixApi.configureNameCache(nameCacheMaxSize, nameCacheTtl);
+    zabbixApi.setAutoRelogin(autoRelogin);
+    zabbixApi.setMetrics(metrics);
+    zabbixApi.configureResilience(resilienceConfig);
+    zabbixApi.configureConcurrencyLimit(concurrencyLimitConfig);
+    zabbixApi.configureLookupBatching(lookupBatchWindow, lookupBatchMaxSize);
+    zabbixApi.configureSingleFlight(singleFlight);
+    zabbixApi.configureResponseCache(responseCacheConfig);
+    if (endpoints != null) {
+      zabbixApi.configureEndpoints(endpoints, ejectAfterFailures, healthCheckInterval);
+    }
+    if (apiToken != null) {
+      zabbixApi.loginWithApiToken(apiToken);
+    }
+
+    return zabbixApi;
+  }
+
+  /**
+   * Build a non-blocking client with the same url and transport settings.
+   *
+   * @return ZabbixAsyncApi, call init() before use
+   */
+  public ZabbixAsyncApi buildAsync() {
+    if (uri == null) {
+      throw new IllegalStateException("url is required");
+    }
+
+    return new ZabbixAsyncApi(uri, transportConfig);
+  }
+
+  public ZabbixApiBuilder url(String url) {
+    try {
+      this.uri = new URI(url.trim());
+    } catch (URISyntaxException e) {
+      throw new RuntimeException("url invalid", e);
+    }
+    return this;
+  }
+
+  public ZabbixApiBuilder uri(URI uri) {
+    this.uri = uri;
+    return this;
+  }
+
+  public ZabbixApiBuilder maxConnections(int maxConnections) {
+    transportConfig.setMaxConnections(maxConnections);
+    return this;
+  }
+
+  public ZabbixApiBuilder maxConnectionsPerRoute(int maxConnectionsPerRoute) {
+    transportConfig.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+    return this;
+  }
+
+  public ZabbixApiBuilder connectTimeout(int connectTimeout) {
+    transportConfig.setConnectTimeout(connectTimeout);
+    return this;
+  }
+
+  public ZabbixApiBuilder socketTimeout(int socketTimeout) {
+    transportConfig.setSocketTimeout(socketTimeout);
+    return this;
+  }
+
+  public ZabbixApiBuilder connectionRequestTimeout(int connectionRequestTimeout) {
+    transportConfig.setConnectionRequestTimeout(connectionRequestTimeout);
+    return this;
+  }
+
+  /**
+   * @param maxIdleTime idle connections older than this are evicted. Zero or negative disables eviction.
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder maxIdleTime(long maxIdleTime) {
+    transportConfig.setMaxIdleTime(maxIdleTime);
+    return this;
+  }
+
+  /**
+   * @param timeToLive total life time of a pooled connection. Zero or negative means no limit.
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder timeToLive(long timeToLive) {
+    transportConfig.setTimeToLive(timeToLive);
+    return this;
+  }
+
+  /**
+   * @param keepAliveTime keep-alive used when the server does not announce one.
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder keepAliveTime(long keepAliveTime) {
+    transportConfig.setKeepAliveTime(keepAliveTime);
+    return this;
+  }
+
+  public ZabbixApiBuilder validateAfterInactivity(int validateAfterInactivity) {
+    transportConfig.setValidateAfterInactivity(validateAfterInactivity);
+    return this;
+  }
+
+  /**
+   * @param responseCompression ask for gzip or deflate responses. Default true.
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder responseCompression(boolean responseCompression) {
+    transportConfig.setResponseCompression(responseCompression);
+    return this;
+  }
+
+  /**
+   * Compress request bodies of at least threshold bytes, e.g. large itemListCreate chunks.
+   * The web server in front of zabbix must inflate them, see ZabbixTransportConfig.requestCompression.
+   *
+   * @param compression Content-Encoding of request bodies, NONE by default
+   * @param threshold   smaller bodies are sent uncompressed
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder requestCompression(ZabbixCompression compression, int threshold) {
+    transportConfig.setRequestCompression(compression);
+    transportConfig.setRequestCompressionThreshold(threshold);
+    return this;
+  }
+
+  /**
+   * @param requestBufferThreshold request bodies smaller than this are sent with a Content-Length, larger ones
+   *                               chunked. Default 64k.
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder requestBufferThreshold(int requestBufferThreshold) {
+    transportConfig.setRequestBufferThreshold(requestBufferThreshold);
+    return this;
+  }
+
+  /**
+   * @param bulkChunkSize max objects per request of bulk create/delete methods. Zero or negative disables chunking.
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder bulkChunkSize(int bulkChunkSize) {
+    this.bulkChunkSize = bulkChunkSize;
+    return this;
+  }
+
+  /**
+   * @param bulkParallelism how many chunks of bulk create/delete methods run at the same time
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder bulkParallelism(int bulkParallelism) {
+    this.bulkParallelism = bulkParallelism;
+    return this;
+  }
+
+  /**
+   * Enable the host group, host and item name to id caches. See ZabbixApi.configureNameCache.
+   *
+   * @param maxSize   max entries of each cache. Zero or negative disables the caches.
+   * @param ttlMillis how long a cached id is trusted
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder nameCache(int maxSize, long ttlMillis) {
+    this.nameCacheMaxSize = maxSize;
+    this.nameCacheTtl = ttlMillis;
+    return this;
+  }
+
+  /**
+   * @param autoRelogin log in again and repeat the call when zabbix rejects the session. Default true.
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder autoRelogin(boolean autoRelogin) {
+    this.autoRelogin = autoRelogin;
+    return this;
+  }
+
+  /**
+   * Authenticate with a static api token instead of login(user, password).
+   *
+   * @param apiToken api token created in the zabbix frontend
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder apiToken(String apiToken) {
+    this.apiToken = apiToken;
+    return this;
+  }
+
+  /**
+   * @param metrics receives timings, sizes and result code of every call, e.g. a DefaultZabbixMetrics
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder metrics(ZabbixMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * Retries, hedging, circuit breaker and deadline of calls. See ZabbixApi.configureResilience.
+   *
+   * @param resilienceConfig resilience settings
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder resilience(ZabbixResilienceConfig resilienceConfig) {
+    this.resilienceConfig = resilienceConfig;
+    return this;
+  }
+
+  /**
+   * Cache responses of read methods. See ZabbixApi.configureResponseCache.
+   *
+   * @param responseCacheConfig cache settings with a ttl per cached method
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder responseCache(ZabbixResponseCacheConfig responseCacheConfig) {
+    this.responseCacheConfig = responseCacheConfig;
+    return this;
+  }
+
+  /**
+   * Share one request between concurrent identical read calls. See ZabbixApi.configureSingleFlight.
+   *
+   * @param singleFlight true to share, false by default
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder singleFlight(boolean singleFlight) {
+    this.singleFlight = singleFlight;
+    return this;
+  }
+
+  /**
+   * Coalesce concurrent single-name lookups into one get. See ZabbixApi.configureLookupBatching.
+   *
+   * @param windowMillis how long a batch collects lookups, e.g. 5
+   * @param maxBatchSize lookups that close a batch at once, e.g. 100
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder lookupBatching(long windowMillis, int maxBatchSize) {
+    this.lookupBatchWindow = windowMillis;
+    this.lookupBatchMaxSize = maxBatchSize;
+    return this;
+  }
+
+  /**
+   * Adaptive limit of requests in flight. See ZabbixApi.configureConcurrencyLimit.
+   *
+   * @param concurrencyLimitConfig limit settings
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder concurrencyLimit(ZabbixConcurrencyLimitConfig concurrencyLimitConfig) {
+    this.concurrencyLimitConfig = concurrencyLimitConfig;
+    return this;
+  }
+
+  /**
+   * Balance calls across several frontends of one zabbix database. Replaces url. See
+   * ZabbixApi.configureEndpoints. buildAsync uses the first url only.
+   *
+   * @param urls api_jsonrpc.php urls of the frontends
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder urls(List<String> urls) {
+    List<URI> endpoints = new ArrayList<>();
+    for (String url : urls) {
+      try {
+        endpoints.add(new URI(url.trim()));
+      } catch (URISyntaxException e) {
+        throw new RuntimeException("url invalid", e);
+      }
+    }
+    return endpoints(endpoints);
+  }
+
+  public ZabbixApiBuilder endpoints(List<URI> endpoints) {
+    if (endpoints.isEmpty()) {
+      throw new IllegalArgumentException("At least one endpoint is required");
+    }
+    this.endpoints = endpoints;
+    this.uri = endpoints.get(0);
+    return this;
+  }
+
+  /**
+   * @param ejectAfterFailures  transport errors in a row that take an endpoint out of rotation, 3 by default
+   * @param healthCheckInterval milliseconds between apiinfo.version probes of every endpoint, 5000 by default
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder endpointHealth(int ejectAfterFailures, long healthCheckInterval) {
+    this.ejectAfterFailures = ejectAfterFailures;
+    this.healthCheckInterval = healthCheckInterval;
+    return this;
+  }
+
+  /**
+   * Replace all transport settings at once.
+   *
+   * @param transportConfig transport settings
+   * @return ZabbixApiBuilder
+   */
+  public ZabbixApiBuilder transportConfig(ZabbixTransportConfig transportConfig) {
+    this.transportConfig = transportConfig;
+    return this;
+  }
+}
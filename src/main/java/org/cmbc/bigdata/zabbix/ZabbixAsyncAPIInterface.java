@@ -0,0 +1,19 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface ZabbixAsyncAPIInterface {
+  void init();
+
+  void destroy();
+
+  CompletableFuture<JsonNode> call(RequestAbstract request);
+
+  CompletableFuture<Boolean> login(String user, String password);
+
+  CompletableFuture<ZabbixAPIResult> callApi(String method);
+
+  CompletableFuture<ZabbixAPIResult> callApi(String method, Object params);
+}
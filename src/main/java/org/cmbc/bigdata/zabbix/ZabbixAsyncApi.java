@@ -0,0 +1,833 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.reactor.IOReactorException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking variant of ZabbixApi. Every method returns at once and completes its future on the io reactor
+ * threads, so a handful of threads can keep many requests in flight. Composite methods chain their steps
+ * with thenCompose instead of blocking between them.
+ * <p>
+ * Dependent stages run on io reactor threads by default. Do not block inside them; use the *Async
+ * variants of CompletableFuture with your own executor for slow work.
+ */
+@Data
+@Slf4j
+public class ZabbixAsyncApi implements ZabbixAsyncAPIInterface {
+  private URI uri;
+  private volatile String auth;
+  private CloseableHttpAsyncClient httpClient;
+  private ZabbixTransportConfig transportConfig = new ZabbixTransportConfig();
+  private ScheduledExecutorService connectionEvictor;
+
+  public ZabbixAsyncApi(String url) {
+    try {
+      uri = new URI(url.trim());
+    } catch (URISyntaxException e) {
+      throw new RuntimeException("url invalid", e);
+    }
+  }
+
+  public ZabbixAsyncApi(URI uri) {
+    this.uri = uri;
+  }
+
+  public ZabbixAsyncApi(URI uri, ZabbixTransportConfig transportConfig) {
+    this(uri);
+    this.transportConfig = transportConfig;
+  }
+
+  public ZabbixAsyncApi(String url, CloseableHttpAsyncClient httpClient) {
+    this(url);
+    this.httpClient = httpClient;
+  }
+
+  public void init() {
+    if (httpClient == null) {
+      httpClient = createHttpClient(transportConfig);
+    }
+    httpClient.start();
+  }
+
+  public void destroy() {
+    if (connectionEvictor != null) {
+      connectionEvictor.shutdownNow();
+      connectionEvictor = null;
+    }
+    if (httpClient != null) {
+      try {
+        httpClient.close();
+      } catch (Exception e) {
+        log.error("close httpclient error!", e);
+      }
+      httpClient = null;
+    }
+  }
+
+  private CloseableHttpAsyncClient createHttpClient(ZabbixTransportConfig config) {
+    IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+            .setConnectTimeout(config.getConnectTimeout())
+            .setSoTimeout(config.getSocketTimeout())
+            .setTcpNoDelay(true)
+            .build();
+    PoolingNHttpClientConnectionManager connectionManager;
+    try {
+      connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig));
+    } catch (IOReactorException e) {
+      throw new RuntimeException("create io reactor error!", e);
+    }
+    connectionManager.setMaxTotal(config.getMaxConnections());
+    connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+
+    // The async client has no built-in evictor, so expired and idle connections are closed here.
+    connectionEvictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "zabbix-async-connection-evictor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    connectionEvictor.scheduleWithFixedDelay(() -> {
+      connectionManager.closeExpiredConnections();
+      if (config.getMaxIdleTime() > 0) {
+        connectionManager.closeIdleConnections(config.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+      }
+    }, 5, 5, TimeUnit.SECONDS);
+
+    RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(config.getConnectTimeout())
+            .setSocketTimeout(config.getSocketTimeout())
+            .setConnectionRequestTimeout(config.getConnectionRequestTimeout())
+            .build();
+
+    return HttpAsyncClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .setKeepAliveStrategy(ZabbixApi.keepAliveStrategy(config.getKeepAliveTime()))
+            .build();
+  }
+
+  public CompletableFuture<Boolean> login(String user, String password) {
+    this.auth = null;
+    return callApi("user.login", ZabbixRpc.loginParams(user, password)).thenApply(zabbixAPIResult -> {
+      String auth = ZabbixRpc.loginAuth(user, zabbixAPIResult);
+      if (auth == null) return false;
+
+      this.auth = auth;
+      return true;
+    });
+  }
+
+  public CompletableFuture<ZabbixAPIResult> callApi(String method) {
+    return callApi(method, Collections.emptyList());
+  }
+
+  public CompletableFuture<ZabbixAPIResult> callApi(String method, Object params) {
+    CompletableFuture<JsonNode> response = call(ZabbixRpc.request(method, params));
+    CompletableFuture<ZabbixAPIResult> result = response.thenApply(data -> {
+      ZabbixAPIResult zabbixAPIResult = ZabbixAPIResult.fromResponse(data);
+      log.debug("Call API. Result is :{}", zabbixAPIResult);
+      return zabbixAPIResult;
+    });
+    // A dependent future does not cancel its source, so pass a cancel through to the http exchange.
+    result.whenComplete((r, e) -> {
+      if (result.isCancelled()) {
+        response.cancel(false);
+      }
+    });
+    return result;
+  }
+
+  public CompletableFuture<JsonNode> call(RequestAbstract request) {
+    ZabbixRpc.authorize(request, this.auth);
+
+    CompletableFuture<JsonNode> future = new CompletableFuture<>();
+    HttpPost httpRequest = new HttpPost(uri);
+    try {
+      // The async client needs the body up front, so it is serialized once into a byte array.
+      httpRequest.setEntity(new NByteArrayEntity(ZabbixJson.mapper.writeValueAsBytes(request),
+              ContentType.APPLICATION_JSON));
+    } catch (IOException e) {
+      future.completeExceptionally(new RuntimeException("DefaultZabbixApi call exception!", e));
+      return future;
+    }
+    log.debug("Call API. Request is :{}", request);
+
+    Future<HttpResponse> exchange = httpClient.execute(httpRequest, new FutureCallback<HttpResponse>() {
+      @Override
+      public void completed(HttpResponse response) {
+        try {
+          future.complete(ZabbixRpc.readResponse(response, null));
+        } catch (IOException e) {
+          future.completeExceptionally(new RuntimeException("DefaultZabbixApi call exception!", e));
+        }
+      }
+
+      @Override
+      public void failed(Exception e) {
+        future.completeExceptionally(new RuntimeException("DefaultZabbixApi call exception!", e));
+      }
+
+      @Override
+      public void cancelled() {
+        future.cancel(false);
+      }
+    });
+    future.whenComplete((r, e) -> {
+      if (future.isCancelled()) {
+        exchange.cancel(true);
+        httpRequest.abort();
+      }
+    });
+
+    return future;
+  }
+
+  /**
+   * Get Zabbix API version. No need to login before that.
+   *
+   * @return future of ZabbixAPIResult, data is the version text
+   */
+  public CompletableFuture<ZabbixAPIResult> apiVersion() {
+    return callApi("apiinfo.version");
+  }
+
+  /**
+   * Create one host group.
+   *
+   * @param groupname host group name
+   * @return future of ZabbixAPIResult, data contains "groupids" field
+   */
+  public CompletableFuture<ZabbixAPIResult> hostgroupCreate(String groupname) {
+    String method = "hostgroup.create";
+    HashMap params = new HashMap();
+    params.put("name", groupname);
+
+    return callApi(method, params);
+  }
+
+  /**
+   * Create multiple host groups.
+   *
+   * @param groupNameList List of host group names
+   * @return future of ZabbixAPIResult, data.groupids is the host group id array created
+   */
+  public CompletableFuture<ZabbixAPIResult> hostgroupListCreate(ArrayList<String> groupNameList) {
+    String method = "hostgroup.create";
+    ArrayList<HashMap<String, String>> params = new ArrayList<>();
+
+    groupNameList.forEach(groupname -> {
+      HashMap<String, String> map = new HashMap();
+      map.put("name", groupname);
+      params.add(map);
+    });
+
+    return callApi(method, params);
+  }
+
+  /**
+   * Get multiple host groups by list of of host group names.
+   *
+   * @param groupNameList List of host group names
+   * @return future of ZabbixAPIResult, data is the host group array found
+   */
+  public CompletableFuture<ZabbixAPIResult> hostgroupListGetByName(ArrayList<String> groupNameList) {
+    String method = "hostgroup.get";
+    HashMap<String, HashMap<String, List<String>>> params = new HashMap();
+    HashMap<String, List<String>> nameMap = new HashMap();
+    nameMap.put("name", groupNameList);
+    params.put("filter", nameMap);
+
+    return callApi(method, params);
+  }
+
+  /**
+   * Get multiple host group ids by list of of host group names.
+   *
+   * @param groupNameList List of host group names
+   * @return future of ZabbixAPIResult, data is the host group id array found
+   */
+  public CompletableFuture<ZabbixAPIResult> hostgroupIdListGetByName(ArrayList<String> groupNameList) {
+    return hostgroupListGetByName(groupNameList).thenApply(hostgroupGetResult -> {
+      if (hostgroupGetResult.isFail()) return hostgroupGetResult;
+
+      hostgroupGetResult.setData(idList((JsonNode) hostgroupGetResult.getData(), "groupid"));
+      return hostgroupGetResult;
+    });
+  }
+
+  /**
+   * Get host group by host group name.
+   *
+   * @param groupname host group name
+   * @return future of ZabbixAPIResult, data is the host group array found
+   */
+  public CompletableFuture<ZabbixAPIResult> hostgroupGetByGroupName(String groupname) {
+    ArrayList<String> groupNameList = new ArrayList<>();
+    groupNameList.add(groupname);
+
+    return hostgroupListGetByName(groupNameList);
+  }
+
+  /**
+   * Get host groups by host names
+   *
+   * @param hostNameList List of host name
+   * @return future of ZabbixAPIResult, data is the host group array found
+   */
+  public CompletableFuture<ZabbixAPIResult> hostgroupGetByHostNameList(ArrayList<String> hostNameList) {
+    return hostListGetByHostName(hostNameList).thenCompose(hostGetResult -> {
+      if (hostGetResult.isFail()) return CompletableFuture.completedFuture(hostGetResult);
+
+      HashMap<String, List<String>> params = new HashMap();
+      params.put("hostids", idList((JsonNode) hostGetResult.getData(), "hostid"));
+
+      String method = "hostgroup.get";
+      return callApi(method, params);
+    });
+  }
+
+  /**
+   * Get host group by host name
+   *
+   * @param host host name
+   * @return future of ZabbixAPIResult, data is the host group array found
+   */
+  public CompletableFuture<ZabbixAPIResult> hostgroupGetByHostName(String host) {
+    ArrayList<String> hostNameList = new ArrayList<>();
+    hostNameList.add(host);
+
+    return hostgroupGetByHostNameList(hostNameList);
+  }
+
+  /**
+   * Check host group whether exists.
+   *
+   * @param groupname host group name
+   * @return future of true if the host group exists, false if not or the search returned an error
+   */
+  public CompletableFuture<Boolean> hostgroupExists(String groupname) {
+    return hostgroupGetByGroupName(groupname).thenApply(ZabbixAsyncApi::hasRows);
+  }
+
+  /**
+   * Delete multiple host groups by group ids
+   *
+   * @param hostGroupIdList List of host group ids
+   * @return future of ZabbixAPIResult, data.groupids returns groupids that have been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> hostgroupListDeleteById(ArrayList<String> hostGroupIdList) {
+    String method = "hostgroup.delete";
+
+    return callApi(method, hostGroupIdList);
+  }
+
+  /**
+   * Delete multiple host groups by group name
+   *
+   * @param groupNameList List of host group names
+   * @return future of ZabbixAPIResult, data.groupids returns groupids that have been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> hostgroupListDeleteByName(ArrayList<String> groupNameList) {
+    return hostgroupIdListGetByName(groupNameList).thenCompose(hostgroupGetResult -> {
+      if (hostgroupGetResult.isFail()) return CompletableFuture.completedFuture(hostgroupGetResult);
+
+      ArrayList<String> hostGroupIdList = (ArrayList<String>) hostgroupGetResult.getData();
+      if (hostGroupIdList.size() > 0) {
+        return hostgroupListDeleteById(hostGroupIdList);
+      }
+      HashMap<String, List<String>> groupids = new HashMap();
+      groupids.put("groupids", hostGroupIdList);
+      return CompletableFuture.completedFuture(ZabbixAPIResult.success(groupids));
+    });
+  }
+
+  /**
+   * Delete one host group by group id
+   *
+   * @param hostGroupId host group id
+   * @return future of ZabbixAPIResult, data.groupids returns groupid that has been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> hostgroupDeleteById(String hostGroupId) {
+    ArrayList<String> hostGroupIdList = new ArrayList<>();
+    hostGroupIdList.add(hostGroupId);
+
+    return hostgroupListDeleteById(hostGroupIdList);
+  }
+
+  /**
+   * Delete one host group by group name
+   *
+   * @param groupname host group name
+   * @return future of ZabbixAPIResult, data.groupids returns groupid that has been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> hostgroupDeleteByName(String groupname) {
+    ArrayList<String> groupNameList = new ArrayList<>();
+    groupNameList.add(groupname);
+
+    return hostgroupListDeleteByName(groupNameList);
+  }
+
+  /**
+   * Create one host
+   *
+   * @param host           host name
+   * @param groupIdList    List of groupId to add the host to
+   * @param hostInterfaces Interfaces to be created for the host
+   * @return future of ZabbixAPIResult, data.hostids is the host id array created
+   */
+  public CompletableFuture<ZabbixAPIResult> hostCreate(String host, ArrayList<String> groupIdList,
+                                                       Object hostInterfaces) {
+    String method = "host.create";
+
+    ArrayList<HashMap> groups = new ArrayList();
+    groupIdList.forEach(groupId -> {
+      HashMap<String, String> group = new HashMap();
+      group.put("groupid", groupId);
+      groups.add(group);
+    });
+
+    HashMap<String, Object> params = new HashMap();
+    params.put("host", host);
+    params.put("groups", groups);
+    params.put("interfaces", hostInterfaces);
+
+    return callApi(method, params);
+  }
+
+  /**
+   * Create multiple hosts.
+   *
+   * @param hostParamList List of host params. Each param should contain host, groups, interfaces.
+   * @return future of ZabbixAPIResult, data.hostids is the host id array created
+   */
+  public CompletableFuture<ZabbixAPIResult> hostListCreate(ArrayList<HashMap> hostParamList) {
+    String method = "host.create";
+
+    return callApi(method, hostParamList);
+  }
+
+  /**
+   * Check host whether exists.
+   *
+   * @param host host name
+   * @return future of true if the host exists, false if not or the search returned an error
+   */
+  public CompletableFuture<Boolean> hostExists(String host) {
+    return hostGetByHostName(host).thenApply(ZabbixAsyncApi::hasRows);
+  }
+
+  /**
+   * Get hosts by host name list.
+   *
+   * @param hostNameList List of host name
+   * @return future of ZabbixAPIResult, data is the host array
+   */
+  public CompletableFuture<ZabbixAPIResult> hostListGetByHostName(ArrayList<String> hostNameList) {
+    String method = "host.get";
+
+    HashMap<String, HashMap<String, List<String>>> params = new HashMap();
+    HashMap<String, List<String>> filter = new HashMap();
+    filter.put("host", hostNameList);
+    params.put("filter", filter);
+
+    return callApi(method, params);
+  }
+
+  /**
+   * Get host by host name.
+   *
+   * @param host host name
+   * @return future of ZabbixAPIResult, data is the host array
+   */
+  public CompletableFuture<ZabbixAPIResult> hostGetByHostName(String host) {
+    ArrayList<String> hostNameList = new ArrayList();
+    hostNameList.add(host);
+
+    return hostListGetByHostName(hostNameList);
+  }
+
+  /**
+   * Get host by group names.
+   *
+   * @param groupNameList List of host group name
+   * @return future of ZabbixAPIResult, data is the host array found
+   */
+  public CompletableFuture<ZabbixAPIResult> hostGetByGroupName(ArrayList<String> groupNameList) {
+    String method = "host.get";
+
+    return hostgroupIdListGetByName(groupNameList).thenCompose(hostgroupGetResult -> {
+      if (hostgroupGetResult.isFail()) return CompletableFuture.completedFuture(hostgroupGetResult);
+      ArrayList<String> groupIdList = (ArrayList<String>) hostgroupGetResult.getData();
+
+      HashMap<String, List<String>> params = new HashMap();
+      if (groupIdList.size() > 0) {
+        params.put("groupids", groupIdList);
+      }
+
+      return callApi(method, params);
+    });
+  }
+
+  /**
+   * Get host by host names and group names.
+   *
+   * @param hostNameList  List of host name.
+   * @param groupNameList List of host group name
+   * @return future of ZabbixAPIResult, data is the host array found
+   */
+  public CompletableFuture<ZabbixAPIResult> hostGetByHostNameAndGroupName(ArrayList<String> hostNameList,
+                                                                         ArrayList<String> groupNameList) {
+    String method = "host.get";
+
+    return hostgroupIdListGetByName(groupNameList).thenCompose(hostgroupGetResult -> {
+      if (hostgroupGetResult.isFail()) return CompletableFuture.completedFuture(hostgroupGetResult);
+
+      ArrayList<String> groupIdList = (ArrayList<String>) hostgroupGetResult.getData();
+      HashMap<String, Object> params = new HashMap();
+      if (groupIdList.size() > 0) {
+        params.put("groupids", groupIdList);
+      }
+
+      HashMap<String, List<String>> filter = new HashMap();
+      filter.put("host", hostNameList);
+      params.put("filter", filter);
+
+      return callApi(method, params);
+    });
+  }
+
+  /**
+   * Delete multiple hosts by host ids.
+   *
+   * @param hostIdList List of host id
+   * @return future of ZabbixAPIResult, data.hostids is host id array that have been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> hostListDeleteById(ArrayList<String> hostIdList) {
+    String method = "host.delete";
+
+    return callApi(method, hostIdList);
+  }
+
+  /**
+   * Delete host by host id
+   *
+   * @param hostId host id
+   * @return future of ZabbixAPIResult, data.hostids is host id array that have been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> hostDeleteById(String hostId) {
+    ArrayList<String> hostIdList = new ArrayList<>();
+    hostIdList.add(hostId);
+
+    return hostListDeleteById(hostIdList);
+  }
+
+  /**
+   * Delete hosts by host names.
+   *
+   * @param hostNameList List of host name
+   * @return future of ZabbixAPIResult, data.hostids is host id array that have been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> hostListDeleteByName(ArrayList<String> hostNameList) {
+    return hostListGetByHostName(hostNameList).thenCompose(hostListGetResult -> {
+      if (hostListGetResult.isFail()) return CompletableFuture.completedFuture(hostListGetResult);
+
+      ArrayList<String> hostIdList = idList((JsonNode) hostListGetResult.getData(), "hostid");
+      if (hostIdList.size() > 0) {
+        return hostListDeleteById(hostIdList);
+      }
+      HashMap<String, List<String>> hostids = new HashMap();
+      hostids.put("hostids", hostIdList);
+      return CompletableFuture.completedFuture(ZabbixAPIResult.success(hostids));
+    });
+  }
+
+  /**
+   * Delete host by host name.
+   *
+   * @param host host name
+   * @return future of ZabbixAPIResult, data.hostids is host id array that have been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> hostDeleteByName(String host) {
+    ArrayList<String> hostNameList = new ArrayList<>();
+    hostNameList.add(host);
+
+    return hostListDeleteByName(hostNameList);
+  }
+
+  /**
+   * Create host interface. See ZabbixApi.hostInterfaceCreate for the meaning of each property.
+   *
+   * @return future of ZabbixAPIResult, data.interfaceids is the interface id array
+   */
+  public CompletableFuture<ZabbixAPIResult> hostInterfaceCreate(String dns, String hostid, String ip, String main,
+                                                                String port, String type, String useip,
+                                                                String bulk) {
+    String method = "hostinterface.create";
+
+    HashMap<String, String> param = new HashMap();
+    param.put("dns", dns);
+    param.put("hostid", hostid);
+    param.put("ip", ip);
+    param.put("main", main);
+    param.put("port", port);
+    param.put("type", type);
+    param.put("useip", useip);
+    param.put("bulk", bulk);
+
+    return callApi(method, param);
+  }
+
+  /**
+   * Create multiple host interfaces.
+   *
+   * @param hostInterfaceList List of host interface params
+   * @return future of ZabbixAPIResult, data.interfaceids is the interface id array
+   */
+  public CompletableFuture<ZabbixAPIResult> hostInterfaceListCreate(ArrayList<HashMap> hostInterfaceList) {
+    String method = "hostinterface.create";
+    String[] requiredProperties = {"dns", "hostid", "ip", "main", "port", "type", "useip"};
+    ZabbixAPIResult invalidResult = ZabbixAPIResult.checkRequiredProperties(hostInterfaceList, requiredProperties);
+    if (invalidResult != null) return CompletableFuture.completedFuture(invalidResult);
+
+    return callApi(method, hostInterfaceList);
+  }
+
+  /**
+   * Get host interface by host ids.
+   *
+   * @param hostIdList List of host id
+   * @return future of ZabbixAPIResult, data is host interface array found
+   */
+  public CompletableFuture<ZabbixAPIResult> hostInterfaceGetByHostIds(ArrayList<String> hostIdList) {
+    String method = "hostinterface.get";
+
+    HashMap<String, List<String>> param = new HashMap();
+    param.put("hostids", hostIdList);
+
+    return callApi(method, param);
+  }
+
+  /**
+   * Get host interfaces by host names.
+   *
+   * @param hostNameList List of host name
+   * @return future of ZabbixAPIResult, data is host interface array found
+   */
+  public CompletableFuture<ZabbixAPIResult> hostInterfaceGetByHostNames(ArrayList<String> hostNameList) {
+    return hostListGetByHostName(hostNameList).thenCompose(hostGetResult -> {
+      if (hostGetResult.isFail()) return CompletableFuture.completedFuture(hostGetResult);
+
+      return hostInterfaceGetByHostIds(idList((JsonNode) hostGetResult.getData(), "hostid"));
+    });
+  }
+
+  /**
+   * Delete multiple host interfaces by host interface ids
+   *
+   * @param hostInterfaceIdList List of host interface ids
+   * @return future of ZabbixAPIResult, data.interfaceids returns interfaceids that have been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> hostInterfaceListDeleteById(ArrayList<String> hostInterfaceIdList) {
+    String method = "hostinterface.delete";
+
+    return callApi(method, hostInterfaceIdList);
+  }
+
+  /**
+   * Create item.
+   *
+   * @param param item parameter.
+   *              It should contain the required properties:delay,hostid,interfaceid,key_,name,type,value_type.
+   * @return future of ZabbixAPIResult, data contains "itemids" field
+   */
+  public CompletableFuture<ZabbixAPIResult> itemCreate(HashMap<String, Object> param) {
+    ArrayList<HashMap<String, Object>> params = new ArrayList<>();
+
+    params.add(param);
+
+    return itemListCreate(params);
+  }
+
+  /**
+   * Create multiple items.
+   *
+   * @param params List of item parameter.
+   *               Each parameter should contain the required properties:delay,hostid,interfaceid,key_,name,type,value_type.
+   * @return future of ZabbixAPIResult, data contains "itemids"
+   */
+  public CompletableFuture<ZabbixAPIResult> itemListCreate(ArrayList<HashMap<String, Object>> params) {
+    String method = "item.create";
+
+    String[] requiredProperties = {"delay", "hostid", "interfaceid", "key_", "name", "type", "value_type"};
+    ZabbixAPIResult invalidResult = ZabbixAPIResult.checkRequiredProperties(params, requiredProperties);
+    if (invalidResult != null) return CompletableFuture.completedFuture(invalidResult);
+
+    return callApi(method, params);
+  }
+
+  /**
+   * Check whether item exists by host name and item key.
+   *
+   * @param hostname host name
+   * @param itemKey  item key_
+   * @return future of true if the item exists
+   */
+  public CompletableFuture<Boolean> itemExistsByItemKey(String hostname, String itemKey) {
+    ArrayList<String> itemKeyList = new ArrayList();
+
+    itemKeyList.add(itemKey);
+
+    return itemGetByHostNameAndItemKey(hostname, itemKeyList).thenApply(ZabbixAsyncApi::hasRows);
+  }
+
+  /**
+   * Check whether item exists by host name and item name.
+   *
+   * @param host     host name
+   * @param itemName item name
+   * @return future of true if the item exists
+   */
+  public CompletableFuture<Boolean> itemExistsByItemName(String host, String itemName) {
+    ArrayList<String> itemNameList = new ArrayList();
+
+    itemNameList.add(itemName);
+
+    return itemGetByHostNameAndItemName(host, itemNameList).thenApply(ZabbixAsyncApi::hasRows);
+  }
+
+  /**
+   * Get item by param and search info.
+   *
+   * @param param  It can include itemids, groupids, hostids, interfaceids, host, group, etc
+   * @param filter It can include key_, name, etc.
+   * @return future of ZabbixAPIResult, data is the item array found
+   */
+  public CompletableFuture<ZabbixAPIResult> itemGet(HashMap<String, Object> param, HashMap<String, Object> filter) {
+    String method = "item.get";
+    param.put("filter", filter);
+
+    return callApi(method, param);
+  }
+
+  /**
+   * Get item by host and item key.
+   *
+   * @param host        host name
+   * @param itemKeyList List of item key_
+   * @return future of ZabbixAPIResult, data is the item array found
+   */
+  public CompletableFuture<ZabbixAPIResult> itemGetByHostNameAndItemKey(String host, ArrayList<String> itemKeyList) {
+    HashMap<String, Object> param = new HashMap();
+    HashMap<String, Object> filter = new HashMap();
+
+    param.put("host", host);
+    filter.put("key_", itemKeyList);
+
+    return itemGet(param, filter);
+  }
+
+  /**
+   * Get item by host and item name.
+   *
+   * @param host         host name
+   * @param itemNameList List of item name
+   * @return future of ZabbixAPIResult, data is the item array found
+   */
+  public CompletableFuture<ZabbixAPIResult> itemGetByHostNameAndItemName(String host, ArrayList<String> itemNameList) {
+    HashMap<String, Object> param = new HashMap();
+    HashMap<String, Object> filter = new HashMap();
+
+    param.put("host", host);
+    filter.put("name", itemNameList);
+
+    return itemGet(param, filter);
+  }
+
+  /**
+   * Delete multiple item by item ids.
+   *
+   * @param itemIdList List of item id.
+   * @return future of ZabbixAPIResult, data.itemids is the item array that have been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> itemListDeleteByItemId(ArrayList<String> itemIdList) {
+    String method = "item.delete";
+
+    return callApi(method, itemIdList);
+  }
+
+  /**
+   * Delete item by item id.
+   *
+   * @param itemId item id.
+   * @return future of ZabbixAPIResult, data.itemids is the item array that have been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> itemDeleteByItemId(String itemId) {
+    ArrayList<String> itemIdList = new ArrayList();
+
+    itemIdList.add(itemId);
+
+    return itemListDeleteByItemId(itemIdList);
+  }
+
+  /**
+   * Delete items by item key
+   *
+   * @param host        host name
+   * @param itemKeyList List of item key
+   * @return future of ZabbixAPIResult, data.itemids is the item array that have been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> itemListDeleteByItemKey(String host, ArrayList<String> itemKeyList) {
+    return itemGetByHostNameAndItemKey(host, itemKeyList).thenCompose(itemGetResult -> {
+      if (itemGetResult.isFail()) return CompletableFuture.completedFuture(itemGetResult);
+
+      return itemListDeleteByItemId(idList((JsonNode) itemGetResult.getData(), "itemid"));
+    });
+  }
+
+  /**
+   * Delete items by item name
+   *
+   * @param host         host name
+   * @param itemNameList List of item name
+   * @return future of ZabbixAPIResult, data.itemids is the item array that have been deleted
+   */
+  public CompletableFuture<ZabbixAPIResult> itemListDeleteByItemName(String host, ArrayList<String> itemNameList) {
+    return itemGetByHostNameAndItemName(host, itemNameList).thenCompose(itemGetResult -> {
+      if (itemGetResult.isFail()) return CompletableFuture.completedFuture(itemGetResult);
+
+      return itemListDeleteByItemId(idList((JsonNode) itemGetResult.getData(), "itemid"));
+    });
+  }
+
+  private static ArrayList<String> idList(JsonNode rows, String idField) {
+    ArrayList<String> idList = new ArrayList<>();
+    rows.forEach(row -> idList.add(row.get(idField).asText()));
+    return idList;
+  }
+
+  private static boolean hasRows(ZabbixAPIResult zabbixAPIResult) {
+    return !zabbixAPIResult.isFail() && ((JsonNode) zabbixAPIResult.getData()).size() > 0;
+  }
+}
@@ -0,0 +1,50 @@
+package org.cmbc.bigdata.zabbix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects independent api calls and sends them as one JSON-RPC batch.
+ * <pre>
+ * ZabbixBatch batch = zabbixApi.batch();
+ * int hosts = batch.add("host.get", hostParams);
+ * int groups = batch.add("hostgroup.get", groupParams);
+ * List&lt;ZabbixAPIResult&gt; results = batch.execute();
+ * results.get(hosts) ...
+ * </pre>
+ * Calls in one batch must not depend on each other: zabbix may run them in any order.
+ */
+public class ZabbixBatch {
+  private final ZabbixApi zabbixApi;
+  private final List<RequestAbstract> requests = new ArrayList<>();
+
+  ZabbixBatch(ZabbixApi zabbixApi) {
+    this.zabbixApi = zabbixApi;
+  }
+
+  /**
+   * @param method zabbix api method
+   * @param params api params
+   * @return index of this call's result in the list returned by execute()
+   */
+  public int add(String method, Object params) {
+    requests.add(RequestBuilder.newBuilder().initRequest(params).method(method).build());
+    return requests.size() - 1;
+  }
+
+  public int add(RequestAbstract request) {
+    requests.add(request);
+    return requests.size() - 1;
+  }
+
+  public int size() {
+    return requests.size();
+  }
+
+  /**
+   * @return one ZabbixAPIResult per added call, in the order they were added
+   */
+  public List<ZabbixAPIResult> execute() {
+    return zabbixApi.callBatch(requests);
+  }
+}
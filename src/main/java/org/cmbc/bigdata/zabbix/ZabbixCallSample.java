@@ -0,0 +1,43 @@
+package org.cmbc.bigdata.zabbix;
+
+import lombok.Data;
+
+/**
+ * Timings and sizes of one api call.
+ * <p>
+ * The request body is streamed to the socket and the response is parsed while it is read, so the phases
+ * overlap with the transfer: serializeNanos includes writing the body, parseNanos includes reading it,
+ * networkNanos is the rest, i.e. connection lease, headers and waiting for zabbix.
+ */
+@Data
+public class ZabbixCallSample {
+  private String method;
+  /**
+   * ZabbixAPIResult code, or CALL_EXCEPTION if the call threw before a response was parsed.
+   */
+  private int code = ZabbixAPIResultCode.CALL_EXCEPTION.code();
+  private long serializeNanos;
+  private long networkNanos;
+  private long parseNanos;
+  /**
+   * JSON sizes, before request compression and after response decompression.
+   */
+  private long requestBytes;
+  private long responseBytes;
+  /**
+   * Request body size as sent, equal to requestBytes unless the request was compressed.
+   */
+  private long requestWireBytes;
+
+  public ZabbixCallSample(String method) {
+    this.method = method;
+  }
+
+  public long getTotalNanos() {
+    return serializeNanos + networkNanos + parseNanos;
+  }
+
+  public boolean isFail() {
+    return code != ZabbixAPIResultCode.SUCCESS.code();
+  }
+}
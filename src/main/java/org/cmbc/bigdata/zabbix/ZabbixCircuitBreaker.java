@@ -0,0 +1,74 @@
+package org.cmbc.bigdata.zabbix;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens after failureThreshold consecutive failed calls. Once openMillis have passed a single trial call is let
+ * through: its success closes the circuit, its failure opens it again.
+ */
+public class ZabbixCircuitBreaker {
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openNanos;
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private final AtomicBoolean trialInFlight = new AtomicBoolean();
+  private volatile long openedAt;
+  private volatile boolean open;
+
+  /**
+   * @param failureThreshold consecutive failures that open the circuit, zero or negative never opens it
+   * @param openMillis       how long the circuit stays open before a trial call
+   */
+  public ZabbixCircuitBreaker(int failureThreshold, long openMillis) {
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openMillis * 1000000;
+  }
+
+  /**
+   * @return true if a call may be sent. After true, onSuccess or onFailure must follow.
+   */
+  public boolean allowRequest() {
+    if (!open) return true;
+    if (System.nanoTime() - openedAt < openNanos) return false;
+    return trialInFlight.compareAndSet(false, true);
+  }
+
+  public void onSuccess() {
+    consecutiveFailures.set(0);
+    if (open) {
+      open = false;
+      trialInFlight.set(false);
+    }
+  }
+
+  public void onFailure() {
+    if (failureThreshold <= 0) return;
+    if (consecutiveFailures.incrementAndGet() >= failureThreshold || open) {
+      openedAt = System.nanoTime();
+      open = true;
+      trialInFlight.set(false);
+    }
+  }
+
+  /**
+   * The call ended without telling whether the server is healthy, e.g. on a bug of the caller.
+   */
+  public void onIgnored() {
+    trialInFlight.set(false);
+  }
+
+  public State getState() {
+    if (!open) return State.CLOSED;
+    return System.nanoTime() - openedAt < openNanos ? State.OPEN : State.HALF_OPEN;
+  }
+
+  public int getConsecutiveFailures() {
+    return consecutiveFailures.get();
+  }
+}
@@ -0,0 +1,59 @@
+package org.cmbc.bigdata.zabbix;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-Encoding of request bodies sent by ZabbixApi.
+ * NONE - plain JSON;
+ * GZIP - gzip;
+ * DEFLATE - zlib wrapped deflate, which is what http calls deflate.
+ */
+public enum ZabbixCompression {
+  NONE(null),
+  GZIP("gzip"),
+  DEFLATE("deflate");
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private String contentEncoding;
+
+  ZabbixCompression(String contentEncoding) {
+    this.contentEncoding = contentEncoding;
+  }
+
+  /**
+   * @return value of the Content-Encoding header, null for NONE
+   */
+  public String contentEncoding() {
+    return this.contentEncoding;
+  }
+
+  /**
+   * Compress what is written to the returned stream into out. Closing it finishes the compressed stream and
+   * closes out.
+   */
+  OutputStream wrap(OutputStream out) throws IOException {
+    switch (this) {
+      case GZIP:
+        return new GZIPOutputStream(out, BUFFER_SIZE);
+      case DEFLATE:
+        return new DeflaterOutputStream(out, new Deflater(), BUFFER_SIZE, false) {
+          @Override
+          public void close() throws IOException {
+            // The deflater is not the default one of the stream, so close() would not release it.
+            try {
+              super.close();
+            } finally {
+              def.end();
+            }
+          }
+        };
+      default:
+        return out;
+    }
+  }
+}
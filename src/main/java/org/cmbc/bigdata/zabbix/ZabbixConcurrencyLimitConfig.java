@@ -0,0 +1,36 @@
+package org.cmbc.bigdata.zabbix;
+
+import lombok.Data;
+
+/**
+ * Settings of the adaptive concurrency limit of ZabbixApi. See ZabbixConcurrencyLimiter.
+ * All durations are in milliseconds.
+ */
+@Data
+public class ZabbixConcurrencyLimitConfig {
+  /**
+   * Requests in flight allowed before the first latency samples. Keep it low: the no-load latency is only seen
+   * while the frontend is not queueing, and the limit grows to the knee quickly.
+   */
+  private int initialLimit = 4;
+
+  private int minLimit = 1;
+
+  private int maxLimit = 200;
+
+  /**
+   * A request taking longer than this multiple of the no-load latency of its method and payload size means the
+   * frontend is queueing work, and the limit is cut. Raise it when the cost of calls varies a lot at equal size.
+   */
+  private double latencyTolerance = 2.0;
+
+  /**
+   * The limit is multiplied by this on overload or a transport error.
+   */
+  private double backoffRatio = 0.9;
+
+  /**
+   * How long a call waits for a free slot before it fails.
+   */
+  private long maxQueueWait = 1000;
+}
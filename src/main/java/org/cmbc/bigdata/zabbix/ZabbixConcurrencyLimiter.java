@@ -0,0 +1,219 @@
+package org.cmbc.bigdata.zabbix;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD limit of the requests ZabbixApi has in flight, so parallel callers cannot pile more work on the
+ * frontend than its PHP workers can take.
+ * <p>
+ * Each method keeps a no-load latency per payload size class, the lowest one of its last one or two windows
+ * of BASELINE_WINDOW samples, so it follows a frontend that got slower for good. Some requests of a window
+ * find an idle PHP worker as long as the limit is near the knee. While requests finish within
+ * latencyTolerance times that, and the limit is in use, the limit grows by one per limit requests. A slower
+ * request or a transport error multiplies it by backoffRatio, at most once per round trip: requests sent
+ * before the last cut do not cut it again. Calls over the limit wait up to maxQueueWait for a slot.
+ * <p>
+ * The payload is the larger of the request and the response JSON. Payloads below SMALL_PAYLOAD share one
+ * class, larger ones get one class per power of two, so a chunk of bulk creates or a large host.get is only
+ * compared with calls of about its size. Latency that does not follow the payload size is still taken for
+ * overload, e.g. an item.delete of many ids or a get with a selective filter over many objects. Keep such
+ * calls out of mixed workloads, or raise latencyTolerance.
+ */
+@Slf4j
+public class ZabbixConcurrencyLimiter {
+  /**
+   * Samples of a method after which its no-load latency is measured afresh.
+   */
+  private static final int BASELINE_WINDOW = 500;
+  /**
+   * Payloads up to this many bytes cost about the same, whatever their size.
+   */
+  private static final long SMALL_PAYLOAD = 16384;
+
+  private final ZabbixConcurrencyLimitConfig config;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition slotFreed = lock.newCondition();
+  private final Map<String, Baseline> baselines = new HashMap<>();
+  private final LongAdder rejectedCount = new LongAdder();
+  private double limit;
+  private int inFlight;
+  private int queued;
+  private long lastCutAt = System.nanoTime();
+
+  ZabbixConcurrencyLimiter(ZabbixConcurrencyLimitConfig config) {
+    this.config = config;
+    this.limit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), config.getInitialLimit()));
+  }
+
+  /**
+   * Wait for a slot. Every acquire that returns must be followed by a release.
+   *
+   * @throws RuntimeException caused by LimitExceededException after maxQueueWait, or by InterruptedIOException
+   */
+  void acquire() {
+    lock.lock();
+    try {
+      if (inFlight < (int) limit) {
+        inFlight++;
+        return;
+      }
+      queued++;
+      try {
+        long waitNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxQueueWait());
+        while (inFlight >= (int) limit) {
+          if (waitNanos <= 0) {
+            rejectedCount.increment();
+            throw new RuntimeException("DefaultZabbixApi call exception!", new LimitExceededException(
+                    "No slot within " + config.getMaxQueueWait() + " ms, limit " + (int) limit));
+          }
+          waitNanos = slotFreed.awaitNanos(waitNanos);
+        }
+        inFlight++;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("DefaultZabbixApi call exception!", new InterruptedIOException("Interrupted"));
+      } finally {
+        queued--;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param method         zabbix api method, latency is only compared between calls of one method
+   * @param payloadBytes   larger of the request and response JSON sizes, latency is only compared between
+   *                       payloads of one size class
+   * @param startNanos     System.nanoTime() when the request was sent
+   * @param latencyNanos   time until the response was read
+   * @param transportError true if no response could be read
+   */
+  void release(String method, long payloadBytes, long startNanos, long latencyNanos, boolean transportError) {
+    lock.lock();
+    try {
+      boolean limitInUse = inFlight * 2 >= limit;
+      inFlight--;
+      boolean overload = transportError;
+      if (!transportError) {
+        String key = method + '#' + sizeClass(payloadBytes);
+        overload = latencyNanos > baselines.computeIfAbsent(key, k -> new Baseline()).update(latencyNanos)
+                * config.getLatencyTolerance();
+      }
+
+      if (overload) {
+        if (startNanos - lastCutAt >= 0) {
+          limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+          lastCutAt = System.nanoTime();
+          log.debug("Concurrency limit cut to {}", (int) limit);
+        }
+      } else if (limitInUse) {
+        limit = Math.min(config.getMaxLimit(), limit + 1 / limit);
+      }
+      slotFreed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return 0 for small payloads, else one more per doubling of the size
+   */
+  static int sizeClass(long payloadBytes) {
+    return payloadBytes <= SMALL_PAYLOAD ? 0 : 64 - Long.numberOfLeadingZeros((payloadBytes - 1) / SMALL_PAYLOAD);
+  }
+
+  /**
+   * Release a request that was aborted on purpose, e.g. the losing request of a hedge, without a sample.
+   */
+  void cancel() {
+    lock.lock();
+    try {
+      inFlight--;
+      slotFreed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return requests allowed in flight now
+   */
+  public int getLimit() {
+    lock.lock();
+    try {
+      return (int) limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return calls waiting for a slot
+   */
+  public int getQueueDepth() {
+    lock.lock();
+    try {
+      return queued;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return calls that found no slot within maxQueueWait
+   */
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  /**
+   * Lowest latency of the current and the previous window.
+   */
+  private static class Baseline {
+    private long currentMin = Long.MAX_VALUE;
+    private long previousMin = Long.MAX_VALUE;
+    private int samples;
+
+    /**
+     * @return the no-load latency, latencyNanos included
+     */
+    long update(long latencyNanos) {
+      if (samples++ == BASELINE_WINDOW) {
+        previousMin = currentMin;
+        currentMin = Long.MAX_VALUE;
+        samples = 1;
+      }
+      currentMin = Math.min(currentMin, latencyNanos);
+      return Math.min(currentMin, previousMin);
+    }
+  }
+
+  /**
+   * Cause of the exception thrown when a call waited maxQueueWait without getting a slot. The frontend
+   * never saw the call, so it is neither retried nor counted by the circuit breaker.
+   */
+  public static class LimitExceededException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    LimitExceededException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package org.cmbc.bigdata.zabbix;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Several zabbix frontends in front of one database. Calls go to the healthy endpoint with the fewest
+ * requests in flight, so a slow frontend gets less work and every frontend adds throughput.
+ * <p>
+ * An endpoint is ejected after ejectAfterFailures transport errors in a row and admitted again by the
+ * first call that succeeds on it, usually the apiinfo.version health check of ZabbixApi. When every
+ * endpoint is ejected, calls still go to the least busy one rather than failing without a try.
+ */
+@Slf4j
+public class ZabbixEndpoints {
+  private final List<Endpoint> endpoints;
+  private final Map<URI, Endpoint> endpointsByUri = new HashMap<>();
+  private final int ejectAfterFailures;
+
+  /**
+   * @param uris               api_jsonrpc.php urls of the frontends
+   * @param ejectAfterFailures transport errors in a row that eject an endpoint
+   */
+  ZabbixEndpoints(List<URI> uris, int ejectAfterFailures) {
+    if (uris.isEmpty()) {
+      throw new IllegalArgumentException("At least one endpoint is required");
+    }
+    List<Endpoint> endpoints = new ArrayList<>();
+    for (URI uri : uris) {
+      Endpoint endpoint = new Endpoint(uri);
+      endpoints.add(endpoint);
+      endpointsByUri.put(uri, endpoint);
+    }
+    this.endpoints = Collections.unmodifiableList(endpoints);
+    this.ejectAfterFailures = Math.max(1, ejectAfterFailures);
+  }
+
+  /**
+   * Pick the endpoint of the next request and count the request as outstanding on it.
+   * Every choose must be followed by a release with the same uri.
+   */
+  URI choose() {
+    // Start at a random endpoint, so ties do not all go to the first one.
+    int size = endpoints.size();
+    int start = size == 1 ? 0 : ThreadLocalRandom.current().nextInt(size);
+    Endpoint best = null;
+    for (int i = 0; i < size; i++) {
+      Endpoint endpoint = endpoints.get((start + i) % size);
+      if (best == null || better(endpoint, best)) best = endpoint;
+    }
+    best.outstanding.incrementAndGet();
+    return best.uri;
+  }
+
+  private static boolean better(Endpoint endpoint, Endpoint than) {
+    if (endpoint.healthy != than.healthy) return endpoint.healthy;
+    return endpoint.outstanding.get() < than.outstanding.get();
+  }
+
+  /**
+   * Count a request as outstanding on uri, for requests sent to a given endpoint such as health checks.
+   */
+  void acquire(URI uri) {
+    Endpoint endpoint = endpointsByUri.get(uri);
+    if (endpoint != null) endpoint.outstanding.incrementAndGet();
+  }
+
+  /**
+   * @param transportError true if no response could be read, errors returned by zabbix do not count
+   */
+  void release(URI uri, boolean transportError) {
+    Endpoint endpoint = endpointsByUri.get(uri);
+    if (endpoint == null) return;
+
+    endpoint.outstanding.decrementAndGet();
+    endpoint.requestCount.increment();
+    if (!transportError) {
+      endpoint.consecutiveFailures.set(0);
+      if (!endpoint.healthy) {
+        endpoint.healthy = true;
+        log.info("Zabbix endpoint {} admitted again", uri);
+      }
+      return;
+    }
+    endpoint.failureCount.increment();
+    if (endpoint.consecutiveFailures.incrementAndGet() >= ejectAfterFailures && endpoint.healthy) {
+      endpoint.healthy = false;
+      log.warn("Zabbix endpoint {} ejected after {} failures in a row", uri, ejectAfterFailures);
+    }
+  }
+
+  /**
+   * Release a request that was aborted on purpose, e.g. the losing request of a hedge, which says nothing
+   * about the health of the endpoint.
+   */
+  void abandon(URI uri) {
+    Endpoint endpoint = endpointsByUri.get(uri);
+    if (endpoint != null) endpoint.outstanding.decrementAndGet();
+  }
+
+  public List<Endpoint> getEndpoints() {
+    return endpoints;
+  }
+
+  public static class Endpoint {
+    private final URI uri;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private volatile boolean healthy = true;
+
+    Endpoint(URI uri) {
+      this.uri = uri;
+    }
+
+    public URI getUri() {
+      return uri;
+    }
+
+    /**
+     * @return requests sent and not finished yet
+     */
+    public int getOutstanding() {
+      return outstanding.get();
+    }
+
+    public long getRequestCount() {
+      return requestCount.sum();
+    }
+
+    public long getFailureCount() {
+      return failureCount.sum();
+    }
+
+    public boolean isHealthy() {
+      return healthy;
+    }
+
+    @Override
+    public String toString() {
+      return uri + (healthy ? "" : " (ejected)") + ", outstanding=" + getOutstanding() + ", requests="
+              + getRequestCount() + ", failures=" + getFailureCount();
+    }
+  }
+}
@@ -0,0 +1,269 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Reads history.get and trend.get of many numeric items over a long time range into primitive arrays.
+ * The range is split into time slices and the items into chunks. Each slice of a chunk is one call, and
+ * the calls run on parallelism threads. Rows are decoded while the response is read and go straight
+ * into the arrays, no JSON tree or boxed value is kept.
+ * <pre>
+ * ZabbixAPIResult result = zabbixApi.historyReader().sliceSeconds(86400).parallelism(4)
+ *         .history(items, timeFrom, timeTill);
+ * Map&lt;Long, ZabbixTimeSeries&gt; series = (Map&lt;Long, ZabbixTimeSeries&gt;) result.getData();
+ * </pre>
+ * Keep parallelism below maxConnectionsPerRoute of the transport.
+ */
+public class ZabbixHistoryReader {
+  private final ZabbixApi zabbixApi;
+  private long sliceSeconds = 86400;
+  private int itemsPerCall = 100;
+  private int parallelism = 4;
+
+  ZabbixHistoryReader(ZabbixApi zabbixApi) {
+    this.zabbixApi = zabbixApi;
+  }
+
+  /**
+   * @param sliceSeconds length of the time range of one call, one day by default
+   * @return ZabbixHistoryReader
+   */
+  public ZabbixHistoryReader sliceSeconds(long sliceSeconds) {
+    this.sliceSeconds = sliceSeconds;
+    return this;
+  }
+
+  /**
+   * @param itemsPerCall itemids sent with one call, 100 by default
+   * @return ZabbixHistoryReader
+   */
+  public ZabbixHistoryReader itemsPerCall(int itemsPerCall) {
+    this.itemsPerCall = itemsPerCall;
+    return this;
+  }
+
+  /**
+   * @param parallelism calls running at the same time, 4 by default
+   * @return ZabbixHistoryReader
+   */
+  public ZabbixHistoryReader parallelism(int parallelism) {
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Read the history of items, which need itemid and valueType. history.get only returns one value type
+   * per call, so items are grouped by it.
+   *
+   * @param timeFrom first second, inclusive
+   * @param timeTill last second, inclusive
+   * @return ZabbixAPIResult.data is a Map of itemid to ZabbixTimeSeries, with an empty series for items
+   * without values. If error happened, refer to code, message, data for information.
+   */
+  public ZabbixAPIResult history(Collection<Item> items, long timeFrom, long timeTill) {
+    Map<ZabbixItemValueType, List<Long>> itemIdsByType = new LinkedHashMap<>();
+    for (Item item : items) {
+      if (item.getValueType() != ZabbixItemValueType.NUMERIC_FLOAT
+              && item.getValueType() != ZabbixItemValueType.NUMERIC_UNSIGNED) {
+        throw new IllegalArgumentException("Item " + item.getItemid() + " is not numeric: " + item.getValueType());
+      }
+      itemIdsByType.computeIfAbsent(item.getValueType(), type -> new ArrayList<>()).add(item.getItemid());
+    }
+
+    List<Call<ZabbixTimeSeries.Buffer>> calls = new ArrayList<>();
+    for (List<Long> slice : slices(timeFrom, timeTill)) {
+      for (Map.Entry<ZabbixItemValueType, List<Long>> type : itemIdsByType.entrySet()) {
+        for (List<Long> chunk : chunks(type.getValue())) {
+          calls.add(historyCall(type.getKey(), chunk, slice.get(0), slice.get(1)));
+        }
+      }
+    }
+
+    Map<Long, List<ZabbixTimeSeries.Buffer>> buffers = new HashMap<>();
+    ZabbixAPIResult result = execute(calls, buffers);
+    if (result.isFail()) return result;
+
+    HashMap<Long, ZabbixTimeSeries> series = new HashMap<>();
+    for (Map.Entry<ZabbixItemValueType, List<Long>> type : itemIdsByType.entrySet()) {
+      for (Long itemid : type.getValue()) {
+        series.put(itemid, ZabbixTimeSeries.concat(itemid, type.getKey(),
+                buffers.getOrDefault(itemid, new ArrayList<>())));
+      }
+    }
+    return ZabbixAPIResult.success(series);
+  }
+
+  /**
+   * Same as history(items, timeFrom, timeTill) for items of one value type.
+   */
+  public ZabbixAPIResult history(ZabbixItemValueType valueType, Collection<Long> itemids, long timeFrom,
+                                 long timeTill) {
+    List<Item> items = new ArrayList<>();
+    for (Long itemid : itemids) {
+      Item item = new Item();
+      item.setItemid(itemid);
+      item.setValueType(valueType);
+      items.add(item);
+    }
+    return history(items, timeFrom, timeTill);
+  }
+
+  /**
+   * Read the hourly trends of numeric items.
+   *
+   * @param timeFrom first second, inclusive
+   * @param timeTill last second, inclusive
+   * @return ZabbixAPIResult.data is a Map of itemid to ZabbixTrendSeries, with an empty series for items
+   * without trends. If error happened, refer to code, message, data for information.
+   */
+  public ZabbixAPIResult trends(Collection<Long> itemids, long timeFrom, long timeTill) {
+    List<Long> ids = new ArrayList<>(itemids);
+    List<Call<ZabbixTrendSeries.Buffer>> calls = new ArrayList<>();
+    for (List<Long> slice : slices(timeFrom, timeTill)) {
+      for (List<Long> chunk : chunks(ids)) {
+        calls.add(trendCall(chunk, slice.get(0), slice.get(1)));
+      }
+    }
+
+    Map<Long, List<ZabbixTrendSeries.Buffer>> buffers = new HashMap<>();
+    ZabbixAPIResult result = execute(calls, buffers);
+    if (result.isFail()) return result;
+
+    HashMap<Long, ZabbixTrendSeries> series = new HashMap<>();
+    for (Long itemid : ids) {
+      series.put(itemid, ZabbixTrendSeries.concat(itemid, buffers.getOrDefault(itemid, new ArrayList<>())));
+    }
+    return ZabbixAPIResult.success(series);
+  }
+
+  private Call<ZabbixTimeSeries.Buffer> historyCall(ZabbixItemValueType valueType, List<Long> itemids,
+                                                    long timeFrom, long timeTill) {
+    HashMap<String, Object> params = ZabbixQuery.newQuery().output("itemid", "clock", "ns", "value")
+            .sortField("clock").param("history", valueType.code()).param("itemids", itemids)
+            .param("time_from", timeFrom).param("time_till", timeTill).toParams();
+    return buffers -> zabbixApi.callApiStream("history.get", params, HistoryRow.class, row -> {
+      ZabbixTimeSeries.Buffer buffer = buffers.computeIfAbsent(row.itemid,
+              itemid -> new ZabbixTimeSeries.Buffer(itemid, valueType));
+      buffer.add(row.clock * 1000 + row.ns / 1000000, row.value);
+    });
+  }
+
+  private Call<ZabbixTrendSeries.Buffer> trendCall(List<Long> itemids, long timeFrom, long timeTill) {
+    HashMap<String, Object> params = ZabbixQuery.newQuery()
+            .output("itemid", "clock", "num", "value_min", "value_avg", "value_max")
+            .param("itemids", itemids).param("time_from", timeFrom).param("time_till", timeTill).toParams();
+    return buffers -> zabbixApi.callApiStream("trend.get", params, TrendRow.class, row -> {
+      ZabbixTrendSeries.Buffer buffer = buffers.computeIfAbsent(row.itemid, itemid -> new ZabbixTrendSeries.Buffer());
+      buffer.add(row.clock * 1000, row.num, row.min, row.avg, row.max);
+    });
+  }
+
+  /**
+   * Run calls on parallelism threads and collect the buffers of each item in call order, which is time order.
+   */
+  private <B> ZabbixAPIResult execute(List<Call<B>> calls, Map<Long, List<B>> buffers) {
+    AtomicInteger threadId = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, calls.size())),
+            runnable -> {
+              Thread thread = new Thread(runnable, "zabbix-history-" + threadId.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      List<Future<CallResult<B>>> futures = new ArrayList<>(calls.size());
+      for (Call<B> call : calls) {
+        futures.add(executor.submit(() -> {
+          CallResult<B> callResult = new CallResult<>();
+          callResult.result = call.apply(callResult.buffers);
+          return callResult;
+        }));
+      }
+      for (Future<CallResult<B>> future : futures) {
+        CallResult<B> callResult = future.get();
+        if (callResult.result.isFail()) return callResult.result;
+        callResult.buffers.forEach((itemid, buffer) ->
+                buffers.computeIfAbsent(itemid, id -> new ArrayList<>()).add(buffer));
+      }
+      return ZabbixAPIResult.success(null);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("DefaultZabbixApi history interrupted!", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("DefaultZabbixApi history exception!", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * @return [from, till] pairs of sliceSeconds covering timeFrom to timeTill
+   */
+  private List<List<Long>> slices(long timeFrom, long timeTill) {
+    if (sliceSeconds <= 0 || itemsPerCall <= 0 || parallelism <= 0) {
+      throw new IllegalArgumentException("sliceSeconds, itemsPerCall and parallelism must be positive");
+    }
+
+    List<List<Long>> slices = new ArrayList<>();
+    for (long from = timeFrom; from <= timeTill; from += sliceSeconds) {
+      List<Long> slice = new ArrayList<>(2);
+      slice.add(from);
+      slice.add(Math.min(from + sliceSeconds - 1, timeTill));
+      slices.add(slice);
+    }
+    return slices;
+  }
+
+  private List<List<Long>> chunks(List<Long> itemids) {
+    List<List<Long>> chunks = new ArrayList<>();
+    for (int from = 0; from < itemids.size(); from += itemsPerCall) {
+      chunks.add(itemids.subList(from, Math.min(from + itemsPerCall, itemids.size())));
+    }
+    return chunks;
+  }
+
+  /**
+   * One api call, which appends its rows to a buffer per item.
+   */
+  private interface Call<B> extends Function<Map<Long, B>, ZabbixAPIResult> {
+  }
+
+  private static class CallResult<B> {
+    final Map<Long, B> buffers = new HashMap<>();
+    ZabbixAPIResult result;
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  static class HistoryRow {
+    public long itemid;
+    public long clock;
+    public long ns;
+    public String value;
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  static class TrendRow {
+    public long itemid;
+    public long clock;
+    public int num;
+    @JsonProperty("value_min")
+    public double min;
+    @JsonProperty("value_avg")
+    public double avg;
+    @JsonProperty("value_max")
+    public double max;
+  }
+}
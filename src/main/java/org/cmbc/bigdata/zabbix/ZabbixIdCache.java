@@ -0,0 +1,136 @@
+package org.cmbc.bigdata.zabbix;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, TTL based cache of object name to zabbix id, e.g. host name to hostid.
+ * The least recently used entry is evicted when maxSize is reached. Only ids that exist are cached,
+ * a name that was not found is looked up again next time.
+ * <p>
+ * A cache with maxSize zero or negative is disabled: it never stores anything and counts nothing.
+ */
+public class ZabbixIdCache {
+  private final int maxSize;
+  private final long ttlNanos;
+  private final LinkedHashMap<String, Entry> entries;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public ZabbixIdCache(int maxSize, long ttlMillis) {
+    this.maxSize = maxSize;
+    this.ttlNanos = ttlMillis * 1000000L;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > ZabbixIdCache.this.maxSize;
+      }
+    };
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * @param name object name
+   * @return cached id, or null if absent or expired
+   */
+  public String get(String name) {
+    if (!isEnabled()) return null;
+
+    synchronized (entries) {
+      Entry entry = entries.get(name);
+      if (entry != null && entry.expireAt - System.nanoTime() > 0) {
+        hits.increment();
+        return entry.id;
+      }
+      if (entry != null) {
+        entries.remove(name);
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+  public void put(String name, String id) {
+    if (!isEnabled() || name == null || id == null) return;
+
+    synchronized (entries) {
+      entries.put(name, new Entry(id, System.nanoTime() + ttlNanos));
+    }
+  }
+
+  /**
+   * Drop every entry mapping to one of the ids, e.g. after those objects were deleted.
+   */
+  public void removeIds(Collection<?> ids) {
+    if (!isEnabled() || ids.isEmpty()) return;
+
+    Set<String> idSet = new HashSet<>();
+    ids.forEach(id -> idSet.add(String.valueOf(id)));
+    synchronized (entries) {
+      entries.values().removeIf(entry -> idSet.contains(entry.id));
+    }
+  }
+
+  /**
+   * Drop every entry whose name is scoped to one of the scopes, i.e. starts with scope and ':', e.g. the items
+   * of deleted hosts. Takes one pass over the cache however many scopes there are.
+   */
+  public void removeScopes(Collection<?> scopes) {
+    if (!isEnabled() || scopes.isEmpty()) return;
+
+    Set<String> scopeSet = new HashSet<>();
+    scopes.forEach(scope -> scopeSet.add(String.valueOf(scope)));
+    synchronized (entries) {
+      Iterator<String> it = entries.keySet().iterator();
+      while (it.hasNext()) {
+        String name = it.next();
+        int separator = name.indexOf(':');
+        if (separator >= 0 && scopeSet.contains(name.substring(0, separator))) it.remove();
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "ZabbixIdCache(size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHitCount()
+            + ", misses=" + getMissCount() + ")";
+  }
+
+  private static class Entry {
+    final String id;
+    final long expireAt;
+
+    Entry(String id, long expireAt) {
+      this.id = id;
+      this.expireAt = expireAt;
+    }
+  }
+}
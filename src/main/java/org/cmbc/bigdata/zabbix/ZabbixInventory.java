@@ -0,0 +1,97 @@
+package org.cmbc.bigdata.zabbix;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Desired state of host groups, hosts, their interfaces and items, for ZabbixReconciler.
+ * <pre>
+ * ZabbixInventory inventory = new ZabbixInventory()
+ *         .host("web-01", Collections.singletonList("linux"), agentInterface)
+ *         .item("web-01", cpuLoadItem);
+ * </pre>
+ * Objects are identified by name: groups by name, hosts by technical name, interfaces by type, ip, dns and
+ * port, items by key on their host.
+ */
+public class ZabbixInventory {
+  private final Set<String> groups = new LinkedHashSet<>();
+  private final LinkedHashMap<String, DesiredHost> hosts = new LinkedHashMap<>();
+
+  public ZabbixInventory group(String name) {
+    groups.add(name);
+    return this;
+  }
+
+  /**
+   * @param host       technical name of the host
+   * @param groupNames all groups of the host, added to the inventory too
+   * @param interfaces interfaces the host must have, hostid and interfaceid are ignored
+   * @return ZabbixInventory
+   */
+  public ZabbixInventory host(String host, Collection<String> groupNames, HostInterface... interfaces) {
+    if (groupNames.isEmpty()) {
+      throw new IllegalArgumentException("Host " + host + " needs at least one group");
+    }
+    DesiredHost desiredHost = new DesiredHost(host);
+    desiredHost.groups.addAll(groupNames);
+    for (HostInterface hostInterface : interfaces) {
+      desiredHost.interfaces.add(hostInterface);
+    }
+    groups.addAll(groupNames);
+    hosts.put(host, desiredHost);
+    return this;
+  }
+
+  /**
+   * @param host technical name of a host added before
+   * @param item needs key, name, type and valueType, delay is 0 when not set. interfaceid may be left 0 for
+   *             the reconciler to pick the main interface the item type needs.
+   * @return ZabbixInventory
+   */
+  public ZabbixInventory item(String host, Item item) {
+    DesiredHost desiredHost = hosts.get(host);
+    if (desiredHost == null) {
+      throw new IllegalArgumentException("Host " + host + " is not in the inventory");
+    }
+    if (item.getKey() == null || item.getName() == null || item.getType() == null || item.getValueType() == null) {
+      throw new IllegalArgumentException("Item needs key, name, type and valueType: " + item);
+    }
+    desiredHost.items.put(item.getKey(), item);
+    return this;
+  }
+
+  Set<String> getGroups() {
+    return groups;
+  }
+
+  Collection<DesiredHost> getHosts() {
+    return hosts.values();
+  }
+
+  public int getHostCount() {
+    return hosts.size();
+  }
+
+  public int getItemCount() {
+    int count = 0;
+    for (DesiredHost host : hosts.values()) {
+      count += host.items.size();
+    }
+    return count;
+  }
+
+  static class DesiredHost {
+    final String host;
+    final Set<String> groups = new LinkedHashSet<>();
+    final List<HostInterface> interfaces = new ArrayList<>();
+    final LinkedHashMap<String, Item> items = new LinkedHashMap<>();
+
+    DesiredHost(String host) {
+      this.host = host;
+    }
+  }
+}
@@ -1,5 +1,8 @@
 package org.cmbc.bigdata.zabbix;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
 /**
  * Type of the item.
  * <p>
@@ -51,6 +54,7 @@ public enum ZabbixItemType {
     this.msg = msg;
   }
 
+  @JsonValue
   public Integer code() {
     return this.code;
   }
@@ -58,5 +62,16 @@ public enum ZabbixItemType {
   public String msg() {
     return this.msg;
   }
-}
 
+  /**
+   * @param code zabbix code of the value
+   * @return the matching constant, or null for a code this version does not know
+   */
+  @JsonCreator
+  public static ZabbixItemType fromCode(int code) {
+    for (ZabbixItemType value : values()) {
+      if (value.code == code) return value;
+    }
+    return null;
+  }
+}
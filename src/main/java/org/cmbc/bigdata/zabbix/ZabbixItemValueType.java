@@ -1,5 +1,8 @@
 package org.cmbc.bigdata.zabbix;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
 /**
  * Possible values:
  * 0 - numeric float;
@@ -23,6 +26,7 @@ public enum ZabbixItemValueType {
     this.msg = msg;
   }
 
+  @JsonValue
   public Integer code() {
     return this.code;
   }
@@ -30,4 +34,16 @@ public enum ZabbixItemValueType {
   public String msg() {
     return this.msg;
   }
-}
\ No newline at end of file
+
+  /**
+   * @param code zabbix code of the value
+   * @return the matching constant, or null for a code this version does not know
+   */
+  @JsonCreator
+  public static ZabbixItemValueType fromCode(int code) {
+    for (ZabbixItemValueType value : values()) {
+      if (value.code == code) return value;
+    }
+    return null;
+  }
+}
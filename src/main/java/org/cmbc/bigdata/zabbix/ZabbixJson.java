@@ -0,0 +1,37 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Jackson mapper shared by requests, entities and ZabbixApi. ObjectMapper is thread safe once configured
+ * and caches serializers, so creating one per request wastes both cpu and memory.
+ */
+final class ZabbixJson {
+  static final ObjectMapper mapper = new ObjectMapper()
+          .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  /**
+   * Writes map entries and properties in key order, so equal params give equal text.
+   */
+  private static final ObjectMapper canonicalMapper = new ObjectMapper()
+          .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+          .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+
+  private ZabbixJson() {
+
+  }
+
+  /**
+   * Key of a call, equal for calls of the same method, auth and params. Keys of different calls differ.
+   */
+  static String canonicalKey(String method, String auth, Object params) {
+    try {
+      return method + '\n' + auth + '\n' + canonicalMapper.writeValueAsString(params);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("params can not be serialized", e);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package org.cmbc.bigdata.zabbix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces lookups made by concurrent callers into one list-filtered get.
+ * <p>
+ * The first lookup opens a batch and waits up to window for others to join, or until maxBatchSize lookups
+ * joined, then runs the batch on its own thread. The other callers wait for the batch and get their own
+ * share of its result. No extra threads are used.
+ *
+ * @param <R> lookup of one caller, e.g. a host name
+ */
+public class ZabbixLookupBatcher<R> {
+  private final long windowNanos;
+  private final int maxBatchSize;
+  private final Function<List<R>, List<ZabbixAPIResult>> batchGet;
+  private final LongAdder lookupCount = new LongAdder();
+  private final LongAdder batchCount = new LongAdder();
+  private Batch<R> open;
+
+  /**
+   * @param windowMillis how long the first lookup of a batch waits for others
+   * @param maxBatchSize lookups that close a batch at once
+   * @param batchGet     runs the lookups of a batch, returns one result per lookup in the same order
+   */
+  ZabbixLookupBatcher(long windowMillis, int maxBatchSize, Function<List<R>, List<ZabbixAPIResult>> batchGet) {
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.maxBatchSize = maxBatchSize;
+    this.batchGet = batchGet;
+  }
+
+  ZabbixAPIResult get(R lookup) {
+    Batch<R> batch;
+    int index;
+    boolean leader;
+    synchronized (this) {
+      leader = open == null;
+      if (leader) open = new Batch<>();
+      batch = open;
+      index = batch.lookups.size();
+      batch.lookups.add(lookup);
+      if (batch.lookups.size() >= maxBatchSize) {
+        open = null;
+        notifyAll();
+      }
+    }
+    lookupCount.increment();
+
+    if (leader) {
+      awaitWindow(batch);
+      batchCount.increment();
+      try {
+        batch.results.complete(batchGet.apply(batch.lookups));
+      } catch (Throwable e) {
+        // Errors too, or the other callers would wait forever. join() below rethrows it.
+        batch.results.completeExceptionally(e);
+      }
+    }
+    try {
+      return batch.results.join().get(index);
+    } catch (CompletionException e) {
+      throw ZabbixSingleFlight.unwrap(e);
+    }
+  }
+
+  /**
+   * Wait until the window is over or the batch is full, and close the batch.
+   */
+  private synchronized void awaitWindow(Batch<R> batch) {
+    long deadline = System.nanoTime() + windowNanos;
+    long remaining;
+    while (open == batch && (remaining = deadline - System.nanoTime()) > 0) {
+      try {
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    if (open == batch) open = null;
+  }
+
+  /**
+   * @return lookups made
+   */
+  public long getLookupCount() {
+    return lookupCount.sum();
+  }
+
+  /**
+   * @return gets sent for them
+   */
+  public long getBatchCount() {
+    return batchCount.sum();
+  }
+
+  private static class Batch<R> {
+    // Only changed while the batch is open, under the lock of the batcher.
+    private final List<R> lookups = new ArrayList<>();
+    private final CompletableFuture<List<ZabbixAPIResult>> results = new CompletableFuture<>();
+  }
+}
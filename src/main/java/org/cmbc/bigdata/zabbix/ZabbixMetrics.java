@@ -0,0 +1,32 @@
+package org.cmbc.bigdata.zabbix;
+
+/**
+ * Receives one sample per zabbix api call. Implement it to feed an external registry,
+ * or use DefaultZabbixMetrics. Both methods run on the calling thread, so they should not block.
+ */
+public interface ZabbixMetrics {
+  /**
+   * Records nothing.
+   */
+  ZabbixMetrics NONE = new ZabbixMetrics() {
+    @Override
+    public void callStarted(String method) {
+    }
+
+    @Override
+    public void callFinished(ZabbixCallSample sample) {
+    }
+  };
+
+  /**
+   * @param method zabbix api method, or "batch" for a JSON-RPC batch
+   */
+  void callStarted(String method);
+
+  /**
+   * Called once for every callStarted, also when the call threw.
+   *
+   * @param sample timings, sizes and result code of the call
+   */
+  void callFinished(ZabbixCallSample sample);
+}
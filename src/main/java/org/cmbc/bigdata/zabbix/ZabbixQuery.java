@@ -0,0 +1,164 @@
+package org.cmbc.bigdata.zabbix;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Common parameters of zabbix get methods: output projection, limit, sorting, search, countOutput and preservekeys.
+ * Without output zabbix returns every property of every row, so asking only for the fields needed, ids in
+ * particular, shrinks the response a lot.
+ * <pre>
+ *   ZabbixQuery query = ZabbixQuery.newQuery().output("itemid", "key_").sortField("itemid").limit(1000);
+ *   zabbixApi.itemGet(query.param("hostids", hostIdList));
+ * </pre>
+ */
+public class ZabbixQuery {
+  private final HashMap<String, Object> params = new HashMap<>();
+
+  private final HashMap<String, Object> filter = new HashMap<>();
+
+  private final HashMap<String, Object> search = new HashMap<>();
+
+  private ZabbixQuery() {
+
+  }
+
+  static public ZabbixQuery newQuery() {
+    return new ZabbixQuery();
+  }
+
+  /**
+   * @param fields properties to return, e.g. "hostid", "host"
+   * @return ZabbixQuery
+   */
+  public ZabbixQuery output(String... fields) {
+    params.put("output", Arrays.asList(fields));
+    return this;
+  }
+
+  /**
+   * Return every property, which is what zabbix does without output.
+   *
+   * @return ZabbixQuery
+   */
+  public ZabbixQuery outputExtend() {
+    params.put("output", "extend");
+    return this;
+  }
+
+  /**
+   * Return the number of rows instead of the rows. ZabbixAPIResult.data is then a text node holding the count.
+   *
+   * @return ZabbixQuery
+   */
+  public ZabbixQuery countOutput() {
+    params.put("countOutput", true);
+    return this;
+  }
+
+  public ZabbixQuery limit(int limit) {
+    params.put("limit", limit);
+    return this;
+  }
+
+  /**
+   * @param fields properties to sort by, each method only allows some of them, e.g. "itemid", "name", "key_"
+   * @return ZabbixQuery
+   */
+  public ZabbixQuery sortField(String... fields) {
+    params.put("sortfield", Arrays.asList(fields));
+    return this;
+  }
+
+  /**
+   * @param descending true for DESC, false for ASC
+   * @return ZabbixQuery
+   */
+  public ZabbixQuery sortOrder(boolean descending) {
+    params.put("sortorder", descending ? "DESC" : "ASC");
+    return this;
+  }
+
+  /**
+   * Only return rows whose field matches one of values exactly.
+   *
+   * @param field  property name
+   * @param values a value or a list of values
+   * @return ZabbixQuery
+   */
+  public ZabbixQuery filter(String field, Object values) {
+    filter.put(field, values);
+    return this;
+  }
+
+  /**
+   * Only return rows whose field contains value, case insensitive.
+   *
+   * @param field property name
+   * @param value substring, or a pattern with * when searchWildcardsEnabled
+   * @return ZabbixQuery
+   */
+  public ZabbixQuery search(String field, Object value) {
+    search.put(field, value);
+    return this;
+  }
+
+  /**
+   * Allow * as wildcard in search values.
+   *
+   * @return ZabbixQuery
+   */
+  public ZabbixQuery searchWildcardsEnabled() {
+    params.put("searchWildcardsEnabled", true);
+    return this;
+  }
+
+  /**
+   * Return rows matching any search criteria instead of all of them.
+   *
+   * @return ZabbixQuery
+   */
+  public ZabbixQuery searchByAny() {
+    params.put("searchByAny", true);
+    return this;
+  }
+
+  /**
+   * Return an object keyed by id instead of an array. Streaming methods still hand over one row at a time.
+   *
+   * @return ZabbixQuery
+   */
+  public ZabbixQuery preserveKeys() {
+    params.put("preservekeys", true);
+    return this;
+  }
+
+  /**
+   * Set any other parameter of the get method, e.g. "selectInterfaces".
+   *
+   * @return ZabbixQuery
+   */
+  public ZabbixQuery param(String name, Object value) {
+    params.put(name, value);
+    return this;
+  }
+
+  /**
+   * @return a new params map, the query can be reused after that
+   */
+  public HashMap<String, Object> toParams() {
+    HashMap<String, Object> copy = new HashMap<>(params);
+    if (!filter.isEmpty()) {
+      copy.put("filter", new HashMap<>(filter));
+    }
+    if (!search.isEmpty()) {
+      copy.put("search", new HashMap<>(search));
+    }
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+    return "ZabbixQuery" + toParams();
+  }
+}
@@ -0,0 +1,94 @@
+package org.cmbc.bigdata.zabbix;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes ZabbixReconciler found between a ZabbixInventory and zabbix, with the current ids it needs to apply
+ * them. Nothing changes in zabbix until ZabbixReconciler.apply(plan).
+ */
+public class ZabbixReconcilePlan {
+  // Current state, completed with the ids of created objects while the plan is applied.
+  final Map<String, Long> groupIds = new HashMap<>();
+  final Map<String, Long> hostIds = new HashMap<>();
+  final Map<Long, List<HostInterface>> interfacesByHost = new HashMap<>();
+
+  final List<String> groupsToCreate = new ArrayList<>();
+  final List<ZabbixInventory.DesiredHost> hostsToCreate = new ArrayList<>();
+  final List<ZabbixInventory.DesiredHost> hostsToUpdate = new ArrayList<>();
+  final List<HashMap<String, Object>> interfacesToCreate = new ArrayList<>();
+  final List<PlannedItem> itemsToCreate = new ArrayList<>();
+  final List<HashMap<String, Object>> itemsToUpdate = new ArrayList<>();
+  final List<String> itemsToDelete = new ArrayList<>();
+  final List<String> hostsToDelete = new ArrayList<>();
+
+  final List<ZabbixReconcileReport.Step> fetchSteps = new ArrayList<>();
+
+  ZabbixReconcilePlan() {
+
+  }
+
+  public boolean isEmpty() {
+    return groupsToCreate.isEmpty() && hostsToCreate.isEmpty() && hostsToUpdate.isEmpty()
+            && interfacesToCreate.isEmpty() && itemsToCreate.isEmpty() && itemsToUpdate.isEmpty()
+            && itemsToDelete.isEmpty() && hostsToDelete.isEmpty();
+  }
+
+  public int getGroupsToCreate() {
+    return groupsToCreate.size();
+  }
+
+  public int getHostsToCreate() {
+    return hostsToCreate.size();
+  }
+
+  /**
+   * @return existing hosts whose groups change
+   */
+  public int getHostsToUpdate() {
+    return hostsToUpdate.size();
+  }
+
+  /**
+   * @return interfaces missing on existing hosts, those of new hosts are created with them
+   */
+  public int getInterfacesToCreate() {
+    return interfacesToCreate.size();
+  }
+
+  public int getItemsToCreate() {
+    return itemsToCreate.size();
+  }
+
+  public int getItemsToUpdate() {
+    return itemsToUpdate.size();
+  }
+
+  public int getItemsToDelete() {
+    return itemsToDelete.size();
+  }
+
+  public int getHostsToDelete() {
+    return hostsToDelete.size();
+  }
+
+  @Override
+  public String toString() {
+    return "ZabbixReconcilePlan(create " + groupsToCreate.size() + " groups, " + hostsToCreate.size() + " hosts, "
+            + interfacesToCreate.size() + " interfaces, " + itemsToCreate.size() + " items; update "
+            + hostsToUpdate.size() + " hosts, " + itemsToUpdate.size() + " items; delete " + itemsToDelete.size()
+            + " items, " + hostsToDelete.size() + " hosts)";
+  }
+
+  static class PlannedItem {
+    final String host;
+    final Item item;
+
+    PlannedItem(String host, Item item) {
+      this.host = host;
+      this.item = item;
+    }
+  }
+}
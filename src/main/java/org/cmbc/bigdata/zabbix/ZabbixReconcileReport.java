@@ -0,0 +1,57 @@
+package org.cmbc.bigdata.zabbix;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What ZabbixReconciler did: the plan, one step per bulk call with its duration, and the result.
+ * Steps stop at the first failed call, whose error is the result. Steps done before it are not undone.
+ */
+@Data
+public class ZabbixReconcileReport {
+  private final ZabbixReconcilePlan plan;
+  private final List<Step> steps = new ArrayList<>();
+  private ZabbixAPIResult result;
+
+  public boolean isFail() {
+    return result == null || result.isFail();
+  }
+
+  public long getTotalNanos() {
+    long total = 0;
+    for (Step step : steps) {
+      total += step.nanos;
+    }
+    return total;
+  }
+
+  /**
+   * @return false if result failed, which then becomes the result of the report
+   */
+  boolean step(String name, int count, long startNanos, ZabbixAPIResult stepResult) {
+    steps.add(new Step(name, count, System.nanoTime() - startNanos));
+    if (stepResult.isFail()) {
+      result = stepResult;
+      return false;
+    }
+    return true;
+  }
+
+  @Data
+  public static class Step {
+    private final String name;
+    /**
+     * Objects the step read or changed.
+     */
+    private final int count;
+    private final long nanos;
+
+    @Override
+    public String toString() {
+      return name + " " + count + " in " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms";
+    }
+  }
+}
@@ -0,0 +1,426 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Brings zabbix to the state of a ZabbixInventory with a few bulk calls instead of several calls per object.
+ * <p>
+ * plan() reads the current groups, hosts with their groups and interfaces, and items of the inventory's hosts,
+ * in calls of up to 1000 names or 500 hosts, and computes what to create, update and delete. apply() runs one
+ * bulk call per kind of change, which ZabbixApi splits into chunks of bulkChunkSize.
+ * <pre>
+ * ZabbixReconcileReport report = zabbixApi.reconciler().pruneItems(true).reconcile(inventory);
+ * log.info("{} {}", report.getPlan(), report.getSteps());
+ * </pre>
+ * Interfaces are only ever added, items may still use the others. Items inherited from templates and items
+ * created by low-level discovery are never changed.
+ */
+@Slf4j
+public class ZabbixReconciler {
+  private static final int NAMES_PER_CALL = 1000;
+  private static final int HOSTS_PER_CALL = 500;
+  private static final int ITEM_DISCOVERED = 4;
+
+  private final ZabbixApi zabbixApi;
+  private boolean pruneItems;
+  private boolean pruneHosts;
+
+  ZabbixReconciler(ZabbixApi zabbixApi) {
+    this.zabbixApi = zabbixApi;
+  }
+
+  /**
+   * @param pruneItems delete items of the inventory's hosts that are not in the inventory
+   * @return ZabbixReconciler
+   */
+  public ZabbixReconciler pruneItems(boolean pruneItems) {
+    this.pruneItems = pruneItems;
+    return this;
+  }
+
+  /**
+   * @param pruneHosts delete hosts of the inventory's groups that are not in the inventory
+   * @return ZabbixReconciler
+   */
+  public ZabbixReconciler pruneHosts(boolean pruneHosts) {
+    this.pruneHosts = pruneHosts;
+    return this;
+  }
+
+  /**
+   * Plan, then apply unless the plan is empty.
+   *
+   * @return ZabbixReconcileReport, its result is the failed get if planning failed
+   */
+  public ZabbixReconcileReport reconcile(ZabbixInventory inventory) {
+    ZabbixAPIResult planResult = plan(inventory);
+    if (planResult.isFail()) {
+      ZabbixReconcileReport report = new ZabbixReconcileReport(null);
+      report.setResult(planResult);
+      return report;
+    }
+    return apply((ZabbixReconcilePlan) planResult.getData());
+  }
+
+  /**
+   * Read the current state and compute the changes, without changing anything.
+   *
+   * @return ZabbixAPIResult.data is the ZabbixReconcilePlan.
+   * If error happened, refer to code, message, data for information.
+   */
+  public ZabbixAPIResult plan(ZabbixInventory inventory) {
+    ZabbixReconcilePlan plan = new ZabbixReconcilePlan();
+
+    List<String> groupNames = new ArrayList<>(inventory.getGroups());
+    long start = System.nanoTime();
+    for (List<String> chunk : chunks(groupNames, NAMES_PER_CALL)) {
+      HashMap<String, Object> params = ZabbixQuery.newQuery().output("groupid", "name").filter("name", chunk)
+              .toParams();
+      ZabbixAPIResult result = zabbixApi.callApiStream("hostgroup.get", params, HostGroup.class,
+              group -> plan.groupIds.put(group.getName(), group.getGroupid()));
+      if (result.isFail()) return result;
+    }
+    plan.fetchSteps.add(new ZabbixReconcileReport.Step("get hostgroups", plan.groupIds.size(), elapsed(start)));
+
+    List<String> hostNames = new ArrayList<>();
+    inventory.getHosts().forEach(host -> hostNames.add(host.host));
+    Map<Long, Set<Long>> groupsByHost = new HashMap<>();
+    start = System.nanoTime();
+    for (List<String> chunk : chunks(hostNames, NAMES_PER_CALL)) {
+      HashMap<String, Object> params = ZabbixQuery.newQuery().output("hostid", "host").filter("host", chunk)
+              .param("selectGroups", Collections.singletonList("groupid"))
+              .param("selectInterfaces", new String[]{"interfaceid", "type", "main", "useip", "ip", "dns", "port"})
+              .toParams();
+      ZabbixAPIResult result = zabbixApi.callApiStream("host.get", params, row -> {
+        long hostid = row.get("hostid").asLong();
+        plan.hostIds.put(row.get("host").asText(), hostid);
+        Set<Long> groupIds = new HashSet<>();
+        row.path("groups").forEach(group -> groupIds.add(group.get("groupid").asLong()));
+        groupsByHost.put(hostid, groupIds);
+        List<HostInterface> interfaces = new ArrayList<>();
+        for (JsonNode hostInterface : row.path("interfaces")) {
+          interfaces.add(ZabbixJson.mapper.convertValue(hostInterface, HostInterface.class));
+        }
+        plan.interfacesByHost.put(hostid, interfaces);
+      });
+      if (result.isFail()) return result;
+    }
+    plan.fetchSteps.add(new ZabbixReconcileReport.Step("get hosts", plan.hostIds.size(), elapsed(start)));
+
+    Map<Long, Map<String, Item>> itemsByHost = new HashMap<>();
+    int itemCount = 0;
+    start = System.nanoTime();
+    for (List<Long> chunk : chunks(new ArrayList<>(plan.hostIds.values()), HOSTS_PER_CALL)) {
+      HashMap<String, Object> params = ZabbixQuery.newQuery().output("itemid", "hostid", "key_", "name", "type",
+              "value_type", "delay", "interfaceid", "templateid", "flags").param("hostids", chunk).toParams();
+      ZabbixAPIResult result = zabbixApi.callApiStream("item.get", params, Item.class,
+              item -> itemsByHost.computeIfAbsent(item.getHostid(), hostid -> new HashMap<>()).put(item.getKey(), item));
+      if (result.isFail()) return result;
+      itemCount += (Integer) result.getData();
+    }
+    plan.fetchSteps.add(new ZabbixReconcileReport.Step("get items", itemCount, elapsed(start)));
+
+    for (String groupName : groupNames) {
+      if (!plan.groupIds.containsKey(groupName)) plan.groupsToCreate.add(groupName);
+    }
+    for (ZabbixInventory.DesiredHost host : inventory.getHosts()) {
+      Long hostid = plan.hostIds.get(host.host);
+      if (hostid == null) {
+        plan.hostsToCreate.add(host);
+        host.items.values().forEach(item -> plan.itemsToCreate.add(new ZabbixReconcilePlan.PlannedItem(host.host, item)));
+        continue;
+      }
+
+      Set<Long> desiredGroupIds = new HashSet<>();
+      host.groups.forEach(group -> desiredGroupIds.add(plan.groupIds.get(group)));
+      if (!desiredGroupIds.equals(groupsByHost.get(hostid))) plan.hostsToUpdate.add(host);
+
+      List<HostInterface> interfaces = plan.interfacesByHost.get(hostid);
+      List<HostInterface> missing = new ArrayList<>();
+      for (HostInterface hostInterface : host.interfaces) {
+        if (interfaces.stream().noneMatch(existing -> sameInterface(existing, hostInterface))) {
+          missing.add(hostInterface);
+        }
+      }
+      plan.interfacesToCreate.addAll(interfaceParams(hostid, interfaces, missing));
+
+      Map<String, Item> items = itemsByHost.getOrDefault(hostid, Collections.emptyMap());
+      for (Item item : host.items.values()) {
+        Item current = items.get(item.getKey());
+        if (current == null) {
+          plan.itemsToCreate.add(new ZabbixReconcilePlan.PlannedItem(host.host, item));
+        } else if (isOwnItem(current) && !sameItem(current, item)) {
+          HashMap<String, Object> params = itemParams(item);
+          params.remove("key_");
+          if (item.getInterfaceid() == 0) params.remove("interfaceid");
+          params.put("itemid", current.getItemid());
+          plan.itemsToUpdate.add(params);
+        }
+      }
+      if (pruneItems) {
+        for (Item current : items.values()) {
+          if (isOwnItem(current) && !host.items.containsKey(current.getKey())) {
+            plan.itemsToDelete.add(String.valueOf(current.getItemid()));
+          }
+        }
+      }
+    }
+
+    if (pruneHosts && !plan.groupIds.isEmpty()) {
+      start = System.nanoTime();
+      Set<String> desiredHosts = new HashSet<>(hostNames);
+      HashMap<String, Object> params = ZabbixQuery.newQuery().output("hostid", "host")
+              .param("groupids", new ArrayList<>(plan.groupIds.values())).toParams();
+      ZabbixAPIResult result = zabbixApi.callApiStream("host.get", params, Host.class, host -> {
+        if (!desiredHosts.contains(host.getHost())) plan.hostsToDelete.add(String.valueOf(host.getHostid()));
+      });
+      if (result.isFail()) return result;
+      plan.fetchSteps.add(new ZabbixReconcileReport.Step("get hosts of groups", (Integer) result.getData(),
+              elapsed(start)));
+    }
+
+    log.info("Reconcile {} hosts, {} items: {}", inventory.getHostCount(), inventory.getItemCount(), plan);
+    return ZabbixAPIResult.success(plan);
+  }
+
+  /**
+   * Run the bulk calls of a plan, in dependency order: groups, hosts, interfaces, items, then deletes.
+   */
+  public ZabbixReconcileReport apply(ZabbixReconcilePlan plan) {
+    ZabbixReconcileReport report = new ZabbixReconcileReport(plan);
+    report.getSteps().addAll(plan.fetchSteps);
+
+    if (!plan.groupsToCreate.isEmpty()) {
+      long start = System.nanoTime();
+      ZabbixAPIResult result = zabbixApi.hostgroupListCreate(new ArrayList<>(plan.groupsToCreate));
+      if (!report.step("create hostgroups", plan.groupsToCreate.size(), start, result)) return report;
+      putIds(plan.groupIds, plan.groupsToCreate, result, "groupids");
+    }
+
+    // Hosts whose interface ids are not known yet.
+    List<Long> newInterfaceHosts = new ArrayList<>();
+    if (!plan.hostsToCreate.isEmpty()) {
+      ArrayList<HashMap> params = new ArrayList<>();
+      List<String> names = new ArrayList<>();
+      for (ZabbixInventory.DesiredHost host : plan.hostsToCreate) {
+        HashMap<String, Object> param = new HashMap<>();
+        param.put("host", host.host);
+        param.put("groups", groupsParam(plan, host));
+        List<HashMap<String, Object>> interfaces = interfaceParams(null, Collections.emptyList(), host.interfaces);
+        interfaces.forEach(hostInterface -> hostInterface.remove("hostid"));
+        param.put("interfaces", interfaces);
+        params.add(param);
+        names.add(host.host);
+      }
+      long start = System.nanoTime();
+      ZabbixAPIResult result = zabbixApi.hostListCreate(params);
+      if (!report.step("create hosts", params.size(), start, result)) return report;
+      putIds(plan.hostIds, names, result, "hostids");
+      names.forEach(name -> newInterfaceHosts.add(plan.hostIds.get(name)));
+    }
+
+    if (!plan.hostsToUpdate.isEmpty()) {
+      ArrayList<HashMap> params = new ArrayList<>();
+      for (ZabbixInventory.DesiredHost host : plan.hostsToUpdate) {
+        HashMap<String, Object> param = new HashMap<>();
+        param.put("hostid", plan.hostIds.get(host.host));
+        param.put("groups", groupsParam(plan, host));
+        params.add(param);
+      }
+      long start = System.nanoTime();
+      ZabbixAPIResult result = zabbixApi.hostListUpdate(params);
+      if (!report.step("update hosts", params.size(), start, result)) return report;
+    }
+
+    if (!plan.interfacesToCreate.isEmpty()) {
+      long start = System.nanoTime();
+      ZabbixAPIResult result = zabbixApi.hostInterfaceListCreate(new ArrayList<>(plan.interfacesToCreate));
+      if (!report.step("create interfaces", plan.interfacesToCreate.size(), start, result)) return report;
+      plan.interfacesToCreate.forEach(hostInterface -> newInterfaceHosts.add((Long) hostInterface.get("hostid")));
+    }
+
+    if (!plan.itemsToCreate.isEmpty()) {
+      if (!newInterfaceHosts.isEmpty() && !refreshInterfaces(plan, report, newInterfaceHosts)) return report;
+
+      ArrayList<HashMap<String, Object>> params = new ArrayList<>();
+      for (ZabbixReconcilePlan.PlannedItem planned : plan.itemsToCreate) {
+        long hostid = plan.hostIds.get(planned.host);
+        HashMap<String, Object> param = itemParams(planned.item);
+        param.put("hostid", hostid);
+        if (planned.item.getInterfaceid() == 0) {
+          param.put("interfaceid", pickInterface(plan.interfacesByHost.get(hostid), planned.item.getType()));
+        }
+        params.add(param);
+      }
+      long start = System.nanoTime();
+      ZabbixAPIResult result = zabbixApi.itemListCreate(params);
+      if (!report.step("create items", params.size(), start, result)) return report;
+    }
+
+    if (!plan.itemsToUpdate.isEmpty()) {
+      long start = System.nanoTime();
+      ZabbixAPIResult result = zabbixApi.itemListUpdate(new ArrayList<>(plan.itemsToUpdate));
+      if (!report.step("update items", plan.itemsToUpdate.size(), start, result)) return report;
+    }
+
+    if (!plan.itemsToDelete.isEmpty()) {
+      long start = System.nanoTime();
+      ZabbixAPIResult result = zabbixApi.itemListDeleteByItemId(new ArrayList<>(plan.itemsToDelete));
+      if (!report.step("delete items", plan.itemsToDelete.size(), start, result)) return report;
+    }
+
+    if (!plan.hostsToDelete.isEmpty()) {
+      long start = System.nanoTime();
+      ZabbixAPIResult result = zabbixApi.hostListDeleteById(new ArrayList<>(plan.hostsToDelete));
+      if (!report.step("delete hosts", plan.hostsToDelete.size(), start, result)) return report;
+    }
+
+    report.setResult(ZabbixAPIResult.success(plan.toString()));
+    return report;
+  }
+
+  private boolean refreshInterfaces(ZabbixReconcilePlan plan, ZabbixReconcileReport report, List<Long> hostIds) {
+    long start = System.nanoTime();
+    int count = 0;
+    for (List<Long> chunk : chunks(new ArrayList<>(new LinkedHashSet<>(hostIds)), HOSTS_PER_CALL)) {
+      ArrayList<String> hostIdList = new ArrayList<>();
+      chunk.forEach(hostid -> hostIdList.add(String.valueOf(hostid)));
+      chunk.forEach(hostid -> plan.interfacesByHost.put(hostid, new ArrayList<>()));
+      ZabbixAPIResult result = zabbixApi.hostInterfaceGetByHostIds(hostIdList, HostInterface.class);
+      if (result.isFail()) return report.step("get interfaces", count, start, result);
+      for (Object row : (List<?>) result.getData()) {
+        HostInterface hostInterface = (HostInterface) row;
+        plan.interfacesByHost.get(hostInterface.getHostid()).add(hostInterface);
+        count++;
+      }
+    }
+    return report.step("get interfaces", count, start, ZabbixAPIResult.success(count));
+  }
+
+  private static void putIds(Map<String, Long> ids, List<String> names, ZabbixAPIResult result, String idsField) {
+    JsonNode createdIds = ((JsonNode) result.getData()).get(idsField);
+    for (int i = 0; i < names.size(); i++) {
+      ids.put(names.get(i), createdIds.get(i).asLong());
+    }
+  }
+
+  private static List<Map<String, Object>> groupsParam(ZabbixReconcilePlan plan, ZabbixInventory.DesiredHost host) {
+    List<Map<String, Object>> groups = new ArrayList<>();
+    host.groups.forEach(group -> groups.add(Collections.singletonMap("groupid", plan.groupIds.get(group))));
+    return groups;
+  }
+
+  /**
+   * Zabbix needs exactly one main interface per type. The first new interface of a type becomes main
+   * when the host has none of that type yet.
+   */
+  private static List<HashMap<String, Object>> interfaceParams(Long hostid, List<HostInterface> existing,
+                                                               List<HostInterface> missing) {
+    Set<Integer> typesWithMain = new HashSet<>();
+    existing.forEach(hostInterface -> typesWithMain.add(hostInterface.getType()));
+    missing.forEach(hostInterface -> {
+      if (hostInterface.getMain() == 1) typesWithMain.add(hostInterface.getType());
+    });
+
+    List<HashMap<String, Object>> params = new ArrayList<>();
+    for (HostInterface hostInterface : missing) {
+      HashMap<String, Object> param = new HashMap<>();
+      param.put("hostid", hostid);
+      param.put("type", hostInterface.getType());
+      param.put("main", hostInterface.getMain() == 1 || typesWithMain.add(hostInterface.getType()) ? 1 : 0);
+      param.put("useip", hostInterface.getUseip());
+      param.put("ip", Objects.toString(hostInterface.getIp(), ""));
+      param.put("dns", Objects.toString(hostInterface.getDns(), ""));
+      param.put("port", hostInterface.getPort());
+      params.add(param);
+    }
+    return params;
+  }
+
+  private static boolean sameInterface(HostInterface a, HostInterface b) {
+    return a.getType() == b.getType() && Objects.equals(a.getPort(), b.getPort())
+            && Objects.toString(a.getIp(), "").equals(Objects.toString(b.getIp(), ""))
+            && Objects.toString(a.getDns(), "").equals(Objects.toString(b.getDns(), ""));
+  }
+
+  /**
+   * @return false for items zabbix manages itself: inherited from a template or discovered by low-level discovery
+   */
+  private static boolean isOwnItem(Item item) {
+    return item.getTemplateid() == 0 && item.getFlags() != ITEM_DISCOVERED;
+  }
+
+  private static boolean sameItem(Item current, Item desired) {
+    return Objects.equals(current.getName(), desired.getName()) && current.getType() == desired.getType()
+            && current.getValueType() == desired.getValueType()
+            && Objects.equals(current.getDelay(), Objects.toString(desired.getDelay(), "0"))
+            && (desired.getInterfaceid() == 0 || current.getInterfaceid() == desired.getInterfaceid());
+  }
+
+  private static HashMap<String, Object> itemParams(Item item) {
+    HashMap<String, Object> param = new HashMap<>();
+    param.put("key_", item.getKey());
+    param.put("name", item.getName());
+    param.put("type", item.getType().code());
+    param.put("value_type", item.getValueType().code());
+    param.put("delay", Objects.toString(item.getDelay(), "0"));
+    param.put("interfaceid", item.getInterfaceid());
+    return param;
+  }
+
+  /**
+   * @return the main interface of the type the item type polls through, or 0 if it needs none
+   */
+  private static long pickInterface(List<HostInterface> interfaces, ZabbixItemType itemType) {
+    int interfaceType;
+    switch (itemType) {
+      case ZABBIX_AGENT:
+        interfaceType = 1;
+        break;
+      case SNMPV1_AGENT:
+      case SNMPV2_AGENT:
+      case SNMPV3_AGENT:
+      case SNMP_TRAP:
+        interfaceType = 2;
+        break;
+      case IPMI_AGENT:
+        interfaceType = 3;
+        break;
+      case JMX_AGENT:
+        interfaceType = 4;
+        break;
+      default:
+        return 0;
+    }
+    long picked = 0;
+    for (HostInterface hostInterface : interfaces == null ? Collections.<HostInterface>emptyList() : interfaces) {
+      if (hostInterface.getType() != interfaceType) continue;
+      if (hostInterface.getMain() == 1) return hostInterface.getInterfaceid();
+      if (picked == 0) picked = hostInterface.getInterfaceid();
+    }
+    return picked;
+  }
+
+  private static <T> List<List<T>> chunks(List<T> list, int size) {
+    List<List<T>> chunks = new ArrayList<>();
+    for (int from = 0; from < list.size(); from += size) {
+      chunks.add(list.subList(from, Math.min(from + size, list.size())));
+    }
+    return chunks;
+  }
+
+  private static long elapsed(long startNanos) {
+    return System.nanoTime() - startNanos;
+  }
+}
@@ -0,0 +1,239 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Retries, hedged requests, circuit breaker and deadline around the requests of ZabbixApi.call.
+ * <p>
+ * Only transport errors count as failures: an error returned by zabbix means the server is answering.
+ * Calls run on the caller thread unless they need a deadline or a hedge, which run the requests on
+ * daemon threads "zabbix-call-N" so the caller can stop waiting and abort them.
+ */
+@Slf4j
+public class ZabbixResilience {
+  /**
+   * Successful calls of a method needed before its latency percentile is trusted for hedging.
+   */
+  private static final int HEDGE_MIN_SAMPLES = 20;
+
+  private final ZabbixResilienceConfig config;
+  private final ZabbixCircuitBreaker circuitBreaker;
+  private final Map<String, ZabbixLatencyHistogram> latencies = new ConcurrentHashMap<>();
+  private final LongAdder callCount = new LongAdder();
+  private final LongAdder retryCount = new LongAdder();
+  private final LongAdder hedgeCount = new LongAdder();
+  private final LongAdder hedgeWinCount = new LongAdder();
+  private ExecutorService executor;
+
+  ZabbixResilience(ZabbixResilienceConfig config) {
+    this.config = config;
+    this.circuitBreaker = new ZabbixCircuitBreaker(config.getCircuitFailureThreshold(), config.getCircuitOpenTime());
+  }
+
+  static boolean isIdempotent(String method) {
+    return method.endsWith(".get") || "apiinfo.version".equals(method);
+  }
+
+  /**
+   * @param method     zabbix api method
+   * @param newRequest builds a new http request for each attempt, an aborted one cannot be sent again
+   * @param execute    sends a request and parses the response, throws RuntimeException caused by IOException
+   *                   on transport errors
+   */
+  JsonNode call(String method, Supplier<HttpUriRequest> newRequest, Function<HttpUriRequest, JsonNode> execute) {
+    callCount.increment();
+    long deadlineAt = config.getDeadline() > 0
+            ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getDeadline()) : Long.MAX_VALUE;
+    boolean idempotent = isIdempotent(method);
+    boolean hedge = idempotent && config.getHedgePercentile() > 0;
+
+    for (int attempt = 0; ; attempt++) {
+      if (!circuitBreaker.allowRequest()) {
+        throw new RuntimeException("DefaultZabbixApi call exception!",
+                new IOException("Circuit open after " + config.getCircuitFailureThreshold() + " failed calls"));
+      }
+      long start = System.nanoTime();
+      try {
+        JsonNode response = hedge || deadlineAt != Long.MAX_VALUE
+                ? race(method, hedge, deadlineAt, newRequest, execute)
+                : execute.apply(newRequest.get());
+        circuitBreaker.onSuccess();
+        latencies.computeIfAbsent(method, key -> new ZabbixLatencyHistogram()).record(System.nanoTime() - start);
+        return response;
+      } catch (RuntimeException e) {
+        if (!isTransportError(e)) {
+          circuitBreaker.onIgnored();
+          throw e;
+        }
+        circuitBreaker.onFailure();
+        if (!idempotent || attempt >= config.getMaxRetries() || isDeadlineExceeded(e)
+                || Thread.currentThread().isInterrupted()) {
+          throw e;
+        }
+
+        long backoff = Math.min(config.getMaxRetryBackoff(), config.getRetryBackoff() << Math.min(attempt, 20));
+        long sleepNanos = TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextLong(backoff + 1));
+        if (System.nanoTime() + sleepNanos >= deadlineAt) throw e;
+        log.debug("Retry {} of {} after {}", attempt + 1, method, e.getCause().toString());
+        try {
+          TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+        retryCount.increment();
+      }
+    }
+  }
+
+  /**
+   * Send the request on an executor thread, plus a hedge once the method's latency percentile has passed,
+   * and wait until the first response, until both failed or until the deadline.
+   */
+  private JsonNode race(String method, boolean hedge, long deadlineAt, Supplier<HttpUriRequest> newRequest,
+                        Function<HttpUriRequest, JsonNode> execute) {
+    CompletionService<JsonNode> completion = new ExecutorCompletionService<>(executor());
+    Map<Future<JsonNode>, HttpUriRequest> inFlight = new HashMap<>(4);
+    HttpUriRequest first = newRequest.get();
+    inFlight.put(completion.submit(() -> execute.apply(first)), first);
+    long hedgeAt = hedge ? hedgeAt(method) : Long.MAX_VALUE;
+    boolean hedged = false;
+    RuntimeException failure = null;
+    try {
+      while (!inFlight.isEmpty()) {
+        long waitUntil = Math.min(deadlineAt, hedgeAt);
+        Future<JsonNode> done = waitUntil == Long.MAX_VALUE ? completion.take()
+                : completion.poll(waitUntil - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (done == null) {
+          if (System.nanoTime() >= deadlineAt) {
+            throw new RuntimeException("DefaultZabbixApi call exception!", new DeadlineExceededException(
+                    method + " took longer than the deadline of " + config.getDeadline() + " ms"));
+          }
+          hedgeAt = Long.MAX_VALUE;
+          if (acquireHedge()) {
+            HttpUriRequest second = newRequest.get();
+            inFlight.put(completion.submit(() -> execute.apply(second)), second);
+            hedged = true;
+          }
+          continue;
+        }
+
+        HttpUriRequest request = inFlight.remove(done);
+        try {
+          JsonNode response = done.get();
+          if (hedged && request != first) hedgeWinCount.increment();
+          return response;
+        } catch (ExecutionException e) {
+          failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                  : new RuntimeException("DefaultZabbixApi call exception!", e.getCause());
+        }
+      }
+      throw failure;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("DefaultZabbixApi call exception!", new InterruptedIOException("Interrupted"));
+    } finally {
+      // Losers and requests past the deadline give their connection back at once.
+      inFlight.forEach((future, request) -> request.abort());
+    }
+  }
+
+  private long hedgeAt(String method) {
+    ZabbixLatencyHistogram histogram = latencies.get(method);
+    if (histogram == null || histogram.getCount() < HEDGE_MIN_SAMPLES) return Long.MAX_VALUE;
+
+    long delay = Math.max(TimeUnit.MILLISECONDS.toNanos(config.getMinHedgeDelay()),
+            histogram.getPercentileNanos(config.getHedgePercentile()));
+    return System.nanoTime() + delay;
+  }
+
+  private boolean acquireHedge() {
+    if (circuitBreaker.getState() != ZabbixCircuitBreaker.State.CLOSED) return false;
+    if (hedgeCount.sum() * 100 >= callCount.sum() * config.getHedgeBudgetPercent()) return false;
+    hedgeCount.increment();
+    return true;
+  }
+
+  private static boolean isTransportError(RuntimeException e) {
+    return e.getCause() instanceof IOException;
+  }
+
+  private static boolean isDeadlineExceeded(RuntimeException e) {
+    return e.getCause() instanceof DeadlineExceededException;
+  }
+
+  private synchronized ExecutorService executor() {
+    if (executor == null) {
+      AtomicInteger threadId = new AtomicInteger();
+      executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "zabbix-call-" + threadId.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return executor;
+  }
+
+  synchronized void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  public ZabbixCircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  /**
+   * @return requests repeated after a transport error
+   */
+  public long getRetryCount() {
+    return retryCount.sum();
+  }
+
+  /**
+   * @return hedged requests sent
+   */
+  public long getHedgeCount() {
+    return hedgeCount.sum();
+  }
+
+  /**
+   * @return hedged requests that answered before the request they duplicated
+   */
+  public long getHedgeWinCount() {
+    return hedgeWinCount.sum();
+  }
+
+  /**
+   * Cause of the exception thrown when a call runs out of its deadline.
+   */
+  public static class DeadlineExceededException extends InterruptedIOException {
+    private static final long serialVersionUID = 1L;
+
+    DeadlineExceededException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package org.cmbc.bigdata.zabbix;
+
+import lombok.Data;
+
+/**
+ * Retry, hedging, circuit breaker and deadline settings of ZabbixApi.call. Everything is off by default.
+ * Retries and hedged requests are only used for idempotent methods, i.e. *.get and apiinfo.version.
+ * All durations are in milliseconds.
+ */
+@Data
+public class ZabbixResilienceConfig {
+  /**
+   * Times an idempotent call is repeated after a transport error, e.g. a reset connection or a 502 page.
+   * Errors returned by zabbix are never retried.
+   */
+  private int maxRetries = 0;
+
+  /**
+   * Backoff before the first retry, doubled for each next one up to maxRetryBackoff. The actual wait is
+   * random between zero and that, so callers failing together do not retry together.
+   */
+  private long retryBackoff = 100;
+
+  private long maxRetryBackoff = 2000;
+
+  /**
+   * Send a second identical request when the first one takes longer than this percentile of the method's
+   * latency, and use whichever answers first. E.g. 95. Zero disables hedging.
+   */
+  private double hedgePercentile = 0;
+
+  /**
+   * Never hedge sooner than this.
+   */
+  private long minHedgeDelay = 20;
+
+  /**
+   * Max hedged requests in percent of calls, so a slow server gets at most that much more load.
+   */
+  private int hedgeBudgetPercent = 10;
+
+  /**
+   * Consecutive failed calls that open the circuit. While it is open calls fail at once without a request.
+   * Zero disables the circuit breaker.
+   */
+  private int circuitFailureThreshold = 0;
+
+  /**
+   * How long the circuit stays open before one trial call may go through.
+   */
+  private long circuitOpenTime = 10000;
+
+  /**
+   * Time budget of a whole call, retries and hedges included. Requests still running then are aborted.
+   * Zero means no deadline, socketTimeout still applies to each request.
+   */
+  private long deadline = 0;
+}
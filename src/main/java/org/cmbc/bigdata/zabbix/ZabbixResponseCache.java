@@ -0,0 +1,290 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Responses of read calls, kept for the ttl of their method and bounded by approximate heap bytes.
+ * <p>
+ * A response past its ttl but within staleWhileRevalidate is still returned, and one background call on a
+ * daemon thread "zabbix-cache-N" replaces it. A write of an object type, e.g. host.delete, drops the cached
+ * responses of that type and of the types it changes too, see DEPENDENT_TYPES, e.g. host.get, item.get and
+ * hostinterface.get; responses loading during the write are not cached. Other responses embedding the
+ * written objects, e.g. event.get with selectHosts, stay until their ttl.
+ * Error responses are never cached. Every caller gets its own copy of a cached response.
+ */
+@Slf4j
+public class ZabbixResponseCache {
+  /**
+   * Other object types a write of a type changes: objects deleted with it, or linking it in their rows.
+   */
+  private static final Map<String, List<String>> DEPENDENT_TYPES = new HashMap<>();
+
+  static {
+    DEPENDENT_TYPES.put("host", Arrays.asList("hostgroup", "hostinterface", "item", "application", "trigger",
+            "graph", "discoveryrule"));
+    DEPENDENT_TYPES.put("template", Arrays.asList("host", "hostgroup", "item", "application", "trigger", "graph",
+            "discoveryrule"));
+    DEPENDENT_TYPES.put("hostgroup", Arrays.asList("host", "template"));
+    DEPENDENT_TYPES.put("hostinterface", Collections.singletonList("host"));
+    DEPENDENT_TYPES.put("item", Arrays.asList("host", "application", "trigger", "graph"));
+    DEPENDENT_TYPES.put("application", Arrays.asList("host", "item"));
+    DEPENDENT_TYPES.put("trigger", Arrays.asList("host", "item"));
+  }
+
+  private final ZabbixResponseCacheConfig config;
+  // Access ordered, so the first entry is the least recently used.
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder staleHitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+  private long weight;
+  private ExecutorService refresher;
+
+  ZabbixResponseCache(ZabbixResponseCacheConfig config) {
+    this.config = config;
+  }
+
+  boolean isCached(String method) {
+    Long ttl = config.getTtls().get(method);
+    return ttl != null && ttl > 0;
+  }
+
+  /**
+   * @param key    canonical method, auth and params of the call
+   * @param method zabbix api method, which must be cached
+   * @param load   sends the call
+   * @return a copy of the cached response, or the loaded one
+   */
+  JsonNode get(String key, String method, Supplier<JsonNode> load) {
+    long now = System.nanoTime();
+    Entry entry;
+    boolean stale = false;
+    boolean refresh = false;
+    synchronized (this) {
+      entry = entries.get(key);
+      if (entry != null && now - entry.staleAt >= 0) {
+        stale = now - entry.expiresAt < 0;
+        if (stale) {
+          refresh = !entry.refreshing;
+          entry.refreshing = true;
+        } else {
+          entry = null;
+        }
+      }
+    }
+    if (entry != null) {
+      if (stale) {
+        staleHitCount.increment();
+      } else {
+        hitCount.increment();
+      }
+      if (refresh) refresh(key, method, load);
+      return entry.response.deepCopy();
+    }
+
+    missCount.increment();
+    return load(key, method, load).deepCopy();
+  }
+
+  private JsonNode load(String key, String method, Supplier<JsonNode> load) {
+    long generation = generation(objectType(method)).get();
+    JsonNode response = load.get();
+    if (response.has("error")) return response;
+
+    long ttlNanos = TimeUnit.MILLISECONDS.toNanos(config.getTtls().get(method));
+    long now = System.nanoTime();
+    Entry entry = new Entry(response, weigh(response), objectType(method), now + ttlNanos,
+            now + ttlNanos + TimeUnit.MILLISECONDS.toNanos(config.getStaleWhileRevalidate()));
+    synchronized (this) {
+      // A write of the object type while the call was loading may have changed the response.
+      if (generation(objectType(method)).get() != generation) return response;
+
+      Entry replaced = entries.put(key, entry);
+      if (replaced != null) weight -= replaced.weight;
+      weight += entry.weight;
+      evict();
+    }
+    return response;
+  }
+
+  private void refresh(String key, String method, Supplier<JsonNode> load) {
+    try {
+      refresher().execute(() -> {
+        try {
+          load(key, method, load);
+        } catch (RuntimeException e) {
+          log.debug("Refresh of {} failed: {}", method, e.toString());
+        } finally {
+          synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) entry.refreshing = false;
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // Shut down, the stale response is still returned this time.
+    }
+  }
+
+  private void evict() {
+    Iterator<Entry> eldest = entries.values().iterator();
+    // The newest entry stays even if it alone is heavier than maxWeight.
+    while (weight > config.getMaxWeight() && entries.size() > 1) {
+      weight -= eldest.next().weight;
+      eldest.remove();
+      evictionCount.increment();
+    }
+  }
+
+  /**
+   * Drop the responses of the object types written by method, e.g. host.get and item.get for host.delete.
+   */
+  void invalidate(String method) {
+    Set<String> objectTypes = writtenTypes(method);
+    objectTypes.forEach(objectType -> generation(objectType).incrementAndGet());
+    synchronized (this) {
+      Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<String, Entry> entry = it.next();
+        if (objectTypes.contains(entry.getValue().objectType)) {
+          weight -= entry.getValue().weight;
+          it.remove();
+        }
+      }
+    }
+  }
+
+  private AtomicLong generation(String objectType) {
+    return generations.computeIfAbsent(objectType, type -> new AtomicLong());
+  }
+
+  /**
+   * @return the object type of method and the types depending on it
+   */
+  static Set<String> writtenTypes(String method) {
+    String objectType = objectType(method);
+    Set<String> objectTypes = new HashSet<>(DEPENDENT_TYPES.getOrDefault(objectType, Collections.emptyList()));
+    objectTypes.add(objectType);
+    return objectTypes;
+  }
+
+  static String objectType(String method) {
+    int dot = method.indexOf('.');
+    return dot < 0 ? method : method.substring(0, dot);
+  }
+
+  /**
+   * Rough heap bytes of a parsed response: node headers plus two bytes per char of text.
+   */
+  static long weigh(JsonNode node) {
+    if (node.isContainerNode()) {
+      long weight = 48;
+      Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        weight += 48 + 2L * field.getKey().length() + weigh(field.getValue());
+      }
+      if (node.isArray()) {
+        for (JsonNode element : node) {
+          weight += 8 + weigh(element);
+        }
+      }
+      return weight;
+    }
+    return node.isTextual() ? 56 + 2L * node.textValue().length() : 24;
+  }
+
+  private synchronized ExecutorService refresher() {
+    if (refresher == null) {
+      AtomicInteger threadId = new AtomicInteger();
+      refresher = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "zabbix-cache-" + threadId.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return refresher;
+  }
+
+  synchronized void shutdown() {
+    if (refresher != null) {
+      refresher.shutdownNow();
+      refresher = null;
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  /**
+   * @return approximate heap bytes of the cached responses
+   */
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * @return calls answered with a response past its ttl while it was refreshed
+   */
+  public long getStaleHitCount() {
+    return staleHitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  private static class Entry {
+    private final JsonNode response;
+    private final long weight;
+    private final String objectType;
+    private final long staleAt;
+    private final long expiresAt;
+    // Only read and changed under the lock of the cache.
+    private boolean refreshing;
+
+    Entry(JsonNode response, long weight, String objectType, long staleAt, long expiresAt) {
+      this.response = response;
+      this.weight = weight;
+      this.objectType = objectType;
+      this.staleAt = staleAt;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
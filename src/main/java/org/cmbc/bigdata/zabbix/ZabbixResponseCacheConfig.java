@@ -0,0 +1,40 @@
+package org.cmbc.bigdata.zabbix;
+
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of the response cache of ZabbixApi.callApi. Only read methods with a ttl are cached.
+ * All durations are in milliseconds.
+ */
+@Data
+public class ZabbixResponseCacheConfig {
+  /**
+   * Approximate heap bytes of all cached responses. The least recently used ones are evicted beyond it.
+   */
+  private long maxWeight = 16 * 1024 * 1024;
+
+  /**
+   * How long the response of a method is fresh, e.g. apiinfo.version to 3600000. Methods not listed are
+   * not cached.
+   */
+  private Map<String, Long> ttls = new HashMap<>();
+
+  /**
+   * How long after its ttl a response is still returned while a background call refreshes it. Zero makes
+   * callers wait for the new response.
+   */
+  private long staleWhileRevalidate = 0;
+
+  /**
+   * @param method zabbix api read method, e.g. hostgroup.get
+   * @param ttl    how long its responses are fresh
+   * @return this
+   */
+  public ZabbixResponseCacheConfig ttl(String method, long ttl) {
+    ttls.put(method, ttl);
+    return this;
+  }
+}
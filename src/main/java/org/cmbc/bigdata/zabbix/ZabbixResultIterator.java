@@ -0,0 +1,193 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates the rows of a JSON-RPC "result" array while they are read from the http response,
+ * so only one row is held in memory at a time. A result object (e.g. with preservekeys) is iterated by value,
+ * a scalar result is returned as a single row.
+ * <p>
+ * When hasNext() returns false, getResult() tells whether the call succeeded. If zabbix returned an error,
+ * no rows are returned and getResult() carries its code, message and data.
+ * <p>
+ * Rows are JsonNode trees, or objects of a row type such as Item, which databind fills straight from the parser
+ * without building a tree first.
+ * <p>
+ * The iterator holds a pooled connection until it is closed. Closing it before the end drops the connection
+ * instead of reading the rest of the response.
+ */
+public class ZabbixResultIterator<T> implements Iterator<T>, Closeable {
+  private final CloseableHttpResponse response;
+  private final JsonParser parser;
+  private final ObjectReader rowReader;
+  private final ZabbixAPIResult result = new ZabbixAPIResult();
+
+  private JsonToken rowsEnd;
+  private T scalar;
+  private T next;
+  private boolean finished;
+  private int count;
+  private Runnable closeHook;
+
+  ZabbixResultIterator(CloseableHttpResponse response, JsonParser parser, ObjectReader rowReader) throws IOException {
+    this.response = response;
+    this.parser = parser;
+    this.rowReader = rowReader;
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException(parser, "JSON-RPC response should be an object, status: " + response.getStatusLine());
+    }
+    result.setCode(ZabbixAPIResultCode.SUCCESS.code());
+    result.setMessage("Call Zabbix API Success.");
+    result.setData(count);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      try {
+        next = fetchNext();
+      } catch (IOException e) {
+        throw new RuntimeException("DefaultZabbixApi stream exception!", e);
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    T row = next;
+    next = null;
+    count++;
+    return row;
+  }
+
+  /**
+   * @return ZabbixAPIResult. If success, data is the number of rows returned so far.
+   * If error happened, refer to code, message, data for information.
+   */
+  public ZabbixAPIResult getResult() {
+    if (result.getCode() == ZabbixAPIResultCode.SUCCESS.code()) {
+      result.setData(count);
+    }
+    return result;
+  }
+
+  public Spliterator<T> spliterator() {
+    return Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+  }
+
+  /**
+   * @return sequential stream of rows which closes this iterator when the stream is closed
+   */
+  public Stream<T> stream() {
+    return StreamSupport.stream(spliterator(), false).onClose(() -> {
+      try {
+        close();
+      } catch (IOException e) {
+        throw new RuntimeException("DefaultZabbixApi stream close exception!", e);
+      }
+    });
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      parser.close();
+      if (finished) {
+        EntityUtils.consume(response.getEntity());
+      }
+    } finally {
+      try {
+        response.close();
+      } finally {
+        Runnable hook = closeHook;
+        closeHook = null;
+        if (hook != null) hook.run();
+      }
+    }
+  }
+
+  /**
+   * @param closeHook run once, after the response is closed
+   */
+  void setCloseHook(Runnable closeHook) {
+    this.closeHook = closeHook;
+  }
+
+  /**
+   * @return bytes of the response body parsed so far
+   */
+  long getBytesRead() {
+    return parser.getCurrentLocation().getByteOffset();
+  }
+
+  private T fetchNext() throws IOException {
+    while (true) {
+      if (scalar != null) {
+        T row = scalar;
+        scalar = null;
+        return row;
+      }
+      if (rowsEnd == null) {
+        if (finished) return null;
+        seekRows();
+        continue;
+      }
+      JsonToken token = parser.nextToken();
+      if (token == rowsEnd) {
+        rowsEnd = null;
+        continue;
+      }
+      if (token == JsonToken.FIELD_NAME) {
+        parser.nextToken();
+      }
+      return rowReader.readValue(parser);
+    }
+  }
+
+  /**
+   * Move the parser to the next "result" value, recording an "error" object on the way.
+   */
+  private void seekRows() throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if ("result".equals(field)) {
+        if (token == JsonToken.START_ARRAY) {
+          rowsEnd = JsonToken.END_ARRAY;
+        } else if (token == JsonToken.START_OBJECT) {
+          rowsEnd = JsonToken.END_OBJECT;
+        } else {
+          scalar = rowReader.readValue(parser);
+        }
+        return;
+      } else if ("error".equals(field)) {
+        JsonNode error = ZabbixJson.mapper.readTree(parser);
+        result.setCode(error.get("code").asInt());
+        result.setMessage(error.get("message").asText());
+        result.setData(error.get("data").asText());
+      } else {
+        parser.skipChildren();
+      }
+    }
+    finished = true;
+  }
+}
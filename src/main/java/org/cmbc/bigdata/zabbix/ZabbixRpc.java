@@ -0,0 +1,83 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * JSON-RPC request building, response parsing and login handling shared by ZabbixApi and ZabbixAsyncApi,
+ * so both clients send and read calls the same way.
+ */
+@Slf4j
+final class ZabbixRpc {
+  private ZabbixRpc() {
+
+  }
+
+  static RequestAbstract request(String method, Object params) {
+    return RequestBuilder.newBuilder().initRequest(params).method(method).build();
+  }
+
+  /**
+   * Send the request with auth, unless it already has one or its method is rejected with one,
+   * e.g. apiinfo.version.
+   */
+  static void authorize(RequestAbstract request, String auth) {
+    if (request.getAuth() == null && !ZabbixSession.isAuthFree(request.getMethod())) {
+      request.setAuth(auth);
+    }
+  }
+
+  /**
+   * Parse the JSON body of a response.
+   *
+   * @param sample gets the body size and parse time, may be null
+   * @throws ClientProtocolException if the response has no body
+   */
+  static JsonNode readResponse(HttpResponse response, ZabbixCallSample sample) throws IOException {
+    HttpEntity entity = response.getEntity();
+    if (entity == null) {
+      throw new ClientProtocolException("Empty response, status: " + response.getStatusLine());
+    }
+    long parseStart = System.nanoTime();
+    try (JsonParser parser = ZabbixJson.mapper.getFactory().createParser(entity.getContent())) {
+      JsonNode tree = ZabbixJson.mapper.readTree(parser);
+      if (sample != null) {
+        sample.setResponseBytes(parser.getCurrentLocation().getByteOffset());
+        sample.setParseNanos(System.nanoTime() - parseStart);
+      }
+      if (tree == null) {
+        throw new ClientProtocolException("Empty response body, status: " + response.getStatusLine());
+      }
+      return tree;
+    }
+  }
+
+  static HashMap<String, String> loginParams(String user, String password) {
+    HashMap<String, String> params = new HashMap<>();
+    params.put("user", user);
+    params.put("password", password);
+    return params;
+  }
+
+  /**
+   * @return the auth of a user.login result, or null if login failed
+   */
+  static String loginAuth(String user, ZabbixAPIResult zabbixAPIResult) {
+    if (zabbixAPIResult.isFail()) {
+      log.info("User {} login failure. Error Info:{}", user, zabbixAPIResult.getData());
+      return null;
+    }
+    String auth = ((JsonNode) zabbixAPIResult.getData()).asText();
+    if (auth == null || auth.isEmpty()) return null;
+
+    log.info("User:{} login success.", user);
+    return auth;
+  }
+}
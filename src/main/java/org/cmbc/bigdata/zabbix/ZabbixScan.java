@@ -0,0 +1,218 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Scans a whole inventory with a get method, e.g. item.get, split into partitions of hostids or groupids.
+ * Partitions are fetched on parallelism threads and their rows streamed through a bounded queue to a
+ * consumer running on the calling thread. A slow consumer fills the queue, which stops the fetching
+ * threads from reading their responses, so memory stays bounded whatever the size of the inventory.
+ * <pre>
+ * ZabbixAPIResult result = zabbixApi.scan("item.get")
+ *         .query(ZabbixQuery.newQuery().output("itemid", "key_"))
+ *         .partitionByHosts(200)
+ *         .parallelism(4)
+ *         .execute(Item.class, item -> ...);
+ * </pre>
+ * Rows of different partitions arrive interleaved. Keep parallelism below maxConnectionsPerRoute of the
+ * transport, each partition holds a pooled connection while it streams.
+ */
+@Slf4j
+public class ZabbixScan {
+  private final ZabbixApi zabbixApi;
+  private final String method;
+  private ZabbixQuery query = ZabbixQuery.newQuery();
+  private String partitionField = "hostids";
+  private int partitionSize = 100;
+  private int parallelism = 4;
+  private int queueCapacity = 10000;
+
+  ZabbixScan(ZabbixApi zabbixApi, String method) {
+    this.zabbixApi = zabbixApi;
+    this.method = method;
+  }
+
+  /**
+   * @param query params sent with every partition, e.g. output. Its groupids, if any, also restrict the
+   *              hosts listed by partitionByHosts.
+   * @return ZabbixScan
+   */
+  public ZabbixScan query(ZabbixQuery query) {
+    this.query = query;
+    return this;
+  }
+
+  /**
+   * Partition by hosts, listed with host.get. This is the default, with 100 hosts per partition.
+   *
+   * @param hostsPerPartition hostids sent with each call
+   * @return ZabbixScan
+   */
+  public ZabbixScan partitionByHosts(int hostsPerPartition) {
+    this.partitionField = "hostids";
+    this.partitionSize = hostsPerPartition;
+    return this;
+  }
+
+  /**
+   * Partition by host groups, listed with hostgroup.get. Fewer calls than partitionByHosts, but a host in
+   * several groups of different partitions is scanned once per partition.
+   *
+   * @param groupsPerPartition groupids sent with each call
+   * @return ZabbixScan
+   */
+  public ZabbixScan partitionByGroups(int groupsPerPartition) {
+    this.partitionField = "groupids";
+    this.partitionSize = groupsPerPartition;
+    return this;
+  }
+
+  /**
+   * @param parallelism partitions fetched at the same time, 4 by default
+   * @return ZabbixScan
+   */
+  public ZabbixScan parallelism(int parallelism) {
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * @param queueCapacity rows fetched ahead of the consumer before fetching threads wait, 10000 by default
+   * @return ZabbixScan
+   */
+  public ZabbixScan queueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+    return this;
+  }
+
+  public ZabbixAPIResult execute(Consumer<JsonNode> rowConsumer) {
+    return execute(JsonNode.class, rowConsumer);
+  }
+
+  /**
+   * Run the scan. rowConsumer is called on the calling thread, one row at a time.
+   * <p>
+   * The scan stops at the first failed partition and returns its error. Rows of the partitions done or
+   * in progress until then have already been handed to rowConsumer.
+   *
+   * @param rowType class rows are decoded into, e.g. Item
+   * @return ZabbixAPIResult.data is the number of rows handed to rowConsumer.
+   * If error happened, refer to code, message, data for information.
+   */
+  public <T> ZabbixAPIResult execute(Class<T> rowType, Consumer<? super T> rowConsumer) {
+    if (partitionSize <= 0 || parallelism <= 0 || queueCapacity <= 0) {
+      throw new IllegalArgumentException("partitionSize, parallelism and queueCapacity must be positive");
+    }
+
+    List<String> ids = new ArrayList<>();
+    ZabbixAPIResult listResult = listPartitionIds(ids);
+    if (listResult.isFail()) return listResult;
+
+    List<List<String>> partitions = new ArrayList<>();
+    for (int from = 0; from < ids.size(); from += partitionSize) {
+      partitions.add(ids.subList(from, Math.min(from + partitionSize, ids.size())));
+    }
+
+    BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueCapacity);
+    AtomicInteger threadId = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, partitions.size())),
+            runnable -> {
+              Thread thread = new Thread(runnable, "zabbix-scan-" + threadId.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      for (List<String> partition : partitions) {
+        executor.execute(() -> fetch(partition, rowType, queue));
+      }
+
+      long rows = 0;
+      int done = 0;
+      while (done < partitions.size()) {
+        Object element = queue.take();
+        if (element instanceof PartitionDone) {
+          PartitionDone partitionDone = (PartitionDone) element;
+          if (partitionDone.exception instanceof Error) throw (Error) partitionDone.exception;
+          if (partitionDone.exception != null) {
+            throw new RuntimeException("DefaultZabbixApi scan exception!", partitionDone.exception);
+          }
+          if (partitionDone.result.isFail()) {
+            log.warn("Scan {} stopped at a failed partition after {} rows", method, rows);
+            return partitionDone.result;
+          }
+          done++;
+        } else {
+          rowConsumer.accept(rowType.cast(element));
+          rows++;
+        }
+      }
+      return ZabbixAPIResult.success(rows);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("DefaultZabbixApi scan interrupted!", e);
+    } finally {
+      // Interrupts fetching threads waiting on the full queue, which closes their responses.
+      executor.shutdownNow();
+    }
+  }
+
+  private <T> void fetch(List<String> partition, Class<T> rowType, BlockingQueue<Object> queue) {
+    PartitionDone partitionDone = new PartitionDone();
+    try {
+      HashMap<String, Object> params = query.toParams();
+      params.put(partitionField, partition);
+      partitionDone.result = zabbixApi.callApiStream(method, params, rowType, row -> {
+        try {
+          queue.put(row);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("DefaultZabbixApi scan interrupted!", e);
+        }
+      });
+    } catch (Throwable e) {
+      // Errors too, or execute() would wait forever for this partition.
+      if (Thread.currentThread().isInterrupted()) return;
+      partitionDone.exception = e;
+    }
+    try {
+      queue.put(partitionDone);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private ZabbixAPIResult listPartitionIds(List<String> ids) {
+    HashMap<String, Object> params = new HashMap<>();
+    String listMethod;
+    String idField;
+    if ("hostids".equals(partitionField)) {
+      listMethod = "host.get";
+      idField = "hostid";
+      Object groupIds = query.toParams().get("groupids");
+      if (groupIds != null) params.put("groupids", groupIds);
+    } else {
+      listMethod = "hostgroup.get";
+      idField = "groupid";
+    }
+    params.put("output", new String[]{idField});
+    params.put("sortfield", idField);
+
+    return zabbixApi.callApiStream(listMethod, params, row -> ids.add(row.get(idField).asText()));
+  }
+
+  private static class PartitionDone {
+    ZabbixAPIResult result;
+    Throwable exception;
+  }
+}
@@ -0,0 +1,511 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends values of ZABBIX_TRAPPER items to the trapper port of a zabbix server or proxy, like zabbix_sender
+ * does, without a subprocess per batch.
+ * <pre>
+ * ZabbixSender sender = ZabbixSenderBuilder.newBuilder().host("zabbix.example.com").build();
+ * sender.init();
+ * sender.send(new ZabbixSenderValue("web-01", "orders.count", "42"));
+ * ...
+ * sender.destroy();
+ * </pre>
+ * Values are collected into batches of up to maxBatchSize values, or whatever arrived within maxBatchDelay.
+ * One io thread drives up to maxConnections trapper connections with non-blocking channels. The trapper
+ * answers one request per connection and then closes it, so batches are spread over connections instead
+ * of being pipelined on one.
+ * <p>
+ * Request and response buffers are direct buffers reused across batches, they only grow when a batch
+ * does not fit.
+ * <p>
+ * A batch is never sent twice: after an io error or timeout the server may already have stored its values.
+ */
+@Slf4j
+public class ZabbixSender {
+  private static final byte[] HEADER = {'Z', 'B', 'X', 'D', 1};
+  private static final int HEADER_LENGTH = 13;
+  private static final int MAX_RESPONSE_LENGTH = 1 << 20;
+
+  private final InetSocketAddress address;
+  private final int maxBatchSize;
+  private final long maxBatchDelay;
+  private final int maxConnections;
+  private final int connectTimeout;
+  private final int socketTimeout;
+  private final int bufferSize;
+
+  private final Object lock = new Object();
+  private Batch current;
+  private final ConcurrentLinkedQueue<Batch> ready = new ConcurrentLinkedQueue<>();
+  private volatile boolean running;
+  private Selector selector;
+  private Thread ioThread;
+
+  // Only touched by the io thread.
+  private final List<Connection> connections = new ArrayList<>();
+  private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+
+  private final AtomicLong batchCount = new AtomicLong();
+  private final AtomicLong failedBatchCount = new AtomicLong();
+  private final AtomicLong processedCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+
+  ZabbixSender(InetSocketAddress address, int maxBatchSize, long maxBatchDelay, int maxConnections,
+               int connectTimeout, int socketTimeout, int bufferSize) {
+    this.address = address;
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchDelay = maxBatchDelay;
+    this.maxConnections = maxConnections;
+    this.connectTimeout = connectTimeout;
+    this.socketTimeout = socketTimeout;
+    this.bufferSize = bufferSize;
+  }
+
+  public void init() {
+    if (running) return;
+
+    try {
+      selector = Selector.open();
+    } catch (IOException e) {
+      throw new RuntimeException("open selector error!", e);
+    }
+    running = true;
+    ioThread = new Thread(this::run, "zabbix-sender-io");
+    ioThread.setDaemon(true);
+    ioThread.start();
+  }
+
+  /**
+   * Send what is still collected, wait up to connectTimeout + socketTimeout for the batches in flight and
+   * fail those still not answered.
+   */
+  public void destroy() {
+    // Also after the io thread stopped on its own, the selector is still to be closed.
+    if (!running && (selector == null || !selector.isOpen())) return;
+
+    flush();
+    running = false;
+    selector.wakeup();
+    try {
+      ioThread.join(connectTimeout + socketTimeout);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      selector.close();
+    } catch (IOException e) {
+      log.error("close selector error!", e);
+    }
+    // The io thread may still be running if it did not finish in time.
+    ioThread.interrupt();
+    failPending(new IllegalStateException("ZabbixSender destroyed"));
+  }
+
+  /**
+   * Fail the batch being collected and those waiting for a connection.
+   */
+  private void failPending(Exception e) {
+    synchronized (lock) {
+      if (current != null) {
+        ready.add(current);
+        current = null;
+      }
+    }
+    Batch batch;
+    while ((batch = ready.poll()) != null) {
+      batch.future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Add a value to the batch being collected.
+   *
+   * @return completes with the result of the whole batch the value was sent in
+   */
+  public CompletableFuture<ZabbixSenderResult> send(ZabbixSenderValue value) {
+    if (!running) throw new IllegalStateException("ZabbixSender is not initialized");
+
+    boolean first = false;
+    CompletableFuture<ZabbixSenderResult> future;
+    synchronized (lock) {
+      if (current == null) {
+        current = new Batch();
+        first = true;
+      }
+      current.values.add(value);
+      future = current.future;
+      if (current.values.size() >= maxBatchSize) {
+        ready.add(current);
+        current = null;
+        first = true;
+      }
+    }
+    // Wake the io thread to send a full batch or to time the flush of a new one.
+    if (first) selector.wakeup();
+    return future;
+  }
+
+  /**
+   * Send values now, in batches of up to maxBatchSize values, without waiting for maxBatchDelay.
+   *
+   * @return completes with the sum of the batch results
+   */
+  public CompletableFuture<ZabbixSenderResult> send(List<ZabbixSenderValue> values) {
+    if (!running) throw new IllegalStateException("ZabbixSender is not initialized");
+
+    List<CompletableFuture<ZabbixSenderResult>> futures = new ArrayList<>();
+    for (int from = 0; from < values.size(); from += maxBatchSize) {
+      Batch batch = new Batch();
+      batch.values.addAll(values.subList(from, Math.min(from + maxBatchSize, values.size())));
+      ready.add(batch);
+      futures.add(batch.future);
+    }
+    selector.wakeup();
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignore -> {
+      List<ZabbixSenderResult> results = new ArrayList<>();
+      futures.forEach(future -> results.add(future.join()));
+      return ZabbixSenderResult.merge(results);
+    });
+  }
+
+  /**
+   * Send the batch being collected now.
+   */
+  public void flush() {
+    synchronized (lock) {
+      if (current == null) return;
+      ready.add(current);
+      current = null;
+    }
+    selector.wakeup();
+  }
+
+  public long getBatchCount() {
+    return batchCount.get();
+  }
+
+  /**
+   * @return batches that got no answer because of io errors, timeouts or a malformed response
+   */
+  public long getFailedBatchCount() {
+    return failedBatchCount.get();
+  }
+
+  public long getProcessedCount() {
+    return processedCount.get();
+  }
+
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  private void run() {
+    try {
+      while (running || !ready.isEmpty() || !connections.isEmpty()) {
+        long now = System.nanoTime();
+        long timeout = sealExpiredBatch(now);
+        Batch batch;
+        while (connections.size() < maxConnections && (batch = ready.poll()) != null) {
+          open(batch, now);
+        }
+        for (Connection connection : connections) {
+          timeout = Math.min(timeout, connection.deadline - now);
+        }
+
+        selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeout) + 1));
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          handle((Connection) key.attachment());
+        }
+
+        now = System.nanoTime();
+        for (Connection connection : new ArrayList<>(connections)) {
+          if (now - connection.deadline >= 0) {
+            fail(connection, new IOException("Trapper " + address + " timed out"));
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // A ClosedSelectorException is expected once destroy() gave up waiting.
+      if (running) log.error("zabbix sender io thread stopped!", e);
+    } finally {
+      boolean stoppedEarly = running;
+      running = false;
+      IllegalStateException stopped = new IllegalStateException(stoppedEarly ? "ZabbixSender io thread stopped"
+              : "ZabbixSender destroyed");
+      for (Connection connection : new ArrayList<>(connections)) {
+        fail(connection, stopped);
+      }
+      // Nothing sends them any more, and send() rejects new values from now on.
+      if (stoppedEarly) failPending(stopped);
+    }
+  }
+
+  /**
+   * @return nanos until the batch being collected must be sent
+   */
+  private long sealExpiredBatch(long now) {
+    synchronized (lock) {
+      if (current == null) return TimeUnit.MILLISECONDS.toNanos(Math.max(maxBatchDelay, 1000));
+
+      long remaining = current.created + TimeUnit.MILLISECONDS.toNanos(maxBatchDelay) - now;
+      if (remaining > 0 && running) return remaining;
+      ready.add(current);
+      current = null;
+      return 0;
+    }
+  }
+
+  private void open(Batch batch, long now) {
+    Connection connection = new Connection(batch);
+    try {
+      connection.request = serialize(batch);
+      connection.channel = SocketChannel.open();
+      connection.channel.configureBlocking(false);
+      connection.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      connection.deadline = now + TimeUnit.MILLISECONDS.toNanos(connectTimeout);
+      connections.add(connection);
+      if (connection.channel.connect(address)) {
+        connected(connection);
+      } else {
+        connection.key = connection.channel.register(selector, SelectionKey.OP_CONNECT, connection);
+      }
+    } catch (IOException | RuntimeException e) {
+      // e.g. UnresolvedAddressException of a host name that did not resolve.
+      fail(connection, e);
+    }
+  }
+
+  private void connected(Connection connection) throws IOException {
+    connection.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(socketTimeout);
+    if (connection.key == null) {
+      connection.key = connection.channel.register(selector, SelectionKey.OP_WRITE, connection);
+    } else {
+      connection.key.interestOps(SelectionKey.OP_WRITE);
+    }
+  }
+
+  private void handle(Connection connection) {
+    try {
+      SelectionKey key = connection.key;
+      if (key.isConnectable()) {
+        connection.channel.finishConnect();
+        connected(connection);
+      } else if (key.isWritable()) {
+        connection.channel.write(connection.request);
+        if (!connection.request.hasRemaining()) {
+          release(connection.request);
+          connection.request = null;
+          connection.response = acquire(HEADER_LENGTH);
+          key.interestOps(SelectionKey.OP_READ);
+        }
+      } else if (key.isReadable()) {
+        read(connection);
+      }
+    } catch (IOException | RuntimeException e) {
+      fail(connection, e);
+    }
+  }
+
+  private void read(Connection connection) throws IOException {
+    if (connection.channel.read(connection.response) < 0) {
+      throw new IOException("Trapper " + address + " closed the connection before answering");
+    }
+    ByteBuffer response = connection.response;
+    if (connection.responseLength < 0 && response.position() >= HEADER_LENGTH) {
+      for (int i = 0; i < 4; i++) {
+        if (response.get(i) != HEADER[i]) throw new IOException("Trapper " + address + " sent no ZBXD header");
+      }
+      if ((response.get(4) & ~1) != 0) {
+        throw new IOException("Trapper " + address + " sent unsupported flags " + response.get(4));
+      }
+      connection.responseLength = response.order(ByteOrder.LITTLE_ENDIAN).getInt(5);
+      response.order(ByteOrder.BIG_ENDIAN);
+      if (connection.responseLength < 0 || connection.responseLength > MAX_RESPONSE_LENGTH) {
+        throw new IOException("Trapper " + address + " sent a response of " + connection.responseLength + " bytes");
+      }
+      if (response.capacity() < HEADER_LENGTH + connection.responseLength) {
+        connection.response = grow(response, HEADER_LENGTH + connection.responseLength);
+      }
+    }
+    if (connection.responseLength >= 0 && connection.response.position() >= HEADER_LENGTH + connection.responseLength) {
+      ByteBuffer body = connection.response;
+      body.flip().position(HEADER_LENGTH);
+      JsonNode node = ZabbixJson.mapper.readTree(new BufferInputStream(body));
+      ZabbixSenderResult result = ZabbixSenderResult.parse(node);
+      close(connection);
+      batchCount.incrementAndGet();
+      processedCount.addAndGet(result.getProcessed());
+      failedCount.addAndGet(result.getFailed());
+      if (!result.isSuccess()) {
+        log.warn("Trapper {} rejected a batch of {} values: {}", address, connection.batch.values.size(), node);
+      }
+      connection.batch.future.complete(result);
+    }
+  }
+
+  private void fail(Connection connection, Exception e) {
+    close(connection);
+    batchCount.incrementAndGet();
+    failedBatchCount.incrementAndGet();
+    log.warn("Send of {} values to trapper {} failed: {}", connection.batch.values.size(), address, e.toString());
+    connection.batch.future.completeExceptionally(e);
+  }
+
+  private void close(Connection connection) {
+    connections.remove(connection);
+    if (connection.key != null) connection.key.cancel();
+    if (connection.channel != null) {
+      try {
+        connection.channel.close();
+      } catch (IOException ignore) {
+      }
+    }
+    release(connection.request);
+    release(connection.response);
+    connection.request = null;
+    connection.response = null;
+  }
+
+  /**
+   * Write header and JSON body into a pooled buffer, ready to be written to the channel.
+   */
+  private ByteBuffer serialize(Batch batch) throws IOException {
+    BufferOutputStream out = new BufferOutputStream(acquire(bufferSize));
+    out.write(HEADER, 0, HEADER.length);
+    out.write(new byte[HEADER_LENGTH - HEADER.length], 0, HEADER_LENGTH - HEADER.length);
+    try (JsonGenerator generator = ZabbixJson.mapper.getFactory().createGenerator(out)) {
+      generator.writeStartObject();
+      generator.writeStringField("request", "sender data");
+      generator.writeArrayFieldStart("data");
+      for (ZabbixSenderValue value : batch.values) {
+        generator.writeStartObject();
+        generator.writeStringField("host", value.getHost());
+        generator.writeStringField("key", value.getKey());
+        generator.writeStringField("value", value.getValue());
+        if (value.getClock() > 0) {
+          generator.writeNumberField("clock", value.getClock());
+          generator.writeNumberField("ns", value.getNs());
+        }
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      // The server shifts value clocks by the difference between its clock and this one.
+      long now = System.currentTimeMillis();
+      generator.writeNumberField("clock", now / 1000);
+      generator.writeNumberField("ns", (now % 1000) * 1000000);
+      generator.writeEndObject();
+    }
+    ByteBuffer request = out.buffer;
+    request.flip();
+    request.order(ByteOrder.LITTLE_ENDIAN).putInt(5, request.limit() - HEADER_LENGTH).order(ByteOrder.BIG_ENDIAN);
+    return request;
+  }
+
+  private ByteBuffer acquire(int capacity) {
+    ByteBuffer buffer = buffers.poll();
+    if (buffer == null || buffer.capacity() < capacity) {
+      buffer = ByteBuffer.allocateDirect(Math.max(capacity, bufferSize));
+    }
+    buffer.clear();
+    return buffer;
+  }
+
+  private void release(ByteBuffer buffer) {
+    // Two buffers per connection are enough to never allocate in steady state.
+    if (buffer != null && buffers.size() < 2 * maxConnections) buffers.add(buffer);
+  }
+
+  private ByteBuffer grow(ByteBuffer buffer, int capacity) {
+    ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(capacity, buffer.capacity() * 2));
+    buffer.flip();
+    larger.put(buffer);
+    return larger;
+  }
+
+  private static class Batch {
+    final List<ZabbixSenderValue> values = new ArrayList<>();
+    final CompletableFuture<ZabbixSenderResult> future = new CompletableFuture<>();
+    final long created = System.nanoTime();
+  }
+
+  private static class Connection {
+    final Batch batch;
+    SocketChannel channel;
+    SelectionKey key;
+    ByteBuffer request;
+    ByteBuffer response;
+    int responseLength = -1;
+    long deadline;
+
+    Connection(Batch batch) {
+      this.batch = batch;
+    }
+  }
+
+  private class BufferOutputStream extends OutputStream {
+    ByteBuffer buffer;
+
+    BufferOutputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) {
+      if (!buffer.hasRemaining()) buffer = grow(buffer, buffer.capacity() + 1);
+      buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      if (buffer.remaining() < len) buffer = grow(buffer, buffer.position() + len);
+      buffer.put(b, off, len);
+    }
+  }
+
+  private static class BufferInputStream extends InputStream {
+    final ByteBuffer buffer;
+
+    BufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (!buffer.hasRemaining()) return -1;
+      len = Math.min(len, buffer.remaining());
+      buffer.get(b, off, len);
+      return len;
+    }
+  }
+}
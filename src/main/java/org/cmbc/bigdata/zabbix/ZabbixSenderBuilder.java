@@ -0,0 +1,109 @@
+package org.cmbc.bigdata.zabbix;
+
+import java.net.InetSocketAddress;
+
+public class ZabbixSenderBuilder {
+  private String host;
+
+  private int port = 10051;
+
+  private int maxBatchSize = 250;
+
+  private long maxBatchDelay = 200;
+
+  private int maxConnections = 4;
+
+  private int connectTimeout = 5000;
+
+  private int socketTimeout = 10000;
+
+  private int bufferSize = 64 * 1024;
+
+  private ZabbixSenderBuilder() {
+
+  }
+
+  static public ZabbixSenderBuilder newBuilder() {
+    return new ZabbixSenderBuilder();
+  }
+
+  public ZabbixSender build() {
+    if (host == null) {
+      throw new IllegalStateException("host is required");
+    }
+    if (maxBatchSize <= 0 || maxConnections <= 0 || bufferSize <= 0) {
+      throw new IllegalArgumentException("maxBatchSize, maxConnections and bufferSize must be positive");
+    }
+
+    return new ZabbixSender(new InetSocketAddress(host, port), maxBatchSize, maxBatchDelay, maxConnections,
+            connectTimeout, socketTimeout, bufferSize);
+  }
+
+  /**
+   * @param host zabbix server or proxy
+   * @return ZabbixSenderBuilder
+   */
+  public ZabbixSenderBuilder host(String host) {
+    this.host = host;
+    return this;
+  }
+
+  /**
+   * @param port trapper port, 10051 by default
+   * @return ZabbixSenderBuilder
+   */
+  public ZabbixSenderBuilder port(int port) {
+    this.port = port;
+    return this;
+  }
+
+  /**
+   * @param maxBatchSize values sent in one request, 250 by default like zabbix_sender
+   * @return ZabbixSenderBuilder
+   */
+  public ZabbixSenderBuilder maxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+    return this;
+  }
+
+  /**
+   * @param maxBatchDelay milliseconds a value waits for more values before its batch is sent, 200 by default
+   * @return ZabbixSenderBuilder
+   */
+  public ZabbixSenderBuilder maxBatchDelay(long maxBatchDelay) {
+    this.maxBatchDelay = maxBatchDelay;
+    return this;
+  }
+
+  /**
+   * @param maxConnections batches in flight at the same time, 4 by default
+   * @return ZabbixSenderBuilder
+   */
+  public ZabbixSenderBuilder maxConnections(int maxConnections) {
+    this.maxConnections = maxConnections;
+    return this;
+  }
+
+  public ZabbixSenderBuilder connectTimeout(int connectTimeout) {
+    this.connectTimeout = connectTimeout;
+    return this;
+  }
+
+  /**
+   * @param socketTimeout milliseconds from connect to the complete answer of a batch, 10000 by default
+   * @return ZabbixSenderBuilder
+   */
+  public ZabbixSenderBuilder socketTimeout(int socketTimeout) {
+    this.socketTimeout = socketTimeout;
+    return this;
+  }
+
+  /**
+   * @param bufferSize initial size of the reused direct buffers, 64k by default
+   * @return ZabbixSenderBuilder
+   */
+  public ZabbixSenderBuilder bufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+    return this;
+  }
+}
@@ -0,0 +1,65 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Trapper answer to one batch of values, e.g.
+ * {"response":"success","info":"processed: 9; failed: 1; total: 10; seconds spent: 0.000055"}.
+ * Values fail when the host or item does not exist, the item is not a trapper item, the sender is not in
+ * its allowed hosts or the value does not fit its type.
+ */
+@Data
+public class ZabbixSenderResult {
+  private static final Pattern INFO = Pattern.compile(
+          "processed:? (\\d+); failed:? (\\d+); total:? (\\d+); seconds spent:? ([0-9.]+)");
+
+  private String response;
+  private String info;
+  private int processed;
+  private int failed;
+  private int total;
+  private double secondsSpent;
+
+  public boolean isSuccess() {
+    return "success".equals(response);
+  }
+
+  static ZabbixSenderResult parse(JsonNode node) {
+    ZabbixSenderResult result = new ZabbixSenderResult();
+    result.response = node.path("response").asText(null);
+    result.info = node.path("info").asText(null);
+    if (result.info != null) {
+      Matcher matcher = INFO.matcher(result.info);
+      if (matcher.find()) {
+        result.processed = Integer.parseInt(matcher.group(1));
+        result.failed = Integer.parseInt(matcher.group(2));
+        result.total = Integer.parseInt(matcher.group(3));
+        result.secondsSpent = Double.parseDouble(matcher.group(4));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Sum of several batch results, e.g. of a list split into batches. The response is success only if all were.
+   */
+  static ZabbixSenderResult merge(Iterable<ZabbixSenderResult> results) {
+    ZabbixSenderResult merged = new ZabbixSenderResult();
+    merged.response = "success";
+    for (ZabbixSenderResult result : results) {
+      if (!result.isSuccess()) merged.response = result.response;
+      merged.processed += result.processed;
+      merged.failed += result.failed;
+      merged.total += result.total;
+      merged.secondsSpent += result.secondsSpent;
+    }
+    merged.info = "processed: " + merged.processed + "; failed: " + merged.failed + "; total: " + merged.total
+            + "; seconds spent: " + String.format(Locale.ROOT, "%.6f", merged.secondsSpent);
+    return merged;
+  }
+}
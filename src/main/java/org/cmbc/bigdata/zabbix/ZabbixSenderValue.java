@@ -0,0 +1,35 @@
+package org.cmbc.bigdata.zabbix;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One value for a ZABBIX_TRAPPER item, as sent by zabbix_sender.
+ */
+@Data
+@NoArgsConstructor
+public class ZabbixSenderValue {
+  /**
+   * Technical name of the host, not its visible name.
+   */
+  private String host;
+  private String key;
+  private String value;
+  /**
+   * Unix time of the value in seconds, 0 to let the server use its receive time.
+   */
+  private long clock;
+  private int ns;
+
+  public ZabbixSenderValue(String host, String key, String value) {
+    this.host = host;
+    this.key = key;
+    this.value = value;
+  }
+
+  public ZabbixSenderValue(String host, String key, String value, long clockMillis) {
+    this(host, key, value);
+    this.clock = clockMillis / 1000;
+    this.ns = (int) (clockMillis % 1000) * 1000000;
+  }
+}
@@ -0,0 +1,72 @@
+package org.cmbc.bigdata.zabbix;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Login state of a ZabbixApi: the credentials to log in again with when zabbix drops the session,
+ * or whether auth is a static api token that cannot be renewed.
+ * <p>
+ * Kept out of ZabbixApi so the password never shows up in its generated getters or toString.
+ */
+class ZabbixSession {
+  private String user;
+  private String password;
+  private boolean apiToken;
+  private final AtomicLong reloginCount = new AtomicLong();
+
+  synchronized void remember(String user, String password) {
+    this.user = user;
+    this.password = password;
+    this.apiToken = false;
+  }
+
+  synchronized void useApiToken() {
+    this.user = null;
+    this.password = null;
+    this.apiToken = true;
+  }
+
+  synchronized boolean canRelogin() {
+    return !apiToken && user != null;
+  }
+
+  synchronized String getUser() {
+    return user;
+  }
+
+  synchronized String getPassword() {
+    return password;
+  }
+
+  long incrementReloginCount() {
+    return reloginCount.incrementAndGet();
+  }
+
+  long getReloginCount() {
+    return reloginCount.get();
+  }
+
+  /**
+   * Methods zabbix rejects when they carry an auth.
+   */
+  static boolean isAuthFree(String method) {
+    return "user.login".equals(method) || "apiinfo.version".equals(method);
+  }
+
+  /**
+   * @return true if zabbix rejected the call because the session expired, was logged out or is unknown.
+   * Zabbix checks the session before running the method, so such a call had no effect and can be sent again.
+   */
+  static boolean isSessionError(ZabbixAPIResult zabbixAPIResult) {
+    if (!zabbixAPIResult.isFail() || !(zabbixAPIResult.getData() instanceof String)) return false;
+
+    String data = (String) zabbixAPIResult.getData();
+    // 3.x: "Session terminated, re-login, please." / "Not authorised.", 4.x and later: "Not authorized."
+    return data.contains("re-login") || data.startsWith("Not authorised") || data.startsWith("Not authorized");
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "ZabbixSession(user=" + user + ", apiToken=" + apiToken + ", relogins=" + getReloginCount() + ")";
+  }
+}
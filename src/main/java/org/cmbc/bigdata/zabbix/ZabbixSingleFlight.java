@@ -0,0 +1,87 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent identical read calls share one request. The first call of a key sends it, calls of the
+ * same key arriving before the response wait for it. Every caller of a shared response gets its own deep
+ * copy, so no caller sees changes another one makes to its result; a response nobody shared is not copied.
+ */
+public class ZabbixSingleFlight {
+  private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder callCount = new LongAdder();
+  private final LongAdder dedupedCount = new LongAdder();
+
+  /**
+   * @param key  canonical method, auth and params of the call
+   * @param call sends the request, run by the first caller only
+   * @return the response of the shared request
+   */
+  JsonNode call(String key, Supplier<JsonNode> call) {
+    callCount.increment();
+    Flight own = new Flight();
+    // Followers are counted under the lock of the key, so once the flight is removed the count is final.
+    Flight flight = inFlight.compute(key, (k, current) -> {
+      if (current == null) return own;
+      current.followers++;
+      return current;
+    });
+    if (flight != own) {
+      dedupedCount.increment();
+      try {
+        return flight.response.join().deepCopy();
+      } catch (CompletionException e) {
+        throw unwrap(e);
+      }
+    }
+
+    JsonNode response;
+    try {
+      response = call.get();
+    } catch (Throwable e) {
+      // Errors too, or followers would wait forever on a flight nobody completes.
+      inFlight.remove(key, own);
+      own.response.completeExceptionally(e);
+      throw e;
+    }
+    inFlight.remove(key, own);
+    own.response.complete(response);
+    return own.followers == 0 ? response : response.deepCopy();
+  }
+
+  /**
+   * @return the RuntimeException a shared call failed with; an Error is thrown as is
+   */
+  static RuntimeException unwrap(CompletionException e) {
+    Throwable cause = e.getCause();
+    if (cause instanceof Error) throw (Error) cause;
+    return cause instanceof RuntimeException ? (RuntimeException) cause : e;
+  }
+
+  /**
+   * @return calls made through the single flight
+   */
+  public long getCallCount() {
+    return callCount.sum();
+  }
+
+  /**
+   * @return calls that shared the request of an identical call instead of sending their own
+   */
+  public long getDedupedCount() {
+    return dedupedCount.sum();
+  }
+
+  private static class Flight {
+    private final CompletableFuture<JsonNode> response = new CompletableFuture<>();
+    // Only changed inside compute on the key of the flight.
+    private int followers;
+  }
+}
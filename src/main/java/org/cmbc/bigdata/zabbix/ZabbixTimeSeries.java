@@ -0,0 +1,106 @@
+package org.cmbc.bigdata.zabbix;
+
+import lombok.Data;
+
+import java.util.Arrays;
+
+/**
+ * History of one numeric item as parallel primitive arrays, oldest value first.
+ * A million values take 16 MB instead of the hundreds of MB of JSON trees or boxed objects.
+ * <p>
+ * Only the array of the item value type is set: doubleValues for NUMERIC_FLOAT, longValues for
+ * NUMERIC_UNSIGNED. Unsigned values above Long.MAX_VALUE are negative, read them with Long.toUnsignedString.
+ */
+@Data
+public class ZabbixTimeSeries {
+  private long itemid;
+  private ZabbixItemValueType valueType;
+  /**
+   * Value times in milliseconds since the epoch.
+   */
+  private long[] clocks = new long[0];
+  private double[] doubleValues;
+  private long[] longValues;
+
+  public ZabbixTimeSeries(long itemid, ZabbixItemValueType valueType) {
+    this.itemid = itemid;
+    this.valueType = valueType;
+    if (valueType == ZabbixItemValueType.NUMERIC_UNSIGNED) {
+      longValues = new long[0];
+    } else {
+      doubleValues = new double[0];
+    }
+  }
+
+  public int size() {
+    return clocks.length;
+  }
+
+  /**
+   * Growable series a history call appends its rows to, trimmed by toSeries().
+   */
+  static class Buffer {
+    final long itemid;
+    final ZabbixItemValueType valueType;
+    long[] clocks = new long[16];
+    double[] doubleValues;
+    long[] longValues;
+    int size;
+
+    Buffer(long itemid, ZabbixItemValueType valueType) {
+      this.itemid = itemid;
+      this.valueType = valueType;
+      if (valueType == ZabbixItemValueType.NUMERIC_UNSIGNED) {
+        longValues = new long[16];
+      } else {
+        doubleValues = new double[16];
+      }
+    }
+
+    void add(long clock, String value) {
+      if (size == clocks.length) {
+        clocks = Arrays.copyOf(clocks, size * 2);
+        if (longValues != null) {
+          longValues = Arrays.copyOf(longValues, size * 2);
+        } else {
+          doubleValues = Arrays.copyOf(doubleValues, size * 2);
+        }
+      }
+      clocks[size] = clock;
+      if (longValues != null) {
+        longValues[size] = Long.parseUnsignedLong(value);
+      } else {
+        doubleValues[size] = Double.parseDouble(value);
+      }
+      size++;
+    }
+  }
+
+  /**
+   * @param buffers the item's buffers in time order, e.g. one per time slice
+   */
+  static ZabbixTimeSeries concat(long itemid, ZabbixItemValueType valueType, Iterable<Buffer> buffers) {
+    ZabbixTimeSeries series = new ZabbixTimeSeries(itemid, valueType);
+    int size = 0;
+    for (Buffer buffer : buffers) {
+      size += buffer.size;
+    }
+    series.clocks = new long[size];
+    if (series.longValues != null) {
+      series.longValues = new long[size];
+    } else {
+      series.doubleValues = new double[size];
+    }
+    int offset = 0;
+    for (Buffer buffer : buffers) {
+      System.arraycopy(buffer.clocks, 0, series.clocks, offset, buffer.size);
+      if (series.longValues != null) {
+        System.arraycopy(buffer.longValues, 0, series.longValues, offset, buffer.size);
+      } else {
+        System.arraycopy(buffer.doubleValues, 0, series.doubleValues, offset, buffer.size);
+      }
+      offset += buffer.size;
+    }
+    return series;
+  }
+}
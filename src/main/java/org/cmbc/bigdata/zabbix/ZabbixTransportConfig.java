@@ -0,0 +1,73 @@
+package org.cmbc.bigdata.zabbix;
+
+import lombok.Data;
+
+/**
+ * HTTP transport settings used by ZabbixApi.init() to build its pooled http client.
+ * All durations are in milliseconds.
+ */
+@Data
+public class ZabbixTransportConfig {
+  /**
+   * Max connections kept in the pool across all routes.
+   */
+  private int maxConnections = 64;
+
+  /**
+   * Max connections to one zabbix frontend. HttpClient defaults to 2, which serializes concurrent callers.
+   */
+  private int maxConnectionsPerRoute = 16;
+
+  private int connectTimeout = 5000;
+
+  private int socketTimeout = 60000;
+
+  /**
+   * How long a caller waits for a free connection from the pool.
+   */
+  private int connectionRequestTimeout = 10000;
+
+  /**
+   * Idle connections older than this are closed by a background evictor. Zero or negative disables eviction.
+   */
+  private long maxIdleTime = 30000;
+
+  /**
+   * Total life time of a pooled connection. Zero or negative means connections never expire.
+   */
+  private long timeToLive = 300000;
+
+  /**
+   * Keep-alive used when the server does not send a Keep-Alive timeout header.
+   */
+  private long keepAliveTime = 30000;
+
+  /**
+   * Pooled connections idle longer than this are re-validated before being leased.
+   */
+  private int validateAfterInactivity = 2000;
+
+  /**
+   * Ask zabbix for gzip or deflate responses. Whether they come compressed depends on the web server in front
+   * of the frontend, e.g. gzip on of nginx or mod_deflate of apache.
+   */
+  private boolean responseCompression = true;
+
+  /**
+   * Content-Encoding of request bodies. PHP does not decode compressed bodies itself, so only enable it when
+   * the web server inflates them, e.g. SetInputFilter DEFLATE of apache mod_deflate.
+   */
+  private ZabbixCompression requestCompression = ZabbixCompression.NONE;
+
+  /**
+   * Request bodies smaller than this many bytes are sent uncompressed.
+   */
+  private int requestCompressionThreshold = 16384;
+
+  /**
+   * Request bodies smaller than this many bytes are buffered and sent with a Content-Length, larger ones are
+   * streamed with Transfer-Encoding: chunked. Raise it if the web server in front of PHP rejects chunked
+   * bodies, e.g. with 411 Length Required.
+   */
+  private int requestBufferThreshold = JsonRequestEntity.DEFAULT_BUFFER_THRESHOLD;
+}
@@ -0,0 +1,87 @@
+package org.cmbc.bigdata.zabbix;
+
+import lombok.Data;
+
+import java.util.Arrays;
+
+/**
+ * Hourly trends of one numeric item as parallel primitive arrays, in the order zabbix returns them.
+ * Trends of unsigned items are kept as doubles too, exact up to 2^53.
+ */
+@Data
+public class ZabbixTrendSeries {
+  private long itemid;
+  /**
+   * Start of each hour in milliseconds since the epoch.
+   */
+  private long[] clocks = new long[0];
+  /**
+   * Number of values the hour was aggregated from.
+   */
+  private int[] nums = new int[0];
+  private double[] min = new double[0];
+  private double[] avg = new double[0];
+  private double[] max = new double[0];
+
+  public ZabbixTrendSeries(long itemid) {
+    this.itemid = itemid;
+  }
+
+  public int size() {
+    return clocks.length;
+  }
+
+  /**
+   * Growable series a trend call appends its rows to.
+   */
+  static class Buffer {
+    long[] clocks = new long[16];
+    int[] nums = new int[16];
+    double[] min = new double[16];
+    double[] avg = new double[16];
+    double[] max = new double[16];
+    int size;
+
+    void add(long clock, int num, double min, double avg, double max) {
+      if (size == clocks.length) {
+        clocks = Arrays.copyOf(clocks, size * 2);
+        nums = Arrays.copyOf(nums, size * 2);
+        this.min = Arrays.copyOf(this.min, size * 2);
+        this.avg = Arrays.copyOf(this.avg, size * 2);
+        this.max = Arrays.copyOf(this.max, size * 2);
+      }
+      clocks[size] = clock;
+      nums[size] = num;
+      this.min[size] = min;
+      this.avg[size] = avg;
+      this.max[size] = max;
+      size++;
+    }
+  }
+
+  /**
+   * @param buffers the item's buffers in time order, e.g. one per time slice
+   */
+  static ZabbixTrendSeries concat(long itemid, Iterable<Buffer> buffers) {
+    ZabbixTrendSeries series = new ZabbixTrendSeries(itemid);
+    int size = 0;
+    for (Buffer buffer : buffers) {
+      size += buffer.size;
+    }
+    series.clocks = new long[size];
+    series.nums = new int[size];
+    series.min = new double[size];
+    series.avg = new double[size];
+    series.max = new double[size];
+    int offset = 0;
+    for (Buffer buffer : buffers) {
+      System.arraycopy(buffer.clocks, 0, series.clocks, offset, buffer.size);
+      System.arraycopy(buffer.nums, 0, series.nums, offset, buffer.size);
+      System.arraycopy(buffer.min, 0, series.min, offset, buffer.size);
+      System.arraycopy(buffer.avg, 0, series.avg, offset, buffer.size);
+      System.arraycopy(buffer.max, 0, series.max, offset, buffer.size);
+      offset += buffer.size;
+    }
+    return series;
+  }
+}
@@ -0,0 +1,118 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Minimal local stand-in for the trapper port of a zabbix server. It answers one ZBXD request per
+ * connection and closes it, like zabbix does, and accepts the values the predicate accepts.
+ */
+public class StubZabbixTrapper {
+  static final ObjectMapper mapper = new ObjectMapper();
+
+  private final ServerSocket serverSocket;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final List<JsonNode> values = new CopyOnWriteArrayList<>();
+  private final AtomicInteger requestCount = new AtomicInteger();
+  private final AtomicInteger concurrent = new AtomicInteger();
+  private final AtomicInteger maxConcurrent = new AtomicInteger();
+  private volatile long delayMillis;
+
+  public StubZabbixTrapper(Predicate<JsonNode> accept) throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    executor.execute(() -> {
+      while (!serverSocket.isClosed()) {
+        try {
+          Socket socket = serverSocket.accept();
+          executor.execute(() -> answer(socket, accept));
+        } catch (IOException e) {
+          return;
+        }
+      }
+    });
+  }
+
+  private void answer(Socket socket, Predicate<JsonNode> accept) {
+    maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+    try (Socket closing = socket) {
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      byte[] header = new byte[13];
+      in.readFully(header);
+      if (header[0] != 'Z' || header[1] != 'B' || header[2] != 'X' || header[3] != 'D') return;
+      byte[] body = new byte[ByteBuffer.wrap(header, 5, 4).order(ByteOrder.LITTLE_ENDIAN).getInt()];
+      in.readFully(body);
+      requestCount.incrementAndGet();
+      if (delayMillis > 0) Thread.sleep(delayMillis);
+
+      int processed = 0;
+      int failed = 0;
+      for (JsonNode value : mapper.readTree(body).get("data")) {
+        if (accept.test(value)) {
+          values.add(value);
+          processed++;
+        } else {
+          failed++;
+        }
+      }
+      String info = "processed: " + processed + "; failed: " + failed + "; total: " + (processed + failed)
+              + "; seconds spent: 0.000100";
+      byte[] response = mapper.createObjectNode().put("response", "success").put("info", info).toString()
+              .getBytes(StandardCharsets.UTF_8);
+      ByteBuffer packet = ByteBuffer.allocate(13 + response.length).order(ByteOrder.LITTLE_ENDIAN);
+      packet.put(new byte[]{'Z', 'B', 'X', 'D', 1}).putLong(response.length).put(response);
+      OutputStream out = socket.getOutputStream();
+      out.write(packet.array());
+      out.flush();
+    } catch (IOException | InterruptedException ignore) {
+    } finally {
+      concurrent.decrementAndGet();
+    }
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  public List<JsonNode> getValues() {
+    return values;
+  }
+
+  public int getRequestCount() {
+    return requestCount.get();
+  }
+
+  public int getMaxConcurrent() {
+    return maxConcurrent.get();
+  }
+
+  /**
+   * @param delayMillis time to wait before answering each request
+   */
+  public void setDelayMillis(long delayMillis) {
+    this.delayMillis = delayMillis;
+  }
+
+  public void stop() {
+    try {
+      serverSocket.close();
+    } catch (IOException ignore) {
+    }
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,89 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+
+public class ZabbixApiBulkTest {
+  static final String Broken_Key = "broken";
+
+  ZabbixSimulator server;
+  ZabbixApi zabbixApi;
+
+  @Before
+  public void before() throws Exception {
+    server = new ZabbixSimulator(0, 32).handler(request -> {
+      List<String> itemids = new ArrayList<>();
+      for (JsonNode item : request.get("params")) {
+        String key = item.get("key_").asText();
+        if (Broken_Key.equals(key)) {
+          return ZabbixSimulator.errorBody(request, -32602, "Invalid params.", "Item key is invalid.");
+        }
+        itemids.add(key.substring("key".length()));
+      }
+      return ZabbixSimulator.resultBody(request, Collections.singletonMap("itemids", itemids));
+    }).start();
+    zabbixApi = ZabbixApiBuilder.newBuilder()
+            .url(server.getUrl())
+            .bulkChunkSize(100)
+            .bulkParallelism(4)
+            .build();
+    zabbixApi.init();
+  }
+
+  @After
+  public void after() {
+    zabbixApi.destroy();
+    server.stop();
+  }
+
+  private static ArrayList<HashMap<String, Object>> items(int count) {
+    ArrayList<HashMap<String, Object>> params = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      HashMap<String, Object> param = new HashMap<>();
+      param.put("delay", "60");
+      param.put("hostid", "10084");
+      param.put("interfaceid", "1");
+      param.put("key_", "key" + i);
+      param.put("name", "item" + i);
+      param.put("type", ZabbixItemType.ZABBIX_TRAPPER.code());
+      param.put("value_type", ZabbixItemValueType.NUMERIC_UNSIGNED.code());
+      params.add(param);
+    }
+    return params;
+  }
+
+  @Test
+  public void testChunksMergedInInputOrder() {
+    ZabbixAPIResult result = zabbixApi.itemListCreate(items(1050));
+
+    assertFalse(result.isFail());
+    assertEquals(11, server.getHttpRequestCount());
+    JsonNode itemids = ((JsonNode) result.getData()).get("itemids");
+    assertEquals(1050, itemids.size());
+    for (int i = 0; i < itemids.size(); i++) {
+      assertEquals(String.valueOf(i), itemids.get(i).asText());
+    }
+  }
+
+  @Test
+  public void testFailedChunkReturnsError() {
+    ArrayList<HashMap<String, Object>> params = items(1000);
+    params.get(450).put("key_", Broken_Key);
+
+    ZabbixAPIResult result = zabbixApi.itemListCreate(params);
+
+    assertTrue(result.isFail());
+    assertEquals("Item key is invalid.", result.getData());
+  }
+}
@@ -0,0 +1,183 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+
+public class ZabbixApiTransportTest {
+  static final int Pool_Size = 4;
+
+  ZabbixSimulator server;
+  ZabbixApi zabbixApi;
+  AtomicInteger malformed = new AtomicInteger();
+
+  @Before
+  public void before() throws Exception {
+    server = new ZabbixSimulator(0, 32).handler(request -> {
+      if (malformed.get() > 0 && malformed.decrementAndGet() >= 0) {
+        return "{\"jsonrpc\":\"2.0\",\"result\":[";
+      }
+      if ("item.get".equals(request.get("method").asText())) {
+        return ZabbixSimulator.resultBody(request, items(500));
+      }
+      return ZabbixSimulator.resultBody(request, "3.0.20");
+    }).start();
+    zabbixApi = ZabbixApiBuilder.newBuilder()
+            .url(server.getUrl())
+            .maxConnections(Pool_Size)
+            .maxConnectionsPerRoute(Pool_Size)
+            .connectionRequestTimeout(10000)
+            .build();
+    zabbixApi.init();
+  }
+
+  @After
+  public void after() {
+    zabbixApi.destroy();
+    server.stop();
+  }
+
+  @Test
+  public void testSustainedThroughputWithFixedSockets() throws Exception {
+    int threads = 16;
+    int callsPerThread = 200;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      futures.add(executor.submit(() -> {
+        int success = 0;
+        for (int j = 0; j < callsPerThread; j++) {
+          if (!zabbixApi.apiVersion().isFail()) success++;
+        }
+        return success;
+      }));
+    }
+
+    int success = 0;
+    for (Future<Integer> future : futures) {
+      success += future.get();
+    }
+    executor.shutdown();
+
+    assertEquals(threads * callsPerThread, success);
+    assertEquals(threads * callsPerThread, server.getHttpRequestCount());
+    assertTrue("sockets used: " + server.getSocketCount(), server.getSocketCount() <= Pool_Size);
+  }
+
+  @Test
+  public void testConnectionReleasedOnParseError() {
+    // More failures than pooled connections: a leaked response would exhaust the pool.
+    malformed.set(Pool_Size * 2);
+    for (int i = 0; i < Pool_Size * 2; i++) {
+      try {
+        zabbixApi.apiVersion();
+        fail("Malformed response should fail");
+      } catch (RuntimeException expected) {
+      }
+    }
+
+    for (int i = 0; i < Pool_Size * 2; i++) {
+      assertEquals("3.0.20", ((JsonNode) zabbixApi.apiVersion().getData()).asText());
+    }
+  }
+
+  @Test
+  public void testCompression() {
+    List<ZabbixCallSample> samples = new CopyOnWriteArrayList<>();
+    ZabbixApi compressingApi = ZabbixApiBuilder.newBuilder()
+            .url(server.getUrl())
+            .requestCompression(ZabbixCompression.GZIP, 1024)
+            .metrics(new ZabbixMetrics() {
+              @Override
+              public void callStarted(String method) {
+              }
+
+              @Override
+              public void callFinished(ZabbixCallSample sample) {
+                samples.add(sample);
+              }
+            })
+            .build();
+    compressingApi.init();
+    try {
+      assertEquals("3.0.20", ((JsonNode) compressingApi.apiVersion().getData()).asText());
+      assertEquals(samples.get(0).getRequestBytes(), samples.get(0).getRequestWireBytes());
+      assertEquals(samples.get(0).getRequestBytes(), server.getRequestWireBytes());
+
+      assertTrue(compressingApi.callApi("item.create", items(200)).getData() != null);
+      ZabbixCallSample create = samples.get(1);
+      assertTrue(server.getRequestEncodings().contains("gzip"));
+      assertEquals(server.getRequestWireBytes() - samples.get(0).getRequestBytes(), create.getRequestWireBytes());
+      assertTrue(create.getRequestWireBytes() + " of " + create.getRequestBytes(),
+              create.getRequestWireBytes() * 4 < create.getRequestBytes());
+
+      long responseWireBytes = server.getResponseWireBytes();
+      assertEquals(500, ((JsonNode) compressingApi.callApi("item.get", new HashMap<>()).getData()).size());
+      assertTrue(samples.get(2).getResponseBytes() > 4 * (server.getResponseWireBytes() - responseWireBytes));
+    } finally {
+      compressingApi.destroy();
+    }
+
+    ZabbixApi plainApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).responseCompression(false)
+            .requestCompression(ZabbixCompression.DEFLATE, 1024).build();
+    plainApi.init();
+    try {
+      assertEquals("3.0.20", ((JsonNode) plainApi.callApi("item.create", items(200)).getData()).asText());
+      assertTrue(server.getRequestEncodings().contains("deflate"));
+      long responseWireBytes = server.getResponseWireBytes();
+      assertEquals(500, ((JsonNode) plainApi.callApi("item.get", new HashMap<>()).getData()).size());
+      assertTrue(server.getResponseWireBytes() - responseWireBytes > 500 * 100);
+    } finally {
+      plainApi.destroy();
+    }
+  }
+
+  @Test
+  public void testContentLength() {
+    ZabbixApi smallBufferApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).requestBufferThreshold(4096)
+            .requestCompression(ZabbixCompression.GZIP, 65536).build();
+    smallBufferApi.init();
+    try {
+      // Small bodies, and bodies buffered to decide on compression, have a Content-Length.
+      smallBufferApi.apiVersion();
+      smallBufferApi.callApi("item.create", items(200));
+      assertEquals(0, server.getChunkedRequestCount());
+
+      smallBufferApi.callApi("item.create", items(1000));
+      assertEquals(1, server.getChunkedRequestCount());
+      assertTrue(server.getRequestEncodings().contains("gzip"));
+    } finally {
+      smallBufferApi.destroy();
+    }
+  }
+
+  static List<HashMap<String, Object>> items(int count) {
+    List<HashMap<String, Object>> items = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      HashMap<String, Object> item = new HashMap<>();
+      item.put("itemid", String.valueOf(23296 + i));
+      item.put("hostid", "10084");
+      item.put("key_", "system.cpu.load[percpu,avg" + i + "]");
+      item.put("name", "Processor load (" + i + " min average per core)");
+      item.put("type", "0");
+      item.put("value_type", "0");
+      item.put("delay", "60");
+      items.add(item);
+    }
+    return items;
+  }
+}
@@ -0,0 +1,113 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+
+public class ZabbixAsyncApiTest {
+  ZabbixSimulator server;
+  ZabbixAsyncApi zabbixAsyncApi;
+
+  @Before
+  public void before() throws Exception {
+    server = new ZabbixSimulator(0, 32).handler(request -> {
+      String method = request.get("method").asText();
+      switch (method) {
+        case "user.login":
+          return ZabbixSimulator.resultBody(request, "0424bd59b807674191e7d77572075f33");
+        case "hostgroup.get":
+          HashMap<String, String> group = new HashMap<>();
+          group.put("groupid", "15");
+          group.put("name", "testgroup1");
+          return ZabbixSimulator.resultBody(request, Collections.singletonList(group));
+        case "hostgroup.delete":
+          return ZabbixSimulator.resultBody(request, Collections.singletonMap("groupids", request.get("params")));
+        case "apiinfo.version":
+          // Like zabbix 3.0, which rejects apiinfo.version with an auth.
+          if (request.has("auth") && !request.get("auth").isNull()) {
+            return ZabbixSimulator.errorBody(request, -32602, "Invalid params.",
+                    "The \"apiinfo.version\" method must be called without the \"auth\" parameter.");
+          }
+          return ZabbixSimulator.resultBody(request, "3.0.20");
+        case "history.get":
+          try {
+            Thread.sleep(3000);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return ZabbixSimulator.resultBody(request, Collections.emptyList());
+        default:
+          return ZabbixSimulator.resultBody(request, "3.0.20");
+      }
+    }).start();
+    zabbixAsyncApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).maxConnectionsPerRoute(4).buildAsync();
+    zabbixAsyncApi.init();
+  }
+
+  @After
+  public void after() {
+    zabbixAsyncApi.destroy();
+    server.stop();
+  }
+
+  @Test
+  public void testManyCallsInFlight() {
+    List<CompletableFuture<ZabbixAPIResult>> futures = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      futures.add(zabbixAsyncApi.apiVersion());
+    }
+
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    futures.forEach(future -> assertEquals("3.0.20", ((JsonNode) future.join().getData()).asText()));
+    assertTrue(server.getSocketCount() <= 4);
+  }
+
+  @Test
+  public void testChainedDeleteByName() {
+    assertTrue(zabbixAsyncApi.login("Admin", "zabbix").join());
+
+    ArrayList<String> groupNameList = new ArrayList<>();
+    groupNameList.add("testgroup1");
+    ZabbixAPIResult result = zabbixAsyncApi.hostgroupListDeleteByName(groupNameList).join();
+
+    assertFalse(result.isFail());
+    assertEquals("15", ((JsonNode) result.getData()).get("groupids").get(0).asText());
+  }
+
+  @Test
+  public void testApiVersionAfterLogin() {
+    ZabbixAsyncAPIInterface api = zabbixAsyncApi;
+    assertTrue(api.login("Admin", "zabbix").join());
+
+    assertEquals("3.0.20", ((JsonNode) api.callApi("apiinfo.version").join().getData()).asText());
+    assertEquals("3.0.20", ((JsonNode) zabbixAsyncApi.apiVersion().join().getData()).asText());
+  }
+
+  @Test
+  public void testCancelAbortsExchange() throws Exception {
+    ZabbixAsyncApi api = ZabbixApiBuilder.newBuilder().url(server.getUrl()).maxConnectionsPerRoute(1).buildAsync();
+    api.init();
+    try {
+      CompletableFuture<ZabbixAPIResult> slow = api.callApi("history.get");
+      Thread.sleep(200);
+      assertTrue(slow.cancel(true));
+
+      // The only connection is free again once the slow exchange was aborted.
+      assertEquals("3.0.20", ((JsonNode) api.apiVersion().get(1, TimeUnit.SECONDS).getData()).asText());
+    } finally {
+      api.destroy();
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+
+public class ZabbixBatchTest {
+  ZabbixSimulator server;
+  ZabbixApi zabbixApi;
+
+  @Before
+  public void before() throws Exception {
+    server = new ZabbixSimulator(0, 32).handler(request -> {
+      String method = request.get("method").asText();
+      if ("item.get".equals(method)) {
+        return ZabbixSimulator.errorBody(request, -32602, "Invalid params.", "No permissions to referred object.");
+      }
+      return ZabbixSimulator.resultBody(request, method);
+    }).start();
+    zabbixApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).build();
+    zabbixApi.init();
+  }
+
+  @After
+  public void after() {
+    zabbixApi.destroy();
+    server.stop();
+  }
+
+  @Test
+  public void testBatchInOneRoundTrip() {
+    ZabbixBatch batch = zabbixApi.batch();
+    int hosts = batch.add("host.get", new HashMap<>());
+    int groups = batch.add("hostgroup.get", new HashMap<>());
+    int items = batch.add("item.get", new HashMap<>());
+    int version = batch.add("apiinfo.version", new HashMap<>());
+
+    List<ZabbixAPIResult> results = batch.execute();
+
+    assertEquals(1, server.getHttpRequestCount());
+    assertEquals(4, results.size());
+    assertEquals("host.get", ((JsonNode) results.get(hosts).getData()).asText());
+    assertEquals("hostgroup.get", ((JsonNode) results.get(groups).getData()).asText());
+    assertEquals("apiinfo.version", ((JsonNode) results.get(version).getData()).asText());
+    assertTrue(results.get(items).isFail());
+    assertEquals("No permissions to referred object.", results.get(items).getData());
+    assertFalse(results.get(version).isFail());
+  }
+}
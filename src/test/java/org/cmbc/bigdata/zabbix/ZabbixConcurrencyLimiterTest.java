@@ -0,0 +1,215 @@
+package org.cmbc.bigdata.zabbix;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+
+public class ZabbixConcurrencyLimiterTest {
+  static final int Workers = 4;
+  static final long Work_Millis = 10;
+  static final int Callers = 48;
+  static final int Calls = 20;
+
+  ZabbixSimulator server;
+  ZabbixApi zabbixApi;
+  // Like PHP-FPM: Workers requests are served at once, the others wait in the listen queue.
+  Semaphore workers = new Semaphore(Workers, true);
+  AtomicInteger waiting = new AtomicInteger();
+  AtomicInteger maxWaiting = new AtomicInteger();
+
+  @After
+  public void after() {
+    if (zabbixApi != null) zabbixApi.destroy();
+    if (server != null) server.stop();
+  }
+
+  private void start(ZabbixConcurrencyLimitConfig config) throws Exception {
+    // More http threads than callers, so every request sent reaches the listen queue.
+    server = new ZabbixSimulator(0, 2 * Callers).handler(request -> {
+      maxWaiting.accumulateAndGet(waiting.incrementAndGet(), Math::max);
+      try {
+        workers.acquire();
+        waiting.decrementAndGet();
+        try {
+          TimeUnit.MILLISECONDS.sleep(Work_Millis);
+        } finally {
+          workers.release();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return ZabbixSimulator.resultBody(request, "3.0.20");
+    }).start();
+    // Enough pooled connections that only the limit holds callers back.
+    zabbixApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).maxConnectionsPerRoute(Callers)
+            .maxConnections(Callers).concurrencyLimit(config).build();
+    zabbixApi.init();
+  }
+
+  private static ZabbixConcurrencyLimiter limiter(int initialLimit) {
+    ZabbixConcurrencyLimitConfig config = new ZabbixConcurrencyLimitConfig();
+    config.setInitialLimit(initialLimit);
+    return new ZabbixConcurrencyLimiter(config);
+  }
+
+  /**
+   * Send one request with the limit idle, it never grows the limit.
+   */
+  private static void single(ZabbixConcurrencyLimiter limiter, long payloadBytes, long latencyMillis) {
+    limiter.acquire();
+    limiter.release("host.get", payloadBytes, System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(latencyMillis), false);
+  }
+
+  /**
+   * Fill every slot, then release them all with the latency given.
+   */
+  private static void round(ZabbixConcurrencyLimiter limiter, long payloadBytes, long latencyMillis) {
+    int slots = limiter.getLimit();
+    long start = System.nanoTime();
+    for (int i = 0; i < slots; i++) {
+      limiter.acquire();
+    }
+    for (int i = 0; i < slots; i++) {
+      limiter.release("host.get", payloadBytes, start, TimeUnit.MILLISECONDS.toNanos(latencyMillis), false);
+    }
+  }
+
+  @Test
+  public void testAdditiveIncrease() {
+    ZabbixConcurrencyLimiter limiter = limiter(4);
+    // Only releases with half the limit or more in flight grow it, by 1 / limit, so about a half per round.
+    round(limiter, 100, 10);
+    assertEquals(4, limiter.getLimit());
+    round(limiter, 100, 10);
+    round(limiter, 100, 10);
+    assertEquals(5, limiter.getLimit());
+    for (int i = 0; i < 20; i++) {
+      round(limiter, 100, 10);
+    }
+    assertTrue("limit " + limiter.getLimit(), limiter.getLimit() > 10);
+
+    // Releases while most slots are idle do not grow an unused limit.
+    int limit = limiter.getLimit();
+    for (int i = 0; i < 100; i++) {
+      single(limiter, 100, 10);
+    }
+    assertEquals(limit, limiter.getLimit());
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void testMultiplicativeDecrease() {
+    ZabbixConcurrencyLimiter limiter = limiter(20);
+    single(limiter, 100, 10);
+    // Within latencyTolerance of the no-load latency, no cut.
+    single(limiter, 100, 20);
+    assertEquals(20, limiter.getLimit());
+
+    // Requests sent together come back slow: one cut for the round trip, not one per request.
+    long start = System.nanoTime();
+    for (int i = 0; i < 3; i++) {
+      limiter.acquire();
+    }
+    for (int i = 0; i < 3; i++) {
+      limiter.release("host.get", 100, start, TimeUnit.MILLISECONDS.toNanos(30), false);
+    }
+    assertEquals(18, limiter.getLimit());
+    // Sent after the cut, so it cuts again.
+    single(limiter, 100, 30);
+    assertEquals(16, limiter.getLimit());
+
+    limiter.acquire();
+    limiter.release("host.get", 100, System.nanoTime(), 0, true);
+    assertEquals(14, limiter.getLimit());
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void testPayloadSizeClasses() {
+    assertEquals(0, ZabbixConcurrencyLimiter.sizeClass(0));
+    assertEquals(0, ZabbixConcurrencyLimiter.sizeClass(16384));
+    assertEquals(1, ZabbixConcurrencyLimiter.sizeClass(16385));
+    assertEquals(1, ZabbixConcurrencyLimiter.sizeClass(32768));
+    assertEquals(2, ZabbixConcurrencyLimiter.sizeClass(32769));
+
+    ZabbixConcurrencyLimiter limiter = limiter(20);
+    single(limiter, 100, 10);
+    // A large get is slow because it is large, not because the frontend queues.
+    single(limiter, 1 << 20, 100);
+    assertEquals(20, limiter.getLimit());
+    single(limiter, 1 << 20, 300);
+    assertEquals(18, limiter.getLimit());
+  }
+
+  @Test
+  public void testUnderLoad() throws Exception {
+    ZabbixConcurrencyLimitConfig config = new ZabbixConcurrencyLimitConfig();
+    config.setMaxQueueWait(60000);
+    start(config);
+
+    ExecutorService callers = Executors.newFixedThreadPool(Callers);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < Callers; i++) {
+      futures.add(callers.submit(() -> {
+        for (int j = 0; j < Calls; j++) {
+          zabbixApi.apiVersion();
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    callers.shutdown();
+
+    // The additive increase alone would let about all callers in by the end, nearly all of them queueing
+    // for a worker. Cuts on queueing latency keep the queue far shorter.
+    ZabbixConcurrencyLimiter limiter = zabbixApi.getConcurrencyLimiter();
+    assertTrue("waiting " + maxWaiting.get(), maxWaiting.get() < (Callers - Workers) / 2);
+    assertEquals(0, limiter.getInFlight());
+    assertEquals(0, limiter.getQueueDepth());
+    assertEquals(0, limiter.getRejectedCount());
+    assertEquals(Callers * Calls, server.getHttpRequestCount());
+  }
+
+  @Test
+  public void testBoundedQueueWait() throws Exception {
+    ZabbixConcurrencyLimitConfig config = new ZabbixConcurrencyLimitConfig();
+    config.setInitialLimit(1);
+    config.setMaxLimit(1);
+    config.setMaxQueueWait(50);
+    start(config);
+    workers.acquire(Workers);
+
+    ExecutorService caller = Executors.newSingleThreadExecutor();
+    Future<?> blocked = caller.submit(() -> zabbixApi.apiVersion());
+    while (zabbixApi.getConcurrencyLimiter().getInFlight() == 0) {
+      TimeUnit.MILLISECONDS.sleep(1);
+    }
+    long start = System.nanoTime();
+    try {
+      zabbixApi.apiVersion();
+      fail("No slot should be free");
+    } catch (RuntimeException expected) {
+      assertTrue(expected.getCause() instanceof ZabbixConcurrencyLimiter.LimitExceededException);
+    }
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    assertEquals(1, zabbixApi.getConcurrencyLimiter().getRejectedCount());
+
+    workers.release(Workers);
+    blocked.get();
+    caller.shutdown();
+    assertEquals(1, server.getHttpRequestCount());
+  }
+}
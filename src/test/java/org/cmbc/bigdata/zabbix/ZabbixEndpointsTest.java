@@ -0,0 +1,108 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+
+public class ZabbixEndpointsTest {
+  List<ZabbixSimulator> servers = new ArrayList<>();
+  ZabbixApi zabbixApi;
+
+  @After
+  public void after() {
+    zabbixApi.destroy();
+    servers.forEach(ZabbixSimulator::stop);
+  }
+
+  private ZabbixSimulator server(long delayMillis, AtomicBoolean down) throws Exception {
+    ZabbixSimulator server = new ZabbixSimulator(0, 32).handler(request -> {
+      try {
+        TimeUnit.MILLISECONDS.sleep(delayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (down.get()) return "<html><body>502 Bad Gateway</body></html>";
+      return ZabbixSimulator.resultBody(request, "3.0.20");
+    }).start();
+    servers.add(server);
+    return server;
+  }
+
+  @Test
+  public void testLeastOutstanding() throws Exception {
+    AtomicBoolean up = new AtomicBoolean();
+    ZabbixSimulator slow = server(200, up);
+    ZabbixSimulator fast1 = server(5, up);
+    ZabbixSimulator fast2 = server(5, up);
+    zabbixApi = ZabbixApiBuilder.newBuilder()
+            .urls(Arrays.asList(slow.getUrl(), fast1.getUrl(), fast2.getUrl()))
+            .endpointHealth(3, 0).build();
+    zabbixApi.init();
+
+    ExecutorService callers = Executors.newFixedThreadPool(6);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      futures.add(callers.submit(() -> {
+        for (int j = 0; j < 20; j++) {
+          zabbixApi.apiVersion();
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    callers.shutdown();
+
+    assertEquals(120, slow.getHttpRequestCount() + fast1.getHttpRequestCount() + fast2.getHttpRequestCount());
+    assertTrue("slow got " + slow.getHttpRequestCount(), slow.getHttpRequestCount() * 2 < fast1.getHttpRequestCount());
+    assertTrue("slow got " + slow.getHttpRequestCount(), slow.getHttpRequestCount() * 2 < fast2.getHttpRequestCount());
+    zabbixApi.getEndpoints().getEndpoints().forEach(endpoint -> assertEquals(0, endpoint.getOutstanding()));
+  }
+
+  @Test
+  public void testEjectAndReadmit() throws Exception {
+    AtomicBoolean down = new AtomicBoolean();
+    ZabbixSimulator flaky = server(0, down);
+    ZabbixSimulator healthy = server(0, new AtomicBoolean());
+    zabbixApi = ZabbixApiBuilder.newBuilder()
+            .urls(Arrays.asList(flaky.getUrl(), healthy.getUrl()))
+            .endpointHealth(2, 100).build();
+    zabbixApi.init();
+    ZabbixEndpoints.Endpoint flakyEndpoint = zabbixApi.getEndpoints().getEndpoints().get(0);
+
+    down.set(true);
+    int failed = 0;
+    for (int i = 0; i < 20; i++) {
+      try {
+        assertEquals("3.0.20", ((JsonNode) zabbixApi.apiVersion().getData()).asText());
+      } catch (RuntimeException expected) {
+        failed++;
+      }
+    }
+    assertFalse(flakyEndpoint.isHealthy());
+    // Once ejected the endpoint gets no calls, health checks may have failed on it too.
+    assertTrue("failed " + failed, failed <= 2);
+
+    down.set(false);
+    TimeUnit.MILLISECONDS.sleep(300);
+    assertTrue(flakyEndpoint.isHealthy());
+    int flakyRequests = flaky.getHttpRequestCount();
+    for (int i = 0; i < 20; i++) {
+      zabbixApi.apiVersion();
+    }
+    assertTrue(flaky.getHttpRequestCount() > flakyRequests);
+  }
+}
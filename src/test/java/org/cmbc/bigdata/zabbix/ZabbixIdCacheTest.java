@@ -0,0 +1,109 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+
+public class ZabbixIdCacheTest {
+  ZabbixSimulator server;
+  ZabbixApi zabbixApi;
+  Map<String, AtomicInteger> methodCount = new ConcurrentHashMap<>();
+
+  @Before
+  public void before() throws Exception {
+    server = new ZabbixSimulator(0, 32).handler(request -> {
+      String method = request.get("method").asText();
+      methodCount.computeIfAbsent(method, m -> new AtomicInteger()).incrementAndGet();
+      switch (method) {
+        case "hostgroup.get":
+          HashMap<String, String> group = new HashMap<>();
+          group.put("groupid", "15");
+          group.put("name", "testgroup1");
+          return ZabbixSimulator.resultBody(request, Collections.singletonList(group));
+        case "hostgroup.create":
+          return ZabbixSimulator.resultBody(request,
+                  Collections.singletonMap("groupids", Collections.singletonList("16")));
+        case "hostgroup.delete":
+          return ZabbixSimulator.resultBody(request, Collections.singletonMap("groupids", request.get("params")));
+        default:
+          return ZabbixSimulator.resultBody(request, Collections.emptyList());
+      }
+    }).start();
+    zabbixApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).nameCache(100, 60000).build();
+    zabbixApi.init();
+  }
+
+  @After
+  public void after() {
+    zabbixApi.destroy();
+    server.stop();
+  }
+
+  private int count(String method) {
+    return methodCount.getOrDefault(method, new AtomicInteger()).get();
+  }
+
+  @Test
+  public void testRepeatedLookupHitsCache() {
+    ArrayList<String> groupNameList = new ArrayList<>();
+    groupNameList.add("testgroup1");
+
+    for (int i = 0; i < 5; i++) {
+      assertFalse(zabbixApi.hostGetByGroupName(groupNameList).isFail());
+    }
+
+    assertEquals(1, count("hostgroup.get"));
+    assertEquals(5, count("host.get"));
+    assertEquals(4, zabbixApi.getHostgroupIdCache().getHitCount());
+    assertEquals(1, zabbixApi.getHostgroupIdCache().getMissCount());
+  }
+
+  @Test
+  public void testCreateAndDeleteKeepCacheCurrent() {
+    ZabbixAPIResult createResult = zabbixApi.hostgroupCreate("testgroup2");
+    assertEquals("16", ((JsonNode) createResult.getData()).get("groupids").get(0).asText());
+
+    ArrayList<String> groupNameList = new ArrayList<>();
+    groupNameList.add("testgroup2");
+    assertEquals(Collections.singletonList("16"), zabbixApi.hostgroupIdListGetByName(groupNameList).getData());
+    assertEquals(0, count("hostgroup.get"));
+
+    assertFalse(zabbixApi.hostgroupDeleteByName("testgroup2").isFail());
+    assertEquals(1, count("hostgroup.delete"));
+    assertTrue(zabbixApi.getHostgroupIdCache().size() == 0);
+
+    // Deleted, so the name is resolved by zabbix again.
+    zabbixApi.hostgroupIdListGetByName(groupNameList);
+    assertEquals(1, count("hostgroup.get"));
+  }
+
+  @Test
+  public void testRemoveScopes() {
+    ZabbixIdCache cache = new ZabbixIdCache(100, 60000);
+    for (int hostid = 10; hostid < 20; hostid++) {
+      cache.put(hostid + ":system.cpu.load", "2" + hostid);
+      cache.put(hostid + ":vfs.fs.size[/,free]", "3" + hostid);
+    }
+    cache.put("10", "40");
+
+    cache.removeScopes(Arrays.asList("10", 11, "1"));
+    assertEquals(17, cache.size());
+    assertEquals(null, cache.get("11:system.cpu.load"));
+    assertEquals("212", cache.get("12:system.cpu.load"));
+    // Only names scoped to the host, not the name equal to its id.
+    assertEquals("40", cache.get("10"));
+  }
+}
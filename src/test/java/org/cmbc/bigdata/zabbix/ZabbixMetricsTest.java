@@ -0,0 +1,83 @@
+package org.cmbc.bigdata.zabbix;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+
+public class ZabbixMetricsTest {
+  ZabbixSimulator server;
+  ZabbixApi zabbixApi;
+  DefaultZabbixMetrics metrics = new DefaultZabbixMetrics();
+
+  @Before
+  public void before() throws Exception {
+    server = new ZabbixSimulator(0, 32).handler(request -> {
+      if ("host.get".equals(request.get("method").asText())) {
+        List<Object> hosts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+          hosts.add(Collections.singletonMap("hostid", String.valueOf(i)));
+        }
+        return ZabbixSimulator.resultBody(request, hosts);
+      }
+      return ZabbixSimulator.errorBody(request, -32602, "Invalid params.", "No permissions.");
+    }).start();
+    zabbixApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).metrics(metrics).build();
+    zabbixApi.init();
+  }
+
+  @After
+  public void after() {
+    zabbixApi.destroy();
+    server.stop();
+  }
+
+  @Test
+  public void testCallsAreRecordedPerMethod() {
+    zabbixApi.callApi("host.get", new HashMap<>());
+    zabbixApi.callApi("host.get", new HashMap<>());
+    zabbixApi.callApi("item.delete", new ArrayList<>());
+    zabbixApi.callApiStream("host.get", new HashMap<>(), host -> {
+    });
+
+    DefaultZabbixMetrics.MethodStats hostGet = metrics.getMethod("host.get");
+    assertNotNull(hostGet);
+    assertEquals(3, hostGet.getCallCount());
+    assertEquals(0, hostGet.getErrorCount());
+    assertTrue(hostGet.getRequestBytes() > 3 * "{\"method\":\"host.get\"}".length());
+    assertTrue(hostGet.getResponseBytes() > 3 * 100 * "{\"hostid\":\"0\"}".length());
+    assertTrue(hostGet.getParse().getTotalNanos() > 0);
+    assertTrue(hostGet.getNetwork().getTotalNanos() > 0);
+
+    DefaultZabbixMetrics.MethodStats itemDelete = metrics.getMethod("item.delete");
+    assertEquals(1, itemDelete.getCallCount());
+    assertEquals(Long.valueOf(1), itemDelete.getErrors().get(-32602));
+    assertEquals(0, metrics.getInFlight());
+    assertEquals(1, metrics.getMaxInFlight());
+  }
+
+  @Test
+  public void testHistogramPercentiles() {
+    ZabbixLatencyHistogram histogram = new ZabbixLatencyHistogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1000000, histogram.getMaxNanos());
+    long p50 = histogram.getPercentileNanos(50);
+    assertTrue("p50 " + p50, p50 >= 500000 && p50 <= 500000 * 1.125);
+    long p99 = histogram.getPercentileNanos(99);
+    assertTrue("p99 " + p99, p99 >= 990000 && p99 <= 1000000);
+    assertEquals(7, ZabbixLatencyHistogram.upperBoundOf(ZabbixLatencyHistogram.bucketOf(7)));
+    assertEquals(Long.MAX_VALUE, ZabbixLatencyHistogram.upperBoundOf(ZabbixLatencyHistogram.bucketOf(Long.MAX_VALUE)));
+  }
+}
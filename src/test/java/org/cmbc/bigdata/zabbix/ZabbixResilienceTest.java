@@ -0,0 +1,145 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+
+public class ZabbixResilienceTest {
+  static final long Slow_Millis = 2000;
+
+  ZabbixSimulator server;
+  ZabbixApi zabbixApi;
+  AtomicInteger failures = new AtomicInteger();
+  AtomicInteger slowCalls = new AtomicInteger();
+
+  @Before
+  public void before() throws Exception {
+    server = new ZabbixSimulator(0, 32).handler(request -> {
+      if (slowCalls.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+        try {
+          TimeUnit.MILLISECONDS.sleep(Slow_Millis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+        // What a proxy in front of a dead PHP-FPM answers.
+        return "<html><body>502 Bad Gateway</body></html>";
+      }
+      return ZabbixSimulator.resultBody(request, "3.0.20");
+    }).start();
+  }
+
+  @After
+  public void after() {
+    zabbixApi.destroy();
+    server.stop();
+  }
+
+  private void build(ZabbixResilienceConfig config) {
+    zabbixApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).resilience(config).build();
+    zabbixApi.init();
+  }
+
+  @Test
+  public void testRetryIdempotentCallsOnly() {
+    ZabbixResilienceConfig config = new ZabbixResilienceConfig();
+    config.setMaxRetries(2);
+    config.setRetryBackoff(5);
+    build(config);
+
+    failures.set(2);
+    assertEquals("3.0.20", ((JsonNode) zabbixApi.apiVersion().getData()).asText());
+    assertEquals(3, server.getHttpRequestCount());
+    assertEquals(2, zabbixApi.getResilience().getRetryCount());
+
+    failures.set(1);
+    try {
+      zabbixApi.callApi("host.create", Collections.emptyMap());
+      fail("A failed create must not be sent again");
+    } catch (RuntimeException expected) {
+    }
+    assertEquals(4, server.getHttpRequestCount());
+  }
+
+  @Test
+  public void testHedgeSlowRequest() {
+    ZabbixResilienceConfig config = new ZabbixResilienceConfig();
+    config.setHedgePercentile(90);
+    config.setMinHedgeDelay(10);
+    config.setHedgeBudgetPercent(50);
+    build(config);
+    for (int i = 0; i < 30; i++) {
+      zabbixApi.apiVersion();
+    }
+
+    // Warm up calls slower than the percentile may have been hedged too.
+    long hedges = zabbixApi.getResilience().getHedgeCount();
+    long hedgeWins = zabbixApi.getResilience().getHedgeWinCount();
+
+    slowCalls.set(1);
+    long start = System.nanoTime();
+    assertEquals("3.0.20", ((JsonNode) zabbixApi.apiVersion().getData()).asText());
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("took " + millis + " ms", millis < 1000);
+    assertEquals(hedges + 1, zabbixApi.getResilience().getHedgeCount());
+    assertEquals(hedgeWins + 1, zabbixApi.getResilience().getHedgeWinCount());
+  }
+
+  @Test
+  public void testCircuitBreaker() throws Exception {
+    ZabbixResilienceConfig config = new ZabbixResilienceConfig();
+    config.setCircuitFailureThreshold(3);
+    config.setCircuitOpenTime(200);
+    build(config);
+    ZabbixCircuitBreaker circuitBreaker = zabbixApi.getResilience().getCircuitBreaker();
+
+    failures.set(100);
+    for (int i = 0; i < 5; i++) {
+      try {
+        zabbixApi.apiVersion();
+        fail("Server is down");
+      } catch (RuntimeException expected) {
+      }
+    }
+    // The last two calls failed without a request.
+    assertEquals(3, server.getHttpRequestCount());
+    assertEquals(ZabbixCircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+    failures.set(0);
+    TimeUnit.MILLISECONDS.sleep(250);
+    assertEquals(ZabbixCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    assertEquals("3.0.20", ((JsonNode) zabbixApi.apiVersion().getData()).asText());
+    assertEquals(ZabbixCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+  }
+
+  @Test
+  public void testDeadline() {
+    ZabbixResilienceConfig config = new ZabbixResilienceConfig();
+    config.setDeadline(100);
+    config.setMaxRetries(3);
+    build(config);
+
+    slowCalls.set(1);
+    long start = System.nanoTime();
+    try {
+      zabbixApi.apiVersion();
+      fail("Deadline should be exceeded");
+    } catch (RuntimeException expected) {
+      assertTrue(expected.getCause() instanceof ZabbixResilience.DeadlineExceededException);
+    }
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("took " + millis + " ms", millis < 1000);
+    assertEquals(1, server.getHttpRequestCount());
+    assertEquals("3.0.20", ((JsonNode) zabbixApi.apiVersion().getData()).asText());
+  }
+}
@@ -0,0 +1,176 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+
+public class ZabbixResponseCacheTest {
+  ZabbixSimulator server;
+  ZabbixApi zabbixApi;
+  Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+  AtomicInteger groupVersion = new AtomicInteger();
+
+  @Before
+  public void before() throws Exception {
+    server = new ZabbixSimulator(0, 32).handler(request -> {
+      String method = request.get("method").asText();
+      calls.computeIfAbsent(method, key -> new AtomicInteger()).incrementAndGet();
+      switch (method) {
+        case "hostgroup.get":
+          Map<String, String> group = new HashMap<>();
+          group.put("groupid", "2");
+          group.put("name", request.get("params").path("filter").path("name").path(0).asText("all")
+                  + "-v" + groupVersion.get());
+          return ZabbixSimulator.resultBody(request, Collections.singletonList(group));
+        case "hostgroup.create":
+          groupVersion.incrementAndGet();
+          return ZabbixSimulator.resultBody(request,
+                  Collections.singletonMap("groupids", Collections.singletonList("3")));
+        case "host.get":
+          return ZabbixSimulator.resultBody(request, Collections.emptyList());
+        default:
+          return ZabbixSimulator.resultBody(request, "3.0.20");
+      }
+    }).start();
+  }
+
+  @After
+  public void after() {
+    zabbixApi.destroy();
+    server.stop();
+  }
+
+  private void build(ZabbixResponseCacheConfig config) {
+    zabbixApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).responseCache(config).build();
+    zabbixApi.init();
+  }
+
+  private int calls(String method) {
+    return calls.getOrDefault(method, new AtomicInteger()).get();
+  }
+
+  private String groupName(String name) {
+    return ((JsonNode) zabbixApi.hostgroupGetByGroupName(name).getData()).get(0).get("name").asText();
+  }
+
+  @Test
+  public void testTtlAndInvalidation() throws Exception {
+    build(new ZabbixResponseCacheConfig().ttl("apiinfo.version", 60000).ttl("hostgroup.get", 200));
+
+    for (int i = 0; i < 5; i++) {
+      assertEquals("3.0.20", ((JsonNode) zabbixApi.apiVersion().getData()).asText());
+      assertEquals("web-v0", groupName("web"));
+      zabbixApi.hostGetByHostName("web-01");
+    }
+    assertEquals(1, calls("apiinfo.version"));
+    assertEquals(1, calls("hostgroup.get"));
+    // Methods without a ttl are not cached.
+    assertEquals(5, calls("host.get"));
+    assertEquals(8, zabbixApi.getResponseCache().getHitCount());
+
+    // Every caller gets its own copy.
+    ((ArrayNode) zabbixApi.hostgroupGetByGroupName("web").getData()).removeAll();
+    assertEquals("web-v0", groupName("web"));
+
+    // A write drops the cached responses of its object type only.
+    zabbixApi.hostgroupCreate("db");
+    assertEquals("web-v1", groupName("web"));
+    assertEquals(2, calls("hostgroup.get"));
+    zabbixApi.apiVersion();
+    assertEquals(1, calls("apiinfo.version"));
+
+    TimeUnit.MILLISECONDS.sleep(250);
+    assertEquals("web-v1", groupName("web"));
+    assertEquals(3, calls("hostgroup.get"));
+  }
+
+  @Test
+  public void testWriteDropsDependentTypes() {
+    build(new ZabbixResponseCacheConfig().ttl("hostgroup.get", 60000).ttl("host.get", 60000)
+            .ttl("item.get", 60000).ttl("hostinterface.get", 60000));
+    String[] reads = {"hostgroup.get", "host.get", "item.get", "hostinterface.get"};
+    for (String method : reads) {
+      zabbixApi.callApi(method, new HashMap<>());
+    }
+
+    // Deleting a host deletes its items and interfaces, and leaves its groups.
+    zabbixApi.callApi("host.delete", Collections.singletonList("10084"));
+    for (String method : reads) {
+      zabbixApi.callApi(method, new HashMap<>());
+      assertEquals(method, 2, calls(method));
+    }
+
+    // An item write leaves groups and interfaces cached.
+    zabbixApi.callApi("item.delete", Collections.singletonList("23296"));
+    for (String method : reads) {
+      zabbixApi.callApi(method, new HashMap<>());
+    }
+    assertEquals(2, calls("hostgroup.get"));
+    assertEquals(3, calls("host.get"));
+    assertEquals(3, calls("item.get"));
+    assertEquals(2, calls("hostinterface.get"));
+  }
+
+  @Test
+  public void testStaleWhileRevalidate() throws Exception {
+    ZabbixResponseCacheConfig config = new ZabbixResponseCacheConfig().ttl("hostgroup.get", 1000);
+    config.setStaleWhileRevalidate(60000);
+    build(config);
+
+    assertEquals("web-v0", groupName("web"));
+    groupVersion.set(1);
+    TimeUnit.MILLISECONDS.sleep(1100);
+
+    // Past the ttl the old response is returned at once and refreshed in the background.
+    assertEquals("web-v0", groupName("web"));
+    assertEquals(1, zabbixApi.getResponseCache().getStaleHitCount());
+    // Stale hits while the refresh runs do not start another one, and the refreshed response is fresh
+    // for a whole ttl, far longer than polling for it takes.
+    String name = groupName("web");
+    for (int i = 0; i < 200 && !name.equals("web-v1"); i++) {
+      TimeUnit.MILLISECONDS.sleep(10);
+      name = groupName("web");
+    }
+    assertEquals("web-v1", name);
+    assertEquals(2, calls("hostgroup.get"));
+  }
+
+  @Test
+  public void testWeightBound() {
+    ZabbixResponseCacheConfig config = new ZabbixResponseCacheConfig().ttl("hostgroup.get", 60000);
+    ArrayNode group = ZabbixJson.mapper.createArrayNode();
+    group.addObject().put("groupid", "2").put("name", "group-00-v0");
+    long weight = ZabbixResponseCache.weigh(ZabbixJson.mapper.createObjectNode().put("jsonrpc", "2.0")
+            .put("id", 1).set("result", group));
+    config.setMaxWeight(10 * weight);
+    build(config);
+
+    ArrayList<String> names = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      names.add(String.format("group-%02d", i));
+      groupName(names.get(i));
+    }
+    ZabbixResponseCache cache = zabbixApi.getResponseCache();
+    assertTrue("weight " + cache.getWeight(), cache.getWeight() <= 10 * weight);
+    assertEquals(10, cache.getSize());
+    assertEquals(20, cache.getEvictionCount());
+
+    // The most recent responses are kept.
+    groupName(names.get(29));
+    groupName(names.get(0));
+    assertEquals(31, calls("hostgroup.get"));
+  }
+}
@@ -0,0 +1,109 @@
+package org.cmbc.bigdata.zabbix;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.channels.UnresolvedAddressException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+
+public class ZabbixSenderTest {
+  StubZabbixTrapper trapper;
+  ZabbixSender sender;
+
+  @Before
+  public void before() throws Exception {
+    trapper = new StubZabbixTrapper(value -> !"unknown".equals(value.get("host").asText()));
+  }
+
+  @After
+  public void after() {
+    if (sender != null) sender.destroy();
+    trapper.stop();
+  }
+
+  @Test
+  public void testBatchesBySizeAndTime() throws Exception {
+    // Long enough that the next batch fills while one is in flight, even on a slow machine.
+    trapper.setDelayMillis(200);
+    sender = ZabbixSenderBuilder.newBuilder().host("127.0.0.1").port(trapper.getPort())
+            .maxBatchSize(100).maxBatchDelay(500).maxConnections(4).bufferSize(256).build();
+    sender.init();
+
+    List<CompletableFuture<ZabbixSenderResult>> futures = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      futures.add(sender.send(new ZabbixSenderValue(i % 10 == 0 ? "unknown" : "web-01", "orders[" + i + "]",
+              String.valueOf(i), 1500000000123L)));
+    }
+    for (CompletableFuture<ZabbixSenderResult> future : futures) {
+      ZabbixSenderResult result = future.get(10, TimeUnit.SECONDS);
+      assertTrue(result.isSuccess());
+      assertEquals(100, result.getTotal());
+    }
+    assertEquals(10, trapper.getRequestCount());
+    assertTrue("max concurrent " + trapper.getMaxConcurrent(), trapper.getMaxConcurrent() > 1);
+    assertTrue(trapper.getMaxConcurrent() <= 4);
+    assertEquals(900, trapper.getValues().size());
+    assertEquals(1500000000, trapper.getValues().get(0).get("clock").asLong());
+    assertEquals(123000000, trapper.getValues().get(0).get("ns").asInt());
+    assertEquals(900, sender.getProcessedCount());
+    assertEquals(100, sender.getFailedCount());
+
+    // A single value goes out once maxBatchDelay passed.
+    ZabbixSenderResult single = sender.send(new ZabbixSenderValue("web-01", "orders.count", "42")).get(10, TimeUnit.SECONDS);
+    assertEquals(1, single.getProcessed());
+
+    List<ZabbixSenderValue> values = new ArrayList<>();
+    for (int i = 0; i < 250; i++) {
+      values.add(new ZabbixSenderValue("web-01", "latency", String.valueOf(i)));
+    }
+    ZabbixSenderResult merged = sender.send(values).get(10, TimeUnit.SECONDS);
+    assertEquals(250, merged.getProcessed());
+    assertEquals(14, sender.getBatchCount());
+  }
+
+  @Test
+  public void testTimeoutFailsTheBatch() throws Exception {
+    trapper.setDelayMillis(2000);
+    sender = ZabbixSenderBuilder.newBuilder().host("127.0.0.1").port(trapper.getPort()).socketTimeout(200).build();
+    sender.init();
+
+    CompletableFuture<ZabbixSenderResult> future = sender.send(new ZabbixSenderValue("web-01", "orders.count", "1"));
+    sender.flush();
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause().getMessage().contains("timed out"));
+    }
+    assertEquals(1, sender.getFailedBatchCount());
+  }
+
+  @Test
+  public void testUnresolvableHost() throws Exception {
+    sender = ZabbixSenderBuilder.newBuilder().host("no-such-host.invalid").port(trapper.getPort()).build();
+    sender.init();
+
+    // Each batch fails on its own, the io thread keeps running.
+    for (int i = 0; i < 2; i++) {
+      CompletableFuture<ZabbixSenderResult> future = sender.send(new ZabbixSenderValue("web-01", "orders.count",
+              String.valueOf(i)));
+      sender.flush();
+      try {
+        future.get(10, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException e) {
+        assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof UnresolvedAddressException);
+      }
+    }
+    assertEquals(2, sender.getFailedBatchCount());
+  }
+}
@@ -0,0 +1,99 @@
+package org.cmbc.bigdata.zabbix;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+
+public class ZabbixSessionTest {
+  ZabbixSimulator server;
+  AtomicReference<String> validAuth = new AtomicReference<>();
+  AtomicInteger logins = new AtomicInteger();
+
+  @Before
+  public void before() throws Exception {
+    server = new ZabbixSimulator(0, 32).handler(request -> {
+      if ("user.login".equals(request.get("method").asText())) {
+        if (request.hasNonNull("auth")) {
+          return ZabbixSimulator.errorBody(request, -32602, "Invalid params.", "Unexpected auth.");
+        }
+        String auth = "auth" + logins.incrementAndGet();
+        validAuth.set(auth);
+        return ZabbixSimulator.resultBody(request, auth);
+      }
+      if (!request.hasNonNull("auth") || !request.get("auth").asText().equals(validAuth.get())) {
+        return ZabbixSimulator.errorBody(request, -32602, "Invalid params.", "Session terminated, re-login, please.");
+      }
+      return ZabbixSimulator.resultBody(request, new ArrayList<>());
+    }).start();
+  }
+
+  @After
+  public void after() {
+    server.stop();
+  }
+
+  @Test
+  public void testConcurrentCallsReloginOnce() throws Exception {
+    ZabbixApi zabbixApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).build();
+    zabbixApi.init();
+    try {
+      assertTrue(zabbixApi.login("Admin", "s3cret"));
+      validAuth.set("expired");
+
+      int threads = 8;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<ZabbixAPIResult>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          return zabbixApi.callApi("host.get", new HashMap<>());
+        }));
+      }
+      start.countDown();
+      for (Future<ZabbixAPIResult> future : futures) {
+        assertFalse(future.get().isFail());
+      }
+      executor.shutdown();
+
+      assertEquals(2, logins.get());
+      assertEquals(1, zabbixApi.getReloginCount());
+      assertEquals("auth2", zabbixApi.getAuth());
+      assertFalse(zabbixApi.toString().contains("s3cret"));
+    } finally {
+      zabbixApi.destroy();
+    }
+  }
+
+  @Test
+  public void testApiTokenIsNotRenewed() {
+    validAuth.set("token");
+    ZabbixApi zabbixApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).apiToken("token").build();
+    zabbixApi.init();
+    try {
+      assertFalse(zabbixApi.callApi("host.get", new HashMap<>()).isFail());
+
+      validAuth.set("revoked");
+      ZabbixAPIResult result = zabbixApi.callApi("host.get", new HashMap<>());
+      assertTrue(result.isFail());
+      assertEquals(0, logins.get());
+      assertEquals(0, zabbixApi.getReloginCount());
+    } finally {
+      zabbixApi.destroy();
+    }
+  }
+}
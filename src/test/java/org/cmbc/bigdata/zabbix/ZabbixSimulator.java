@@ -0,0 +1,1555 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * In-process zabbix 3.0 JSON-RPC server with in-memory state, for integration and load tests without a real
+ * zabbix. It implements apiinfo.version, user.login/logout and the create/get/delete methods of hostgroup, host,
+ * hostinterface and item, with the params ZabbixApi sends: ids, filter, output, limit, countOutput and
+ * preservekeys. Batch requests are supported. history.get and trend.get return synthetic values computed
+ * from itemid and clock, so months of history cost no memory.
+ * <p>
+ * Latency, jitter, per-object cost, bandwidth and errors can be injected per method, and populate() builds
+ * large synthetic inventories. Rows are kept as small objects and written straight to the response, so a
+ * million items fit in a few hundred MB of heap.
+ * <p>
+ * Like a web server with gzip on, it inflates gzip or deflate requests and gzips responses when the client
+ * accepts it. For tests of the client itself, handler() replaces the in-memory state with scripted responses
+ * and cannedResponse() answers a method with a fixed body.
+ * <pre>
+ *   ZabbixSimulator simulator = new ZabbixSimulator().latency("*", 5, 2).start();
+ *   simulator.populate(10, 100, 1000);
+ *   ZabbixApi zabbixApi = ZabbixApiBuilder.newBuilder().url(simulator.getUrl()).build();
+ * </pre>
+ */
+@Slf4j
+public class ZabbixSimulator {
+  public static final String DEFAULT_USER = "Admin";
+  public static final String DEFAULT_PASSWORD = "zabbix";
+  private static final String ANY_METHOD = "*";
+  private static final int ITEM_DISCOVERED = 4;
+
+  static {
+    // Headers and body are separate writes; without this Nagle holds the body back for a delayed ack.
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final int port;
+  private final int workers;
+  private HttpServer server;
+  private ExecutorService executor;
+
+  private String version = "3.0.22";
+  private final Map<String, String> users = new ConcurrentHashMap<>();
+  private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+  private final Map<String, long[]> latencies = new ConcurrentHashMap<>();
+  private final Map<String, InjectedError> errors = new ConcurrentHashMap<>();
+  private final Map<String, Long> objectCosts = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+  private final Map<String, byte[]> cannedResponses = new ConcurrentHashMap<>();
+  private volatile Function<JsonNode, String> handler;
+  private volatile long bytesPerSecond;
+
+  private final Set<SocketAddress> clientSockets = ConcurrentHashMap.newKeySet();
+  private final Set<String> requestEncodings = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger httpRequestCount = new AtomicInteger();
+  private final AtomicInteger chunkedRequestCount = new AtomicInteger();
+  private final AtomicLong requestWireBytes = new AtomicLong();
+  private final AtomicLong responseWireBytes = new AtomicLong();
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final AtomicLong nextGroupId = new AtomicLong(1);
+  private final AtomicLong nextHostId = new AtomicLong(10084);
+  private final AtomicLong nextInterfaceId = new AtomicLong(1);
+  private final AtomicLong nextItemId = new AtomicLong(23296);
+  private final LinkedHashMap<Long, Group> groups = new LinkedHashMap<>();
+  private final HashMap<String, Group> groupsByName = new HashMap<>();
+  private final LinkedHashMap<Long, Host> hosts = new LinkedHashMap<>();
+  private final HashMap<String, Host> hostsByName = new HashMap<>();
+  private final LinkedHashMap<Long, Interface> interfaces = new LinkedHashMap<>();
+  private final LinkedHashMap<Long, Item> items = new LinkedHashMap<>();
+
+  public ZabbixSimulator() {
+    this(0, 16);
+  }
+
+  /**
+   * @param port    port on 127.0.0.1, 0 picks a free one
+   * @param workers threads serving requests, like PHP workers of a frontend
+   */
+  public ZabbixSimulator(int port, int workers) {
+    this.port = port;
+    this.workers = workers;
+    users.put(DEFAULT_USER, DEFAULT_PASSWORD);
+  }
+
+  public ZabbixSimulator start() {
+    try {
+      server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+    } catch (IOException e) {
+      throw new RuntimeException("ZabbixSimulator start exception!", e);
+    }
+    AtomicInteger threadId = new AtomicInteger();
+    executor = Executors.newFixedThreadPool(workers, runnable -> {
+      Thread thread = new Thread(runnable, "zabbix-simulator-" + threadId.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(executor);
+    server.createContext("/zabbix/api_jsonrpc.php", this::handle);
+    server.start();
+    log.info("Zabbix simulator listening on {}", getUrl());
+    return this;
+  }
+
+  public void stop() {
+    if (server != null) {
+      server.stop(0);
+      executor.shutdownNow();
+      server = null;
+    }
+  }
+
+  public String getUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/zabbix/api_jsonrpc.php";
+  }
+
+  public ZabbixSimulator version(String version) {
+    this.version = version;
+    return this;
+  }
+
+  public ZabbixSimulator user(String user, String password) {
+    users.put(user, password);
+    return this;
+  }
+
+  /**
+   * Delay every call of a method by latencyMillis plus a uniform random jitter below jitterMillis.
+   *
+   * @param method api method, or "*" for every method without its own setting
+   */
+  public ZabbixSimulator latency(String method, long latencyMillis, long jitterMillis) {
+    latencies.put(method, new long[]{latencyMillis, jitterMillis});
+    return this;
+  }
+
+  /**
+   * Fail a share of the calls of a method with a JSON-RPC error instead of running them.
+   *
+   * @param method      api method, or "*" for every method without its own setting
+   * @param probability between 0 and 1
+   */
+  public ZabbixSimulator error(String method, double probability, int code, String message, String data) {
+    errors.put(method, new InjectedError(probability, code, message, data));
+    return this;
+  }
+
+  /**
+   * Delay every call of a method by micros for each object in its params array, e.g. like a PHP worker
+   * creating items one by one.
+   *
+   * @param method api method, or "*" for every method without its own setting
+   */
+  public ZabbixSimulator objectCost(String method, long micros) {
+    objectCosts.put(method, micros);
+    return this;
+  }
+
+  /**
+   * Add the transfer time of a slow link, from the bytes really received and sent.
+   *
+   * @param bytesPerSecond bandwidth in each direction, zero or negative for none
+   */
+  public ZabbixSimulator bandwidth(long bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+    return this;
+  }
+
+  /**
+   * Answer every call with the raw body the handler maps it to, instead of running it against the in-memory
+   * state. Sessions are not checked. A batch is answered in reverse order, clients must match responses by id.
+   * Latency and errors still apply.
+   */
+  public ZabbixSimulator handler(Function<JsonNode, String> handler) {
+    this.handler = handler;
+    return this;
+  }
+
+  /**
+   * Answer every single call of the method at once with body, whatever its id.
+   */
+  public ZabbixSimulator cannedResponse(String method, byte[] body) {
+    cannedResponses.put(method, body);
+    return this;
+  }
+
+  public ZabbixSimulator clearErrors() {
+    errors.clear();
+    return this;
+  }
+
+  /**
+   * Log out every session, so the next call of each client gets "Session terminated, re-login, please.".
+   */
+  public void expireSessions() {
+    sessions.clear();
+  }
+
+  /**
+   * @return number of api calls received for the method, a batch counts once per call in it
+   */
+  public long getRequestCount(String method) {
+    LongAdder count = requestCounts.get(method);
+    return count == null ? 0 : count.sum();
+  }
+
+  /**
+   * @return http requests received, a batch counts once
+   */
+  public int getHttpRequestCount() {
+    return httpRequestCount.get();
+  }
+
+  /**
+   * @return number of distinct client sockets seen so far
+   */
+  public int getSocketCount() {
+    return clientSockets.size();
+  }
+
+  /**
+   * @return request body bytes received, as sent by the client
+   */
+  public long getRequestWireBytes() {
+    return requestWireBytes.get();
+  }
+
+  /**
+   * @return response body bytes sent, after compression
+   */
+  public long getResponseWireBytes() {
+    return responseWireBytes.get();
+  }
+
+  /**
+   * @return Content-Encoding headers of the requests seen so far, "null" for none
+   */
+  public Set<String> getRequestEncodings() {
+    return requestEncodings;
+  }
+
+  /**
+   * @return requests sent with Transfer-Encoding: chunked instead of a Content-Length
+   */
+  public int getChunkedRequestCount() {
+    return chunkedRequestCount.get();
+  }
+
+  public int getHostCount() {
+    return read(hosts::size);
+  }
+
+  public int getItemCount() {
+    return read(items::size);
+  }
+
+  /**
+   * Add a synthetic inventory: group-N groups with host-N-M hosts, each with one agent interface
+   * and items named item-K with key "synthetic.item[K]".
+   *
+   * @return this
+   */
+  public ZabbixSimulator populate(int groupCount, int hostsPerGroup, int itemsPerHost) {
+    lock.writeLock().lock();
+    try {
+      for (int g = 0; g < groupCount; g++) {
+        Group group = addGroup("group-" + g);
+        for (int h = 0; h < hostsPerGroup; h++) {
+          Host host = addHost("host-" + g + "-" + h, Collections.singletonList(group.id));
+          Interface hostInterface = addInterface(host.id, "1", "1", "1", "127.0.0.1", "", "10050");
+          for (int i = 0; i < itemsPerHost; i++) {
+            addItem(host.id, hostInterface.id, "synthetic.item[" + i + "]", "item-" + i, "0", "3", "60");
+          }
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return this;
+  }
+
+  /**
+   * Add an item to a host as if low-level discovery created it: it has flags 4, and item.update and
+   * item.delete reject it.
+   *
+   * @return this
+   */
+  public ZabbixSimulator discoveredItem(String hostName, String key, String name) {
+    lock.writeLock().lock();
+    try {
+      Host host = hostsByName.get(hostName);
+      long interfaceId = host.interfaceIds.isEmpty() ? 0 : host.interfaceIds.get(0);
+      addItem(host.id, interfaceId, key, name, "0", "3", "60").flags = ITEM_DISCOVERED;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return this;
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    clientSockets.add(exchange.getRemoteAddress());
+    httpRequestCount.incrementAndGet();
+    Headers headers = exchange.getRequestHeaders();
+    String encoding = headers.getFirst("Content-Encoding");
+    requestEncodings.add(String.valueOf(encoding));
+    if ("chunked".equalsIgnoreCase(headers.getFirst("Transfer-Encoding"))) {
+      chunkedRequestCount.incrementAndGet();
+    }
+    boolean gzip = String.valueOf(headers.getFirst("Accept-Encoding")).contains("gzip");
+    try {
+      JsonNode request;
+      CountingInputStream wireIn = new CountingInputStream(exchange.getRequestBody());
+      try (InputStream in = decode(encoding, wireIn)) {
+        request = ZabbixJson.mapper.readTree(in);
+      } catch (IOException e) {
+        request = null;
+      }
+      requestWireBytes.addAndGet(wireIn.count);
+      transfer(wireIn.count);
+
+      byte[] canned = request == null || request.isArray() ? null
+              : cannedResponses.get(request.path("method").asText());
+      if (canned != null) {
+        requestCounts.computeIfAbsent(request.path("method").asText(), key -> new LongAdder()).increment();
+        send(exchange, canned, gzip);
+      } else if (handler != null && request != null) {
+        send(exchange, handlerResponse(request).getBytes(StandardCharsets.UTF_8), gzip);
+      } else {
+        stream(exchange, request, gzip);
+      }
+    } catch (Exception e) {
+      log.warn("Zabbix simulator failed to answer.", e);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static InputStream decode(String encoding, InputStream in) throws IOException {
+    if ("gzip".equals(encoding)) return new GZIPInputStream(in, 8192);
+    if ("deflate".equals(encoding)) return new InflaterInputStream(in);
+    return in;
+  }
+
+  /**
+   * Send a buffered body, gzipped from 1k on like gzip_min_length of nginx.
+   */
+  private void send(HttpExchange exchange, byte[] body, boolean gzip) throws IOException {
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    if (gzip && body.length >= 1024) {
+      ByteArrayOutputStream gzipped = new ByteArrayOutputStream(body.length / 8);
+      try (GZIPOutputStream out = new GZIPOutputStream(gzipped, 8192)) {
+        out.write(body);
+      }
+      body = gzipped.toByteArray();
+      exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+    }
+    responseWireBytes.addAndGet(body.length);
+    transfer(body.length);
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  /**
+   * Write the response while the calls run, so large results are never held in memory.
+   */
+  private void stream(HttpExchange exchange, JsonNode request, boolean gzip) throws IOException {
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    if (gzip) {
+      exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+    }
+    exchange.sendResponseHeaders(200, 0);
+    CountingOutputStream wireOut = new CountingOutputStream(exchange.getResponseBody());
+    try (OutputStream out = gzip ? new GZIPOutputStream(wireOut, 8192) : wireOut) {
+      try (JsonGenerator generator = ZabbixJson.mapper.getFactory().createGenerator(out)) {
+        if (request == null) {
+          writeError(generator, null, new ApiError(-32700, "Parse error.",
+                  "Invalid JSON. An error occurred on the server while parsing the JSON text."));
+        } else if (request.isArray()) {
+          generator.writeStartArray();
+          for (JsonNode call : request) {
+            answer(generator, call);
+          }
+          generator.writeEndArray();
+        } else {
+          answer(generator, request);
+        }
+      }
+      if (out instanceof GZIPOutputStream) {
+        ((GZIPOutputStream) out).finish();
+      }
+      transfer(wireOut.count);
+    }
+    responseWireBytes.addAndGet(wireOut.count);
+  }
+
+  private String handlerResponse(JsonNode request) {
+    if (!request.isArray()) return handlerAnswer(request);
+
+    StringBuilder batch = new StringBuilder("[");
+    for (int i = request.size() - 1; i >= 0; i--) {
+      batch.append(handlerAnswer(request.get(i))).append(i > 0 ? "," : "");
+    }
+    return batch.append("]").toString();
+  }
+
+  private String handlerAnswer(JsonNode request) {
+    String method = request.path("method").asText();
+    requestCounts.computeIfAbsent(method, key -> new LongAdder()).increment();
+    delay(method, request.path("params"));
+
+    InjectedError injected = setting(errors, method);
+    if (injected != null && ThreadLocalRandom.current().nextDouble() < injected.probability) {
+      return errorBody(request, injected.error.code, injected.error.message, injected.error.data);
+    }
+    return handler.apply(request);
+  }
+
+  /**
+   * Wait as long as bytes take on the simulated link.
+   */
+  private void transfer(long bytes) {
+    long rate = bytesPerSecond;
+    if (rate <= 0) return;
+    try {
+      TimeUnit.MICROSECONDS.sleep(bytes * 1000000 / rate);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return a JSON-RPC response body with the result, for handlers
+   */
+  public static String resultBody(JsonNode request, Object result) {
+    ObjectNode response = ZabbixJson.mapper.createObjectNode();
+    response.put("jsonrpc", "2.0");
+    response.set("result", ZabbixJson.mapper.valueToTree(result));
+    response.set("id", request.get("id"));
+    return response.toString();
+  }
+
+  /**
+   * @return a JSON-RPC error response body, for handlers
+   */
+  public static String errorBody(JsonNode request, int code, String message, String data) {
+    ObjectNode response = ZabbixJson.mapper.createObjectNode();
+    response.put("jsonrpc", "2.0");
+    ObjectNode error = response.putObject("error");
+    error.put("code", code);
+    error.put("message", message);
+    error.put("data", data);
+    response.set("id", request.get("id"));
+    return response.toString();
+  }
+
+  private void answer(JsonGenerator generator, JsonNode request) throws IOException {
+    JsonNode id = request.get("id");
+    String method = request.path("method").asText();
+    requestCounts.computeIfAbsent(method, key -> new LongAdder()).increment();
+    delay(method, request.path("params"));
+
+    try {
+      InjectedError injected = setting(errors, method);
+      if (injected != null && ThreadLocalRandom.current().nextDouble() < injected.probability) {
+        throw injected.error;
+      }
+      if (!ZabbixSession.isAuthFree(method) && !sessions.contains(request.path("auth").asText())) {
+        throw new ApiError(-32602, "Invalid params.", "Session terminated, re-login, please.");
+      }
+
+      ResultWriter result = dispatch(method, request);
+      generator.writeStartObject();
+      generator.writeStringField("jsonrpc", "2.0");
+      generator.writeFieldName("result");
+      result.write(generator);
+      generator.writeObjectField("id", id);
+      generator.writeEndObject();
+    } catch (ApiError e) {
+      writeError(generator, id, e);
+    }
+  }
+
+  private static void writeError(JsonGenerator generator, JsonNode id, ApiError error) throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("jsonrpc", "2.0");
+    generator.writeObjectFieldStart("error");
+    generator.writeNumberField("code", error.code);
+    generator.writeStringField("message", error.message);
+    generator.writeStringField("data", error.data);
+    generator.writeEndObject();
+    generator.writeObjectField("id", id);
+    generator.writeEndObject();
+  }
+
+  private static <T> T setting(Map<String, T> settings, String method) {
+    T setting = settings.get(method);
+    return setting != null ? setting : settings.get(ANY_METHOD);
+  }
+
+  private void delay(String method, JsonNode params) {
+    long[] latency = setting(latencies, method);
+    Long objectCost = setting(objectCosts, method);
+    long micros = 0;
+    if (latency != null) {
+      micros += 1000 * (latency[0] + (latency[1] > 0 ? ThreadLocalRandom.current().nextLong(latency[1]) : 0));
+    }
+    if (objectCost != null) {
+      micros += objectCost * (params.isArray() ? params.size() : 1);
+    }
+    if (micros <= 0) return;
+    try {
+      TimeUnit.MICROSECONDS.sleep(micros);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private ResultWriter dispatch(String method, JsonNode request) {
+    JsonNode params = request.path("params");
+    switch (method) {
+      case "apiinfo.version":
+        return generator -> generator.writeString(version);
+      case "user.login":
+        return userLogin(params);
+      case "user.logout":
+        return userLogout(request);
+      case "hostgroup.create":
+        return write(() -> create(params, "groupids", this::createGroup));
+      case "hostgroup.get":
+        return read(() -> get(params, "groupid", selectGroups(params)));
+      case "hostgroup.delete":
+        return write(() -> delete(params, "groupids", groups, this::removeGroup));
+      case "host.create":
+        return write(() -> create(params, "hostids", this::createHost));
+      case "host.get":
+        return read(() -> get(params, "hostid", selectHosts(params)));
+      case "host.update":
+        return write(() -> create(params, "hostids", this::updateHost));
+      case "host.delete":
+        return write(() -> delete(params, "hostids", hosts, this::removeHost));
+      case "hostinterface.create":
+        return write(() -> create(params, "interfaceids", this::createInterface));
+      case "hostinterface.get":
+        return read(() -> get(params, "interfaceid", selectInterfaces(params)));
+      case "hostinterface.delete":
+        return write(() -> delete(params, "interfaceids", interfaces, this::removeInterface));
+      case "item.create":
+        return write(() -> create(params, "itemids", this::createItem));
+      case "item.get":
+        return read(() -> get(params, "itemid", selectItems(params)));
+      case "item.update":
+        return write(() -> create(params, "itemids", this::updateItem));
+      case "item.delete":
+        return write(() -> delete(checkNotDiscovered(params), "itemids", items, this::removeItem));
+      case "history.get":
+        return read(() -> history(params));
+      case "trend.get":
+        return read(() -> trends(params));
+      default:
+        throw new ApiError(-32601, "Method not found.", "Incorrect API \"" + method + "\".");
+    }
+  }
+
+  /**
+   * Synthetic history needs no storage: every item has one value per minute, a function of itemid and clock.
+   * Values of numeric float items are this divided by 4.
+   */
+  static long historyValue(long itemId, long clock) {
+    return (itemId * 31 + clock / 60) % 1000;
+  }
+
+  private List<Item> selectHistoryItems(JsonNode params, String valueType) {
+    List<Item> selected = new ArrayList<>();
+    Set<Long> itemIds = ids(params.path("itemids"));
+    for (Item item : byIds(items, itemIds)) {
+      if (valueType == null || valueType.equals(item.valueType)) selected.add(item);
+    }
+    return selected;
+  }
+
+  private static String historyText(Item item, long value, int divisor) {
+    return "0".equals(item.valueType) ? String.valueOf((double) value / 4 / divisor) : String.valueOf(value / divisor);
+  }
+
+  /**
+   * history.get with history, itemids, time_from, time_till, sortorder and limit. Rows are sorted by clock.
+   */
+  private ResultWriter history(JsonNode params) {
+    List<Item> selected = selectHistoryItems(params, String.valueOf(params.path("history").asInt(3)));
+    long first = (params.path("time_from").asLong(0) + 59) / 60 * 60;
+    long last = params.path("time_till").asLong(System.currentTimeMillis() / 1000) / 60 * 60;
+    boolean descending = "DESC".equalsIgnoreCase(params.path("sortorder").asText());
+    int limit = params.path("limit").asInt(Integer.MAX_VALUE);
+    return generator -> {
+      generator.writeStartArray();
+      int rows = 0;
+      for (long clock = descending ? last : first; clock >= first && clock <= last; clock += descending ? -60 : 60) {
+        for (Item item : selected) {
+          if (rows++ >= limit) break;
+          generator.writeStartObject();
+          generator.writeStringField("itemid", String.valueOf(item.id));
+          generator.writeStringField("clock", String.valueOf(clock));
+          generator.writeStringField("value", historyText(item, historyValue(item.id, clock), 1));
+          generator.writeStringField("ns", "0");
+          generator.writeEndObject();
+        }
+      }
+      generator.writeEndArray();
+    };
+  }
+
+  /**
+   * trend.get with itemids, time_from, time_till and limit, aggregated from the synthetic history by hour.
+   */
+  private ResultWriter trends(JsonNode params) {
+    List<Item> selected = selectHistoryItems(params, null);
+    selected.removeIf(item -> !"0".equals(item.valueType) && !"3".equals(item.valueType));
+    long first = (params.path("time_from").asLong(0) + 3599) / 3600 * 3600;
+    long last = params.path("time_till").asLong(System.currentTimeMillis() / 1000) / 3600 * 3600;
+    int limit = params.path("limit").asInt(Integer.MAX_VALUE);
+    return generator -> {
+      generator.writeStartArray();
+      int rows = 0;
+      for (Item item : selected) {
+        for (long clock = first; clock <= last && rows++ < limit; clock += 3600) {
+          long min = Long.MAX_VALUE;
+          long max = Long.MIN_VALUE;
+          long sum = 0;
+          for (long minute = clock; minute < clock + 3600; minute += 60) {
+            long value = historyValue(item.id, minute);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+          }
+          generator.writeStartObject();
+          generator.writeStringField("itemid", String.valueOf(item.id));
+          generator.writeStringField("clock", String.valueOf(clock));
+          generator.writeStringField("num", "60");
+          generator.writeStringField("value_min", historyText(item, min, 1));
+          generator.writeStringField("value_avg", historyText(item, sum, 60));
+          generator.writeStringField("value_max", historyText(item, max, 1));
+          generator.writeEndObject();
+        }
+      }
+      generator.writeEndArray();
+    };
+  }
+
+  private ResultWriter userLogin(JsonNode params) {
+    String password = users.get(params.path("user").asText());
+    if (password == null || !password.equals(params.path("password").asText())) {
+      throw new ApiError(-32602, "Invalid params.", "Login name or password is incorrect.");
+    }
+    String auth = UUID.randomUUID().toString().replace("-", "");
+    sessions.add(auth);
+    return generator -> generator.writeString(auth);
+  }
+
+  private ResultWriter userLogout(JsonNode request) {
+    sessions.remove(request.path("auth").asText());
+    return generator -> generator.writeBoolean(true);
+  }
+
+  private <T> T read(Supplier<T> action) {
+    lock.readLock().lock();
+    try {
+      return action.get();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private <T> T write(Supplier<T> action) {
+    lock.writeLock().lock();
+    try {
+      return action.get();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Validate every object first, then create or update all of them, so a failed call changes nothing.
+   */
+  private ResultWriter create(JsonNode params, String idsField,
+                              Function<JsonNode, Supplier<Long>> validator) {
+    List<JsonNode> objects = new ArrayList<>();
+    if (params.isArray()) {
+      params.forEach(objects::add);
+    } else {
+      objects.add(params);
+    }
+    List<Supplier<Long>> creators = new ArrayList<>();
+    for (JsonNode object : objects) {
+      creators.add(validator.apply(object));
+    }
+
+    List<Long> ids = new ArrayList<>();
+    creators.forEach(creator -> ids.add(creator.get()));
+    return idsWriter(idsField, ids);
+  }
+
+  private static ResultWriter idsWriter(String idsField, List<Long> ids) {
+    return generator -> {
+      generator.writeStartObject();
+      generator.writeArrayFieldStart(idsField);
+      for (Long id : ids) {
+        generator.writeString(String.valueOf(id));
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    };
+  }
+
+  private JsonNode checkNotDiscovered(JsonNode itemIds) {
+    for (String id : strings(itemIds)) {
+      Item item = items.get(parseId(id));
+      if (item != null && item.flags == ITEM_DISCOVERED) {
+        throw new ApiError(-32500, "Application error.", "Cannot delete a discovered item.");
+      }
+    }
+    return itemIds;
+  }
+
+  private ResultWriter delete(JsonNode params, String idsField, Map<Long, ?> store,
+                        Consumer<Long> remover) {
+    List<Long> ids = new ArrayList<>();
+    for (String id : strings(params)) {
+      Long key = parseId(id);
+      if (key == null || !store.containsKey(key)) {
+        throw new ApiError(-32500, "Application error.", "No permissions to referred object or it does not exist!");
+      }
+      ids.add(key);
+    }
+    ids.forEach(remover);
+    return idsWriter(idsField, ids);
+  }
+
+  /**
+   * Apply filter, search, sortfield, limit, countOutput, preservekeys and output to the selected rows.
+   */
+  private ResultWriter get(JsonNode params, String idField, Collection<? extends Row> selected) {
+    JsonNode filter = params.path("filter");
+    Map<String, List<Pattern>> search = searchPatterns(params);
+    boolean searchByAny = params.path("searchByAny").asBoolean(false);
+    List<String> sortFields = strings(params.path("sortfield"));
+    List<Row> rows = new ArrayList<>();
+    int limit = params.path("limit").asInt(Integer.MAX_VALUE);
+    for (Row row : selected) {
+      // Zabbix sorts before it applies the limit.
+      if (rows.size() >= limit && sortFields.isEmpty()) break;
+      if (matches(row, filter) && matches(row, search, searchByAny)) rows.add(row);
+    }
+    if (!sortFields.isEmpty()) {
+      Comparator<Row> comparator = null;
+      for (String field : sortFields) {
+        Comparator<Row> byField = (a, b) -> compareValues(a.get(field), b.get(field));
+        comparator = comparator == null ? byField : comparator.thenComparing(byField);
+      }
+      if ("DESC".equalsIgnoreCase(params.path("sortorder").asText())) {
+        comparator = comparator.reversed();
+      }
+      rows.sort(comparator);
+      if (rows.size() > limit) {
+        rows.subList(limit, rows.size()).clear();
+      }
+    }
+
+    if (params.path("countOutput").asBoolean(false)) {
+      String count = String.valueOf(rows.size());
+      return generator -> generator.writeString(count);
+    }
+    Set<String> output = output(params.path("output"), idField);
+    boolean preserveKeys = params.path("preservekeys").asBoolean(false);
+    return generator -> {
+      if (preserveKeys) {
+        generator.writeStartObject();
+      } else {
+        generator.writeStartArray();
+      }
+      for (Row row : rows) {
+        if (preserveKeys) generator.writeFieldName(row.get(idField));
+        generator.writeStartObject();
+        for (String field : row.fields()) {
+          if (output == null || output.contains(field)) {
+            generator.writeStringField(field, row.get(field));
+          }
+        }
+        if (row instanceof Host) writeHostSelects(generator, params, (Host) row);
+        generator.writeEndObject();
+      }
+      if (preserveKeys) {
+        generator.writeEndObject();
+      } else {
+        generator.writeEndArray();
+      }
+    };
+  }
+
+  /**
+   * selectGroups and selectInterfaces of host.get, always with every property.
+   */
+  private void writeHostSelects(JsonGenerator generator, JsonNode params, Host host) throws IOException {
+    if (params.hasNonNull("selectGroups")) {
+      generator.writeArrayFieldStart("groups");
+      for (Long groupId : host.groupIds) {
+        writeRow(generator, groups.get(groupId));
+      }
+      generator.writeEndArray();
+    }
+    if (params.hasNonNull("selectInterfaces")) {
+      generator.writeArrayFieldStart("interfaces");
+      for (Long interfaceId : host.interfaceIds) {
+        writeRow(generator, interfaces.get(interfaceId));
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  private static void writeRow(JsonGenerator generator, Row row) throws IOException {
+    generator.writeStartObject();
+    for (String field : row.fields()) {
+      generator.writeStringField(field, row.get(field));
+    }
+    generator.writeEndObject();
+  }
+
+  private static boolean matches(Row row, JsonNode filter) {
+    Iterator<Map.Entry<String, JsonNode>> fields = filter.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      if (!strings(field.getValue()).contains(row.get(field.getKey()))) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Zabbix searches with LIKE '%value%', case insensitive, and turns * into % when searchWildcardsEnabled.
+   *
+   * @return patterns by field, a field matches if any of its patterns does
+   */
+  private static Map<String, List<Pattern>> searchPatterns(JsonNode params) {
+    Map<String, List<Pattern>> patterns = new HashMap<>();
+    boolean wildcards = params.path("searchWildcardsEnabled").asBoolean(false);
+    Iterator<Map.Entry<String, JsonNode>> fields = params.path("search").fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      List<Pattern> fieldPatterns = new ArrayList<>();
+      for (String value : strings(field.getValue())) {
+        StringBuilder regex = new StringBuilder(".*");
+        String[] parts = wildcards ? value.split("\\*", -1) : new String[]{value};
+        for (int i = 0; i < parts.length; i++) {
+          if (i > 0) regex.append(".*");
+          regex.append(Pattern.quote(parts[i]));
+        }
+        fieldPatterns.add(Pattern.compile(regex.append(".*").toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL));
+      }
+      patterns.put(field.getKey(), fieldPatterns);
+    }
+    return patterns;
+  }
+
+  private static boolean matches(Row row, Map<String, List<Pattern>> search, boolean searchByAny) {
+    if (search.isEmpty()) return true;
+
+    for (Map.Entry<String, List<Pattern>> field : search.entrySet()) {
+      String value = row.get(field.getKey());
+      boolean fieldMatches = value != null && field.getValue().stream().anyMatch(p -> p.matcher(value).matches());
+      if (fieldMatches && searchByAny) return true;
+      if (!fieldMatches && !searchByAny) return false;
+    }
+    return !searchByAny;
+  }
+
+  /**
+   * Numbers compare as numbers, like the integer id and clock columns in the database.
+   */
+  private static int compareValues(String a, String b) {
+    if (a == null || b == null) return a == null ? (b == null ? 0 : -1) : 1;
+    try {
+      return Long.compare(Long.parseLong(a), Long.parseLong(b));
+    } catch (NumberFormatException e) {
+      return a.compareTo(b);
+    }
+  }
+
+  /**
+   * @return fields to write, or null for "extend"
+   */
+  private static Set<String> output(JsonNode output, String idField) {
+    if (output.isArray()) {
+      return new HashSet<>(strings(output));
+    }
+    if (output.isTextual() && !"extend".equals(output.asText())) {
+      // "shorten" and "refer" return the id only.
+      return Collections.singleton(idField);
+    }
+    return null;
+  }
+
+  private static List<String> strings(JsonNode node) {
+    List<String> values = new ArrayList<>();
+    if (node.isArray()) {
+      node.forEach(value -> values.add(value.asText()));
+    } else if (!node.isMissingNode() && !node.isNull()) {
+      values.add(node.asText());
+    }
+    return values;
+  }
+
+  private static Long parseId(String id) {
+    try {
+      return Long.valueOf(id);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static Set<Long> ids(JsonNode node) {
+    if (node.isMissingNode() || node.isNull()) return null;
+
+    Set<Long> ids = new HashSet<>();
+    for (String id : strings(node)) {
+      Long key = parseId(id);
+      if (key != null) ids.add(key);
+    }
+    return ids;
+  }
+
+  private static String required(JsonNode object, String field) {
+    JsonNode value = object.get(field);
+    if (value == null || value.isNull()) {
+      throw new ApiError(-32602, "Invalid params.", "Field \"" + field + "\" is mandatory.");
+    }
+    return value.asText();
+  }
+
+  private Supplier<Long> createGroup(JsonNode object) {
+    String name = required(object, "name");
+    if (groupsByName.containsKey(name)) {
+      throw new ApiError(-32602, "Invalid params.", "Host group \"" + name + "\" already exists.");
+    }
+    return () -> addGroup(name).id;
+  }
+
+  private Supplier<Long> createHost(JsonNode object) {
+    String name = required(object, "host");
+    if (hostsByName.containsKey(name)) {
+      throw new ApiError(-32602, "Invalid params.", "Host with the same name \"" + name + "\" already exists.");
+    }
+    List<Long> groupIds = new ArrayList<>();
+    for (JsonNode group : object.path("groups")) {
+      Long groupId = parseId(group.path("groupid").asText());
+      if (groupId == null || !groups.containsKey(groupId)) {
+        throw new ApiError(-32500, "Application error.", "No permissions to referred object or it does not exist!");
+      }
+      groupIds.add(groupId);
+    }
+    if (groupIds.isEmpty()) {
+      throw new ApiError(-32602, "Invalid params.", "No groups for host \"" + name + "\".");
+    }
+    List<JsonNode> hostInterfaces = new ArrayList<>();
+    object.path("interfaces").forEach(hostInterfaces::add);
+    String visibleName = object.hasNonNull("name") ? object.get("name").asText() : name;
+    return () -> {
+      Host host = addHost(name, groupIds);
+      host.name = visibleName;
+      for (JsonNode hostInterface : hostInterfaces) {
+        addInterface(host.id, hostInterface.path("type").asText("1"), hostInterface.path("main").asText("1"),
+                hostInterface.path("useip").asText("1"), hostInterface.path("ip").asText(""),
+                hostInterface.path("dns").asText(""), hostInterface.path("port").asText("10050"));
+      }
+      return host.id;
+    };
+  }
+
+  /**
+   * host.update of groups and name.
+   */
+  private Supplier<Long> updateHost(JsonNode object) {
+    Long hostId = parseId(required(object, "hostid"));
+    Host host = hostId == null ? null : hosts.get(hostId);
+    if (host == null) {
+      throw new ApiError(-32500, "Application error.", "No permissions to referred object or it does not exist!");
+    }
+    List<Long> groupIds = null;
+    if (object.has("groups")) {
+      groupIds = new ArrayList<>();
+      for (JsonNode group : object.path("groups")) {
+        Long groupId = parseId(group.path("groupid").asText());
+        if (groupId == null || !groups.containsKey(groupId)) {
+          throw new ApiError(-32500, "Application error.", "No permissions to referred object or it does not exist!");
+        }
+        groupIds.add(groupId);
+      }
+      if (groupIds.isEmpty()) {
+        throw new ApiError(-32602, "Invalid params.", "No groups for host \"" + host.host + "\".");
+      }
+    }
+    List<Long> newGroupIds = groupIds;
+    String name = object.hasNonNull("name") ? object.get("name").asText() : host.name;
+    String hostName = object.hasNonNull("host") ? object.get("host").asText() : host.host;
+    if (!hostName.equals(host.host) && hostsByName.containsKey(hostName)) {
+      throw new ApiError(-32602, "Invalid params.", "Host with the same name \"" + hostName + "\" already exists.");
+    }
+    return () -> {
+      host.name = name;
+      hostsByName.remove(host.host);
+      host.host = hostName;
+      hostsByName.put(hostName, host);
+      if (newGroupIds != null) {
+        host.groupIds.forEach(groupId -> groups.get(groupId).hostIds.remove(host.id));
+        host.groupIds.clear();
+        host.groupIds.addAll(newGroupIds);
+        newGroupIds.forEach(groupId -> groups.get(groupId).hostIds.add(host.id));
+      }
+      return host.id;
+    };
+  }
+
+  private Supplier<Long> createInterface(JsonNode object) {
+    Long hostId = parseId(required(object, "hostid"));
+    if (hostId == null || !hosts.containsKey(hostId)) {
+      throw new ApiError(-32500, "Application error.", "No permissions to referred object or it does not exist!");
+    }
+    String type = required(object, "type");
+    String main = required(object, "main");
+    String useip = required(object, "useip");
+    String ip = object.path("ip").asText("");
+    String dns = object.path("dns").asText("");
+    String port = required(object, "port");
+    return () -> addInterface(hostId, type, main, useip, ip, dns, port).id;
+  }
+
+  private Supplier<Long> createItem(JsonNode object) {
+    Long hostId = parseId(required(object, "hostid"));
+    Host host = hostId == null ? null : hosts.get(hostId);
+    if (host == null) {
+      throw new ApiError(-32500, "Application error.", "No permissions to referred object or it does not exist!");
+    }
+    String key = required(object, "key_");
+    if (host.itemsByKey.containsKey(key)) {
+      throw new ApiError(-32602, "Invalid params.",
+              "Item with key \"" + key + "\" already exists on \"" + host.host + "\".");
+    }
+    String name = required(object, "name");
+    String type = required(object, "type");
+    String valueType = required(object, "value_type");
+    Long interfaceId = parseId(object.path("interfaceid").asText("0"));
+    String delay = object.path("delay").asText("0");
+    return () -> addItem(hostId, interfaceId == null ? 0 : interfaceId, key, name, type, valueType, delay).id;
+  }
+
+  /**
+   * item.update of key_, name, type, value_type, delay and interfaceid.
+   */
+  private Supplier<Long> updateItem(JsonNode object) {
+    Long itemId = parseId(required(object, "itemid"));
+    Item item = itemId == null ? null : items.get(itemId);
+    if (item == null) {
+      throw new ApiError(-32500, "Application error.", "No permissions to referred object or it does not exist!");
+    }
+    if (item.flags == ITEM_DISCOVERED) {
+      throw new ApiError(-32500, "Application error.", "Cannot update a discovered item.");
+    }
+    Host host = hosts.get(item.hostId);
+    String key = object.path("key_").asText(item.key);
+    if (!key.equals(item.key) && host.itemsByKey.containsKey(key)) {
+      throw new ApiError(-32602, "Invalid params.",
+              "Item with key \"" + key + "\" already exists on \"" + host.host + "\".");
+    }
+    String name = object.path("name").asText(item.name);
+    String type = object.path("type").asText(item.type);
+    String valueType = object.path("value_type").asText(item.valueType);
+    String delay = object.path("delay").asText(item.delay);
+    Long interfaceId = object.has("interfaceid") ? parseId(object.get("interfaceid").asText()) : item.interfaceId;
+    return () -> {
+      host.itemsByKey.remove(item.key);
+      item.key = key;
+      host.itemsByKey.put(key, item.id);
+      item.name = name;
+      item.type = type;
+      item.valueType = valueType;
+      item.delay = delay;
+      item.interfaceId = interfaceId == null ? 0 : interfaceId;
+      return item.id;
+    };
+  }
+
+  private Group addGroup(String name) {
+    Group group = new Group(nextGroupId.getAndIncrement(), name);
+    groups.put(group.id, group);
+    groupsByName.put(name, group);
+    return group;
+  }
+
+  private Host addHost(String name, List<Long> groupIds) {
+    Host host = new Host(nextHostId.getAndIncrement(), name, groupIds);
+    hosts.put(host.id, host);
+    hostsByName.put(name, host);
+    groupIds.forEach(groupId -> groups.get(groupId).hostIds.add(host.id));
+    return host;
+  }
+
+  private Interface addInterface(long hostId, String type, String main, String useip, String ip, String dns,
+                                 String port) {
+    Interface hostInterface = new Interface(nextInterfaceId.getAndIncrement(), hostId, type, main, useip, ip, dns,
+            port);
+    interfaces.put(hostInterface.id, hostInterface);
+    hosts.get(hostId).interfaceIds.add(hostInterface.id);
+    return hostInterface;
+  }
+
+  private Item addItem(long hostId, long interfaceId, String key, String name, String type, String valueType,
+                       String delay) {
+    Item item = new Item(nextItemId.getAndIncrement(), hostId, interfaceId, key, name, type, valueType, delay);
+    items.put(item.id, item);
+    hosts.get(hostId).itemsByKey.put(key, item.id);
+    return item;
+  }
+
+  private void removeGroup(Long groupId) {
+    Group group = groups.remove(groupId);
+    groupsByName.remove(group.name);
+    group.hostIds.forEach(hostId -> hosts.get(hostId).groupIds.remove(groupId));
+  }
+
+  private void removeHost(Long hostId) {
+    Host host = hosts.remove(hostId);
+    hostsByName.remove(host.host);
+    host.groupIds.forEach(groupId -> groups.get(groupId).hostIds.remove(hostId));
+    host.interfaceIds.forEach(interfaces::remove);
+    host.itemsByKey.values().forEach(items::remove);
+  }
+
+  private void removeInterface(Long interfaceId) {
+    Interface hostInterface = interfaces.remove(interfaceId);
+    hosts.get(hostInterface.hostId).interfaceIds.remove(interfaceId);
+  }
+
+  private void removeItem(Long itemId) {
+    Item item = items.remove(itemId);
+    hosts.get(item.hostId).itemsByKey.remove(item.key);
+  }
+
+  private Collection<? extends Row> selectGroups(JsonNode params) {
+    Set<Long> groupIds = ids(params.path("groupids"));
+    Set<Long> hostIds = ids(params.path("hostids"));
+    if (hostIds != null) {
+      Set<Long> hostGroupIds = new HashSet<>();
+      hostIds.stream().map(hosts::get).filter(Objects::nonNull).forEach(host -> hostGroupIds.addAll(host.groupIds));
+      if (groupIds != null) hostGroupIds.retainAll(groupIds);
+      groupIds = hostGroupIds;
+    }
+    return byIds(groups, groupIds);
+  }
+
+  private Collection<? extends Row> selectHosts(JsonNode params) {
+    Set<Long> hostIds = ids(params.path("hostids"));
+    Set<Long> groupIds = ids(params.path("groupids"));
+    List<Host> selected = new ArrayList<>();
+    JsonNode hostFilter = params.path("filter").path("host");
+    Collection<Host> candidates = hostFilter.isMissingNode() ? byIds(hosts, hostIds) : byNames(hostFilter);
+    for (Host host : candidates) {
+      if (hostIds != null && !hostIds.contains(host.id)) continue;
+      if (groupIds != null && Collections.disjoint(groupIds, host.groupIds)) continue;
+      selected.add(host);
+    }
+    return selected;
+  }
+
+  private Collection<? extends Row> selectInterfaces(JsonNode params) {
+    Set<Long> interfaceIds = ids(params.path("interfaceids"));
+    Set<Long> hostIds = ids(params.path("hostids"));
+    if (hostIds == null) return byIds(interfaces, interfaceIds);
+
+    List<Interface> selected = new ArrayList<>();
+    for (Long hostId : hostIds) {
+      Host host = hosts.get(hostId);
+      if (host == null) continue;
+      for (Long interfaceId : host.interfaceIds) {
+        if (interfaceIds == null || interfaceIds.contains(interfaceId)) selected.add(interfaces.get(interfaceId));
+      }
+    }
+    return selected;
+  }
+
+  private Collection<? extends Row> selectItems(JsonNode params) {
+    Set<Long> itemIds = ids(params.path("itemids"));
+    Set<Long> hostIds = ids(params.path("hostids"));
+    if (params.hasNonNull("host")) {
+      Host host = hostsByName.get(params.get("host").asText());
+      Set<Long> named = new HashSet<>();
+      if (host != null) named.add(host.id);
+      if (hostIds != null) named.retainAll(hostIds);
+      hostIds = named;
+    }
+    Set<Long> groupIds = ids(params.path("groupids"));
+    if (groupIds != null) {
+      Set<Long> grouped = new HashSet<>();
+      for (Host host : hosts.values()) {
+        if (!Collections.disjoint(groupIds, host.groupIds) && (hostIds == null || hostIds.contains(host.id))) {
+          grouped.add(host.id);
+        }
+      }
+      hostIds = grouped;
+    }
+    if (hostIds == null) return byIds(items, itemIds);
+
+    // Use the per host key index instead of scanning every item.
+    List<Item> selected = new ArrayList<>();
+    JsonNode keyFilter = params.path("filter").path("key_");
+    for (Long hostId : hostIds) {
+      Host host = hosts.get(hostId);
+      if (host == null) continue;
+      Collection<Long> hostItemIds = host.itemsByKey.values();
+      if (!keyFilter.isMissingNode()) {
+        hostItemIds = new ArrayList<>();
+        for (String key : strings(keyFilter)) {
+          Long itemId = host.itemsByKey.get(key);
+          if (itemId != null) hostItemIds.add(itemId);
+        }
+      }
+      for (Long itemId : hostItemIds) {
+        if (itemIds == null || itemIds.contains(itemId)) selected.add(items.get(itemId));
+      }
+    }
+    return selected;
+  }
+
+  private static <T> Collection<T> byIds(Map<Long, T> store, Set<Long> ids) {
+    if (ids == null) return store.values();
+
+    List<T> selected = new ArrayList<>();
+    for (Long id : ids) {
+      T row = store.get(id);
+      if (row != null) selected.add(row);
+    }
+    return selected;
+  }
+
+  private Collection<Host> byNames(JsonNode names) {
+    List<Host> selected = new ArrayList<>();
+    for (String name : strings(names)) {
+      Host host = hostsByName.get(name);
+      if (host != null) selected.add(host);
+    }
+    return selected;
+  }
+
+  /**
+   * Writes a result value. Built under the state lock, written after it is released.
+   */
+  private interface ResultWriter {
+    void write(JsonGenerator generator) throws IOException;
+  }
+
+  private interface Row {
+    String[] fields();
+
+    String get(String field);
+  }
+
+  private static class Group implements Row {
+    static final String[] FIELDS = {"groupid", "name", "internal", "flags"};
+    final long id;
+    final String name;
+    final Set<Long> hostIds = new LinkedHashSet<>();
+
+    Group(long id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+
+    public String[] fields() {
+      return FIELDS;
+    }
+
+    public String get(String field) {
+      switch (field) {
+        case "groupid":
+          return String.valueOf(id);
+        case "name":
+          return name;
+        case "internal":
+        case "flags":
+          return "0";
+        default:
+          return null;
+      }
+    }
+  }
+
+  private static class Host implements Row {
+    static final String[] FIELDS = {"hostid", "proxy_hostid", "host", "status", "available", "error", "name",
+            "flags", "description"};
+    final long id;
+    String host;
+    String name;
+    final Set<Long> groupIds;
+    final List<Long> interfaceIds = new ArrayList<>();
+    final LinkedHashMap<String, Long> itemsByKey = new LinkedHashMap<>();
+
+    Host(long id, String host, List<Long> groupIds) {
+      this.id = id;
+      this.host = host;
+      this.name = host;
+      this.groupIds = new LinkedHashSet<>(groupIds);
+    }
+
+    public String[] fields() {
+      return FIELDS;
+    }
+
+    public String get(String field) {
+      switch (field) {
+        case "hostid":
+          return String.valueOf(id);
+        case "host":
+          return host;
+        case "name":
+          return name;
+        case "available":
+          return "1";
+        case "proxy_hostid":
+        case "status":
+        case "flags":
+          return "0";
+        case "error":
+        case "description":
+          return "";
+        default:
+          return null;
+      }
+    }
+  }
+
+  private static class Interface implements Row {
+    static final String[] FIELDS = {"interfaceid", "hostid", "main", "type", "useip", "ip", "dns", "port", "bulk"};
+    final long id;
+    final long hostId;
+    final String type;
+    final String main;
+    final String useip;
+    final String ip;
+    final String dns;
+    final String port;
+
+    Interface(long id, long hostId, String type, String main, String useip, String ip, String dns, String port) {
+      this.id = id;
+      this.hostId = hostId;
+      this.type = type;
+      this.main = main;
+      this.useip = useip;
+      this.ip = ip;
+      this.dns = dns;
+      this.port = port;
+    }
+
+    public String[] fields() {
+      return FIELDS;
+    }
+
+    public String get(String field) {
+      switch (field) {
+        case "interfaceid":
+          return String.valueOf(id);
+        case "hostid":
+          return String.valueOf(hostId);
+        case "main":
+          return main;
+        case "type":
+          return type;
+        case "useip":
+          return useip;
+        case "ip":
+          return ip;
+        case "dns":
+          return dns;
+        case "port":
+          return port;
+        case "bulk":
+          return "1";
+        default:
+          return null;
+      }
+    }
+  }
+
+  private static class Item implements Row {
+    static final String[] FIELDS = {"itemid", "type", "hostid", "name", "key_", "delay", "history", "trends",
+            "status", "value_type", "units", "interfaceid", "state", "lastclock", "lastvalue", "flags"};
+    final long id;
+    final long hostId;
+    long interfaceId;
+    String key;
+    String name;
+    String type;
+    String valueType;
+    String delay;
+    int flags;
+
+    Item(long id, long hostId, long interfaceId, String key, String name, String type, String valueType,
+         String delay) {
+      this.id = id;
+      this.hostId = hostId;
+      this.interfaceId = interfaceId;
+      this.key = key;
+      this.name = name;
+      this.type = type;
+      this.valueType = valueType;
+      this.delay = delay;
+    }
+
+    public String[] fields() {
+      return FIELDS;
+    }
+
+    public String get(String field) {
+      switch (field) {
+        case "itemid":
+          return String.valueOf(id);
+        case "type":
+          return type;
+        case "hostid":
+          return String.valueOf(hostId);
+        case "name":
+          return name;
+        case "key_":
+          return key;
+        case "delay":
+          return delay;
+        case "history":
+          return "90";
+        case "trends":
+          return "365";
+        case "value_type":
+          return valueType;
+        case "interfaceid":
+          return String.valueOf(interfaceId);
+        case "flags":
+          return String.valueOf(flags);
+        case "status":
+        case "state":
+        case "lastclock":
+        case "lastvalue":
+          return "0";
+        case "units":
+          return "";
+        default:
+          return null;
+      }
+    }
+  }
+
+  private static class ApiError extends RuntimeException {
+    final int code;
+    final String message;
+    final String data;
+
+    ApiError(int code, String message, String data) {
+      super(data, null, false, false);
+      this.code = code;
+      this.message = message;
+      this.data = data;
+    }
+  }
+
+  private static class InjectedError {
+    final double probability;
+    final ApiError error;
+
+    InjectedError(double probability, int code, String message, String data) {
+      this.probability = probability;
+      this.error = new ApiError(code, message, data);
+    }
+  }
+
+  private static class CountingInputStream extends FilterInputStream {
+    long count;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) count++;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) count += n;
+      return n;
+    }
+  }
+
+  private static class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
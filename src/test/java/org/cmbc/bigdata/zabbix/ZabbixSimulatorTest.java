@@ -0,0 +1,459 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.fail;
+
+/**
+ * Runs every ZabbixApiTest case against the in-process simulator instead of a real zabbix.
+ */
+public class ZabbixSimulatorTest extends ZabbixApiTest {
+  ZabbixSimulator simulator;
+
+  @Before
+  @Override
+  public void before() {
+    simulator = new ZabbixSimulator().version(Zabbix_Version).start();
+    zabbixApi = ZabbixApiBuilder.newBuilder().url(simulator.getUrl()).build();
+    zabbixApi.init();
+  }
+
+  @After
+  @Override
+  public void after() {
+    super.after();
+    simulator.stop();
+  }
+
+  @Test
+  public void testSyntheticInventory() {
+    simulator.populate(2, 10, 500);
+    zabbixApi.login(Zabbix_User, Zabbix_Password);
+
+    AtomicInteger rows = new AtomicInteger();
+    HashMap<String, Object> param = new HashMap<>();
+    param.put("output", "extend");
+    ZabbixAPIResult result = zabbixApi.itemGet(param, new HashMap<>(), item -> rows.incrementAndGet());
+    assertFalse(result.isFail());
+    assertEquals(10000, rows.get());
+
+    ArrayList<String> keys = new ArrayList<>();
+    keys.add("synthetic.item[7]");
+    keys.add("no.such.key");
+    ZabbixAPIResult items = zabbixApi.itemGetByHostNameAndItemKey("host-1-3", keys);
+    assertEquals(1, ((com.fasterxml.jackson.databind.JsonNode) items.getData()).size());
+  }
+
+  @Test
+  public void testLookupBatching() throws Exception {
+    simulator.populate(4, 10, 5);
+    zabbixApi.configureLookupBatching(50, 40);
+    zabbixApi.login(Zabbix_User, Zabbix_Password);
+
+    ExecutorService callers = Executors.newFixedThreadPool(40);
+    List<Future<ZabbixAPIResult>> hosts = new ArrayList<>();
+    List<Future<ZabbixAPIResult>> items = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      String host = i == 39 ? "no-such-host" : "host-" + i % 4 + "-" + i / 4;
+      hosts.add(callers.submit(() -> zabbixApi.hostGetByHostName(host)));
+    }
+    for (int i = 0; i < 40; i++) {
+      String host = "host-" + i % 4 + "-" + i / 4;
+      ArrayList<String> keys = new ArrayList<>(Arrays.asList("synthetic.item[" + i % 5 + "]", "no.such.key"));
+      items.add(callers.submit(() -> zabbixApi.itemGetByHostNameAndItemKey(host, keys)));
+    }
+    for (int i = 0; i < 40; i++) {
+      JsonNode rows = (JsonNode) hosts.get(i).get().getData();
+      assertEquals(i == 39 ? 0 : 1, rows.size());
+      if (i < 39) assertEquals("host-" + i % 4 + "-" + i / 4, rows.get(0).get("host").asText());
+
+      rows = (JsonNode) items.get(i).get().getData();
+      assertEquals(1, rows.size());
+      assertEquals("synthetic.item[" + i % 5 + "]", rows.get(0).get("key_").asText());
+    }
+    callers.shutdown();
+
+    // 40 lookups each, in few gets. Item lookups resolve their hosts first.
+    assertEquals(80, zabbixApi.getHostLookupBatcher().getLookupCount() + zabbixApi.getItemLookupBatcher()
+            .getLookupCount());
+    assertTrue(simulator.getRequestCount("host.get") <= 8);
+    assertTrue(simulator.getRequestCount("item.get") <= 4);
+  }
+
+  @Test
+  public void testLookupBatchError() throws Exception {
+    ZabbixLookupBatcher<String> batcher = new ZabbixLookupBatcher<>(5000, 2, lookups -> {
+      throw new AssertionError("batch failed");
+    });
+    ExecutorService callers = Executors.newFixedThreadPool(2);
+    List<Future<ZabbixAPIResult>> results = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      results.add(callers.submit(() -> batcher.get("host")));
+    }
+    // Both the caller that ran the batch and the one waiting for it fail, none waits forever.
+    for (Future<ZabbixAPIResult> result : results) {
+      try {
+        result.get(5, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException e) {
+        assertEquals("batch failed", e.getCause().getMessage());
+      }
+    }
+    callers.shutdown();
+  }
+
+  @Test
+  public void testTypedRows() {
+    simulator.populate(1, 2, 3);
+    zabbixApi.login(Zabbix_User, Zabbix_Password);
+
+    ArrayList<String> hostNames = new ArrayList<>();
+    hostNames.add("host-0-1");
+    List<Host> hosts = (List<Host>) zabbixApi.hostListGetByHostName(hostNames, Host.class).getData();
+    assertEquals(1, hosts.size());
+    assertEquals("host-0-1", hosts.get(0).getHost());
+    long hostid = hosts.get(0).getHostid();
+    assertTrue(hostid > 0);
+
+    HashMap<String, Object> param = new HashMap<>();
+    param.put("hostids", hostid);
+    List<Item> items = new ArrayList<>();
+    ZabbixAPIResult result = zabbixApi.itemGet(param, new HashMap<>(), Item.class, items::add);
+    assertEquals(3, result.getData());
+    assertEquals("synthetic.item[2]", items.get(2).getKey());
+    assertEquals(hostid, items.get(2).getHostid());
+    assertEquals(ZabbixItemType.ZABBIX_AGENT, items.get(2).getType());
+    assertEquals(ZabbixItemValueType.NUMERIC_UNSIGNED, items.get(2).getValueType());
+
+    ArrayList<String> hostIds = new ArrayList<>();
+    hostIds.add(String.valueOf(hostid));
+    List<HostInterface> interfaces = (List<HostInterface>) zabbixApi.hostInterfaceGetByHostIds(hostIds,
+            HostInterface.class).getData();
+    assertEquals(10050, Integer.parseInt(interfaces.get(0).getPort()));
+
+    assertEquals(null, ZabbixItemType.fromCode(99));
+  }
+
+  @Test
+  public void testQuery() {
+    simulator.populate(1, 3, 20);
+    zabbixApi.login(Zabbix_User, Zabbix_Password);
+
+    ZabbixQuery idsOnly = ZabbixQuery.newQuery().output("itemid").sortField("itemid").sortOrder(true).limit(5);
+    JsonNode items = (JsonNode) zabbixApi.itemGet(idsOnly).getData();
+    assertEquals(5, items.size());
+    assertEquals(1, items.get(0).size());
+    assertTrue(items.get(0).get("itemid").asLong() > items.get(1).get("itemid").asLong());
+
+    ZabbixQuery search = ZabbixQuery.newQuery().output("itemid", "key_").search("key_", "ITEM[1*]")
+            .searchWildcardsEnabled().param("host", "host-0-2");
+    assertEquals(11, ((JsonNode) zabbixApi.itemGet(search).getData()).size());
+    assertEquals("11", ((JsonNode) zabbixApi.itemGet(search.countOutput()).getData()).asText());
+
+    ArrayList<String> hostNames = new ArrayList<>();
+    hostNames.add("host-0-0");
+    hostNames.add("host-0-1");
+    JsonNode hosts = (JsonNode) zabbixApi.hostListGetByHostName(hostNames,
+            ZabbixQuery.newQuery().output("hostid").preserveKeys()).getData();
+    assertEquals(2, hosts.size());
+    assertTrue(zabbixApi.hostExists("host-0-2"));
+    assertFalse(zabbixApi.hostExists("host-0-3"));
+  }
+
+  @Test
+  public void testBulkExists() {
+    simulator.populate(2, 3, 4);
+    zabbixApi.login(Zabbix_User, Zabbix_Password);
+
+    ArrayList<String> hostNames = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      hostNames.add("host-1-" + i);
+    }
+    assertEquals(new HashSet<>(hostNames.subList(0, 3)), zabbixApi.hostListExists(hostNames));
+    assertEquals(1, simulator.getRequestCount("host.get"));
+    Map<String, String> hostIds = (Map<String, String>) zabbixApi.hostIdMapGetByHostName(hostNames).getData();
+    assertEquals(3, hostIds.size());
+    assertEquals(2, simulator.getRequestCount("host.get"));
+    assertTrue(zabbixApi.hostListExists(new ArrayList<>()).isEmpty());
+    assertEquals(2, simulator.getRequestCount("host.get"));
+
+    ArrayList<String> groupNames = new ArrayList<>(Arrays.asList("group-0", "group-2"));
+    assertEquals(Collections.singleton("group-0"), zabbixApi.hostgroupListExists(groupNames));
+
+    ArrayList<String> itemKeys = new ArrayList<>(Arrays.asList("synthetic.item[3]", "synthetic.item[4]"));
+    assertEquals(Collections.singleton("synthetic.item[3]"), zabbixApi.itemListExistsByItemKey("host-0-0", itemKeys));
+    ArrayList<String> itemNames = new ArrayList<>(Arrays.asList("item-0", "item-1", "item-9"));
+    Map<String, String> itemIds = (Map<String, String>) zabbixApi.itemIdMapGetByHostNameAndItemName("host-0-0",
+            itemNames).getData();
+    assertEquals(2, itemIds.size());
+    assertEquals(2, zabbixApi.itemListExistsByItemName("host-0-0", itemNames).size());
+
+    simulator.error("host.get", 1, -32500, "Application error.", "Injected.");
+    assertTrue(zabbixApi.hostIdMapGetByHostName(hostNames).isFail());
+  }
+
+  @Test
+  public void testScan() {
+    simulator.populate(3, 10, 50);
+    zabbixApi.login(Zabbix_User, Zabbix_Password);
+
+    Set<Long> itemIds = ConcurrentHashMap.newKeySet();
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    ZabbixAPIResult result = zabbixApi.scan("item.get").query(ZabbixQuery.newQuery().output("itemid"))
+            .partitionByHosts(3).parallelism(4).queueCapacity(8).execute(Item.class, item -> {
+              itemIds.add(item.getItemid());
+              threads.add(Thread.currentThread().getName());
+            });
+    assertEquals(1500L, result.getData());
+    assertEquals(1500, itemIds.size());
+    assertEquals(1, threads.size());
+    assertEquals(10, simulator.getRequestCount("item.get"));
+
+    result = zabbixApi.scan("item.get").partitionByGroups(1).execute(item -> {
+    });
+    assertEquals(1500L, result.getData());
+
+    simulator.error("item.get", 1, -32500, "Application error.", "Injected.");
+    result = zabbixApi.scan("item.get").execute(item -> {
+    });
+    assertTrue(result.isFail());
+    assertEquals("Injected.", result.getData());
+  }
+
+  @Test(timeout = 10000)
+  public void testScanError() {
+    simulator.populate(1, 4, 5);
+    ZabbixApi brokenApi = new ZabbixApi(simulator.getUrl()) {
+      @Override
+      public <T> ZabbixAPIResult callApiStream(String method, Object params, Class<T> rowType,
+                                               Consumer<? super T> rowConsumer) {
+        if (method.equals("item.get")) throw new AssertionError("partition failed");
+        return super.callApiStream(method, params, rowType, rowConsumer);
+      }
+    };
+    brokenApi.init();
+    brokenApi.login(Zabbix_User, Zabbix_Password);
+
+    // An Error on a fetching thread reaches the caller instead of leaving it waiting for the partition.
+    try {
+      brokenApi.scan("item.get").partitionByHosts(1).parallelism(2).execute(Item.class, item -> {
+      });
+      fail();
+    } catch (AssertionError e) {
+      assertEquals("partition failed", e.getMessage());
+    } finally {
+      brokenApi.destroy();
+    }
+  }
+
+  @Test
+  public void testHistoryReader() {
+    simulator.populate(1, 1, 3);
+    zabbixApi.login(Zabbix_User, Zabbix_Password);
+
+    List<Item> items = (List<Item>) zabbixApi.callApi("item.get", new HashMap<>(), Item.class).getData();
+    HashMap<String, Object> floatItem = new HashMap<>();
+    floatItem.put("hostid", items.get(0).getHostid());
+    floatItem.put("name", "cpu load");
+    floatItem.put("key_", "system.cpu.load");
+    floatItem.put("type", ZabbixItemType.ZABBIX_TRAPPER.code());
+    floatItem.put("value_type", ZabbixItemValueType.NUMERIC_FLOAT.code());
+    floatItem.put("delay", 0);
+    floatItem.put("interfaceid", items.get(0).getInterfaceid());
+    ZabbixAPIResult created = zabbixApi.itemCreate(floatItem);
+    assertFalse(String.valueOf(created.getData()), created.isFail());
+    long floatItemId = ((JsonNode) created.getData()).get("itemids").get(0).asLong();
+    items = (List<Item>) zabbixApi.callApi("item.get", new HashMap<>(), Item.class).getData();
+
+    // Thirty days of minute values, in one day slices.
+    long timeFrom = 1500000000L / 86400 * 86400;
+    long timeTill = timeFrom + 30 * 86400 - 1;
+    ZabbixAPIResult result = zabbixApi.historyReader().sliceSeconds(86400).itemsPerCall(2).parallelism(4)
+            .history(items, timeFrom, timeTill);
+    Map<Long, ZabbixTimeSeries> history = (Map<Long, ZabbixTimeSeries>) result.getData();
+    assertEquals(4, history.size());
+    // Two calls for the three unsigned items, one for the float item, per slice.
+    assertEquals(90, simulator.getRequestCount("history.get"));
+    for (Item item : items) {
+      ZabbixTimeSeries series = history.get(item.getItemid());
+      assertEquals(30 * 1440, series.size());
+      assertEquals(timeFrom * 1000, series.getClocks()[0]);
+      assertEquals(timeTill * 1000 - 59000, series.getClocks()[series.size() - 1]);
+      long expected = ZabbixSimulator.historyValue(item.getItemid(), timeFrom + 600);
+      if (item.getItemid() == floatItemId) {
+        assertEquals(expected / 4.0, series.getDoubleValues()[10]);
+      } else {
+        assertEquals(expected, series.getLongValues()[10]);
+      }
+    }
+
+    ArrayList<Long> itemIds = new ArrayList<>();
+    itemIds.add(floatItemId);
+    Map<Long, ZabbixTrendSeries> trends = (Map<Long, ZabbixTrendSeries>) zabbixApi.historyReader()
+            .trends(itemIds, timeFrom, timeTill).getData();
+    ZabbixTrendSeries trend = trends.get(floatItemId);
+    assertEquals(30 * 24, trend.size());
+    assertEquals(60, trend.getNums()[0]);
+    assertTrue(trend.getMin()[0] <= trend.getAvg()[0] && trend.getAvg()[0] <= trend.getMax()[0]);
+
+    simulator.error("history.get", 1, -32500, "Application error.", "Injected.");
+    assertTrue(zabbixApi.historyReader().history(items, timeFrom, timeTill).isFail());
+  }
+
+  @Test
+  public void testReconciler() {
+    simulator.populate(1, 3, 5);
+    // Low-level discovery owns these, so neither is updated nor pruned.
+    simulator.discoveredItem("host-0-0", "vfs.fs.size[/data,free]", "Free on /data");
+    simulator.discoveredItem("host-0-0", "vfs.fs.size[/logs,free]", "Free on /logs");
+    zabbixApi.login(Zabbix_User, Zabbix_Password);
+
+    HostInterface agent = new HostInterface();
+    agent.setType(1);
+    agent.setMain(1);
+    agent.setUseip(1);
+    agent.setIp("127.0.0.1");
+    agent.setPort("10050");
+    HostInterface snmp = new HostInterface();
+    snmp.setType(2);
+    snmp.setUseip(1);
+    snmp.setIp("10.0.0.1");
+    snmp.setPort("161");
+
+    ZabbixInventory inventory = new ZabbixInventory()
+            .host("host-0-0", Collections.singletonList("group-0"), agent)
+            .host("host-0-1", Arrays.asList("group-0", "group-new"), agent, snmp)
+            .host("host-new", Collections.singletonList("group-new"), agent);
+    for (int i = 0; i < 5; i++) {
+      inventory.item("host-0-0", reconcilerItem("synthetic.item[" + i + "]", i == 1 ? "renamed" : "item-" + i,
+              ZabbixItemType.ZABBIX_AGENT));
+    }
+    inventory.item("host-0-0", reconcilerItem("vfs.fs.size[/data,free]", "Free disk space on /data",
+            ZabbixItemType.ZABBIX_AGENT));
+    inventory.item("host-0-1", reconcilerItem("snmp.uptime", "uptime", ZabbixItemType.SNMPV2_AGENT));
+    inventory.item("host-new", reconcilerItem("agent.ping", "ping", ZabbixItemType.ZABBIX_AGENT));
+    inventory.item("host-new", reconcilerItem("trap", "trap", ZabbixItemType.ZABBIX_TRAPPER));
+
+    ZabbixReconcileReport report = zabbixApi.reconciler().reconcile(inventory);
+    assertFalse(String.valueOf(report.getResult().getData()), report.isFail());
+    ZabbixReconcilePlan plan = report.getPlan();
+    assertEquals(1, plan.getGroupsToCreate());
+    assertEquals(1, plan.getHostsToCreate());
+    assertEquals(1, plan.getHostsToUpdate());
+    assertEquals(1, plan.getInterfacesToCreate());
+    assertEquals(3, plan.getItemsToCreate());
+    assertEquals(1, plan.getItemsToUpdate());
+    assertEquals(0, plan.getItemsToDelete());
+    assertTrue(zabbixApi.hostExists("host-new"));
+
+    ZabbixQuery snmpItem = ZabbixQuery.newQuery().output("interfaceid").filter("key_", "snmp.uptime");
+    long interfaceid = ((JsonNode) zabbixApi.itemGet(snmpItem).getData()).get(0).get("interfaceid").asLong();
+    assertEquals(2, ((JsonNode) zabbixApi.callApi("hostinterface.get", ZabbixQuery.newQuery()
+            .param("interfaceids", interfaceid).toParams()).getData()).get(0).get("type").asInt());
+
+    plan = (ZabbixReconcilePlan) zabbixApi.reconciler().plan(inventory).getData();
+    assertTrue(plan.toString(), plan.isEmpty());
+
+    // host-0-1 keeps its five synthetic items and host-0-2 is not in the inventory.
+    report = zabbixApi.reconciler().pruneItems(true).pruneHosts(true).reconcile(inventory);
+    assertFalse(report.isFail());
+    assertEquals(5, report.getPlan().getItemsToDelete());
+    assertEquals(1, report.getPlan().getHostsToDelete());
+    assertFalse(zabbixApi.hostExists("host-0-2"));
+    assertTrue(((ZabbixReconcilePlan) zabbixApi.reconciler().pruneItems(true).pruneHosts(true).plan(inventory)
+            .getData()).isEmpty());
+    ZabbixQuery discovered = ZabbixQuery.newQuery().output("name").filter("flags", 4);
+    assertEquals(2, ((JsonNode) zabbixApi.itemGet(discovered).getData()).size());
+  }
+
+  private static Item reconcilerItem(String key, String name, ZabbixItemType type) {
+    Item item = new Item();
+    item.setKey(key);
+    item.setName(name);
+    item.setType(type);
+    item.setValueType(ZabbixItemValueType.NUMERIC_UNSIGNED);
+    item.setDelay("60");
+    return item;
+  }
+
+  @Test
+  public void testUpdateDropsStaleIds() {
+    simulator.populate(1, 1, 1);
+    zabbixApi.destroy();
+    zabbixApi = ZabbixApiBuilder.newBuilder().url(simulator.getUrl()).nameCache(100, 60000).build();
+    zabbixApi.init();
+    zabbixApi.login(Zabbix_User, Zabbix_Password);
+
+    ArrayList<String> hostNames = new ArrayList<>(Collections.singletonList("host-0-0"));
+    String hostid = ((List<String>) zabbixApi.hostIdListGetByHostName(hostNames).getData()).get(0);
+    HashMap<String, Object> host = new HashMap<>();
+    host.put("hostid", hostid);
+    host.put("host", "host-renamed");
+    assertFalse(zabbixApi.hostListUpdate(new ArrayList<>(Collections.singletonList(host))).isFail());
+    assertTrue(((List<String>) zabbixApi.hostIdListGetByHostName(hostNames).getData()).isEmpty());
+
+    ArrayList<String> itemKeys = new ArrayList<>(Collections.singletonList("synthetic.item[0]"));
+    String itemid = ((List<String>) zabbixApi.itemIdListGetByHostNameAndItemKey("host-renamed", itemKeys)
+            .getData()).get(0);
+    HashMap<String, Object> item = new HashMap<>();
+    item.put("itemid", itemid);
+    item.put("key_", "synthetic.renamed");
+    assertFalse(zabbixApi.itemListUpdate(new ArrayList<>(Collections.singletonList(item))).isFail());
+    assertTrue(((List<String>) zabbixApi.itemIdListGetByHostNameAndItemKey("host-renamed", itemKeys).getData())
+            .isEmpty());
+  }
+
+  @Test
+  public void testExpiredSessionWithResponseCache() {
+    simulator.populate(1, 2, 1);
+    zabbixApi.destroy();
+    zabbixApi = ZabbixApiBuilder.newBuilder().url(simulator.getUrl())
+            .responseCache(new ZabbixResponseCacheConfig().ttl("host.get", 60000)).build();
+    zabbixApi.init();
+    zabbixApi.login(Zabbix_User, Zabbix_Password);
+    assertEquals(1, ((JsonNode) zabbixApi.hostGetByHostName("host-0-0").getData()).size());
+
+    // A miss of a cached method renews the session like any other call.
+    simulator.expireSessions();
+    ZabbixAPIResult result = zabbixApi.hostGetByHostName("host-0-1");
+    assertFalse(String.valueOf(result.getData()), result.isFail());
+    assertEquals(1, ((JsonNode) result.getData()).size());
+    assertEquals(1, zabbixApi.getReloginCount());
+  }
+
+  @Test
+  public void testInjectedErrorsAndExpiredSessions() {
+    zabbixApi.login(Zabbix_User, Zabbix_Password);
+    simulator.expireSessions();
+    assertFalse(zabbixApi.hostgroupListGetByName(new ArrayList<>()).isFail());
+    assertEquals(1, zabbixApi.getReloginCount());
+
+    simulator.error("hostgroup.get", 1, -32500, "Application error.", "Injected.");
+    ZabbixAPIResult result = zabbixApi.hostgroupListGetByName(new ArrayList<>());
+    assertTrue(result.isFail());
+    assertEquals("Injected.", result.getData());
+  }
+}
@@ -0,0 +1,171 @@
+package org.cmbc.bigdata.zabbix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+
+public class ZabbixSingleFlightTest {
+  ZabbixSimulator server;
+  ZabbixApi zabbixApi;
+
+  @Before
+  public void before() throws Exception {
+    server = new ZabbixSimulator(0, 32).handler(request -> {
+      try {
+        TimeUnit.MILLISECONDS.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (request.get("method").asText().equals("host.get")) {
+        Map<String, String> host = new HashMap<>();
+        host.put("hostid", "10084");
+        host.put("host", request.get("params").get("filter").get("host").get(0).asText());
+        return ZabbixSimulator.resultBody(request, Collections.singletonList(host));
+      }
+      return ZabbixSimulator.resultBody(request, "3.0.20");
+    }).start();
+    zabbixApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).singleFlight(true).build();
+    zabbixApi.init();
+  }
+
+  @After
+  public void after() {
+    zabbixApi.destroy();
+    server.stop();
+  }
+
+  private List<ZabbixAPIResult> concurrently(int callers, IntFunction<ZabbixAPIResult> call) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(callers);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<ZabbixAPIResult>> futures = new ArrayList<>();
+    for (int i = 0; i < callers; i++) {
+      int caller = i;
+      futures.add(executor.submit(() -> {
+        start.await();
+        return call.apply(caller);
+      }));
+    }
+    start.countDown();
+    List<ZabbixAPIResult> results = new ArrayList<>();
+    for (Future<ZabbixAPIResult> future : futures) {
+      results.add(future.get());
+    }
+    executor.shutdown();
+    return results;
+  }
+
+  @Test
+  public void testIdenticalReadsShareOneRequest() throws Exception {
+    List<ZabbixAPIResult> results = concurrently(20, caller -> {
+      // Same params, built in a different order.
+      Map<String, Object> filter = new LinkedHashMap<>();
+      Map<String, Object> params = new LinkedHashMap<>();
+      if (caller % 2 == 0) {
+        params.put("output", "extend");
+        params.put("filter", filter);
+      } else {
+        params.put("filter", filter);
+        params.put("output", "extend");
+      }
+      filter.put("host", Collections.singletonList("web-01"));
+      return zabbixApi.callApi("host.get", params);
+    });
+
+    assertTrue("requests " + server.getHttpRequestCount(), server.getHttpRequestCount() <= 2);
+    assertEquals(20 - server.getHttpRequestCount(), zabbixApi.getSingleFlight().getDedupedCount());
+    results.forEach(result -> assertEquals("web-01", ((JsonNode) result.getData()).get(0).get("host").asText()));
+
+    // Every caller owns its rows.
+    ((ObjectNode) ((ArrayNode) results.get(0).getData()).get(0)).put("host", "changed");
+    for (int i = 1; i < results.size(); i++) {
+      assertEquals("web-01", ((JsonNode) results.get(i).getData()).get(0).get("host").asText());
+    }
+  }
+
+  @Test
+  public void testDifferentCallsAreNotShared() throws Exception {
+    List<ZabbixAPIResult> results = concurrently(4, caller -> {
+      Map<String, Object> params = new HashMap<>();
+      params.put("filter", Collections.singletonMap("host", Collections.singletonList("web-0" + caller)));
+      return zabbixApi.callApi("host.get", params);
+    });
+    for (int i = 0; i < 4; i++) {
+      assertEquals("web-0" + i, ((JsonNode) results.get(i).getData()).get(0).get("host").asText());
+    }
+
+    // Writes are never shared.
+    concurrently(4, caller -> zabbixApi.callApi("host.delete", Collections.singletonList("10084")));
+    assertEquals(8, server.getHttpRequestCount());
+    assertEquals(0, zabbixApi.getSingleFlight().getDedupedCount());
+  }
+
+  @Test
+  public void testExpiredSessionOfSharedCall() throws Exception {
+    server.stop();
+    zabbixApi.destroy();
+    server = new ZabbixSimulator().latency("host.get", 200, 0).populate(1, 1, 0).start();
+    zabbixApi = ZabbixApiBuilder.newBuilder().url(server.getUrl()).singleFlight(true).build();
+    zabbixApi.init();
+    zabbixApi.login(ZabbixSimulator.DEFAULT_USER, ZabbixSimulator.DEFAULT_PASSWORD);
+    server.expireSessions();
+
+    // Followers get the leader's session error and must renew the session too, not retry with the old auth.
+    List<ZabbixAPIResult> results = concurrently(8, caller -> zabbixApi.hostGetByHostName("host-0-0"));
+    results.forEach(result -> assertEquals(String.valueOf(result.getData()), 1,
+            ((JsonNode) result.getData()).size()));
+    assertEquals(1, zabbixApi.getReloginCount());
+  }
+
+  @Test
+  public void testErrorReachesFollowers() throws Exception {
+    ZabbixSingleFlight singleFlight = new ZabbixSingleFlight();
+    CountDownLatch inFlight = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Future<JsonNode> leader = executor.submit(() -> singleFlight.call("key", () -> {
+      inFlight.countDown();
+      while (singleFlight.getDedupedCount() == 0) {
+        Thread.yield();
+      }
+      throw new AssertionError("leader failed");
+    }));
+    inFlight.await();
+    Future<JsonNode> follower = executor.submit(() -> singleFlight.call("key", () -> {
+      throw new IllegalStateException("follower must not send");
+    }));
+    for (Future<JsonNode> future : Arrays.asList(leader, follower)) {
+      try {
+        future.get(5, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException e) {
+        assertEquals("leader failed", e.getCause().getMessage());
+      }
+    }
+    executor.shutdown();
+
+    // The failed flight is gone, the next call sends again.
+    assertEquals("ok", singleFlight.call("key", () -> TextNode.valueOf("ok")).asText());
+  }
+}